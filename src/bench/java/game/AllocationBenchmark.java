@@ -0,0 +1,59 @@
+package game;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Measures how many bytes the physics step and vertex extraction allocate, from the JVM's per-thread allocation
+ * counter. Runs QWOP with random keys, starting a new world after each fall, and counts only the steps and vertex
+ * extractions, not world creation. Earlier runs are thrown out as JIT warmup, since interpreted code allocates where
+ * compiled code doesn't. Run the main method; all output goes to stdout.
+ *
+ * @author matt
+ */
+public class AllocationBenchmark {
+
+    /**
+     * Steps per trial, and how many trials. Trials before the last are warmup.
+     */
+    private static final int steps = 20000, trials = 5;
+
+    private static final int holdSteps = 10;
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported())
+            throw new IllegalStateException("This JVM doesn't count allocated bytes per thread.");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        System.out.println("trial, bytes/step, bytes/vertex extraction");
+        for (int trial = 0; trial < trials; trial++) {
+            Random random = new Random(trial);
+            boolean[] keys = new boolean[4];
+            GameSingleThread game = new GameSingleThread();
+            game.makeNewWorld();
+            GameSingleThread.VertHolder vertHolder = game.getDebugVertices();
+            long stepBytes = 0, vertexBytes = 0;
+
+            for (int step = 0; step < steps; step++) {
+                if (game.getFailureStatus()) {
+                    game.makeNewWorld();
+                }
+                if (step % holdSteps == 0) {
+                    for (int k = 0; k < keys.length; k++) keys[k] = random.nextBoolean();
+                }
+                long before = threads.getThreadAllocatedBytes(thread);
+                game.stepGame(keys);
+                long afterStep = threads.getThreadAllocatedBytes(thread);
+                game.getDebugVertices(vertHolder);
+                long afterVertices = threads.getThreadAllocatedBytes(thread);
+                stepBytes += afterStep - before;
+                vertexBytes += afterVertices - afterStep;
+            }
+            System.out.println(trial + (trial < trials - 1 ? " (warmup)" : "") + ", " + (float) stepBytes / steps +
+                    ", " + (float) vertexBytes / steps);
+        }
+    }
+}
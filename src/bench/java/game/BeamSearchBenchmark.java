@@ -0,0 +1,34 @@
+package game;
+
+/**
+ * Runs {@link BeamSearch} with and without near-duplicate pruning and prints the stats of every level, then replays
+ * the best sequence on a fresh game to check it reaches the same place. Run the main method; all output goes to
+ * stdout.
+ *
+ * @author matt
+ */
+public class BeamSearchBenchmark {
+
+    private static final int beamWidth = 12, segmentDuration = 10, levels = 8;
+
+    public static void main(String[] args) {
+        for (float resolution : new float[]{0.05f, 0}) {
+            System.out.println(resolution == 0 ? "No pruning:" : "Pruning at resolution " + resolution + ":");
+            BeamSearch search = new BeamSearch(beamWidth, segmentDuration);
+            search.setPruneResolution(resolution);
+            long start = System.nanoTime();
+            search.search(levels);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long candidates = 0, timesteps = 0;
+            for (BeamSearch.LevelStats stats : search.getLevelStats()) {
+                System.out.println("  " + stats);
+                candidates += stats.candidates;
+                timesteps += stats.timestepsSimulated;
+            }
+            ResultStore.Result replay = ResultStore.evaluate(search.getBestSequence(), new GameSingleThread());
+            System.out.println("  " + (int) (candidates / seconds) + " candidates/s, " + (int) (timesteps / seconds) +
+                    " timesteps/s. Best x " + search.getBestScore() + ", replayed x " + replay.distance + ": " +
+                    search.getBestSequence());
+        }
+    }
+}
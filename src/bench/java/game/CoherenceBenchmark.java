@@ -0,0 +1,120 @@
+package game;
+
+import org.jbox2d.collision.Manifold;
+import org.jbox2d.collision.ManifoldPoint;
+import org.jbox2d.collision.shapes.CollidePoly;
+import org.jbox2d.collision.shapes.PolygonShape;
+import org.jbox2d.common.Settings;
+import org.jbox2d.common.XForm;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.DenseArray;
+import org.jbox2d.dynamics.World;
+import org.jbox2d.dynamics.contacts.Contact;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks contact coherence ({@link World#setContactCoherence(boolean)}) against full narrowphase evaluation.
+ * <p>
+ * Every manifold which a coherent step reused is collided again from scratch at the pose it was reused for, and the
+ * normals and separations are compared point by point. A second runner steps with the same keys and coherence off,
+ * to show how far the two runs drift apart, along with the reuse rate and the step time of each. Run the main method;
+ * all output goes to stdout.
+ *
+ * @author matt
+ */
+public class CoherenceBenchmark {
+
+    private static final int runs = 20, stepsPerRun = 1000, holdSteps = 10;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        CollidePoly collide = new CollidePoly();
+        Manifold full = new Manifold();
+        Map<Body, XForm> poses = new IdentityHashMap<>();
+
+        long reusedManifolds = 0, reusedPoints = 0, pointCountMismatches = 0;
+        double separationErrorSum = 0;
+        float maxSeparationError = 0, maxNormalError = 0, maxTorsoDrift = 0;
+        long coherentNanos = 0, fullNanos = 0, narrowphaseCount = 0, reuseCount = 0, steps = 0;
+        float linearSlop = 0, angularSlop = 0;
+
+        for (int run = 0; run < runs; run++) {
+            GameSingleThread coherent = new GameSingleThread();
+            coherent.makeNewWorld();
+            World world = coherent.getWorld();
+            world.setContactCoherence(true);
+            linearSlop = world.getCoherenceLinearSlop();
+            angularSlop = world.getCoherenceAngularSlop();
+            GameSingleThread reference = new GameSingleThread();
+            reference.makeNewWorld();
+
+            boolean[] keys = new boolean[4];
+            // Steps go on after a fall, since a runner lying on the track is what coherence is for.
+            for (int step = 0; step < stepsPerRun; step++) {
+                if (step % holdSteps == 0) {
+                    for (int k = 0; k < keys.length; k++) keys[k] = random.nextBoolean();
+                }
+
+                // Contacts are collided at the start of a step, at the poses the bodies have now.
+                for (Body body = world.getBodyList(); body != null; body = body.getNext()) {
+                    XForm pose = poses.computeIfAbsent(body, b -> new XForm());
+                    pose.set(body.getMemberXForm());
+                }
+
+                long start = System.nanoTime();
+                coherent.stepGame(keys);
+                coherentNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                reference.stepGame(keys);
+                fullNanos += System.nanoTime() - start;
+                steps++;
+
+                DenseArray<Contact> contacts = world.getContacts();
+                for (int n = 0; n < contacts.size(); n++) {
+                    Contact c = contacts.get(n);
+                    if (!c.m_manifoldReused) continue;
+                    Manifold reused = c.getManifolds().get(0);
+                    collide.collidePolygons(full, (PolygonShape) c.getShape1(), poses.get(c.getShape1().getBody()),
+                            (PolygonShape) c.getShape2(), poses.get(c.getShape2().getBody()));
+                    reusedManifolds++;
+                    if (full.pointCount != reused.pointCount) {
+                        pointCountMismatches++;
+                        continue;
+                    }
+                    float normalError = (float) Math.acos(Math.min(1f, reused.normal.x * full.normal.x +
+                            reused.normal.y * full.normal.y));
+                    maxNormalError = Math.max(maxNormalError, normalError);
+                    for (int i = 0; i < reused.pointCount; i++) {
+                        ManifoldPoint point = reused.points[i];
+                        for (int j = 0; j < full.pointCount; j++) {
+                            if (!point.id.features.isEqual(full.points[j].id.features)) continue;
+                            float error = Math.abs(point.separation - full.points[j].separation);
+                            separationErrorSum += error;
+                            maxSeparationError = Math.max(maxSeparationError, error);
+                            reusedPoints++;
+                        }
+                    }
+                }
+                float drift = coherent.getCurrentState().body.getX() - reference.getCurrentState().body.getX();
+                maxTorsoDrift = Math.max(maxTorsoDrift, Math.abs(drift));
+            }
+            narrowphaseCount += world.getNarrowphaseCount();
+            reuseCount += world.getNarrowphaseReuseCount();
+        }
+
+        System.out.println("Slops: " + linearSlop + " length units, " + angularSlop + " rad");
+        System.out.println("Reuse rate: " + (float) reuseCount / narrowphaseCount + " of " + narrowphaseCount +
+                " contact updates");
+        System.out.println("Reused manifolds checked: " + reusedManifolds + ", point count differs from full: " +
+                pointCountMismatches);
+        System.out.println("Separation error per point: mean " + (float) (separationErrorSum / reusedPoints) +
+                ", max " + maxSeparationError + " (linear slop is " + Settings.linearSlop + ")");
+        System.out.println("Normal error: max " + Math.toDegrees(maxNormalError) + " deg");
+        System.out.println("Torso x drift from the non-coherent run: max " + maxTorsoDrift);
+        System.out.println("Step time: coherent " + (float) (coherentNanos / 1e3 / steps) + " us, full " +
+                (float) (fullNanos / 1e3 / steps) + " us");
+    }
+}
@@ -0,0 +1,91 @@
+package game;
+
+import actions.Action;
+import actions.ActionCollectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Times consolidating a long list of actions, as imported from logs. Covers the single-pass consolidators for
+ * {@link Action} lists: {@link Action#consolidateActions(List)}, the {@link ActionCollectors#consolidating()} Collector, and the
+ * in-place array version. Also covers the ones for packed runs in {@link ActionSequence}: the Builder, the stream
+ * Collector (sequential and parallel), and the in-place array version. Checks that all of them give the same
+ * sequence. Run the main method; all output goes to stdout.
+ *
+ * @author matt
+ */
+public class ConsolidateBenchmark {
+
+    /**
+     * Actions in the input list, and how many trials. The first trial is thrown out as JIT warmup.
+     */
+    private static final int runCount = 1000000, trials = 6;
+
+    /**
+     * Keys are drawn from this many combinations, so neighbours often match and must be merged. One in
+     * zeroDurationEvery actions has zero duration and must be dropped.
+     */
+    private static final int keyChoices = 3, zeroDurationEvery = 10;
+
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        int[] input = new int[runCount];
+        List<Action> actions = new ArrayList<>(runCount);
+        int[] keyOptions = {0, ActionSequence.W | ActionSequence.O, ActionSequence.Q | ActionSequence.P};
+        for (int i = 0; i < runCount; i++) {
+            int duration = random.nextInt(zeroDurationEvery) == 0 ? 0 : 1 + random.nextInt(20);
+            input[i] = ActionSequence.packRun(keyOptions[random.nextInt(keyChoices)], duration);
+            actions.add(new Action(duration, ActionSequence.unpack(ActionSequence.runKeys(input[i]), new boolean[4])));
+        }
+
+        System.out.println("trial, action list ms, action collector ms, action in place ms, builder ms, " +
+                "collector ms, parallel collector ms, in place ms, runs out");
+        int[] scratch = new int[runCount];
+        Action[] actionScratch = new Action[runCount];
+        for (int trial = 0; trial < trials; trial++) {
+            long start = System.nanoTime();
+            List<Action> actionList = Action.consolidateActions(actions);
+            long afterActionList = System.nanoTime();
+            List<Action> actionCollected = actions.stream().collect(ActionCollectors.consolidating());
+            long afterActionCollector = System.nanoTime();
+            actions.toArray(actionScratch);
+            int actionsKept = Action.consolidateActions(actionScratch, runCount);
+            long afterActionInPlace = System.nanoTime();
+
+            ActionSequence.Builder builder = new ActionSequence.Builder();
+            for (int run : input) {
+                builder.addRun(run);
+            }
+            ActionSequence built = builder.build();
+            long afterBuilder = System.nanoTime();
+            ActionSequence collected = Arrays.stream(input).boxed().collect(ActionSequence.collector());
+            long afterCollector = System.nanoTime();
+            ActionSequence parallel = IntStream.of(input).parallel().boxed().collect(ActionSequence.collector());
+            long afterParallel = System.nanoTime();
+            System.arraycopy(input, 0, scratch, 0, runCount);
+            int kept = ActionSequence.consolidate(scratch, runCount);
+            long afterInPlace = System.nanoTime();
+
+            ActionSequence.Builder inPlaceBuilder = new ActionSequence.Builder(kept);
+            for (int i = 0; i < kept; i++) {
+                inPlaceBuilder.addRun(scratch[i]);
+            }
+            ActionSequence inPlace = inPlaceBuilder.build();
+            if (!built.equals(collected) || !built.equals(parallel) || !built.equals(inPlace) ||
+                    kept != built.getRunCount() || actionList.size() != kept || actionsKept != kept ||
+                    !built.equals(ActionSequence.of(actionList)) || !actionList.equals(actionCollected) ||
+                    !actionList.equals(Arrays.asList(actionScratch).subList(0, actionsKept))) {
+                throw new IllegalStateException("Consolidators disagree on trial " + trial + ".");
+            }
+            System.out.println(trial + ", " + (afterActionList - start) / 1e6 + ", " +
+                    (afterActionCollector - afterActionList) / 1e6 + ", " +
+                    (afterActionInPlace - afterActionCollector) / 1e6 + ", " +
+                    (afterBuilder - afterActionInPlace) / 1e6 + ", " + (afterCollector - afterBuilder) / 1e6 + ", " +
+                    (afterParallel - afterCollector) / 1e6 + ", " + (afterInPlace - afterParallel) / 1e6 + ", " + kept);
+        }
+    }
+}
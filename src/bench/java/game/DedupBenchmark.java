@@ -0,0 +1,77 @@
+package game;
+
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Pushes millions of random, heavily duplicated action sequences through an exact and a Bloom
+ * {@link SequenceDeduplicator} from a parallel stream, as a search would before simulating each candidate. Reports
+ * throughput, how many sequences each filter let through, the Bloom filter's false duplicates, and whether any two
+ * distinct sequences shared a 64-bit hash. Run the main method; all output goes to stdout.
+ *
+ * @author matt
+ */
+public class DedupBenchmark {
+
+    /**
+     * Sequences generated, and runs per sequence before consolidation.
+     */
+    private static final int sequenceCount = 2000000, runsPerSequence = 6;
+
+    /**
+     * Key choices and the longest run duration. Few choices means many duplicates, especially after neighbouring
+     * runs with the same keys are merged.
+     */
+    private static final int[] keyOptions = {0, ActionSequence.W | ActionSequence.O,
+            ActionSequence.Q | ActionSequence.P};
+    private static final int maxDuration = 3;
+
+    private static final double bloomFalsePositiveRate = 0.01;
+
+    public static void main(String[] args) {
+        ActionSequence[] sequences = IntStream.range(0, sequenceCount).parallel().mapToObj(DedupBenchmark::generate)
+                .toArray(ActionSequence[]::new);
+
+        Set<Long> hashes = ConcurrentHashMap.newKeySet();
+        Set<ActionSequence> distinct = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, sequenceCount).parallel().forEach(i -> {
+            distinct.add(sequences[i]);
+            hashes.add(sequences[i].hash64());
+        });
+        System.out.println("Sequences: " + sequenceCount + ", distinct: " + distinct.size() + ", distinct hashes: " +
+                hashes.size());
+
+        SequenceDeduplicator exact = SequenceDeduplicator.exact();
+        long exactTime = run(exact, sequences);
+        System.out.println("Exact: " + exact.getAddedCount() + " new, " + exact.getDuplicateCount() + " duplicates, " +
+                (float) (sequenceCount / (exactTime / 1e9) / 1e6) + " M sequences/s");
+
+        SequenceDeduplicator bloom = SequenceDeduplicator.bloom(distinct.size(), bloomFalsePositiveRate);
+        long bloomTime = run(bloom, sequences);
+        long falseDuplicates = exact.getAddedCount() - bloom.getAddedCount();
+        System.out.println("Bloom (" + bloom.getBitCount() / 8 / 1024 + " KiB, " + bloom.getHashCount() + " hashes): " +
+                bloom.getAddedCount() + " new, " + bloom.getDuplicateCount() + " duplicates, " +
+                (float) (sequenceCount / (bloomTime / 1e9) / 1e6) + " M sequences/s, false duplicate rate " +
+                (float) falseDuplicates / exact.getAddedCount());
+    }
+
+    private static long run(SequenceDeduplicator deduplicator, ActionSequence[] sequences) {
+        long start = System.nanoTime();
+        IntStream.range(0, sequences.length).parallel().forEach(i -> deduplicator.add(sequences[i]));
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Random sequence, seeded by its index so generation can be parallel and repeatable.
+     */
+    private static ActionSequence generate(int index) {
+        SplittableRandom random = new SplittableRandom(index);
+        ActionSequence.Builder builder = new ActionSequence.Builder(runsPerSequence);
+        for (int r = 0; r < runsPerSequence; r++) {
+            builder.add(keyOptions[random.nextInt(keyOptions.length)], 1 + random.nextInt(maxDuration));
+        }
+        return builder.build();
+    }
+}
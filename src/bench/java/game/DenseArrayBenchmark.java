@@ -0,0 +1,152 @@
+package game;
+
+import org.jbox2d.collision.AABB;
+import org.jbox2d.collision.shapes.PolygonDef;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.DenseArray;
+import org.jbox2d.dynamics.World;
+
+import java.util.Random;
+
+/**
+ * Measures the passes which walk the world's dense arrays ({@link World#getBodies()} and the like) instead of its
+ * linked lists. Reports step time for QWOP and for a pile of boxes, where one box is destroyed and another dropped in
+ * every few steps, and the cost of walking the pile's bodies through the list and through the array. Also checks that
+ * walking the body array backwards visits bodies in list order, which is what keeps results unchanged. Run the main
+ * method; all output goes to stdout.
+ *
+ * @author matt
+ */
+public class DenseArrayBenchmark {
+
+    private static final int qwopSteps = 20000, pileSteps = 1000, trials = 4;
+
+    private static final int boxCount = 1000, boxColumns = 25, churnSteps = 5;
+
+    /**
+     * Walks over the pile's bodies per traversal timing.
+     */
+    private static final int walks = 20000;
+
+    private static final float timeStep = 1f / 60f;
+
+    private static final int iterations = 10;
+
+    private static float sink;
+
+    public static void main(String[] args) {
+        System.out.println("trial, QWOP ms/step, pile ms/step, list walk ns/body, array walk ns/body, " +
+                "array in list order");
+        for (int trial = 0; trial < trials; trial++) {
+            double qwop = timeQWOP(trial);
+
+            World pile = makePile();
+            Random random = new Random(trial);
+            boolean inOrder = true;
+            long start = System.nanoTime();
+            for (int step = 0; step < pileSteps; step++) {
+                if (step % churnSteps == 0) {
+                    churn(pile, random);
+                }
+                pile.step(timeStep, iterations);
+                inOrder &= arrayInListOrder(pile);
+            }
+            double pileMs = (System.nanoTime() - start) / 1e6 / pileSteps;
+
+            int bodies = pile.getBodies().size();
+            start = System.nanoTime();
+            for (int i = 0; i < walks; i++) walkList(pile);
+            double listNs = (double) (System.nanoTime() - start) / walks / bodies;
+            start = System.nanoTime();
+            for (int i = 0; i < walks; i++) walkArray(pile);
+            double arrayNs = (double) (System.nanoTime() - start) / walks / bodies;
+
+            System.out.println(trial + (trial == 0 ? " (warmup)" : "") + ", " + (float) qwop + ", " + (float) pileMs +
+                    ", " + (float) listNs + ", " + (float) arrayNs + ", " + inOrder);
+        }
+    }
+
+    private static double timeQWOP(long seed) {
+        Random random = new Random(seed);
+        GameSingleThread game = new GameSingleThread();
+        game.makeNewWorld();
+        boolean[] keys = new boolean[4];
+        long elapsed = 0;
+        for (int step = 0; step < qwopSteps; step++) {
+            if (game.getFailureStatus()) game.makeNewWorld();
+            if (step % 10 == 0) {
+                for (int k = 0; k < keys.length; k++) keys[k] = random.nextBoolean();
+            }
+            long start = System.nanoTime();
+            game.stepGame(keys);
+            elapsed += System.nanoTime() - start;
+        }
+        return elapsed / 1e6 / qwopSteps;
+    }
+
+    /**
+     * Ground with a grid of boxes stacked on it.
+     */
+    private static World makePile() {
+        World world = new World(new AABB(new Vec2(-200f, -200f), new Vec2(200f, 400f)), new Vec2(0, -10f), true);
+        BodyDef groundDef = new BodyDef();
+        groundDef.position.set(0, -10f);
+        PolygonDef groundShape = new PolygonDef();
+        groundShape.setAsBox(100f, 10f);
+        world.createBody(groundDef).createShape(groundShape);
+        for (int i = 0; i < boxCount; i++) {
+            dropBox(world, i % boxColumns, 0.5f + 1.05f * (i / boxColumns));
+        }
+        return world;
+    }
+
+    private static void dropBox(World world, int column, float y) {
+        BodyDef def = new BodyDef();
+        def.position.set(1.05f * (column - boxColumns / 2), y);
+        PolygonDef box = new PolygonDef();
+        box.setAsBox(0.5f, 0.5f);
+        box.density = 1f;
+        box.friction = 0.6f;
+        Body body = world.createBody(def);
+        body.createShape(box);
+        body.setMassFromShapes();
+    }
+
+    /**
+     * Destroy a random box, leaving a hole in the arrays, and drop a new one on top of the pile.
+     */
+    private static void churn(World world, Random random) {
+        DenseArray<Body> bodies = world.getBodies();
+        Body victim = bodies.get(1 + random.nextInt(bodies.size() - 1)); // Not the ground, which was made first.
+        world.destroyBody(victim);
+        dropBox(world, random.nextInt(boxColumns), 1.05f * (boxCount / boxColumns + 2));
+    }
+
+    private static boolean arrayInListOrder(World world) {
+        DenseArray<Body> bodies = world.getBodies();
+        int i = bodies.size() - 1;
+        for (Body b = world.getBodyList(); b != null; b = b.getNext(), i--) {
+            if (i < 0 || bodies.get(i) != b) return false;
+        }
+        return i == -1;
+    }
+
+    private static void walkList(World world) {
+        float sum = 0;
+        for (Body b = world.getBodyList(); b != null; b = b.getNext()) {
+            sum += b.getMemberPosition().y;
+        }
+        sink += sum;
+    }
+
+    private static void walkArray(World world) {
+        DenseArray<Body> bodies = world.getBodies();
+        float sum = 0;
+        for (int i = bodies.size() - 1; i >= 0; i--) {
+            sum += bodies.get(i).getMemberPosition().y;
+        }
+        sink += sum;
+    }
+}
@@ -0,0 +1,56 @@
+package game;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tunes a four-phase gait with {@link GaitOptimizer} and reports, per generation, the best distance, evaluations per
+ * second, and how many evaluations the cache answered. Ends with the best hold times, in the form the webapp's
+ * sequence box takes. Run the main method; all output goes to stdout.
+ *
+ * @author matt
+ */
+public class GaitBenchmark {
+
+    private static final int openingLength = 4, horizon = 400, populationSize = 48, generations = 12;
+
+    public static void main(String[] args) {
+        GaitOptimizer optimizer = new GaitOptimizer(openingLength, horizon);
+        Random random = new Random(0);
+        System.out.println("Threads: " + ForkJoinPool.commonPool().getParallelism());
+        System.out.println("generation, best x, mean hold times, evaluations/s, cache hits");
+        long totalStart = System.nanoTime();
+        for (int generation = 0; generation < generations; generation++) {
+            long evaluationsBefore = optimizer.getEvaluationCount();
+            long hitsBefore = optimizer.getCacheHitCount();
+            long start = System.nanoTime();
+            float best = optimizer.step(populationSize, random);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long evaluations = optimizer.getEvaluationCount() - evaluationsBefore;
+            System.out.println(generation + ", " + best + ", " + Arrays.toString(round(optimizer.getMean())) + ", " +
+                    (int) (evaluations / seconds) + ", " + (optimizer.getCacheHitCount() - hitsBefore));
+        }
+        double seconds = (System.nanoTime() - totalStart) / 1e9;
+        System.out.println("Total: " + optimizer.getEvaluationCount() + " evaluations, " +
+                optimizer.getCacheHitCount() + " cached, " + (int) (optimizer.getTimestepsSimulated() / seconds) +
+                " timesteps/s");
+        int[] best = optimizer.getBest();
+        System.out.println("Best x " + optimizer.getBestFitness() + " with hold times " +
+                Arrays.toString(best).replaceAll("[\\[\\] ]", ""));
+
+        long hitsBefore = optimizer.getCacheHitCount();
+        long start = System.nanoTime();
+        float again = optimizer.evaluate(best);
+        System.out.println("Re-scoring the best: x " + again + ", " + (optimizer.getCacheHitCount() - hitsBefore) +
+                " cache hit, " + (System.nanoTime() - start) / 1e3 + " us");
+    }
+
+    private static int[] round(float[] values) {
+        int[] rounded = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            rounded[i] = Math.round(values[i]);
+        }
+        return rounded;
+    }
+}
@@ -0,0 +1,93 @@
+package game;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times N runners sharing one world in {@link GameMultiRunner} against N separate {@link GameSingleThread}s, for
+ * several N, with every runner pressing its own random keys. Also checks that runner 0 of the shared world stays in
+ * lockstep with a lone {@link GameSingleThread} given the same keys. Run the main method; all output goes to stdout.
+ *
+ * @author matt
+ */
+public class MultiRunnerBenchmark {
+
+    private static final int[] runnerCounts = {1, 4, 8, 16, 32, 64};
+
+    private static final int steps = 1000, holdSteps = 10, repeats = 8;
+
+    public static void main(String[] args) {
+        System.out.println("runners, shared steps/s, separate steps/s, shared speedup, lane 0 in lockstep");
+        for (int n : runnerCounts) {
+            boolean[][][] keys = randomKeys(n, 3);
+            // Best of several, after the first rounds have warmed up the JIT.
+            long shared = Long.MAX_VALUE, separate = Long.MAX_VALUE;
+            for (int r = 0; r < repeats; r++) {
+                shared = Math.min(shared, timeShared(keys));
+                separate = Math.min(separate, timeSeparate(keys));
+            }
+            double runnerSteps = (double) n * steps;
+            System.out.println(n + ", " + (long) (runnerSteps / (shared / 1e9)) + ", " +
+                    (long) (runnerSteps / (separate / 1e9)) + ", " + (float) separate / shared + ", " +
+                    laneZeroInLockstep(keys));
+        }
+    }
+
+    /**
+     * Keys for every step and runner, each held for {@link #holdSteps} steps.
+     */
+    private static boolean[][][] randomKeys(int runnerCount, long seed) {
+        Random random = new Random(seed);
+        boolean[][][] keys = new boolean[steps][runnerCount][4];
+        for (int s = 0; s < steps; s++) {
+            for (int i = 0; i < runnerCount; i++) {
+                for (int k = 0; k < 4; k++) {
+                    keys[s][i][k] = s % holdSteps == 0 ? random.nextBoolean() : keys[s - 1][i][k];
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static long timeShared(boolean[][][] keys) {
+        GameMultiRunner game = new GameMultiRunner(keys[0].length);
+        long start = System.nanoTime();
+        for (boolean[][] step : keys) {
+            game.stepGame(step);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timeSeparate(boolean[][][] keys) {
+        int n = keys[0].length;
+        GameSingleThread[] games = new GameSingleThread[n];
+        for (int i = 0; i < n; i++) {
+            games[i] = new GameSingleThread();
+            games[i].makeNewWorld();
+        }
+        long start = System.nanoTime();
+        for (boolean[][] step : keys) {
+            for (int i = 0; i < n; i++) {
+                games[i].stepGame(step[i]);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Whether runner 0 of a shared world gives exactly the states of a lone runner at every step.
+     */
+    private static boolean laneZeroInLockstep(boolean[][][] keys) {
+        GameMultiRunner shared = new GameMultiRunner(keys[0].length);
+        GameSingleThread alone = new GameSingleThread();
+        alone.makeNewWorld();
+        for (boolean[][] step : keys) {
+            shared.stepGame(step);
+            alone.stepGame(step[0]);
+            if (!Arrays.equals(shared.getCurrentState(0).flattenState(), alone.getCurrentState().flattenState())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
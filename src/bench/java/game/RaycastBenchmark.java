@@ -0,0 +1,118 @@
+package game;
+
+import org.jbox2d.collision.Segment;
+import org.jbox2d.collision.shapes.Shape;
+import org.jbox2d.common.RaycastResult;
+import org.jbox2d.dynamics.World;
+
+/**
+ * Senses the ground under the runner's feet with a fan of rays every step, as a controller might on {@link Terrain},
+ * and compares three ways of casting them: the sorted {@link World#raycast(Segment, Shape[], int, boolean, Object)}
+ * followed by a second test of the closest shape (what raycastOne used to do), one
+ * {@link World#raycastOne(Segment, RaycastResult, boolean, Object)} per ray, and one batched
+ * {@link World#raycast(Segment[], int, RaycastResult[], Shape[], boolean, Object)} for all rays. Reports time per step
+ * of rays for each, and checks that all three find the same hits. Run the main method; all output goes to stdout.
+ *
+ * @author matt
+ */
+public class RaycastBenchmark {
+
+    /**
+     * Rays per foot, spread evenly over a downward fan of the given half angle (radians), each of the given length.
+     */
+    private static final int raysPerFoot = 16;
+    private static final float fanHalfAngle = 0.8f, rayLength = 3f;
+
+    /**
+     * Timesteps per trial, and how many trials. The first trial is thrown out as JIT warmup.
+     */
+    private static final int trialSteps = 1000, trials = 6;
+
+    private static final long seed = 1234;
+
+    private static final float roughness = 0.5f;
+
+    private static final int rayCount = 2 * raysPerFoot;
+
+    private static final Segment[] segments = new Segment[rayCount];
+    private static final RaycastResult[] results = new RaycastResult[rayCount];
+    private static final Shape[] shapes = new Shape[rayCount];
+
+    private static final Shape[] sortedShapes = new Shape[1];
+    private static final RaycastResult single = new RaycastResult();
+
+    public static void main(String[] args) {
+        for (int i = 0; i < rayCount; i++) {
+            segments[i] = new Segment();
+            results[i] = new RaycastResult();
+        }
+
+        System.out.println("trial, sorted ms/step, raycastOne ms/step, batch ms/step, mismatches");
+        for (int trial = 0; trial < trials; trial++) {
+            GameSingleThread game = new GameSingleThread();
+            game.setTerrain(seed, roughness);
+            game.makeNewWorld();
+            World world = game.getWorld();
+
+            long sortedTime = 0, oneTime = 0, batchTime = 0;
+            int mismatches = 0;
+            for (int step = 0; step < trialSteps; step++) {
+                // Tap W+O and let go, which walks slowly without falling for a while.
+                boolean keys = (step / 10) % 2 == 0;
+                game.stepGame(false, keys, keys, false);
+                if (game.getFailureStatus()) {
+                    game.makeNewWorld();
+                    world = game.getWorld();
+                }
+                State state = game.getCurrentState();
+                setFan(0, state.rfoot.getX(), state.rfoot.getY());
+                setFan(raysPerFoot, state.lfoot.getX(), state.lfoot.getY());
+
+                long start = System.nanoTime();
+                float sortedSum = 0;
+                for (int i = 0; i < rayCount; i++) {
+                    if (world.raycast(segments[i], sortedShapes, 1, false, null) > 0) {
+                        sortedShapes[0].testSegment(sortedShapes[0].getBody().getMemberXForm(), single, segments[i],
+                                1f);
+                        sortedSum += single.lambda;
+                    }
+                }
+                long afterSorted = System.nanoTime();
+                float oneSum = 0;
+                for (int i = 0; i < rayCount; i++) {
+                    if (world.raycastOne(segments[i], single, false, null) != null) {
+                        oneSum += single.lambda;
+                    }
+                }
+                long afterOne = System.nanoTime();
+                world.raycast(segments, rayCount, results, shapes, false, null);
+                long afterBatch = System.nanoTime();
+
+                float batchSum = 0;
+                for (int i = 0; i < rayCount; i++) {
+                    if (shapes[i] != null) batchSum += results[i].lambda;
+                }
+                if (Math.abs(sortedSum - oneSum) > 1e-4f || Math.abs(sortedSum - batchSum) > 1e-4f) mismatches++;
+
+                sortedTime += afterSorted - start;
+                oneTime += afterOne - afterSorted;
+                batchTime += afterBatch - afterOne;
+            }
+            System.out.println(trial + ", " + (float) (sortedTime / 1e6 / trialSteps) + ", " +
+                    (float) (oneTime / 1e6 / trialSteps) + ", " + (float) (batchTime / 1e6 / trialSteps) + ", " +
+                    mismatches);
+        }
+    }
+
+    /**
+     * Point the rays from first to first + raysPerFoot in a downward fan from (x, y). Remember -y is up.
+     */
+    private static void setFan(int first, float x, float y) {
+        for (int i = 0; i < raysPerFoot; i++) {
+            float angle = -fanHalfAngle + 2 * fanHalfAngle * i / (raysPerFoot - 1);
+            Segment s = segments[first + i];
+            s.p1.set(x, y);
+            s.p2.set(x + rayLength * (float) Math.sin(angle), y + rayLength * (float) Math.cos(angle));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package game;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Scores random action sequences through a {@link ResultStore}, then closes and reopens it and scores them again, as
+ * a search would across days. Reports simulation time for the first pass, how long reopening (scanning and indexing
+ * the log) takes, lookup time for the second pass, and parallel lookup throughput. Run the main method; all output
+ * goes to stdout. The store file is the first argument, or a temporary file.
+ *
+ * @author matt
+ */
+public class ResultStoreBenchmark {
+
+    /**
+     * Sequences scored, and runs per sequence. Runs last 1 to maxDuration timesteps.
+     */
+    private static final int sequenceCount = 2000, runsPerSequence = 20, maxDuration = 10;
+
+    /**
+     * Parallel lookups in the throughput test.
+     */
+    private static final int lookupCount = 2000000;
+
+    public static void main(String[] args) throws IOException {
+        File path;
+        if (args.length > 0) {
+            path = new File(args[0]);
+        } else {
+            path = File.createTempFile("qwop_results", ".log");
+            path.deleteOnExit();
+            if (!path.delete()) throw new IOException("Could not clear temporary file: " + path);
+        }
+
+        Random random = new Random(0);
+        ActionSequence[] sequences = new ActionSequence[sequenceCount];
+        for (int i = 0; i < sequenceCount; i++) {
+            ActionSequence.Builder builder = new ActionSequence.Builder(runsPerSequence);
+            for (int r = 0; r < runsPerSequence; r++) {
+                builder.add(random.nextInt(16), 1 + random.nextInt(maxDuration));
+            }
+            sequences[i] = builder.build();
+        }
+
+        GameSingleThread game = new GameSingleThread();
+        float firstDistanceSum = 0;
+        long start = System.nanoTime();
+        try (ResultStore store = ResultStore.open(path)) {
+            for (ActionSequence sequence : sequences) {
+                firstDistanceSum += store.getOrEvaluate(sequence, game).distance;
+            }
+            store.flush();
+            System.out.println("First pass: " + store.size() + " results, " + store.getLogBytes() + " log bytes, " +
+                    (System.nanoTime() - start) / 1e6 + " ms");
+        }
+
+        start = System.nanoTime();
+        try (ResultStore store = ResultStore.open(path)) {
+            long opened = System.nanoTime();
+            System.out.println("Reopen: " + store.size() + " results recovered in " + (opened - start) / 1e6 + " ms");
+
+            float secondDistanceSum = 0;
+            for (ActionSequence sequence : sequences) {
+                secondDistanceSum += store.getOrEvaluate(sequence, game).distance;
+            }
+            System.out.println("Second pass: " + (System.nanoTime() - opened) / 1e6 + " ms, " +
+                    (firstDistanceSum == secondDistanceSum ? "same" : "DIFFERENT") + " distances");
+
+            long lookupStart = System.nanoTime();
+            long hits = IntStream.range(0, lookupCount).parallel()
+                    .filter(i -> store.contains(sequences[i % sequenceCount])).count();
+            System.out.println("Parallel lookups: " + hits + "/" + lookupCount + " hits, " +
+                    (float) (lookupCount / ((System.nanoTime() - lookupStart) / 1e9) / 1e6) + " M lookups/s");
+        }
+    }
+}
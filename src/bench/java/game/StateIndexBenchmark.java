@@ -0,0 +1,73 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Indexes every timestep of random runs in a {@link StateIndex}, one insert at a time, then finds the nearest stored
+ * states to states from other runs, with the trees and by brute force. Checks that both give the same neighbours, and
+ * reports times and distances computed per query, for all values and for poses only. Run the main method; all output
+ * goes to stdout.
+ *
+ * @author matt
+ */
+public class StateIndexBenchmark {
+
+    private static final int storedStates = 100000, queryStates = 1000, k = 10, keyPeriod = 10;
+
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        GameSingleThread game = new GameSingleThread();
+        List<State> stored = collect(storedStates, random, game);
+        List<State> queries = collect(queryStates, random, game);
+        System.out.println("Stored " + stored.size() + " states, " + queries.size() + " queries, k = " + k);
+
+        float[] poseOnly = {1, 1, 1, 0, 0, 0};
+        float[] allBodies = new float[State.ObjectName.values().length];
+        Arrays.fill(allBodies, 1);
+        float[][] configs = {null, StateIndex.weights(allBodies, poseOnly)};
+        String[] names = {"all values", "poses only"};
+        for (int c = 0; c < configs.length; c++) {
+            StateIndex index = new StateIndex(configs[c]);
+            long start = System.nanoTime();
+            for (State state : stored) {
+                index.add(state);
+            }
+            long added = System.nanoTime();
+
+            StateIndex.Neighbours[] tree = index.nearest(queries, k);
+            long queried = System.nanoTime();
+            long treeEvaluations = index.getDistanceEvaluationCount();
+            StateIndex.Neighbours[] brute = index.nearestBruteForce(queries, k);
+            long bruteQueried = System.nanoTime();
+
+            int mismatches = 0;
+            for (int i = 0; i < tree.length; i++) {
+                if (!tree[i].equals(brute[i])) mismatches++;
+            }
+            System.out.println(names[c] + ": " + (added - start) / 1e6f + " ms to add; trees " +
+                    (queried - added) / 1e6f + " ms, " + treeEvaluations / queries.size() +
+                    " distances per query; brute force " + (bruteQueried - queried) / 1e6f + " ms, " +
+                    index.size() + " distances per query; " + mismatches + " mismatches");
+        }
+    }
+
+    /**
+     * Every state of random runs which change keys every {@link #keyPeriod} timesteps, until count are collected.
+     */
+    private static List<State> collect(int count, Random random, GameSingleThread game) {
+        List<State> states = new ArrayList<>(count);
+        boolean[] keys = new boolean[4];
+        while (states.size() < count) {
+            game.makeNewWorld();
+            for (int step = 0; !game.getFailureStatus() && states.size() < count; step++) {
+                if (step % keyPeriod == 0) ActionSequence.unpack(random.nextInt(16), keys);
+                game.stepGame(keys);
+                states.add(game.getCurrentState());
+            }
+        }
+        return states;
+    }
+}
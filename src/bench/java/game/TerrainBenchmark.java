@@ -0,0 +1,72 @@
+package game;
+
+import org.jbox2d.collision.AABB;
+import org.jbox2d.collision.shapes.PolygonDef;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.World;
+
+import static game.GameConstants.*;
+
+/**
+ * Drags a box along {@link Terrain} at constant speed and reports step time, body count, and broadphase proxy count
+ * against the distance travelled. With chunks streamed in and out, all three should stay flat however far the box
+ * goes. Run the main method; all output goes to stdout.
+ *
+ * @author matt
+ */
+public class TerrainBenchmark {
+
+    /**
+     * Horizontal speed of the box, total distance, and how often to report.
+     */
+    private static final float speed = 10f, distance = 4000f, reportEvery = 500f;
+
+    private static final long seed = 1234;
+
+    private static final float roughness = 0.5f;
+
+    public static void main(String[] args) {
+        World world = new World(new AABB(new Vec2(aabbMinX, aabbMinY), new Vec2(aabbMaxX, aabbMaxY)),
+                new Vec2(0, gravityMagnitude), true);
+        Terrain terrain = new Terrain(world, seed, roughness);
+        terrain.update(0);
+
+        BodyDef boxDef = new BodyDef();
+        boxDef.position.set(0, Terrain.baseHeight - 1f);
+        boxDef.allowSleep = false;
+        Body box = world.createBody(boxDef);
+        PolygonDef boxShape = new PolygonDef();
+        boxShape.setAsBox(1f, 0.25f);
+        boxShape.density = 1f;
+        boxShape.friction = 0f;
+        box.createShape(boxShape);
+        box.setMassFromShapes();
+
+        System.out.println("distance, ms/step, bodies, proxies, chunks created, box height above ground");
+        Vec2 velocity = new Vec2();
+        float nextReport = reportEvery;
+        long start = System.nanoTime();
+        int steps = 0;
+        while (box.getMemberPosition().x < distance) {
+            velocity.set(speed, box.getLinearVelocity().y);
+            box.setLinearVelocity(velocity);
+            world.step(timestep, physIterations);
+            float x = box.getMemberPosition().x;
+            terrain.update(x);
+            steps++;
+
+            if (x >= nextReport) {
+                long now = System.nanoTime();
+                float height = Terrain.baseHeight - terrain.getHeight(x) - box.getMemberPosition().y;
+                System.out.println((int) nextReport + ", " + (float) ((now - start) / 1e6 / steps) + ", " +
+                        world.getBodyCount() + ", " + world.getProxyCount() + ", " + terrain.getChunksCreated() +
+                        ", " + height);
+                nextReport += reportEvery;
+                start = now;
+                steps = 0;
+            }
+        }
+    }
+}
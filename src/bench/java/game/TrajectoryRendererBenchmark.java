@@ -0,0 +1,51 @@
+package game;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Records random key sequences with {@link TrajectoryRenderer} and renders them as frame PNGs and contact sheets,
+ * reporting throughput. Run the main method; output images go to the directory given as the first argument, or a
+ * temporary directory, and timings to stdout.
+ *
+ * @author matt
+ */
+public class TrajectoryRendererBenchmark {
+
+    private static final int trajectoryCount = 64, steps = 200, keyPeriod = 5;
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(0);
+        List<boolean[][]> commandSequences = new ArrayList<>();
+        for (int i = 0; i < trajectoryCount; i++) {
+            boolean[][] commands = new boolean[steps][];
+            for (int s = 0; s < steps; s++) {
+                commands[s] = s % keyPeriod == 0 ? new boolean[]{random.nextBoolean(), random.nextBoolean(),
+                        random.nextBoolean(), random.nextBoolean()} : commands[s - 1];
+            }
+            commandSequences.add(commands);
+        }
+        File dir = args.length > 0 ? new File(args[0]) : Files.createTempDirectory("qwop_frames").toFile();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        TrajectoryRenderer renderer = new TrajectoryRenderer(320, 240, 10f, pool);
+
+        long start = System.nanoTime();
+        List<float[][]> trajectories = renderer.recordAll(commandSequences);
+        long recorded = System.nanoTime();
+        int frames = renderer.writeFrames(trajectories, dir);
+        long written = System.nanoTime();
+        renderer.writeContactSheets(trajectories, dir, 10, 5);
+        long sheets = System.nanoTime();
+
+        System.out.println("Output: " + dir);
+        System.out.println("Threads: " + pool.getParallelism());
+        System.out.println("Recorded " + frames + " frames in " + (recorded - start) / 1e6 + " ms");
+        System.out.println("Wrote frame PNGs at " + (int) (frames / ((written - recorded) / 1e9)) + " frames/s");
+        System.out.println("Wrote " + trajectoryCount + " contact sheets in " + (sheets - written) / 1e6 + " ms");
+    }
+}
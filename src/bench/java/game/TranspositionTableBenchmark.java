@@ -0,0 +1,76 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Fills a {@link TranspositionTable} from every timestep of random runs, from a parallel stream, then looks every
+ * state up again. Reports throughput, hit rate, and evictions for a table big enough for every pose and one an
+ * eighth of that size. Then runs {@link BeamSearch} with and without a table. Run the main method; all output goes to
+ * stdout.
+ *
+ * @author matt
+ */
+public class TranspositionTableBenchmark {
+
+    private static final int runs = 64, steps = 300, keyPeriod = 10;
+
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        List<State> states = new ArrayList<>(runs * steps);
+        List<Float> distances = new ArrayList<>(runs * steps);
+        GameSingleThread game = new GameSingleThread();
+        boolean[] keys = new boolean[4];
+        for (int run = 0; run < runs; run++) {
+            game.makeNewWorld();
+            for (int step = 0; step < steps && !game.getFailureStatus(); step++) {
+                if (step % keyPeriod == 0) ActionSequence.unpack(random.nextInt(16), keys);
+                game.stepGame(keys);
+                State state = game.getCurrentState();
+                states.add(state);
+                distances.add(state.body.getX());
+            }
+        }
+        System.out.println("States: " + states.size());
+
+        for (int capacity : new int[]{states.size(), states.size() / 8}) {
+            TranspositionTable table = new TranspositionTable(capacity);
+            long start = System.nanoTime();
+            IntStream.range(0, states.size()).parallel().forEach(i -> table.put(states.get(i), distances.get(i), null));
+            long filled = System.nanoTime();
+            long dominated = IntStream.range(0, states.size()).parallel()
+                    .filter(i -> table.isDominated(states.get(i), distances.get(i))).count();
+            long looked = System.nanoTime();
+            System.out.println("Capacity " + table.getCapacity() + ": " + table.getInsertCount() + " keys inserted, " +
+                    table.getImprovementCount() + " improved, " + table.getEvictionCount() + " evicted, " +
+                    (int) (states.size() / ((filled - start) / 1e9)) + " puts/s; " + dominated +
+                    " dominated, hit rate " + (float) table.getHitRate() + ", " +
+                    (int) (states.size() / ((looked - filled) / 1e9)) + " lookups/s");
+        }
+
+        String[] configs = {"without a table", "with default bins", "with coarse bins, ignoring velocities"};
+        for (int config = 0; config < configs.length; config++) {
+            BeamSearch search = new BeamSearch(12, 10);
+            TranspositionTable table = new TranspositionTable(1 << 14);
+            if (config == 2) {
+                for (State.StateName name : State.StateName.values()) {
+                    table.setBinWidth(name, name.name().startsWith("D") ? Float.POSITIVE_INFINITY : 0.5f);
+                }
+            }
+            if (config > 0) search.setTranspositionTable(table);
+            long start = System.nanoTime();
+            search.search(8);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            int transposed = 0;
+            for (BeamSearch.LevelStats stats : search.getLevelStats()) {
+                transposed += stats.transposed;
+            }
+            System.out.println("Beam search " + configs[config] + ": " +
+                    search.getLevelStats().size() + " levels, " + transposed + " candidates transposed, best x " +
+                    search.getBestScore() + ", " + (float) seconds + " s" +
+                    (config > 0 ? ", table hit rate " + (float) table.getHitRate() : ""));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package game;
+
+/**
+ * Runs the same number of {@link MonteCarloTreeSearch} iterations on 1, 2, 4... threads, up to twice the number of
+ * processors, each on a fresh tree. Reports tree nodes and rollouts per second for each thread count, and how far
+ * the most visited path runs. Run the main method; all output goes to stdout.
+ *
+ * @author matt
+ */
+public class TreeSearchBenchmark {
+
+    private static final int iterations = 400;
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+        System.out.println("Processors: " + Runtime.getRuntime().availableProcessors());
+        GameSingleThread game = new GameSingleThread();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            MonteCarloTreeSearch search = new MonteCarloTreeSearch();
+            long start = System.nanoTime();
+            search.search(threads, iterations, 0);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            ActionSequence best = search.getBestSequence();
+            ResultStore.Result result = ResultStore.evaluate(best, game);
+            System.out.println(threads + " threads: " + (float) (search.getNodeCount() / seconds) + " nodes/s, " +
+                    (float) (search.getRolloutCount() / seconds) + " rollouts/s, " +
+                    (float) (search.getTimestepsSimulated() / seconds) + " timesteps/s, best path " +
+                    best.getRunCount() + " runs reaching x = " + result.distance +
+                    (result.isFailed() ? " (fell)" : ""));
+        }
+    }
+}
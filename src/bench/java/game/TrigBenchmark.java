@@ -0,0 +1,123 @@
+package game;
+
+import org.jbox2d.common.MathUtils;
+import org.jbox2d.common.TrigMode;
+
+/**
+ * Compares the sin/cos backends in {@link TrigMode}: max error against StrictMath, cost per call, and how far a QWOP
+ * run drifts from the StrictMath run when the same keys are pressed. Run the main method; all output goes to stdout.
+ *
+ * @author matt
+ */
+public class TrigBenchmark {
+
+    /**
+     * Angles sampled for the error measurement.
+     */
+    private static final int errorSamples = 1000001;
+
+    /**
+     * Angles per timing trial, and how many trials. The first trial of each mode is thrown out as JIT warmup.
+     */
+    private static final int speedSamples = 1000000, speedTrials = 6;
+
+    /**
+     * Maximum timesteps for each QWOP run.
+     */
+    private static final int runSteps = 2000;
+
+    /**
+     * Runner state is considered diverged once any state variable differs by more than this from the StrictMath run.
+     */
+    private static final float divergenceTolerance = 1e-3f;
+
+    private static volatile float sink;
+
+    public static void main(String[] args) {
+        TrigMode[] modes = TrigMode.values();
+
+        // StrictMath run first, to compare the others against.
+        float[][] reference = runQWOP(TrigMode.STRICT);
+
+        System.out.println("mode, max error, ns/call, steps run, diverged at step, final torso x, ms/step");
+        for (TrigMode mode : modes) {
+            float error = MathUtils.maxSinCosError(mode, errorSamples);
+            double nsPerCall = timeCalls(mode);
+
+            long start = System.nanoTime();
+            float[][] states = runQWOP(mode);
+            double msPerStep = (System.nanoTime() - start) / 1e6 / states.length;
+
+            int divergedAt = -1;
+            for (int i = 0; i < Math.min(states.length, reference.length); i++) {
+                if (maxDifference(states[i], reference[i]) > divergenceTolerance) {
+                    divergedAt = i;
+                    break;
+                }
+            }
+            float[] last = states[states.length - 1];
+            System.out.println(mode + ", " + error + ", " + (float) nsPerCall + ", " + states.length + ", " +
+                    (divergedAt < 0 ? "never" : Integer.toString(divergedAt)) + ", " + last[0] + ", " +
+                    (float) msPerStep);
+        }
+    }
+
+    /**
+     * Average time for one sin plus one cos call, over the best trial.
+     */
+    private static double timeCalls(TrigMode mode) {
+        double best = Double.MAX_VALUE;
+        for (int trial = 0; trial < speedTrials; trial++) {
+            long start = System.nanoTime();
+            sink = sumCalls(mode); // Keep the loop from being optimized away.
+            double ns = (double) (System.nanoTime() - start) / speedSamples;
+            if (trial > 0) best = Math.min(best, ns);
+        }
+        return best;
+    }
+
+    private static float sumCalls(TrigMode mode) {
+        float sum = 0;
+        float x = -MathUtils.TWOPI;
+        float dx = 2 * MathUtils.TWOPI / speedSamples;
+        for (int i = 0; i < speedSamples; i++) {
+            sum += MathUtils.sin(x, mode) + MathUtils.cos(x, mode);
+            x += dx;
+        }
+        return sum;
+    }
+
+    /**
+     * Run QWOP with a fixed key pattern until failure or {@link #runSteps}, recording the state each step. The torso x
+     * is kept absolute in element 0 so that runs can be compared directly.
+     */
+    private static float[][] runQWOP(TrigMode mode) {
+        GameSingleThread game = new GameSingleThread();
+        game.setTrigMode(mode);
+        game.makeNewWorld();
+
+        float[][] states = new float[runSteps][];
+        int steps = 0;
+        while (steps < runSteps && !game.getFailureStatus()) {
+            // Shuffle forward by tapping W+O, 10 steps on and 10 off.
+            boolean phase = (steps / 10) % 2 == 0;
+            game.stepGame(false, phase, phase, false);
+
+            State state = game.getCurrentState();
+            float[] flat = state.flattenState();
+            flat[0] = state.body.getX();
+            states[steps++] = flat;
+        }
+        float[][] trimmed = new float[steps][];
+        System.arraycopy(states, 0, trimmed, 0, steps);
+        return trimmed;
+    }
+
+    private static float maxDifference(float[] a, float[] b) {
+        float max = 0;
+        for (int i = 0; i < a.length; i++) {
+            max = Math.max(max, Math.abs(a[i] - b[i]));
+        }
+        return max;
+    }
+}
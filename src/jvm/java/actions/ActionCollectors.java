@@ -0,0 +1,32 @@
+package actions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collector;
+
+/**
+ * Stream collectors for {@link Action}s. Kept out of {@link Action} itself since streams are only used by the
+ * JVM-side tools.
+ *
+ * @author matt
+ */
+public final class ActionCollectors {
+
+    private ActionCollectors() {}
+
+    /**
+     * Collector which consolidates a stream of actions into a list, as in {@link Action#consolidateActions(List)},
+     * merging each action as it arrives. Parallel streams are fine; partial lists are joined with the actions at the
+     * seam merged. An all 0-duration stream gives an empty list rather than an exception.
+     *
+     * @return A collector of consolidated action lists.
+     */
+    public static Collector<Action, ?, List<Action>> consolidating() {
+        return Collector.of(ArrayList::new, Action::appendConsolidated, (left, right) -> {
+            for (Action action : right) {
+                Action.appendConsolidated(left, action);
+            }
+            return left;
+        });
+    }
+}
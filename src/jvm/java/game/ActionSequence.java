@@ -0,0 +1,616 @@
+package game;
+
+import actions.Action;
+import actions.ActionQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collector;
+
+/**
+ * Immutable sequence of QWOP key presses, stored as runs: each run is one key combination held for some number of
+ * timesteps. A run is packed into one int, with the keys in the low 4 bits (Q, W, O, P from high to low) and the
+ * duration above them. The end timestep of every run is kept as a prefix sum, so the keys at any timestep are found
+ * by binary search.
+ * <p>
+ * Sequences are read with a {@link Cursor}, which is just a run index and an offset into that run. Copying a cursor,
+ * e.g. to branch a search from partway through a sequence, is O(1) and never touches the sequence. Because the
+ * sequence is immutable it can be shared between cursors and threads freely.
+ * <p>
+ * For code which takes one boolean[4] command per timestep, see {@link #of(boolean[][])} and {@link #toCommands()}.
+ * For code built on {@link Action} and {@link ActionQueue}, see {@link #of(List)}, {@link #toActions()},
+ * {@link #toActionQueue()} and {@link #cursorAt(ActionQueue)}. A cursor replaces
+ * {@link ActionQueue#getCopyOfQueueAtExecutionPoint()}, which rebuilds the queue and polls it back to where it was.
+ *
+ * @author matt
+ */
+public final class ActionSequence {
+
+    /**
+     * Key bits within a packed run.
+     */
+    public static final int Q = 8, W = 4, O = 2, P = 1;
+
+    private static final int keyBits = 4, keyMask = 0xF;
+
+    /**
+     * Longest duration a single run can hold. Longer holds are split into several runs.
+     */
+    public static final int maxRunDuration = Integer.MAX_VALUE >>> keyBits;
+
+    public static final ActionSequence EMPTY = new ActionSequence(new int[0], new int[0]);
+
+    /**
+     * Packed runs: duration << 4 | keys.
+     */
+    private final int[] runs;
+
+    /**
+     * Timestep just after each run ends, i.e. the total duration of runs 0 to i.
+     */
+    private final int[] ends;
+
+    /**
+     * 64-bit hash of the runs, computed on first use, or 0 until then. Volatile so that a thread never sees half of
+     * the long. Racing threads just compute the same value.
+     */
+    private volatile long hash64;
+
+    private ActionSequence(int[] runs, int[] ends) {
+        this.runs = runs;
+        this.ends = ends;
+    }
+
+    /**
+     * Run-length encode one command per timestep.
+     *
+     * @param commands One 4-element QWOP keys array per timestep.
+     */
+    public static ActionSequence of(boolean[][] commands) {
+        Builder builder = new Builder();
+        for (boolean[] command : commands) {
+            if (command.length != 4) {
+                throw new IllegalArgumentException("Command is not the correct length. Expected 4, got: " +
+                        command.length);
+            }
+            builder.add(pack(command[0], command[1], command[2], command[3]), 1);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Run-length encode actions. Adjacent actions with the same keys become one run, and zero-duration actions are
+     * dropped.
+     */
+    public static ActionSequence of(List<Action> actions) {
+        Builder builder = new Builder(actions.size());
+        for (Action action : actions) {
+            builder.add(action);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Every action in a queue, including ones already executed. See {@link #cursorAt(ActionQueue)} for where the
+     * queue has got to.
+     */
+    public static ActionSequence of(ActionQueue queue) {
+        return of(Arrays.asList(queue.getActionsInCurrentRun()));
+    }
+
+    /**
+     * Cursor over {@link #of(ActionQueue)} at the next command the queue would poll.
+     */
+    public static Cursor cursorAt(ActionQueue queue) {
+        Action[] actions = queue.getActionsInCurrentRun();
+        Action current = queue.peekThisAction();
+        int timestep = 0;
+        if (current != null) {
+            int currentIdx = queue.getCurrentActionIdx();
+            for (int i = 0; i < currentIdx; i++) {
+                timestep += actions[i].getTimestepsTotal();
+            }
+            timestep += current.getTimestepsTotal() - current.getTimestepsRemaining();
+        }
+        return of(Arrays.asList(actions)).cursor(timestep);
+    }
+
+    /**
+     * Pack a key combination into 4 bits.
+     */
+    public static int pack(boolean q, boolean w, boolean o, boolean p) {
+        return (q ? Q : 0) | (w ? W : 0) | (o ? O : 0) | (p ? P : 0);
+    }
+
+    /**
+     * Unpack a key combination into a 4-element QWOP keys array.
+     *
+     * @return out, filled.
+     */
+    public static boolean[] unpack(int keys, boolean[] out) {
+        out[0] = (keys & Q) != 0;
+        out[1] = (keys & W) != 0;
+        out[2] = (keys & O) != 0;
+        out[3] = (keys & P) != 0;
+        return out;
+    }
+
+    /**
+     * Pack keys and a duration into one int, the form runs are stored and streamed in.
+     *
+     * @param keys     Packed keys. See {@link #pack(boolean, boolean, boolean, boolean)}.
+     * @param duration From 0 to {@link #maxRunDuration}.
+     */
+    public static int packRun(int keys, int duration) {
+        if ((keys & ~keyMask) != 0)
+            throw new IllegalArgumentException("Keys must fit in 4 bits. Given: " + keys);
+        if (duration < 0 || duration > maxRunDuration)
+            throw new IllegalArgumentException("Duration must be from 0 to " + maxRunDuration + ". Given: " + duration);
+        return duration << keyBits | keys;
+    }
+
+    public static int runKeys(int packedRun) {
+        return packedRun & keyMask;
+    }
+
+    public static int runDuration(int packedRun) {
+        return packedRun >>> keyBits;
+    }
+
+    /**
+     * Consolidate packed runs in place in one pass: adjacent runs with the same keys are merged and zero-duration runs
+     * dropped. The merged runs are moved to the front of the array.
+     *
+     * @param packedRuns Runs from {@link #packRun(int, int)}.
+     * @param count      Number of runs to consolidate, from the start of the array.
+     * @return Number of runs left.
+     */
+    public static int consolidate(int[] packedRuns, int count) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int run = packedRuns[i];
+            int duration = run >>> keyBits;
+            if (duration == 0) continue;
+            if (kept > 0) {
+                int last = packedRuns[kept - 1];
+                int lastDuration = last >>> keyBits;
+                if ((last & keyMask) == (run & keyMask) && lastDuration < maxRunDuration) {
+                    // Merge as much as fits; any excess stays as its own run.
+                    int added = Math.min(duration, maxRunDuration - lastDuration);
+                    packedRuns[kept - 1] = (lastDuration + added) << keyBits | (run & keyMask);
+                    duration -= added;
+                    if (duration == 0) continue;
+                    run = duration << keyBits | (run & keyMask);
+                }
+            }
+            packedRuns[kept++] = run;
+        }
+        return kept;
+    }
+
+    /**
+     * Collects a stream of packed runs (see {@link #packRun(int, int)}) into a consolidated sequence, in one pass.
+     * Works for parallel streams too: partial results are joined with the runs at the seam merged.
+     */
+    public static Collector<Integer, Builder, ActionSequence> collector() {
+        return Collector.of(Builder::new, Builder::addRun, Builder::addAll, Builder::build);
+    }
+
+    /**
+     * Sequence from packed runs, consolidating them. See {@link #packRun(int, int)}.
+     */
+    public static ActionSequence ofPackedRuns(int[] packedRuns) {
+        Builder builder = new Builder(packedRuns.length);
+        for (int run : packedRuns) {
+            builder.addRun(run);
+        }
+        return builder.build();
+    }
+
+    /**
+     * The canonical encoding of this sequence: its consolidated runs, packed as in {@link #packRun(int, int)}. Equal
+     * sequences always give equal arrays.
+     */
+    public int[] toPackedRuns() {
+        return runs.clone();
+    }
+
+    /**
+     * 64-bit hash of the canonical encoding, for deduplicating large numbers of sequences where 32-bit hash codes
+     * would collide. Never 0.
+     */
+    public long hash64() {
+        long h = hash64;
+        if (h == 0) {
+            h = computeHash64(runs);
+            hash64 = h;
+        }
+        return h;
+    }
+
+    private static long computeHash64(int[] runs) {
+        long h = runs.length * 0x9E3779B97F4A7C15L;
+        for (int run : runs) {
+            h = Long.rotateLeft(h ^ (run * 0xC2B2AE3D27D4EB4FL), 31) * 0x9E3779B97F4A7C15L;
+        }
+        // Murmur3 finalizer, so every input bit affects every output bit.
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Total number of timesteps.
+     */
+    public int getLength() {
+        return ends.length == 0 ? 0 : ends[ends.length - 1];
+    }
+
+    public int getRunCount() {
+        return runs.length;
+    }
+
+    /**
+     * Packed keys of a run. See {@link #unpack(int, boolean[])}.
+     */
+    public int getRunKeys(int run) {
+        return runs[run] & keyMask;
+    }
+
+    public int getRunDuration(int run) {
+        return runs[run] >>> keyBits;
+    }
+
+    /**
+     * First timestep of a run.
+     */
+    public int getRunStart(int run) {
+        return run == 0 ? 0 : ends[run - 1];
+    }
+
+    /**
+     * Index of the run containing a timestep, by binary search.
+     *
+     * @param timestep From 0 to {@link #getLength()} - 1.
+     */
+    public int getRunAt(int timestep) {
+        if (timestep < 0 || timestep >= getLength()) {
+            throw new IndexOutOfBoundsException("Timestep " + timestep + " is outside a sequence of length " +
+                    getLength());
+        }
+        int low = 0, high = ends.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= timestep) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Packed keys held at a timestep.
+     */
+    public int getKeysAt(int timestep) {
+        return getRunKeys(getRunAt(timestep));
+    }
+
+    /**
+     * Cursor at the start of the sequence.
+     */
+    public Cursor cursor() {
+        return new Cursor(this, 0, 0);
+    }
+
+    /**
+     * Cursor at the given timestep. {@link #getLength()} gives a cursor at the end.
+     */
+    public Cursor cursor(int timestep) {
+        Cursor cursor = cursor();
+        cursor.seek(timestep);
+        return cursor;
+    }
+
+    /**
+     * New sequence with this one followed by other, merging the runs where they meet if the keys match.
+     */
+    public ActionSequence append(ActionSequence other) {
+        Builder builder = new Builder(runs.length + other.runs.length);
+        builder.addAll(this);
+        builder.addAll(other);
+        return builder.build();
+    }
+
+    /**
+     * New sequence holding the timesteps from start (inclusive) to end (exclusive).
+     */
+    public ActionSequence subSequence(int start, int end) {
+        if (start < 0 || end > getLength() || start > end) {
+            throw new IndexOutOfBoundsException("Range " + start + " to " + end + " is outside a sequence of length "
+                    + getLength());
+        }
+        if (start == end) return EMPTY;
+        Builder builder = new Builder();
+        int first = getRunAt(start);
+        int last = getRunAt(end - 1);
+        for (int run = first; run <= last; run++) {
+            int from = Math.max(start, getRunStart(run));
+            int to = Math.min(end, ends[run]);
+            builder.add(getRunKeys(run), to - from);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Expand to one 4-element QWOP keys array per timestep.
+     */
+    public boolean[][] toCommands() {
+        boolean[][] commands = new boolean[getLength()][];
+        int timestep = 0;
+        for (int run = 0; run < runs.length; run++) {
+            boolean[] keys = unpack(getRunKeys(run), new boolean[4]);
+            for (int i = getRunDuration(run); i > 0; i--) {
+                commands[timestep++] = keys.clone();
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * One action per run.
+     */
+    public List<Action> toActions() {
+        List<Action> actions = new ArrayList<>(runs.length);
+        for (int run = 0; run < runs.length; run++) {
+            actions.add(new Action(getRunDuration(run), unpack(getRunKeys(run), new boolean[4])));
+        }
+        return actions;
+    }
+
+    /**
+     * New queue holding {@link #toActions()}, ready to poll from the start.
+     */
+    public ActionQueue toActionQueue() {
+        ActionQueue queue = new ActionQueue();
+        for (int run = 0; run < runs.length; run++) {
+            queue.addAction(new Action(getRunDuration(run), unpack(getRunKeys(run), new boolean[4])));
+        }
+        return queue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ActionSequence)) return false;
+        ActionSequence other = (ActionSequence) o;
+        return hash64() == other.hash64() && Arrays.equals(runs, other.runs);
+    }
+
+    @Override
+    public int hashCode() {
+        long h = hash64();
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int run = 0; run < runs.length; run++) {
+            if (run > 0) builder.append(", ");
+            int keys = getRunKeys(run);
+            builder.append((keys & Q) != 0 ? 'Q' : '_').append((keys & W) != 0 ? 'W' : '_')
+                    .append((keys & O) != 0 ? 'O' : '_').append((keys & P) != 0 ? 'P' : '_')
+                    .append('x').append(getRunDuration(run));
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Builds a sequence run by run. Adjacent runs with the same keys are merged, and zero-length runs dropped, so
+     * equal key timelines always give equal sequences. Each run is merged as it arrives, so this also consolidates an
+     * imported list of runs in a single pass; see also {@link #collector()} and {@link #consolidate(int[], int)}.
+     */
+    public static final class Builder {
+        private int[] runs;
+        private int count;
+
+        public Builder() {
+            this(16);
+        }
+
+        public Builder(int capacity) {
+            runs = new int[Math.max(1, capacity)];
+        }
+
+        /**
+         * Hold a key combination for some timesteps.
+         *
+         * @param keys     Packed keys. See {@link #pack(boolean, boolean, boolean, boolean)}.
+         * @param duration Number of timesteps. Must not be negative.
+         * @return This builder.
+         */
+        public Builder add(int keys, int duration) {
+            if (duration < 0)
+                throw new IllegalArgumentException("Duration must not be negative. Given: " + duration);
+            if ((keys & ~keyMask) != 0)
+                throw new IllegalArgumentException("Keys must fit in 4 bits. Given: " + keys);
+            while (duration > 0) {
+                if (count > 0 && (runs[count - 1] & keyMask) == keys && (runs[count - 1] >>> keyBits) < maxRunDuration) {
+                    int existing = runs[count - 1] >>> keyBits;
+                    int added = Math.min(duration, maxRunDuration - existing);
+                    runs[count - 1] = (existing + added) << keyBits | keys;
+                    duration -= added;
+                } else {
+                    if (count == runs.length) runs = Arrays.copyOf(runs, 2 * runs.length);
+                    int added = Math.min(duration, maxRunDuration);
+                    runs[count++] = added << keyBits | keys;
+                    duration -= added;
+                }
+            }
+            return this;
+        }
+
+        public Builder add(boolean q, boolean w, boolean o, boolean p, int duration) {
+            return add(pack(q, w, o, p), duration);
+        }
+
+        /**
+         * Hold an action's keys for its total duration. Timesteps already polled from it don't matter.
+         */
+        public Builder add(Action action) {
+            boolean[] keys = action.peek();
+            return add(pack(keys[0], keys[1], keys[2], keys[3]), action.getTimestepsTotal());
+        }
+
+        /**
+         * Add a packed run. See {@link #packRun(int, int)}.
+         */
+        public Builder addRun(int packedRun) {
+            return add(packedRun & keyMask, packedRun >>> keyBits);
+        }
+
+        public Builder addAll(ActionSequence sequence) {
+            for (int run = 0; run < sequence.runs.length; run++) {
+                add(sequence.getRunKeys(run), sequence.getRunDuration(run));
+            }
+            return this;
+        }
+
+        /**
+         * Add everything added to another builder so far.
+         */
+        public Builder addAll(Builder other) {
+            for (int run = 0; run < other.count; run++) {
+                addRun(other.runs[run]);
+            }
+            return this;
+        }
+
+        public ActionSequence build() {
+            if (count == 0) return EMPTY;
+            int[] built = Arrays.copyOf(runs, count);
+            int[] ends = new int[count];
+            long total = 0;
+            for (int run = 0; run < count; run++) {
+                total += built[run] >>> keyBits;
+                if (total > Integer.MAX_VALUE)
+                    throw new IllegalStateException("Sequence is longer than " + Integer.MAX_VALUE + " timesteps.");
+                ends[run] = (int) total;
+            }
+            return new ActionSequence(built, ends);
+        }
+    }
+
+    /**
+     * Position in a sequence: a run index and the number of timesteps already taken from that run. Cursors are
+     * mutable but cheap; {@link #copy()} is O(1) and copies share the sequence.
+     */
+    public static final class Cursor {
+        private final ActionSequence sequence;
+        private int run;
+        private int offset;
+
+        private Cursor(ActionSequence sequence, int run, int offset) {
+            this.sequence = sequence;
+            this.run = run;
+            this.offset = offset;
+        }
+
+        public ActionSequence getSequence() {
+            return sequence;
+        }
+
+        public Cursor copy() {
+            return new Cursor(sequence, run, offset);
+        }
+
+        /**
+         * Timestep of the next keys to be returned.
+         */
+        public int getTimestep() {
+            return hasNext() ? sequence.getRunStart(run) + offset : sequence.getLength();
+        }
+
+        public boolean hasNext() {
+            return run < sequence.runs.length;
+        }
+
+        /**
+         * Timesteps left, including the next one.
+         */
+        public int getRemaining() {
+            return sequence.getLength() - getTimestep();
+        }
+
+        /**
+         * Packed keys for the next timestep, without moving.
+         */
+        public int peekKeys() {
+            if (!hasNext()) throw new IllegalStateException("Cursor is at the end of the sequence.");
+            return sequence.getRunKeys(run);
+        }
+
+        /**
+         * Packed keys for the next timestep, moving past it.
+         */
+        public int nextKeys() {
+            int keys = peekKeys();
+            if (++offset == sequence.getRunDuration(run)) {
+                run++;
+                offset = 0;
+            }
+            return keys;
+        }
+
+        /**
+         * Keys for the next timestep as a 4-element QWOP keys array, moving past it.
+         *
+         * @return out, filled.
+         */
+        public boolean[] next(boolean[] out) {
+            return unpack(nextKeys(), out);
+        }
+
+        /**
+         * Step a game one timestep with the next keys.
+         */
+        public void step(GameSingleThread game) {
+            int keys = nextKeys();
+            game.stepGame((keys & Q) != 0, (keys & W) != 0, (keys & O) != 0, (keys & P) != 0);
+        }
+
+        /**
+         * Move to a timestep, by binary search.
+         *
+         * @param timestep From 0 to the sequence length. The length puts the cursor at the end.
+         */
+        public void seek(int timestep) {
+            if (timestep == sequence.getLength()) {
+                run = sequence.runs.length;
+                offset = 0;
+            } else {
+                run = sequence.getRunAt(timestep);
+                offset = timestep - sequence.getRunStart(run);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Cursor)) return false;
+            Cursor other = (Cursor) o;
+            return run == other.run && offset == other.offset && sequence.equals(other.sequence);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * sequence.hashCode() + run) + offset;
+        }
+    }
+}
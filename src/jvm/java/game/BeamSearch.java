@@ -0,0 +1,380 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Beam search for key sequences which run far, as a cheaper alternative to {@link MonteCarloTreeSearch}. Each level
+ * extends every sequence in the beam by every key combination in the key options, held for a fixed segment duration,
+ * and keeps the beam width best of the results by torso x. Runners which fall are dropped.
+ * <p>
+ * Candidates whose states are near-duplicates are pruned, keeping the one furthest along. Two states count as
+ * duplicates when every value of {@link State#flattenState()} rounds to the same multiple of the prune resolution.
+ * Torso x is left out of the comparison, since flattenState makes x positions relative to the torso.
+ * <p>
+ * Candidates are simulated in parallel on a fork-join pool, each worker reusing its own {@link GameSingleThread}.
+ * Every candidate in the beam keeps its game as saved by {@link GameSingleThread#saveState()}, and its children are
+ * simulated by restoring that and running only the new segment, so a level costs the same however deep the search
+ * is. Restoring is exact, so results are the same as replaying each sequence from a new world. Children go straight
+ * into a frontier bounded at the beam width, so a level never holds more than the beam, whatever the branching
+ * factor. Ties are broken by sequence hash, so results don't depend on thread timing.
+ * <p>
+ * With a {@link TranspositionTable}, candidates reaching a pose which an earlier level already reached at least as
+ * far down the track are dropped as well. The table is only read while a level is simulated, and the new beam is
+ * stored in it afterwards, so this doesn't depend on thread timing either.
+ *
+ * @author matt
+ */
+public class BeamSearch {
+
+    private final int beamWidth;
+
+    /**
+     * Timesteps each level adds.
+     */
+    private final int segmentDuration;
+
+    private final ForkJoinPool pool;
+
+    private final ThreadLocal<GameSingleThread> games = ThreadLocal.withInitial(GameSingleThread::new);
+
+    private int[] keyOptions;
+
+    /**
+     * Size of the grid states are rounded to when looking for duplicates. 0 turns pruning off.
+     */
+    private float pruneResolution = 0.05f;
+
+    private TranspositionTable table;
+
+    private List<Candidate> beam = Collections.singletonList(new Candidate(ActionSequence.EMPTY,
+            GameSingleThread.getInitialState().body.getX(), 0, 0, new GameSingleThread().saveState()));
+
+    private Candidate best = beam.get(0);
+
+    private final List<LevelStats> levelStats = new ArrayList<>();
+
+    /**
+     * Search on the common fork-join pool, over all 16 key combinations.
+     *
+     * @param beamWidth       Sequences kept at each level.
+     * @param segmentDuration Timesteps each level adds.
+     */
+    public BeamSearch(int beamWidth, int segmentDuration) {
+        this(beamWidth, segmentDuration, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Search over all 16 key combinations.
+     *
+     * @param beamWidth       Sequences kept at each level.
+     * @param segmentDuration Timesteps each level adds.
+     * @param pool            Pool to simulate on.
+     */
+    public BeamSearch(int beamWidth, int segmentDuration, ForkJoinPool pool) {
+        if (beamWidth <= 0)
+            throw new IllegalArgumentException("Beam width must be positive. Given: " + beamWidth);
+        if (segmentDuration <= 0)
+            throw new IllegalArgumentException("Segment duration must be positive. Given: " + segmentDuration);
+        this.beamWidth = beamWidth;
+        this.segmentDuration = segmentDuration;
+        this.pool = pool;
+        keyOptions = new int[16];
+        for (int keys = 0; keys < 16; keys++) {
+            keyOptions[keys] = keys;
+        }
+    }
+
+    /**
+     * Key combinations to try at each level, packed as in {@link ActionSequence#pack(boolean, boolean, boolean,
+     * boolean)}.
+     */
+    public void setKeyOptions(int[] keyOptions) {
+        if (keyOptions.length == 0)
+            throw new IllegalArgumentException("Need at least one key option.");
+        for (int keys : keyOptions) {
+            if ((keys & ~0xF) != 0)
+                throw new IllegalArgumentException("Keys must fit in 4 bits. Given: " + keys);
+        }
+        this.keyOptions = keyOptions.clone();
+    }
+
+    /**
+     * Grid size for duplicate detection, in the units of {@link State#flattenState()}. 0 turns pruning off.
+     */
+    public void setPruneResolution(float pruneResolution) {
+        if (!(pruneResolution >= 0))
+            throw new IllegalArgumentException("Prune resolution must not be negative. Given: " + pruneResolution);
+        this.pruneResolution = pruneResolution;
+    }
+
+    /**
+     * Drop candidates whose pose an earlier level reached at least as far along, and store each new beam. Null to
+     * stop.
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Run levels until the given number have been run, or every candidate has fallen.
+     *
+     * @return Number of levels run by this call.
+     */
+    public int search(int levels) {
+        for (int level = 0; level < levels; level++) {
+            if (!step()) return level;
+        }
+        return levels;
+    }
+
+    /**
+     * Run one level.
+     *
+     * @return False if every candidate fell, in which case the beam is left as it was.
+     */
+    public boolean step() {
+        long start = System.nanoTime();
+        List<Candidate> parents = beam;
+        int[] options = keyOptions;
+        int candidateCount = parents.size() * options.length;
+        Frontier next = new Frontier(beamWidth);
+        TranspositionTable table = this.table;
+        AtomicInteger fallen = new AtomicInteger(), transposed = new AtomicInteger();
+        AtomicLong timesteps = new AtomicLong();
+
+        Parallel.parallelFor(pool, candidateCount, "expanding the beam", i -> {
+            Candidate parent = parents.get(i / options.length);
+            int keys = options[i % options.length];
+            GameSingleThread game = games.get();
+            game.restoreState(parent.saved);
+            int step = 0;
+            while (step < segmentDuration) {
+                game.stepGame((keys & ActionSequence.Q) != 0, (keys & ActionSequence.W) != 0,
+                        (keys & ActionSequence.O) != 0, (keys & ActionSequence.P) != 0);
+                step++;
+                if (game.getFailureStatus()) break;
+            }
+            timesteps.addAndGet(step);
+            if (game.getFailureStatus()) {
+                fallen.incrementAndGet();
+                return;
+            }
+            State state = game.getCurrentState();
+            float distance = state.body.getX();
+            long tableKey = 0;
+            if (table != null) {
+                tableKey = table.key(state);
+                if (table.getValue(tableKey) >= distance) {
+                    transposed.incrementAndGet();
+                    return;
+                }
+            }
+            ActionSequence sequence = new ActionSequence.Builder(parent.sequence.getRunCount() + 1)
+                    .addAll(parent.sequence).add(keys, segmentDuration).build();
+            next.offer(new Candidate(sequence, distance, stateKey(state, i), tableKey, game.saveState()));
+        });
+
+        List<Candidate> kept = next.drain();
+        if (table != null) {
+            for (Candidate candidate : kept) {
+                table.put(candidate.tableKey, candidate.score, candidate.sequence);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        levelStats.add(new LevelStats(levelStats.size(), candidateCount, fallen.get(), next.pruned, transposed.get(),
+                kept.size(), kept.isEmpty() ? Float.NaN : kept.get(0).score, timesteps.get(), nanos));
+        if (kept.isEmpty()) return false;
+        beam = kept;
+        if (kept.get(0).score > best.score) best = kept.get(0);
+        return true;
+    }
+
+    /**
+     * Hash of the state rounded to the prune grid. With pruning off, a key unique to the candidate.
+     */
+    private long stateKey(State state, int candidate) {
+        if (pruneResolution == 0) return candidate;
+        float[] features = state.flattenState();
+        long h = 0;
+        for (int i = 1; i < features.length; i++) { // features[0] is torso x, which is always 0.
+            h = (h ^ (long) Math.floor(features[i] / pruneResolution)) * 0x9E3779B97F4A7C15L;
+        }
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Sequences in the current beam, best first.
+     */
+    public List<ActionSequence> getBeam() {
+        List<ActionSequence> sequences = new ArrayList<>(beam.size());
+        for (Candidate candidate : beam) {
+            sequences.add(candidate.sequence);
+        }
+        return sequences;
+    }
+
+    /**
+     * Sequence which got furthest at the end of any level so far.
+     */
+    public ActionSequence getBestSequence() {
+        return best.sequence;
+    }
+
+    /**
+     * Torso x at the end of {@link #getBestSequence()}.
+     */
+    public float getBestScore() {
+        return best.score;
+    }
+
+    /**
+     * Stats for every level run so far, in order.
+     */
+    public List<LevelStats> getLevelStats() {
+        return Collections.unmodifiableList(levelStats);
+    }
+
+    /**
+     * A partial sequence, how far it got, and the game at its end.
+     */
+    private static final class Candidate {
+        final ActionSequence sequence;
+        final float score;
+        final long stateKey;
+
+        /**
+         * Key in the transposition table, or 0 without one.
+         */
+        final long tableKey;
+
+        final GameSingleThread.SavedState saved;
+
+        Candidate(ActionSequence sequence, float score, long stateKey, long tableKey,
+                  GameSingleThread.SavedState saved) {
+            this.sequence = sequence;
+            this.score = score;
+            this.stateKey = stateKey;
+            this.tableKey = tableKey;
+            this.saved = saved;
+        }
+    }
+
+    /**
+     * Worst first. Equal scores are ordered by sequence hash, so which of them is kept doesn't depend on the order
+     * they arrive in.
+     */
+    private static final Comparator<Candidate> worstFirst = (a, b) -> {
+        int c = Float.compare(a.score, b.score);
+        return c != 0 ? c : Long.compare(a.sequence.hash64(), b.sequence.hash64());
+    };
+
+    /**
+     * The best candidates offered, at most one per state key, and never more than the capacity. Since the worst kept
+     * score only rises, a candidate rejected or evicted here could never have made the final beam.
+     */
+    private static final class Frontier {
+        private final int capacity;
+        private final PriorityQueue<Candidate> heap = new PriorityQueue<>(worstFirst);
+        private final Map<Long, Candidate> byStateKey = new HashMap<>();
+        int pruned;
+
+        Frontier(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void offer(Candidate candidate) {
+            Candidate duplicate = byStateKey.get(candidate.stateKey);
+            if (duplicate != null) {
+                pruned++;
+                if (worstFirst.compare(candidate, duplicate) <= 0) return;
+                heap.remove(duplicate);
+            } else if (heap.size() == capacity) {
+                if (worstFirst.compare(candidate, heap.peek()) <= 0) return;
+                byStateKey.remove(heap.poll().stateKey);
+            }
+            heap.add(candidate);
+            byStateKey.put(candidate.stateKey, candidate);
+        }
+
+        /**
+         * Kept candidates, best first.
+         */
+        synchronized List<Candidate> drain() {
+            Candidate[] kept = heap.toArray(new Candidate[0]);
+            Arrays.sort(kept, worstFirst.reversed());
+            heap.clear();
+            byStateKey.clear();
+            return Arrays.asList(kept);
+        }
+    }
+
+    /**
+     * What one level did.
+     */
+    public static final class LevelStats {
+        public final int level;
+
+        /**
+         * Candidates simulated: beam size times key options.
+         */
+        public final int candidates;
+
+        public final int fallen;
+
+        /**
+         * Candidates which were near-duplicates of another.
+         */
+        public final int pruned;
+
+        /**
+         * Candidates dropped because the transposition table had their pose at least as far along.
+         */
+        public final int transposed;
+
+        /**
+         * Size of the new beam.
+         */
+        public final int kept;
+
+        /**
+         * Best torso x in the new beam, or NaN if every candidate fell.
+         */
+        public final float bestScore;
+
+        /**
+         * Timesteps run: one segment per candidate, or up to the fall for those which fell.
+         */
+        public final long timestepsSimulated;
+        public final long nanos;
+
+        LevelStats(int level, int candidates, int fallen, int pruned, int transposed, int kept, float bestScore,
+                   long timestepsSimulated, long nanos) {
+            this.level = level;
+            this.candidates = candidates;
+            this.fallen = fallen;
+            this.pruned = pruned;
+            this.transposed = transposed;
+            this.kept = kept;
+            this.bestScore = bestScore;
+            this.timestepsSimulated = timestepsSimulated;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "level " + level + ": " + candidates + " candidates, " + fallen + " fell, " + pruned + " pruned, " +
+                    transposed + " transposed, " + kept + " kept, best x " + bestScore + ", " + timestepsSimulated +
+                    " timesteps in " + nanos / 1e6 + " ms";
+        }
+    }
+}
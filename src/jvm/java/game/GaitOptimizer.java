@@ -0,0 +1,314 @@
+package game;
+
+import actions.Action;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cross-entropy optimizer for gaits in the webapp's sequence box form: a list of hold times which cycle through the
+ * four key phases none, W and O, none, Q and P. A gait is an opening of {@code openingLength} hold times played once,
+ * then a period of 4 hold times repeated until the horizon. Phases continue from wherever the opening left off.
+ * <p>
+ * Each generation samples a population of hold time vectors from independent normal distributions, one per hold
+ * time, rounded and clamped to whole timesteps. The best {@link #setEliteFraction(float) elite fraction} are then
+ * used to move each distribution's mean and standard deviation, smoothed by {@link #setSmoothing(float)}.
+ * <p>
+ * Fitness is how far the torso got by the horizon, or by when the runner fell, since a run stops as soon as it
+ * falls. The population is sampled on the calling thread and then simulated in parallel on a fork-join pool, each
+ * worker reusing its own {@link GameSingleThread}, so results depend only on the seed. Vectors are compared as
+ * {@link ActionSequence}s, so repeats, including ones which only differ by zero-length phases that merge away, reuse
+ * the cached result instead of simulating again. A {@link ResultStore} can be given to keep results between runs.
+ *
+ * @author matt
+ */
+public class GaitOptimizer {
+
+    /**
+     * Keys of the four phases, in order.
+     */
+    private static final int[] phaseKeys = {0, ActionSequence.W | ActionSequence.O, 0,
+            ActionSequence.Q | ActionSequence.P};
+
+    public static final int PHASES = phaseKeys.length;
+
+    private final int openingLength;
+
+    /**
+     * Timesteps simulated for each gait, unless the runner falls first.
+     */
+    private final int horizon;
+
+    private final ForkJoinPool pool;
+
+    private final ThreadLocal<GameSingleThread> games = ThreadLocal.withInitial(GameSingleThread::new);
+
+    private final Map<ActionSequence, ResultStore.Result> cache = new ConcurrentHashMap<>();
+
+    private ResultStore store;
+
+    private float eliteFraction = 0.1f, smoothing = 0.7f, minSigma = 0.5f;
+
+    private int maxHoldTime = 60;
+
+    /**
+     * Distribution of each hold time.
+     */
+    private final float[] mean, sigma;
+
+    private int[] best;
+    private float bestFitness = Float.NEGATIVE_INFINITY;
+
+    private final AtomicLong evaluations = new AtomicLong(), cacheHits = new AtomicLong(),
+            timestepsSimulated = new AtomicLong();
+
+    /**
+     * Optimizer on the common fork-join pool.
+     *
+     * @param openingLength Hold times played once before the period. May be 0.
+     * @param horizon       Timesteps to simulate each gait for.
+     */
+    public GaitOptimizer(int openingLength, int horizon) {
+        this(openingLength, horizon, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param openingLength Hold times played once before the period. May be 0.
+     * @param horizon       Timesteps to simulate each gait for.
+     * @param pool          Pool to simulate on.
+     */
+    public GaitOptimizer(int openingLength, int horizon, ForkJoinPool pool) {
+        if (openingLength < 0)
+            throw new IllegalArgumentException("Opening length must not be negative. Given: " + openingLength);
+        if (horizon <= 0)
+            throw new IllegalArgumentException("Horizon must be positive. Given: " + horizon);
+        this.openingLength = openingLength;
+        this.horizon = horizon;
+        this.pool = pool;
+        mean = new float[openingLength + PHASES];
+        sigma = new float[openingLength + PHASES];
+        Arrays.fill(mean, 15);
+        Arrays.fill(sigma, 10);
+    }
+
+    /**
+     * Set the starting distribution of one hold time.
+     *
+     * @param index Hold time index, from 0 to {@link #getLength()} - 1. The period is the last {@link #PHASES}.
+     */
+    public void setDistribution(int index, float mean, float sigma) {
+        if (!(sigma >= 0))
+            throw new IllegalArgumentException("Sigma must not be negative. Given: " + sigma);
+        this.mean[index] = mean;
+        this.sigma[index] = sigma;
+    }
+
+    public void setEliteFraction(float eliteFraction) {
+        if (!(eliteFraction > 0 && eliteFraction <= 1))
+            throw new IllegalArgumentException("Elite fraction must be above 0 and at most 1. Given: " +
+                    eliteFraction);
+        this.eliteFraction = eliteFraction;
+    }
+
+    /**
+     * Weight of the elites when updating distributions. 1 replaces them with the elite statistics outright.
+     */
+    public void setSmoothing(float smoothing) {
+        if (!(smoothing > 0 && smoothing <= 1))
+            throw new IllegalArgumentException("Smoothing must be above 0 and at most 1. Given: " + smoothing);
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Smallest standard deviation a distribution shrinks to, so the search never stops exploring entirely.
+     */
+    public void setMinSigma(float minSigma) {
+        if (!(minSigma >= 0))
+            throw new IllegalArgumentException("Min sigma must not be negative. Given: " + minSigma);
+        this.minSigma = minSigma;
+    }
+
+    public void setMaxHoldTime(int maxHoldTime) {
+        if (maxHoldTime <= 0)
+            throw new IllegalArgumentException("Max hold time must be positive. Given: " + maxHoldTime);
+        this.maxHoldTime = maxHoldTime;
+    }
+
+    /**
+     * Look up and store results here as well as in memory. Null to stop.
+     */
+    public void setResultStore(ResultStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Run one generation: sample, simulate, and update the distributions.
+     *
+     * @param populationSize Gaits to sample.
+     * @param random         Source of samples.
+     * @return Best fitness in this generation.
+     */
+    public float step(int populationSize, Random random) {
+        if (populationSize <= 0)
+            throw new IllegalArgumentException("Population size must be positive. Given: " + populationSize);
+        int length = mean.length;
+        int[][] population = new int[populationSize][length];
+        for (int[] holdTimes : population) {
+            for (int i = 0; i < length; i++) {
+                int holdTime = Math.round(mean[i] + sigma[i] * (float) random.nextGaussian());
+                holdTimes[i] = Math.max(0, Math.min(maxHoldTime, holdTime));
+            }
+        }
+
+        float[] fitness = new float[populationSize];
+        Parallel.parallelFor(pool, populationSize, "evaluating gaits", i -> fitness[i] = evaluate(population[i]));
+
+        Integer[] order = new Integer[populationSize];
+        for (int i = 0; i < populationSize; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(fitness[b], fitness[a]));
+        if (fitness[order[0]] > bestFitness) {
+            bestFitness = fitness[order[0]];
+            best = population[order[0]].clone();
+        }
+
+        int eliteCount = Math.max(1, (int) (eliteFraction * populationSize));
+        for (int i = 0; i < length; i++) {
+            float sum = 0;
+            for (int e = 0; e < eliteCount; e++) {
+                sum += population[order[e]][i];
+            }
+            float eliteMean = sum / eliteCount;
+            float squares = 0;
+            for (int e = 0; e < eliteCount; e++) {
+                float d = population[order[e]][i] - eliteMean;
+                squares += d * d;
+            }
+            float eliteSigma = (float) Math.sqrt(squares / eliteCount);
+            mean[i] += smoothing * (eliteMean - mean[i]);
+            sigma[i] = Math.max(minSigma, sigma[i] + smoothing * (eliteSigma - sigma[i]));
+        }
+        return fitness[order[0]];
+    }
+
+    /**
+     * Fitness of one hold time vector: how far the torso got in x. Cached.
+     */
+    public float evaluate(int[] holdTimes) {
+        ActionSequence sequence = toSequence(holdTimes);
+        evaluations.incrementAndGet();
+        ResultStore.Result result = cache.get(sequence);
+        if (result == null && store != null) {
+            result = store.get(sequence);
+            if (result != null) cache.put(sequence, result);
+        }
+        if (result != null) {
+            cacheHits.incrementAndGet();
+        } else {
+            result = ResultStore.evaluate(sequence, games.get());
+            timestepsSimulated.addAndGet(result.isFailed() ? result.failureTimestep + 1 : sequence.getLength());
+            cache.put(sequence, result);
+            if (store != null) {
+                try {
+                    store.put(sequence, result);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        return result.distance;
+    }
+
+    /**
+     * Expand a hold time vector into the key sequence it plays, cut off at the horizon. If the period's hold times
+     * are all 0, the sequence ends after the opening.
+     */
+    public ActionSequence toSequence(int[] holdTimes) {
+        if (holdTimes.length != mean.length)
+            throw new IllegalArgumentException("Expected " + mean.length + " hold times. Given: " + holdTimes.length);
+        ActionSequence.Builder builder = new ActionSequence.Builder(holdTimes.length);
+        int remaining = horizon;
+        int phase = 0;
+        for (int i = 0; i < openingLength && remaining > 0; i++) {
+            int holdTime = Math.min(remaining, holdTimes[i]);
+            builder.add(phaseKeys[phase], holdTime);
+            remaining -= holdTime;
+            phase = (phase + 1) % PHASES;
+        }
+        int periodTime = 0;
+        for (int i = openingLength; i < holdTimes.length; i++) {
+            periodTime += holdTimes[i];
+        }
+        for (int i = 0; remaining > 0 && periodTime > 0; i = (i + 1) % PHASES) {
+            int holdTime = Math.min(remaining, holdTimes[openingLength + i]);
+            builder.add(phaseKeys[phase], holdTime);
+            remaining -= holdTime;
+            phase = (phase + 1) % PHASES;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Hold times as the actions the webapp's sequence box would queue for them: one per hold time, cycling through the
+     * phases. Zero hold times are kept, as the sequence box keeps them.
+     */
+    public static List<Action> toActions(int[] holdTimes) {
+        List<Action> actions = new ArrayList<>(holdTimes.length);
+        boolean[] keys = new boolean[4];
+        for (int i = 0; i < holdTimes.length; i++) {
+            ActionSequence.unpack(phaseKeys[i % PHASES], keys);
+            actions.add(new Action(holdTimes[i], keys.clone()));
+        }
+        return actions;
+    }
+
+    /**
+     * Number of hold times in a gait: the opening plus one period.
+     */
+    public int getLength() {
+        return mean.length;
+    }
+
+    /**
+     * Best hold times found so far, or null before the first generation.
+     */
+    public int[] getBest() {
+        return best == null ? null : best.clone();
+    }
+
+    public float getBestFitness() {
+        return bestFitness;
+    }
+
+    public float[] getMean() {
+        return mean.clone();
+    }
+
+    public float[] getSigma() {
+        return sigma.clone();
+    }
+
+    /**
+     * Gaits evaluated, including ones answered from the cache.
+     */
+    public long getEvaluationCount() {
+        return evaluations.get();
+    }
+
+    public long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    public long getTimestepsSimulated() {
+        return timestepsSimulated.get();
+    }
+}
@@ -0,0 +1,484 @@
+package game;
+
+import actions.Action;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Parallel Monte Carlo tree search for key sequences which run far. Each edge of the tree is an {@link Action}: one
+ * key combination held for a number of timesteps, kept as a packed run (see {@link ActionSequence#packRun(int, int)}).
+ * Every node has one child per action in the action set.
+ * <p>
+ * Each iteration selects a path down the tree by UCT, simulates the new node at its end, then plays random actions
+ * from there until the runner falls or the rollout runs out of actions. The value backed up the path is how far the
+ * torso moved in x from the initial state.
+ * <p>
+ * Worker threads share the tree and each simulate on their own {@link GameSingleThread}. Node statistics are updated
+ * with atomics rather than locks. While a thread is below a node, the node counts {@link #setVirtualLoss(int)}
+ * extra visits, each worth {@link #setVirtualLossPenalty(float)} metres less than nothing, so other threads are
+ * steered towards different paths instead of all piling down the same one.
+ * <p>
+ * Each node keeps the state the runner reached at the end of its action, and whether it had fallen by then. Fallen
+ * nodes are never expanded, and revisiting one backs up its stored value without simulating anything. Nodes which
+ * are still standing also keep their saved game (see {@link GameSingleThread#saveState()}), so simulating a new node
+ * restores its parent's game and steps only the new action, rather than replaying the whole path from a new world.
+ *
+ * @author matt
+ */
+public class MonteCarloTreeSearch {
+
+    private static final AtomicIntegerFieldUpdater<Node> visitsUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+    private static final AtomicIntegerFieldUpdater<Node> inFlightUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "inFlight");
+    private static final AtomicLongFieldUpdater<Node> valueSumUpdater =
+            AtomicLongFieldUpdater.newUpdater(Node.class, "valueSumBits");
+    private static final AtomicReferenceFieldUpdater<Node, Node[]> childrenUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(Node.class, Node[].class, "children");
+
+    /**
+     * Actions every node can take, as packed runs.
+     */
+    private final int[] actions;
+
+    private final Node root;
+
+    private final float initialX = GameSingleThread.getInitialState().body.getX();
+
+    /**
+     * Weight of the UCT exploration term, in the same units as values (metres).
+     */
+    private volatile float explorationConstant = 5f;
+
+    private volatile int virtualLoss = 1;
+
+    /**
+     * Value, negated, of each virtual loss visit. Values are distances, and are often negative, so a visit worth 0
+     * would make a busy node look better than it is.
+     */
+    private volatile float virtualLossPenalty = 5f;
+
+    /**
+     * Most random actions in one rollout.
+     */
+    private volatile int rolloutActions = 10;
+
+    private final AtomicLong nodeCount = new AtomicLong(1), rolloutCount = new AtomicLong(),
+            iterationCount = new AtomicLong(), timestepsSimulated = new AtomicLong();
+
+    /**
+     * Search over the given actions.
+     *
+     * @param actions Packed runs, each with a positive duration. See {@link ActionSequence#packRun(int, int)}.
+     */
+    public MonteCarloTreeSearch(int[] actions) {
+        if (actions.length == 0)
+            throw new IllegalArgumentException("Need at least one action.");
+        for (int action : actions) {
+            if (ActionSequence.runDuration(action) <= 0)
+                throw new IllegalArgumentException("Action durations must be positive. Given: " +
+                        ActionSequence.runDuration(action));
+        }
+        this.actions = actions.clone();
+        root = new Node(null, 0, 0);
+        root.saved = new GameSingleThread().saveState();
+        root.state = GameSingleThread.getInitialState();
+    }
+
+    /**
+     * Search over the given actions.
+     *
+     * @param actions Actions with positive durations. Only their keys and total durations are used.
+     */
+    public MonteCarloTreeSearch(Action[] actions) {
+        this(toRuns(actions));
+    }
+
+    private static int[] toRuns(Action[] actions) {
+        int[] runs = new int[actions.length];
+        for (int i = 0; i < actions.length; i++) {
+            boolean[] keys = actions[i].peek();
+            runs[i] = ActionSequence.packRun(ActionSequence.pack(keys[0], keys[1], keys[2], keys[3]),
+                    actions[i].getTimestepsTotal());
+        }
+        return runs;
+    }
+
+    /**
+     * Search over {@link #defaultActions()}.
+     */
+    public MonteCarloTreeSearch() {
+        this(defaultActions());
+    }
+
+    /**
+     * No keys, Q and P, or W and O, each held for 5, 10 or 20 timesteps. These are the combinations which make the
+     * runner's legs scissor.
+     */
+    public static int[] defaultActions() {
+        int[] keys = {0, ActionSequence.Q | ActionSequence.P, ActionSequence.W | ActionSequence.O};
+        int[] durations = {5, 10, 20};
+        int[] actions = new int[keys.length * durations.length];
+        int i = 0;
+        for (int k : keys) {
+            for (int duration : durations) {
+                actions[i++] = ActionSequence.packRun(k, duration);
+            }
+        }
+        return actions;
+    }
+
+    public void setExplorationConstant(float explorationConstant) {
+        if (!(explorationConstant >= 0))
+            throw new IllegalArgumentException("Exploration constant must not be negative. Given: " +
+                    explorationConstant);
+        this.explorationConstant = explorationConstant;
+    }
+
+    /**
+     * Extra visits counted on each node a thread is below. 0 turns virtual loss off.
+     */
+    public void setVirtualLoss(int virtualLoss) {
+        if (virtualLoss < 0)
+            throw new IllegalArgumentException("Virtual loss must not be negative. Given: " + virtualLoss);
+        this.virtualLoss = virtualLoss;
+    }
+
+    /**
+     * How many metres less than nothing each virtual loss visit is worth.
+     */
+    public void setVirtualLossPenalty(float virtualLossPenalty) {
+        if (!(virtualLossPenalty >= 0))
+            throw new IllegalArgumentException("Virtual loss penalty must not be negative. Given: " +
+                    virtualLossPenalty);
+        this.virtualLossPenalty = virtualLossPenalty;
+    }
+
+    public void setRolloutActions(int rolloutActions) {
+        if (rolloutActions < 0)
+            throw new IllegalArgumentException("Rollout actions must not be negative. Given: " + rolloutActions);
+        this.rolloutActions = rolloutActions;
+    }
+
+    /**
+     * Run iterations on several threads, adding to the existing tree. Blocks until all of them finish.
+     *
+     * @param threads    Worker threads, each with its own game.
+     * @param iterations Iterations to run in total across all threads.
+     * @param seed       Seed for rollouts. Worker i uses seed + i, but with more than one thread the tree still
+     *                   depends on timing.
+     */
+    public void search(int threads, long iterations, long seed) throws InterruptedException {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Need at least one thread. Given: " + threads);
+        AtomicLong remaining = new AtomicLong(iterations);
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            Random random = new Random(seed + i);
+            workers[i] = new Thread(() -> {
+                GameSingleThread game = new GameSingleThread();
+                List<Node> path = new ArrayList<>();
+                while (remaining.getAndDecrement() > 0) {
+                    iterate(game, random, path);
+                }
+            }, "mcts-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * One select, simulate, roll out, back up pass.
+     */
+    private void iterate(GameSingleThread game, Random random, List<Node> path) {
+        int loss = virtualLoss;
+        path.clear();
+        Node node = root;
+        path.add(node);
+        inFlightUpdater.addAndGet(node, loss);
+        while (node.state != null && !node.state.isFailed()) {
+            node = select(expand(node));
+            path.add(node);
+            inFlightUpdater.addAndGet(node, loss);
+        }
+
+        float value;
+        if (node.state != null) {
+            // Fallen leaf. Its value is already known.
+            value = node.value;
+        } else {
+            game.restoreState(node.parent.saved);
+            stepRun(game, node.action);
+            State state = game.getCurrentState();
+            if (!state.isFailed()) node.saved = game.saveState();
+            node.value = state.body.getX() - initialX;
+            node.state = state; // Publishes value and saved, which are written first.
+
+            if (!state.isFailed()) {
+                for (int i = 0; i < rolloutActions && !game.getFailureStatus(); i++) {
+                    stepRun(game, actions[random.nextInt(actions.length)]);
+                }
+            }
+            value = game.getCurrentState().body.getX() - initialX;
+            rolloutCount.incrementAndGet();
+        }
+
+        for (Node n : path) {
+            addValue(n, value);
+            visitsUpdater.incrementAndGet(n);
+            inFlightUpdater.addAndGet(n, -loss);
+        }
+        iterationCount.incrementAndGet();
+    }
+
+    /**
+     * Children of a node, creating them if this is the first visit. If two threads race, one set of children wins.
+     */
+    private Node[] expand(Node node) {
+        Node[] children = node.children;
+        if (children != null) return children;
+        children = new Node[actions.length];
+        for (int i = 0; i < actions.length; i++) {
+            children[i] = new Node(node, actions[i], node.depth + 1);
+        }
+        if (childrenUpdater.compareAndSet(node, null, children)) {
+            nodeCount.addAndGet(children.length);
+            return children;
+        }
+        return node.children;
+    }
+
+    /**
+     * Child with the best UCT score, counting virtual losses as visits worth minus the penalty. Untried children come
+     * first.
+     */
+    private Node select(Node[] children) {
+        int parentVisits = 0;
+        for (Node child : children) {
+            parentVisits += child.visits + child.inFlight;
+        }
+        double logParent = Math.log(Math.max(1, parentVisits));
+        float c = explorationConstant;
+        float penalty = virtualLossPenalty;
+
+        Node best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (Node child : children) {
+            int inFlight = child.inFlight;
+            int n = child.visits + inFlight;
+            if (n == 0) return child;
+            double score = (child.getValueSum() - (double) inFlight * penalty) / n + c * Math.sqrt(logParent / n);
+            if (score > bestScore) {
+                bestScore = score;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    private void stepRun(GameSingleThread game, int packedRun) {
+        int keys = ActionSequence.runKeys(packedRun);
+        int duration = ActionSequence.runDuration(packedRun);
+        boolean q = (keys & ActionSequence.Q) != 0, w = (keys & ActionSequence.W) != 0,
+                o = (keys & ActionSequence.O) != 0, p = (keys & ActionSequence.P) != 0;
+        for (int t = 0; t < duration; t++) {
+            game.stepGame(q, w, o, p);
+            if (game.getFailureStatus()) {
+                duration = t + 1;
+                break;
+            }
+        }
+        timestepsSimulated.addAndGet(duration);
+    }
+
+    private static void addValue(Node node, double value) {
+        long bits;
+        do {
+            bits = node.valueSumBits;
+        } while (!valueSumUpdater.compareAndSet(node, bits,
+                Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + value)));
+    }
+
+    /**
+     * Follow the most visited child from the root, as far as visited nodes go.
+     *
+     * @return The last node on that path, or the root if nothing has been visited.
+     */
+    public Node getBestNode() {
+        Node node = root;
+        while (node.children != null) {
+            Node best = null;
+            for (Node child : node.children) {
+                if (child.visits > 0 && (best == null || child.visits > best.visits)) best = child;
+            }
+            if (best == null) break;
+            node = best;
+        }
+        return node;
+    }
+
+    /**
+     * Actions along {@link #getBestNode()}'s path, consolidated.
+     */
+    public ActionSequence getBestSequence() {
+        return getBestNode().getSequence();
+    }
+
+    /**
+     * Actions along {@link #getBestNode()}'s path, one per node, e.g. for an {@link actions.ActionQueue}.
+     */
+    public List<Action> getBestActions() {
+        return getBestNode().getActions();
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Nodes in the tree, including ones which haven't been simulated yet.
+     */
+    public long getNodeCount() {
+        return nodeCount.get();
+    }
+
+    /**
+     * Rollouts run. Iterations which end on a fallen node don't roll out.
+     */
+    public long getRolloutCount() {
+        return rolloutCount.get();
+    }
+
+    public long getIterationCount() {
+        return iterationCount.get();
+    }
+
+    /**
+     * Timesteps simulated across all workers, counting new nodes as well as rollouts.
+     */
+    public long getTimestepsSimulated() {
+        return timestepsSimulated.get();
+    }
+
+    /**
+     * A node in the search tree, reached from its parent by one action.
+     */
+    public static final class Node {
+        private final Node parent;
+        private final int action;
+        private final int depth;
+
+        // Not private, so the field updaters can reach them.
+        volatile Node[] children;
+        volatile int visits;
+        volatile int inFlight;
+        volatile long valueSumBits;
+
+        /**
+         * State at the end of this node's action, or null until it has been simulated.
+         */
+        private volatile State state;
+
+        /**
+         * Distance moved by the end of this node's action. Valid once state is set.
+         */
+        private float value;
+
+        /**
+         * Game at the end of this node's action, for simulating its children. Set before state, and only if the runner
+         * hadn't fallen.
+         */
+        private GameSingleThread.SavedState saved;
+
+        private Node(Node parent, int action, int depth) {
+            this.parent = parent;
+            this.action = action;
+            this.depth = depth;
+        }
+
+        public Node getParent() {
+            return parent;
+        }
+
+        /**
+         * The action leading here from the parent, as a packed run. 0 for the root.
+         */
+        public int getAction() {
+            return action;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Children, one per action, or null if the node hasn't been expanded.
+         */
+        public Node[] getChildren() {
+            return children;
+        }
+
+        public int getVisits() {
+            return visits;
+        }
+
+        public double getValueSum() {
+            return Double.longBitsToDouble(valueSumBits);
+        }
+
+        /**
+         * Mean of the values backed up through this node, or 0 if it hasn't been visited.
+         */
+        public double getMeanValue() {
+            int n = visits;
+            return n == 0 ? 0 : getValueSum() / n;
+        }
+
+        /**
+         * State the runner reached at the end of this node's action, or null if it hasn't been simulated.
+         */
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * The action leading here from the parent. Null for the root.
+         */
+        public Action toAction() {
+            if (parent == null) return null;
+            return new Action(ActionSequence.runDuration(action),
+                    ActionSequence.unpack(ActionSequence.runKeys(action), new boolean[4]));
+        }
+
+        /**
+         * Actions from the root to here, one per node.
+         */
+        public List<Action> getActions() {
+            Action[] actions = new Action[depth];
+            for (Node node = this; node.parent != null; node = node.parent) {
+                actions[node.depth - 1] = node.toAction();
+            }
+            return new ArrayList<>(Arrays.asList(actions));
+        }
+
+        /**
+         * Actions from the root to here, consolidated.
+         */
+        public ActionSequence getSequence() {
+            int[] runs = new int[depth];
+            for (Node node = this; node.parent != null; node = node.parent) {
+                runs[node.depth - 1] = node.action;
+            }
+            return ActionSequence.ofPackedRuns(runs);
+        }
+    }
+}
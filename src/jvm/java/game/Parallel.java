@@ -0,0 +1,34 @@
+package game;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Fork-join loop shared by the search and offline tools which take a {@link ForkJoinPool}.
+ *
+ * @author matt
+ */
+final class Parallel {
+
+    private Parallel() {}
+
+    /**
+     * Run body for 0 to count - 1 on the pool, and wait for all of them. Exceptions thrown by body are rethrown.
+     *
+     * @param activity What the loop is doing, for the message if the wait is interrupted, e.g. "rendering".
+     */
+    static void parallelFor(ForkJoinPool pool, int count, String activity, IntConsumer body) {
+        try {
+            pool.submit(() -> IntStream.range(0, count).parallel().forEach(body)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while " + activity + ".", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package game;
+
+import actions.Action;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded store of simulation results, so sequences scored in earlier runs of a search are never simulated again.
+ * Results are keyed by {@link ActionSequence#hash64()}, and each record also keeps the sequence's runs so a hash
+ * collision can't return the wrong result.
+ * <p>
+ * Records are appended to a memory-mapped log file, which grows by doubling. An open-addressing hash table in
+ * off-heap memory maps each hash to its record's offset; it isn't saved, but rebuilt by scanning the log when the
+ * store is opened. Each record ends in a CRC32, and the scan stops at the first record which is incomplete or
+ * corrupt, so a crash part way through an append loses at most that record. {@link #flush()} forces written records
+ * to disk, for surviving an operating system crash as well as a process crash.
+ * <p>
+ * Appends are serialized. Lookups take no lock and may run on any number of threads alongside appends. A record only
+ * becomes visible to lookups once all of it has been written. The end of the last complete record is published after
+ * each append, and lookups ignore index slots which point past it. Only one process may have a store open at a time;
+ * {@link #open(File)} takes an exclusive lock on the file.
+ * <p>
+ * Record layout, from its offset: magic int, run count int, hash long, distance float, failure timestep int, 72 state
+ * floats (see {@link Result#finalState}), packed runs, CRC32 of everything after the magic.
+ *
+ * @author matt
+ */
+public class ResultStore implements Closeable {
+
+    private static final long fileMagic = 0x51574F50_52455331L; // "QWOPRES1"
+    private static final int headerBytes = 16;
+    private static final int recordMagic = 0x52534C54; // "RSLT"
+    private static final int stateFloats = 72;
+    private static final int fixedRecordBytes = 4 + 4 + 8 + 4 + 4 + 4 * stateFloats + 4;
+    private static final int initialFileBytes = 1 << 20;
+
+    /**
+     * Index slots: hash long, then record offset long. Hash 0 marks an empty slot, which is safe since hash64 is
+     * never 0.
+     */
+    private static final int slotBytes = 16;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+
+    /**
+     * Current mapping of the whole log file. Replaced when the file grows; older mappings stay valid for readers
+     * still holding them.
+     */
+    private volatile MappedByteBuffer log;
+
+    /**
+     * Offset where the next record will be written.
+     */
+    private long end;
+
+    /**
+     * Copy of {@link #end}, written after each record and its index slot. Lookups read it first, so every record
+     * before it is visible to them in full.
+     */
+    private volatile long publishedEnd;
+
+    private volatile ByteBuffer index;
+    private int indexMask;
+    private int indexCount;
+
+    /**
+     * Number of records.
+     */
+    private volatile int size;
+
+    private final CRC32 crc = new CRC32();
+
+    private ResultStore(File path) throws IOException {
+        boolean exists = path.exists() && path.length() >= headerBytes;
+        file = new RandomAccessFile(path, "rw");
+        channel = file.getChannel();
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // Held elsewhere in this JVM.
+        }
+        if (lock == null) {
+            close();
+            throw new IOException("Result store is already open: " + path);
+        }
+        if (!exists) {
+            file.setLength(initialFileBytes);
+        }
+        log = channel.map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+        if (!exists) {
+            log.putLong(0, fileMagic);
+        } else if (log.getLong(0) != fileMagic) {
+            close();
+            throw new IOException("Not a result store: " + path);
+        }
+        allocateIndex(1024);
+        recover();
+    }
+
+    /**
+     * Open a store, creating the file if it doesn't exist. Existing records are scanned and indexed.
+     *
+     * @throws IOException If the file can't be opened or isn't a store, or if the store is already open, in this
+     *                     process or another. The lock is released by {@link #close()}.
+     */
+    public static ResultStore open(File path) throws IOException {
+        return new ResultStore(path);
+    }
+
+    /**
+     * Scan the log from the start, indexing every intact record and stopping at the first which isn't.
+     */
+    private void recover() {
+        MappedByteBuffer log = this.log;
+        long position = headerBytes;
+        int count = 0;
+        while (position + fixedRecordBytes <= log.capacity()) {
+            int p = (int) position;
+            if (log.getInt(p) != recordMagic) break;
+            int runCount = log.getInt(p + 4);
+            if (runCount < 0 || runCount > (log.capacity() - position - fixedRecordBytes) / 4) break;
+            int recordBytes = fixedRecordBytes + 4 * runCount;
+            if (checksum(log, p, recordBytes) != log.getInt(p + recordBytes - 4)) break;
+
+            insertIndex(log.getLong(p + 8), position);
+            count++;
+            position += recordBytes;
+        }
+        end = position;
+        size = count;
+        publishedEnd = position;
+    }
+
+    /**
+     * Look up the result of a sequence.
+     *
+     * @return The stored result, or null if the sequence hasn't been stored.
+     */
+    public Result get(ActionSequence sequence) {
+        long published = publishedEnd; // Volatile read, so records before it are visible in full.
+        long offset = findOffset(sequence, published);
+        return offset < 0 ? null : readResult((int) offset);
+    }
+
+    public boolean contains(ActionSequence sequence) {
+        return findOffset(sequence, publishedEnd) >= 0;
+    }
+
+    /**
+     * Offset of the sequence's record, or -1.
+     *
+     * @param published {@link #publishedEnd}, read before the index. Records at or after it are ignored.
+     */
+    private long findOffset(ActionSequence sequence, long published) {
+        if (published == headerBytes) return -1;
+        long hash = sequence.hash64();
+        ByteBuffer index = this.index;
+        int mask = index.capacity() / slotBytes - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            long slotHash = index.getLong(slot * slotBytes);
+            if (slotHash == 0) return -1;
+            if (slotHash == hash) {
+                long offset = index.getLong(slot * slotBytes + 8);
+                if (offset < published && recordMatches(offset, hash, sequence)) return offset;
+            }
+        }
+    }
+
+    /**
+     * Whether the published record at offset holds this sequence.
+     */
+    private boolean recordMatches(long offset, long hash, ActionSequence sequence) {
+        MappedByteBuffer log = this.log;
+        int p = (int) offset;
+        int runCount = log.getInt(p + 4);
+        if (log.getInt(p) != recordMagic || log.getLong(p + 8) != hash || runCount != sequence.getRunCount())
+            return false;
+        int runsStart = p + fixedRecordBytes - 4;
+        for (int run = 0; run < runCount; run++) {
+            int packed = ActionSequence.packRun(sequence.getRunKeys(run), sequence.getRunDuration(run));
+            if (log.getInt(runsStart + 4 * run) != packed) return false;
+        }
+        return true;
+    }
+
+    private Result readResult(int p) {
+        MappedByteBuffer log = this.log;
+        float distance = log.getFloat(p + 16);
+        int failureTimestep = log.getInt(p + 20);
+        float[] state = new float[stateFloats];
+        for (int i = 0; i < stateFloats; i++) {
+            state[i] = log.getFloat(p + 24 + 4 * i);
+        }
+        return new Result(distance, failureTimestep, new State(state, failureTimestep >= 0));
+    }
+
+    /**
+     * Store a result, unless the sequence already has one.
+     *
+     * @return True if the result was stored, false if the sequence was already in the store.
+     */
+    public synchronized boolean put(ActionSequence sequence, Result result) throws IOException {
+        if (findOffset(sequence, end) >= 0) return false;
+
+        int runCount = sequence.getRunCount();
+        int recordBytes = fixedRecordBytes + 4 * runCount;
+        ensureCapacity(end + recordBytes);
+        MappedByteBuffer log = this.log;
+        int p = (int) end;
+
+        log.putInt(p + 4, runCount);
+        log.putLong(p + 8, sequence.hash64());
+        log.putFloat(p + 16, result.distance);
+        log.putInt(p + 20, result.failureTimestep);
+        float[] state = toFloats(result.finalState);
+        for (int i = 0; i < stateFloats; i++) {
+            log.putFloat(p + 24 + 4 * i, state[i]);
+        }
+        int runsStart = p + fixedRecordBytes - 4;
+        for (int run = 0; run < runCount; run++) {
+            log.putInt(runsStart + 4 * run, ActionSequence.packRun(sequence.getRunKeys(run),
+                    sequence.getRunDuration(run)));
+        }
+        log.putInt(p + recordBytes - 4, checksum(log, p, recordBytes));
+        log.putInt(p, recordMagic); // Last, so a torn record never looks started.
+
+        insertIndex(sequence.hash64(), end);
+        end += recordBytes;
+        size = size + 1;
+        publishedEnd = end;
+        return true;
+    }
+
+    /**
+     * Return the stored result of a sequence, simulating and storing it first if needed.
+     *
+     * @param game Game to simulate on if the result isn't stored. Its world is reset.
+     */
+    public Result getOrEvaluate(ActionSequence sequence, GameSingleThread game) throws IOException {
+        Result result = get(sequence);
+        if (result == null) {
+            result = evaluate(sequence, game);
+            put(sequence, result);
+        }
+        return result;
+    }
+
+    /**
+     * Return the stored result of a list of actions, simulating and storing it first if needed. The actions are
+     * stored as {@link ActionSequence#of(List)}.
+     *
+     * @param game Game to simulate on if the result isn't stored. Its world is reset.
+     */
+    public Result getOrEvaluate(List<Action> actions, GameSingleThread game) throws IOException {
+        return getOrEvaluate(ActionSequence.of(actions), game);
+    }
+
+    /**
+     * Simulate a sequence from the initial state, stopping early if the runner falls.
+     *
+     * @param game Game to simulate on. Its world is reset.
+     */
+    public static Result evaluate(ActionSequence sequence, GameSingleThread game) {
+        game.makeNewWorld();
+        ActionSequence.Cursor cursor = sequence.cursor();
+        int failureTimestep = -1;
+        while (cursor.hasNext()) {
+            cursor.step(game);
+            if (game.getFailureStatus()) {
+                failureTimestep = cursor.getTimestep() - 1;
+                break;
+            }
+        }
+        State state = game.getCurrentState();
+        return new Result(state.body.getX(), failureTimestep, state);
+    }
+
+    private void ensureCapacity(long needed) throws IOException {
+        long capacity = log.capacity();
+        if (needed <= capacity) return;
+        while (capacity < needed) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE)
+            throw new IOException("Result store log is full (2 GiB).");
+        file.setLength(capacity);
+        log = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void allocateIndex(int slots) {
+        index = ByteBuffer.allocateDirect(slots * slotBytes);
+        indexMask = slots - 1;
+    }
+
+    /**
+     * Add a slot, doubling the table first if it would be over half full. A grown table is filled before it is
+     * published, so readers always see a complete table.
+     */
+    private void insertIndex(long hash, long offset) {
+        if (2 * (indexCount + 1) > indexMask + 1) {
+            ByteBuffer old = index;
+            int oldSlots = indexMask + 1;
+            ByteBuffer grown = ByteBuffer.allocateDirect(2 * oldSlots * slotBytes);
+            int grownMask = 2 * oldSlots - 1;
+            for (int slot = 0; slot < oldSlots; slot++) {
+                long slotHash = old.getLong(slot * slotBytes);
+                if (slotHash != 0) putSlot(grown, grownMask, slotHash, old.getLong(slot * slotBytes + 8));
+            }
+            indexMask = grownMask;
+            index = grown;
+        }
+        putSlot(index, indexMask, hash, offset);
+        indexCount++;
+    }
+
+    private static void putSlot(ByteBuffer table, int mask, long hash, long offset) {
+        int slot = (int) hash & mask;
+        while (table.getLong(slot * slotBytes) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table.putLong(slot * slotBytes + 8, offset); // Offset first, so a visible hash usually has its offset.
+        table.putLong(slot * slotBytes, hash);
+    }
+
+    /**
+     * CRC32 of a record, from after its magic to before its CRC. Only called while appending or recovering.
+     */
+    private int checksum(MappedByteBuffer log, int p, int recordBytes) {
+        ByteBuffer record = log.duplicate();
+        record.limit(p + recordBytes - 4).position(p + 4);
+        crc.reset();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * State as 72 floats in the order of {@link State#State(float[], boolean)}, with absolute x positions.
+     */
+    private static float[] toFloats(State state) {
+        StateVariable[] parts = {state.body, state.head, state.rthigh, state.lthigh, state.rcalf, state.lcalf,
+                state.rfoot, state.lfoot, state.ruarm, state.luarm, state.rlarm, state.llarm};
+        float[] floats = new float[stateFloats];
+        int i = 0;
+        for (StateVariable part : parts) {
+            floats[i++] = part.getX();
+            floats[i++] = part.getY();
+            floats[i++] = part.getTh();
+            floats[i++] = part.getDx();
+            floats[i++] = part.getDy();
+            floats[i++] = part.getDth();
+        }
+        return floats;
+    }
+
+    /**
+     * Number of stored results.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Bytes of log in use, including the file header.
+     */
+    public long getLogBytes() {
+        return publishedEnd;
+    }
+
+    /**
+     * Force stored records to disk.
+     */
+    public synchronized void flush() {
+        log.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+        file.close();
+    }
+
+    /**
+     * Outcome of simulating one sequence.
+     */
+    public static final class Result {
+        /**
+         * Torso x at the end of the sequence, or when the runner fell.
+         */
+        public final float distance;
+
+        /**
+         * Timestep during which the runner fell, or -1 if it didn't.
+         */
+        public final int failureTimestep;
+
+        /**
+         * Runner state at the end of the sequence, or when the runner fell. x positions are absolute.
+         */
+        public final State finalState;
+
+        public Result(float distance, int failureTimestep, State finalState) {
+            this.distance = distance;
+            this.failureTimestep = failureTimestep;
+            this.finalState = finalState;
+        }
+
+        public boolean isFailed() {
+            return failureTimestep >= 0;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package game;
+
+import actions.Action;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe filter for skipping action sequences which have already been evaluated. Sequences are compared by
+ * their canonical consolidated runs, so two key timelines which only differ in how they were split into runs count as
+ * the same.
+ * <p>
+ * There are two kinds:
+ * <ul>
+ * <li>{@link #exact()} keeps every sequence seen, and never mistakes a new sequence for a duplicate. Memory grows with
+ * the number of distinct sequences.</li>
+ * <li>{@link #bloom(long, double)} keeps only a fixed-size Bloom filter indexed by {@link ActionSequence#hash64()}.
+ * Memory is fixed up front, but a new sequence is sometimes reported as a duplicate, at about the rate asked for once
+ * the expected number of sequences have been added. Duplicates are always caught.</li>
+ * </ul>
+ * If two threads add the same new sequence at the same moment, the Bloom filter may report it as new to both.
+ *
+ * @author matt
+ */
+public class SequenceDeduplicator {
+
+    /**
+     * Sequences seen, for exact filters. Null for Bloom filters.
+     */
+    private final Set<ActionSequence> seen;
+
+    /**
+     * Bloom filter bits, for Bloom filters. Null for exact filters.
+     */
+    private final AtomicLongArray bits;
+
+    /**
+     * Bloom filter size in bits, a power of two so bit indices are masked rather than divided. 0 for exact filters.
+     */
+    private final long bitCount;
+    private final int hashCount;
+
+    private final AtomicLong added = new AtomicLong(), duplicates = new AtomicLong();
+
+    private SequenceDeduplicator(Set<ActionSequence> seen, long bitCount, int hashCount) {
+        this.seen = seen;
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+        bits = bitCount > 0 ? new AtomicLongArray((int) ((bitCount + 63) / 64)) : null;
+    }
+
+    /**
+     * Filter which remembers every sequence exactly.
+     */
+    public static SequenceDeduplicator exact() {
+        return new SequenceDeduplicator(ConcurrentHashMap.newKeySet(), 0, 0);
+    }
+
+    /**
+     * Fixed-size Bloom filter, sized for the given number of sequences and false duplicate rate. The size is rounded up
+     * to a power of two, which makes false duplicates somewhat rarer than asked for.
+     *
+     * @param expectedSequences Distinct sequences expected. Must be positive.
+     * @param falsePositiveRate Acceptable fraction of new sequences reported as duplicates, between 0 and 1.
+     */
+    public static SequenceDeduplicator bloom(long expectedSequences, double falsePositiveRate) {
+        if (expectedSequences <= 0)
+            throw new IllegalArgumentException("Expected sequences must be positive. Given: " + expectedSequences);
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1. Given: " +
+                    falsePositiveRate);
+        // Standard optimal sizing: m = -n ln p / (ln 2)^2 bits and k = (m / n) ln 2 hashes.
+        double ln2 = Math.log(2);
+        long bitCount = (long) Math.ceil(-expectedSequences * Math.log(falsePositiveRate) / (ln2 * ln2));
+        // The largest power of two whose words still fit in one array.
+        if (bitCount > 1L << 36)
+            throw new IllegalArgumentException("Bloom filter would need too many bits: " + bitCount);
+        bitCount = Math.max(64, Long.highestOneBit(bitCount - 1) << 1);
+        int hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedSequences * ln2));
+        return new SequenceDeduplicator(null, bitCount, hashCount);
+    }
+
+    /**
+     * Record a sequence, and say whether it had been seen before.
+     *
+     * @return True if the sequence is new and should be evaluated, false if it is a duplicate.
+     */
+    public boolean add(ActionSequence sequence) {
+        boolean isNew = seen != null ? seen.add(sequence) : addToBloom(sequence.hash64());
+        if (isNew) {
+            added.incrementAndGet();
+        } else {
+            duplicates.incrementAndGet();
+        }
+        return isNew;
+    }
+
+    /**
+     * Record a list of actions, as {@link ActionSequence#of(List)}. See {@link #add(ActionSequence)}.
+     */
+    public boolean add(List<Action> actions) {
+        return add(ActionSequence.of(actions));
+    }
+
+    /**
+     * Whether a sequence has (probably, for Bloom filters) been added, without adding it.
+     */
+    public boolean contains(ActionSequence sequence) {
+        if (seen != null) return seen.contains(sequence);
+        long h = sequence.hash64();
+        long step = stepFor(h);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (h + i * step) & (bitCount - 1);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Set the sequence's bits, using double hashing to derive them from one 64-bit hash.
+     *
+     * @return True if any bit was clear, i.e. the sequence was definitely new.
+     */
+    private boolean addToBloom(long h) {
+        long step = stepFor(h);
+        boolean isNew = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (h + i * step) & (bitCount - 1);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long old = bits.get(word);
+            while ((old & mask) == 0 && !bits.compareAndSet(word, old, old | mask)) {
+                old = bits.get(word);
+            }
+            if ((old & mask) == 0) isNew = true;
+        }
+        return isNew;
+    }
+
+    /**
+     * Second hash for double hashing. It is odd and the filter size is a power of two, so the bit indices of one
+     * sequence only start to repeat after bitCount of them, far more than hashCount.
+     */
+    private static long stepFor(long h) {
+        return Long.rotateLeft(h * 0x9E3779B97F4A7C15L, 32) | 1;
+    }
+
+    /**
+     * Number of sequences reported as new.
+     */
+    public long getAddedCount() {
+        return added.get();
+    }
+
+    /**
+     * Number of sequences reported as duplicates.
+     */
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    public boolean isExact() {
+        return seen != null;
+    }
+
+    /**
+     * Bloom filter size in bits, or 0 for exact filters.
+     */
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Bits set per sequence in the Bloom filter, or 0 for exact filters.
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+}
@@ -0,0 +1,461 @@
+package game;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Exact k-nearest-neighbour index over runner states, for novelty search, deduplicating datasets, and finding a stored
+ * state close to a given one.
+ * <p>
+ * States are compared by Euclidean distance between their {@link State#flattenState() flattened} 72 values, each
+ * multiplied by a weight first. {@link #weights(float[], float[])} makes weights per {@link State.ObjectName} and
+ * {@link State.StateName}, e.g. 0 for every velocity to compare poses only. Flattened x positions are relative to
+ * the torso, so the same pose further down the track is the same point.
+ * <p>
+ * Weighted values are kept in one float array, in insertion order, and a state's id is its insertion index. Queries
+ * use vantage-point trees, also stored as arrays: each node is a range of a permutation of ids, whose first id is the
+ * vantage point, followed by the ids within its median distance, then the ones beyond it. Inserts don't rebuild the
+ * whole tree. Ids are grouped into blocks of {@link #LEAF_SIZE}, and the full blocks are split into runs whose sizes
+ * are the powers of two making up the block count, each with its own tree. An insert which fills a block merges it
+ * with the runs of smaller trees into one new tree, so each id is rebuilt into a tree at most log n times. The last
+ * partial block is scanned directly.
+ * <p>
+ * Queries may run in parallel with each other, and wait for any insert in progress. Ties in distance go to the lower
+ * id, so results match {@link #nearestBruteForce(State, int)} exactly.
+ *
+ * @author matt
+ */
+public class StateIndex {
+
+    /**
+     * Values per state: 6 for each of 12 body parts, in {@link State#flattenState()} order.
+     */
+    public static final int DIMENSIONS = State.ObjectName.values().length * State.StateName.values().length;
+
+    /**
+     * Largest tree node scanned directly instead of split further, and the size of the blocks inserts are grouped
+     * into.
+     */
+    public static final int LEAF_SIZE = 32;
+
+    private final float[] weights;
+
+    private final ForkJoinPool pool;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Weighted values, {@link #DIMENSIONS} per id.
+     */
+    private float[] points = new float[DIMENSIONS * 1024];
+
+    /**
+     * Ids, permuted within each tree into tree order.
+     */
+    private int[] order = new int[1024];
+
+    /**
+     * Median distance from the vantage point of the node starting at each position of {@link #order}.
+     */
+    private double[] radius = new double[1024];
+
+    private int size;
+
+    private final AtomicLong queries = new AtomicLong(), distanceEvaluations = new AtomicLong();
+
+    /**
+     * Index with every value weighted 1, querying on the common fork-join pool.
+     */
+    public StateIndex() {
+        this(null);
+    }
+
+    /**
+     * Index querying on the common fork-join pool.
+     *
+     * @param weights Weight of each flattened value, e.g. from {@link #weights(float[], float[])}. Null for all 1.
+     */
+    public StateIndex(float[] weights) {
+        this(weights, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param weights Weight of each flattened value, e.g. from {@link #weights(float[], float[])}. Null for all 1.
+     * @param pool    Pool to run batch queries on.
+     */
+    public StateIndex(float[] weights, ForkJoinPool pool) {
+        if (weights == null) {
+            weights = new float[DIMENSIONS];
+            Arrays.fill(weights, 1);
+        }
+        if (weights.length != DIMENSIONS)
+            throw new IllegalArgumentException("Expected " + DIMENSIONS + " weights. Given: " + weights.length);
+        for (float weight : weights) {
+            if (!(weight >= 0 && weight < Float.POSITIVE_INFINITY))
+                throw new IllegalArgumentException("Weights must be finite and not negative. Given: " + weight);
+        }
+        this.weights = weights.clone();
+        this.pool = pool;
+    }
+
+    /**
+     * Weights for flattened states, as the product of a weight per body part and a weight per kind of value.
+     *
+     * @param objectWeights One weight per {@link State.ObjectName}, in enum order.
+     * @param stateWeights  One weight per {@link State.StateName}, in enum order.
+     */
+    public static float[] weights(float[] objectWeights, float[] stateWeights) {
+        int objects = State.ObjectName.values().length, kinds = State.StateName.values().length;
+        if (objectWeights.length != objects)
+            throw new IllegalArgumentException("Expected " + objects + " object weights. Given: " +
+                    objectWeights.length);
+        if (stateWeights.length != kinds)
+            throw new IllegalArgumentException("Expected " + kinds + " state weights. Given: " + stateWeights.length);
+        float[] weights = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            weights[i] = objectWeights[i / kinds] * stateWeights[i % kinds];
+        }
+        return weights;
+    }
+
+    /**
+     * Position of one value in {@link State#flattenState()}.
+     */
+    public static int indexOf(State.ObjectName object, State.StateName state) {
+        return object.ordinal() * State.StateName.values().length + state.ordinal();
+    }
+
+    /**
+     * Add a state.
+     *
+     * @return Id of the state: the number of states added before it.
+     */
+    public int add(State state) {
+        return add(state.flattenState());
+    }
+
+    /**
+     * Add a state which has already been flattened, e.g. one loaded from a dataset.
+     *
+     * @param values {@link #DIMENSIONS} values in {@link State#flattenState()} order.
+     * @return Id of the state: the number of states added before it.
+     */
+    public int add(float[] values) {
+        if (values.length != DIMENSIONS)
+            throw new IllegalArgumentException("Expected " + DIMENSIONS + " values. Given: " + values.length);
+        lock.writeLock().lock();
+        try {
+            if (size == order.length) grow();
+            int id = size;
+            for (int i = 0; i < DIMENSIONS; i++) {
+                points[id * DIMENSIONS + i] = values[i] * weights[i];
+            }
+            order[id] = id;
+            size++;
+            if (size % LEAF_SIZE == 0) {
+                // Merge the new block with every run of smaller trees, which are the blocks just before it.
+                int blocks = Integer.lowestOneBit(size / LEAF_SIZE);
+                rebuild(size - blocks * LEAF_SIZE, size);
+            }
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void grow() {
+        int capacity = order.length * 2;
+        if (capacity > Integer.MAX_VALUE / DIMENSIONS)
+            throw new IllegalStateException("State index is full at " + size + " states.");
+        points = Arrays.copyOf(points, capacity * DIMENSIONS);
+        order = Arrays.copyOf(order, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+    }
+
+    /**
+     * Build one tree over the ids from start to end - 1.
+     */
+    private void rebuild(int start, int end) {
+        for (int i = start; i < end; i++) {
+            order[i] = i;
+        }
+        build(start, end, new double[end - start], start);
+    }
+
+    /**
+     * Build the node covering positions lo to hi - 1 of {@link #order}.
+     *
+     * @param distances Scratch space, indexed by position - offset.
+     */
+    private void build(int lo, int hi, double[] distances, int offset) {
+        while (hi - lo > LEAF_SIZE) {
+            // Any vantage point works, but a fixed choice keeps trees the same from run to run.
+            swap(lo, lo + (int) Long.remainderUnsigned(mix(lo * 31L + hi), hi - lo), distances, offset);
+            int vantage = order[lo];
+            for (int i = lo + 1; i < hi; i++) {
+                distances[i - offset] = Math.sqrt(squaredDistance(points, vantage * DIMENSIONS, order[i]));
+            }
+            int mid = (lo + 1 + hi) >>> 1;
+            select(lo + 1, hi - 1, mid, distances, offset);
+            radius[lo] = distances[mid - offset];
+            build(lo + 1, mid, distances, offset);
+            lo = mid;
+        }
+    }
+
+    /**
+     * Partially sort positions lo to hi, inclusive, by distance, so position k holds the distance it would hold if
+     * sorted, with no greater ones before it and no smaller ones after it.
+     */
+    private void select(int lo, int hi, int k, double[] distances, int offset) {
+        while (lo < hi) {
+            double pivot = distances[((lo + hi) >>> 1) - offset];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (distances[i - offset] < pivot) i++;
+                while (distances[j - offset] > pivot) j--;
+                if (i <= j) swap(i++, j--, distances, offset);
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int a, int b, double[] distances, int offset) {
+        int id = order[a];
+        order[a] = order[b];
+        order[b] = id;
+        double distance = distances[a - offset];
+        distances[a - offset] = distances[b - offset];
+        distances[b - offset] = distance;
+    }
+
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Squared distance between a weighted query, starting at queryStart in query, and a stored state. Summed in
+     * double, so pruning by the triangle inequality doesn't lose neighbours to rounding.
+     */
+    private double squaredDistance(float[] query, int queryStart, int id) {
+        int start = id * DIMENSIONS;
+        double sum = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            double d = query[queryStart + i] - points[start + i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    /**
+     * The k stored states nearest to a state, nearest first. Fewer if fewer are stored.
+     */
+    public Neighbours nearest(State state, int k) {
+        return query(state, k, false);
+    }
+
+    /**
+     * Same as {@link #nearest(State, int)}, but by comparing against every stored state. For checking and benchmarking
+     * the trees.
+     */
+    public Neighbours nearestBruteForce(State state, int k) {
+        return query(state, k, true);
+    }
+
+    /**
+     * {@link #nearest(State, int)} for each of a list of states, in parallel on the pool.
+     */
+    public Neighbours[] nearest(List<State> states, int k) {
+        return query(states, k, false);
+    }
+
+    /**
+     * {@link #nearestBruteForce(State, int)} for each of a list of states, in parallel on the pool.
+     */
+    public Neighbours[] nearestBruteForce(List<State> states, int k) {
+        return query(states, k, true);
+    }
+
+    private Neighbours[] query(List<State> states, int k, boolean bruteForce) {
+        Neighbours[] results = new Neighbours[states.size()];
+        Parallel.parallelFor(pool, results.length, "querying states",
+                i -> results[i] = query(states.get(i), k, bruteForce));
+        return results;
+    }
+
+    private Neighbours query(State state, int k, boolean bruteForce) {
+        if (k <= 0)
+            throw new IllegalArgumentException("Number of neighbours must be positive. Given: " + k);
+        float[] query = state.flattenState();
+        for (int i = 0; i < DIMENSIONS; i++) {
+            query[i] *= weights[i];
+        }
+        lock.readLock().lock();
+        try {
+            Search search = new Search(query, Math.min(k, size));
+            if (bruteForce) {
+                search.scan(0, size);
+            } else {
+                // Trees for the runs of full blocks, largest and oldest first, then the partial block.
+                int blocks = size / LEAF_SIZE;
+                int start = 0;
+                for (int bit = Integer.highestOneBit(blocks); bit > 0; bit >>>= 1) {
+                    if ((blocks & bit) == 0) continue;
+                    search.searchNode(start, start + bit * LEAF_SIZE);
+                    start += bit * LEAF_SIZE;
+                }
+                search.scan(start, size);
+            }
+            queries.incrementAndGet();
+            distanceEvaluations.addAndGet(search.evaluations);
+            return search.result();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * State of one query: the best ids so far, sorted by squared distance, then by id.
+     */
+    private class Search {
+        private final float[] query;
+        private final int k;
+        private final int[] ids;
+        private final double[] squared;
+        private int found;
+        private long evaluations;
+
+        Search(float[] query, int k) {
+            this.query = query;
+            this.k = k;
+            ids = new int[k];
+            squared = new double[k];
+        }
+
+        /**
+         * Distance beyond which nothing can make the list, or infinity until it is full.
+         */
+        double bound() {
+            return found < k ? Double.POSITIVE_INFINITY : Math.sqrt(squared[k - 1]);
+        }
+
+        /**
+         * Consider a stored state, and return its squared distance.
+         */
+        double consider(int id) {
+            double d2 = squaredDistance(query, 0, id);
+            evaluations++;
+            if (k == 0) return d2;
+            if (found == k && (d2 > squared[k - 1] || (d2 == squared[k - 1] && id > ids[k - 1]))) return d2;
+            int i = found < k ? found++ : k - 1;
+            while (i > 0 && (squared[i - 1] > d2 || (squared[i - 1] == d2 && ids[i - 1] > id))) {
+                squared[i] = squared[i - 1];
+                ids[i] = ids[i - 1];
+                i--;
+            }
+            squared[i] = d2;
+            ids[i] = id;
+            return d2;
+        }
+
+        /**
+         * Consider the ids at positions lo to hi - 1 of the order, without pruning.
+         */
+        void scan(int lo, int hi) {
+            for (int i = lo; i < hi; i++) {
+                consider(order[i]);
+            }
+        }
+
+        /**
+         * Search the node covering positions lo to hi - 1, skipping any side which the triangle inequality shows can't
+         * hold anything nearer than the current bound. Ties count as nearer, since they may win on id.
+         */
+        void searchNode(int lo, int hi) {
+            if (hi - lo <= LEAF_SIZE) {
+                scan(lo, hi);
+                return;
+            }
+            int mid = (lo + 1 + hi) >>> 1;
+            double r = radius[lo];
+            double d = Math.sqrt(consider(order[lo]));
+            if (d < r) {
+                if (d - bound() <= r) searchNode(lo + 1, mid);
+                if (d + bound() >= r) searchNode(mid, hi);
+            } else {
+                if (d + bound() >= r) searchNode(mid, hi);
+                if (d - bound() <= r) searchNode(lo + 1, mid);
+            }
+        }
+
+        Neighbours result() {
+            float[] distances = new float[found];
+            for (int i = 0; i < found; i++) {
+                distances[i] = (float) Math.sqrt(squared[i]);
+            }
+            return new Neighbours(Arrays.copyOf(ids, found), distances);
+        }
+    }
+
+    /**
+     * Number of states added.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getQueryCount() {
+        return queries.get();
+    }
+
+    /**
+     * Distances computed by queries, including brute-force ones. Divide by {@link #getQueryCount()} to see how much
+     * the trees prune.
+     */
+    public long getDistanceEvaluationCount() {
+        return distanceEvaluations.get();
+    }
+
+    /**
+     * Result of one query: ids of the nearest stored states and their weighted distances, nearest first.
+     */
+    public static class Neighbours {
+        public final int[] ids;
+        public final float[] distances;
+
+        Neighbours(int[] ids, float[] distances) {
+            this.ids = ids;
+            this.distances = distances;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Neighbours)) return false;
+            Neighbours other = (Neighbours) o;
+            return Arrays.equals(ids, other.ids) && Arrays.equals(distances, other.distances);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(ids) + Arrays.hashCode(distances);
+        }
+    }
+}
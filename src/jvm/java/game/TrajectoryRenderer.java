@@ -0,0 +1,419 @@
+package game;
+
+import actions.Action;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Headless renderer for reviewing many runs at once. Trajectories, recorded from key sequences or actions with
+ * {@link #record(boolean[][])} and {@link #record(List)}, or built from {@link GameSingleThread#getDebugVertices()}
+ * some other way, are drawn as PNG frame sequences or one contact sheet per trajectory. Body polygons and the head are
+ * rasterized directly into int pixel arrays, and PNGs are encoded with a plain Deflater, so no AWT or display is
+ * needed. Recording, drawing, and encoding are spread over a fork-join pool, across trajectories and across frames.
+ * <p>
+ * Each frame is a float array laid out as in {@link #FRAME_FLOATS}. The camera follows the torso horizontally with
+ * the ground fixed near the bottom of the image. The ground is drawn flat at the height under the torso, with a tick
+ * every unit of absolute distance, so on terrain it is only a guide.
+ *
+ * @author matt
+ */
+public class TrajectoryRenderer {
+
+    /**
+     * Floats per frame: torso x, ground height, head x, y, radius, then 8 floats (4 vertices) for each of 11 bodies,
+     * as in {@link GameSingleThread.VertHolder}.
+     */
+    public static final int FRAME_FLOATS = 5 + 11 * 8;
+
+    private static final int background = 0xF4F1E8, ground = 0x6B5B45, tick = 0x3A3024, head = 0xE0B080,
+            bodyLight = 0x4A78B0, bodyDark = 0x2E4E78;
+
+    private final int width, height;
+
+    /**
+     * Pixels per world unit.
+     */
+    private final float scale;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * PNG encoding buffers, one set per worker thread.
+     */
+    private final ThreadLocal<PNGEncoder> encoders = ThreadLocal.withInitial(PNGEncoder::new);
+
+    /**
+     * Renderer using the common fork-join pool.
+     *
+     * @param width  Frame width in pixels.
+     * @param height Frame height in pixels.
+     * @param scale  Pixels per world unit.
+     */
+    public TrajectoryRenderer(int width, int height, float scale) {
+        this(width, height, scale, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param width  Frame width in pixels.
+     * @param height Frame height in pixels.
+     * @param scale  Pixels per world unit.
+     * @param pool   Pool to record, draw, and encode on.
+     */
+    public TrajectoryRenderer(int width, int height, float scale, ForkJoinPool pool) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Frame size must be positive. Given: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        this.scale = scale;
+        this.pool = pool;
+    }
+
+    /**
+     * Replay keys through a new game and record a frame before the first step and after every step. Stops early if
+     * the runner falls.
+     *
+     * @param commands One 4-element QWOP keys array per timestep.
+     * @return Frames, each {@link #FRAME_FLOATS} long.
+     */
+    public static float[][] record(boolean[][] commands) {
+        GameSingleThread game = new GameSingleThread();
+        GameSingleThread.VertHolder vertHolder = game.getDebugVertices();
+        List<float[]> frames = new ArrayList<>(commands.length + 1);
+        frames.add(toFrame(vertHolder, new float[FRAME_FLOATS]));
+        for (boolean[] command : commands) {
+            game.stepGame(command);
+            frames.add(toFrame(game.getDebugVertices(vertHolder), new float[FRAME_FLOATS]));
+            if (game.getFailureStatus()) break;
+        }
+        return frames.toArray(new float[frames.size()][]);
+    }
+
+    /**
+     * Replay actions through a new game and record them. See {@link #record(boolean[][])}.
+     *
+     * @param actions Actions in order. Zero-duration actions are skipped.
+     * @return Frames, each {@link #FRAME_FLOATS} long.
+     */
+    public static float[][] record(List<Action> actions) {
+        return record(ActionSequence.of(actions));
+    }
+
+    /**
+     * Replay a sequence through a new game and record it. See {@link #record(boolean[][])}.
+     */
+    public static float[][] record(ActionSequence sequence) {
+        GameSingleThread game = new GameSingleThread();
+        GameSingleThread.VertHolder vertHolder = game.getDebugVertices();
+        float[][] frames = new float[sequence.getLength() + 1][];
+        frames[0] = toFrame(vertHolder, new float[FRAME_FLOATS]);
+        int count = 1;
+        ActionSequence.Cursor cursor = sequence.cursor();
+        while (cursor.hasNext() && !game.getFailureStatus()) {
+            cursor.step(game);
+            frames[count++] = toFrame(game.getDebugVertices(vertHolder), new float[FRAME_FLOATS]);
+        }
+        return count == frames.length ? frames : Arrays.copyOf(frames, count);
+    }
+
+    /**
+     * Record many key sequences in parallel. See {@link #record(boolean[][])}.
+     */
+    public List<float[][]> recordAll(List<boolean[][]> commandSequences) {
+        float[][][] trajectories = new float[commandSequences.size()][][];
+        Parallel.parallelFor(pool, trajectories.length, "rendering",
+                i -> trajectories[i] = record(commandSequences.get(i)));
+        List<float[][]> list = new ArrayList<>(trajectories.length);
+        for (float[][] trajectory : trajectories) {
+            list.add(trajectory);
+        }
+        return list;
+    }
+
+    /**
+     * Copy debug vertices into a frame array.
+     */
+    static float[] toFrame(GameSingleThread.VertHolder vertHolder, float[] frame) {
+        frame[0] = vertHolder.torsoX;
+        frame[1] = vertHolder.groundHeight;
+        System.arraycopy(vertHolder.headLocAndRadius, 0, frame, 2, 3);
+        for (int i = 0; i < 11; i++) {
+            System.arraycopy(vertHolder.bodyVerts[i], 0, frame, 5 + 8 * i, 8);
+        }
+        return frame;
+    }
+
+    /**
+     * Write every frame of every trajectory as a PNG, to dir/trajectory_NNNN/frame_NNNNN.png.
+     *
+     * @param trajectories Frames of each trajectory.
+     * @param dir          Directory to write into. Created if needed.
+     * @return Number of frames written.
+     */
+    public int writeFrames(List<float[][]> trajectories, File dir) throws IOException {
+        int[] firstFrame = new int[trajectories.size() + 1];
+        for (int i = 0; i < trajectories.size(); i++) {
+            File trajectoryDir = new File(dir, String.format("trajectory_%04d", i));
+            if (!trajectoryDir.isDirectory() && !trajectoryDir.mkdirs())
+                throw new IOException("Could not create directory: " + trajectoryDir);
+            firstFrame[i + 1] = firstFrame[i] + trajectories.get(i).length;
+        }
+        int frameCount = firstFrame[trajectories.size()];
+
+        ThreadLocal<int[]> pixelBuffers = ThreadLocal.withInitial(() -> new int[width * height]);
+        try {
+            Parallel.parallelFor(pool, frameCount, "rendering", index -> {
+                int trajectory = findTrajectory(firstFrame, index);
+                int frame = index - firstFrame[trajectory];
+                int[] pixels = pixelBuffers.get();
+                draw(trajectories.get(trajectory)[frame], pixels, 0, width);
+                File file = new File(dir, String.format("trajectory_%04d/frame_%05d.png", trajectory, frame));
+                writePNG(pixels, width, height, file);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return frameCount;
+    }
+
+    /**
+     * Write one contact sheet per trajectory, to dir/sheet_NNNN.png: every frameStride-th frame in a grid with the
+     * given number of columns, read left to right, top to bottom.
+     *
+     * @param trajectories Frames of each trajectory.
+     * @param dir          Directory to write into. Created if needed.
+     * @param columns      Frames per row of the sheet.
+     * @param frameStride  Frames skipped between tiles, e.g. 5 for every fifth frame.
+     */
+    public void writeContactSheets(List<float[][]> trajectories, File dir, int columns, int frameStride)
+            throws IOException {
+        if (columns <= 0 || frameStride <= 0)
+            throw new IllegalArgumentException("Columns and frame stride must be positive. Given: " + columns + ", " +
+                    frameStride);
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Could not create directory: " + dir);
+
+        try {
+            Parallel.parallelFor(pool, trajectories.size(), "rendering", i -> {
+                float[][] frames = trajectories.get(i);
+                int tiles = (frames.length + frameStride - 1) / frameStride;
+                int rows = Math.max(1, (tiles + columns - 1) / columns);
+                int sheetWidth = columns * width;
+                int[] pixels = new int[sheetWidth * rows * height];
+                Arrays.fill(pixels, background);
+                for (int t = 0; t < tiles; t++) {
+                    int offset = (t / columns) * height * sheetWidth + (t % columns) * width;
+                    draw(frames[t * frameStride], pixels, offset, sheetWidth);
+                }
+                writePNG(pixels, sheetWidth, rows * height, new File(dir, String.format("sheet_%04d.png", i)));
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Draw one frame into a width x height region of a pixel array.
+     *
+     * @param frame  Frame to draw, laid out as in {@link #FRAME_FLOATS}.
+     * @param pixels 0xRRGGBB pixels.
+     * @param offset Index of the region's top left pixel.
+     * @param stride Pixels per row of the array.
+     */
+    public void draw(float[] frame, int[] pixels, int offset, int stride) {
+        float torsoX = frame[0];
+        float groundHeight = frame[1];
+        // World to pixel: torso at the horizontal centre, ground 80% of the way down. Remember -y is up.
+        float originX = width / 2f - torsoX * scale;
+        float originY = 0.8f * height - groundHeight * scale;
+
+        int groundRow = Math.max(0, Math.min(height, Math.round(groundHeight * scale + originY)));
+        for (int y = 0; y < height; y++) {
+            int row = offset + y * stride;
+            Arrays.fill(pixels, row, row + width, y < groundRow ? background : ground);
+        }
+
+        // A tick every unit of distance, taller every 10.
+        int firstTick = (int) Math.ceil(-originX / scale);
+        int lastTick = (int) Math.floor((width - originX) / scale);
+        for (int t = firstTick; t <= lastTick; t++) {
+            int x = Math.round(t * scale + originX);
+            if (x < 0 || x >= width) continue;
+            int tickHeight = t % 10 == 0 ? 12 : 5;
+            for (int y = Math.max(0, groundRow - tickHeight); y < groundRow; y++) {
+                pixels[offset + y * stride + x] = tick;
+            }
+        }
+
+        for (int i = 0; i < 11; i++) {
+            fillQuad(frame, 5 + 8 * i, originX, originY, i % 2 == 0 ? bodyLight : bodyDark, pixels, offset, stride);
+        }
+        fillCircle(frame[2] * scale + originX, frame[3] * scale + originY, frame[4] * scale, head, pixels, offset,
+                stride);
+    }
+
+    /**
+     * Fill the convex quadrilateral whose 4 vertices start at frame[first], sampling pixel centres.
+     */
+    private void fillQuad(float[] frame, int first, float originX, float originY, int color, int[] pixels,
+                          int offset, int stride) {
+        float minY = Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int v = 0; v < 4; v++) {
+            float y = frame[first + 2 * v + 1] * scale + originY;
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        int top = Math.max(0, (int) Math.ceil(minY - 0.5f));
+        int bottom = Math.min(height - 1, (int) Math.floor(maxY - 0.5f));
+        for (int y = top; y <= bottom; y++) {
+            float sampleY = y + 0.5f;
+            float left = Float.MAX_VALUE, right = -Float.MAX_VALUE;
+            for (int v = 0; v < 4; v++) {
+                int w = (v + 1) % 4;
+                float x1 = frame[first + 2 * v] * scale + originX, y1 = frame[first + 2 * v + 1] * scale + originY;
+                float x2 = frame[first + 2 * w] * scale + originX, y2 = frame[first + 2 * w + 1] * scale + originY;
+                if ((y1 <= sampleY) == (y2 <= sampleY)) continue; // Edge doesn't cross this row.
+                float x = x1 + (sampleY - y1) * (x2 - x1) / (y2 - y1);
+                left = Math.min(left, x);
+                right = Math.max(right, x);
+            }
+            fillSpan(left, right, color, pixels, offset + y * stride);
+        }
+    }
+
+    private void fillCircle(float centreX, float centreY, float radius, int color, int[] pixels, int offset,
+                            int stride) {
+        int top = Math.max(0, (int) Math.ceil(centreY - radius - 0.5f));
+        int bottom = Math.min(height - 1, (int) Math.floor(centreY + radius - 0.5f));
+        for (int y = top; y <= bottom; y++) {
+            float dy = y + 0.5f - centreY;
+            float halfWidth = (float) Math.sqrt(Math.max(0, radius * radius - dy * dy));
+            fillSpan(centreX - halfWidth, centreX + halfWidth, color, pixels, offset + y * stride);
+        }
+    }
+
+    /**
+     * Fill the pixels in a row whose centres lie between left and right.
+     */
+    private void fillSpan(float left, float right, int color, int[] pixels, int rowStart) {
+        int start = Math.max(0, (int) Math.ceil(left - 0.5f));
+        int end = Math.min(width - 1, (int) Math.floor(right - 0.5f));
+        if (start <= end) {
+            Arrays.fill(pixels, rowStart + start, rowStart + end + 1, color);
+        }
+    }
+
+    private void writePNG(int[] pixels, int imageWidth, int imageHeight, File file) {
+        try (OutputStream out = new FileOutputStream(file)) {
+            encoders.get().write(pixels, imageWidth, imageHeight, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int findTrajectory(int[] firstFrame, int frame) {
+        int low = 0, high = firstFrame.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (firstFrame[mid] <= frame) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Minimal truecolor PNG writer. Rows use the Sub filter, which suits the large flat areas here, and are deflated
+     * at the fastest level. Buffers are kept between images.
+     */
+    private static class PNGEncoder {
+        private static final byte[] signature = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final CRC32 crc = new CRC32();
+        private byte[] raw = new byte[0];
+        private byte[] compressed = new byte[0];
+        private final byte[] header = new byte[13];
+        private final byte[] lengthAndType = new byte[8];
+        private final byte[] crcBytes = new byte[4];
+
+        void write(int[] pixels, int imageWidth, int imageHeight, OutputStream out) throws IOException {
+            int rowBytes = 1 + 3 * imageWidth;
+            int rawLength = rowBytes * imageHeight;
+            if (raw.length < rawLength) {
+                raw = new byte[rawLength];
+                compressed = new byte[rawLength + rawLength / 1000 + 64];
+            }
+            int r = 0;
+            for (int y = 0; y < imageHeight; y++) {
+                raw[r++] = 1; // Sub filter: each byte minus the same channel of the pixel to its left.
+                int previous = 0;
+                for (int x = 0; x < imageWidth; x++) {
+                    int p = pixels[y * imageWidth + x];
+                    raw[r++] = (byte) ((p >> 16) - (previous >> 16));
+                    raw[r++] = (byte) ((p >> 8) - (previous >> 8));
+                    raw[r++] = (byte) (p - previous);
+                    previous = p;
+                }
+            }
+
+            deflater.reset();
+            deflater.setInput(raw, 0, rawLength);
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == compressed.length) {
+                    byte[] bigger = new byte[2 * compressed.length];
+                    System.arraycopy(compressed, 0, bigger, 0, compressedLength);
+                    compressed = bigger;
+                }
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+
+            putInt(header, 0, imageWidth);
+            putInt(header, 4, imageHeight);
+            header[8] = 8; // Bits per channel.
+            header[9] = 2; // Truecolor.
+            header[10] = 0;
+            header[11] = 0;
+            header[12] = 0;
+
+            out.write(signature);
+            writeChunk(out, "IHDR", header, 13);
+            writeChunk(out, "IDAT", compressed, compressedLength);
+            writeChunk(out, "IEND", header, 0);
+        }
+
+        private void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+            putInt(lengthAndType, 0, length);
+            for (int i = 0; i < 4; i++) {
+                lengthAndType[4 + i] = (byte) type.charAt(i);
+            }
+            crc.reset();
+            crc.update(lengthAndType, 4, 4);
+            crc.update(data, 0, length);
+            out.write(lengthAndType);
+            out.write(data, 0, length);
+            putInt(crcBytes, 0, (int) crc.getValue());
+            out.write(crcBytes);
+        }
+
+        private static void putInt(byte[] bytes, int index, int value) {
+            bytes[index] = (byte) (value >>> 24);
+            bytes[index + 1] = (byte) (value >>> 16);
+            bytes[index + 2] = (byte) (value >>> 8);
+            bytes[index + 3] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package game;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size table of runner poses already reached during a search, so a search can skip a pose it has already
+ * reached with an equal or better value instead of expanding it again.
+ * <p>
+ * States are keyed by a 64-bit hash of {@link State#flattenState()} with every value rounded down to a multiple of
+ * its bin width. Bin widths are set per {@link State.StateName}, so e.g. angles can be binned finer than velocities.
+ * An infinite bin width leaves that kind of value out of the key. Torso x is always left out, since flattenState
+ * makes x positions relative to the torso, so the same pose further down the track is the same key.
+ * <p>
+ * Each entry keeps the best value stored for its key and a handle for getting back to that state: the
+ * {@link ActionSequence} which reached it, since Box2D worlds can't be snapshotted, only replayed.
+ * <p>
+ * Memory is fixed at construction. Entries live in buckets of {@link #WAYS} slots, chosen by key. When a bucket is
+ * full, a CLOCK sweep picks the entry to replace: every lookup marks its entry as recently used, and the sweep
+ * clears marks as it passes, taking the first entry with no mark. Buckets are guarded by striped locks, so threads
+ * mostly don't contend.
+ *
+ * @author matt
+ */
+public class TranspositionTable {
+
+    /**
+     * Slots per bucket.
+     */
+    public static final int WAYS = 8;
+
+    private static final int lockStripes = 64;
+
+    private final float[] binWidths = new float[State.StateName.values().length];
+
+    private final int bucketMask;
+
+    /**
+     * Per slot. A key of 0 marks an empty slot; {@link #key(State)} never returns 0.
+     */
+    private final long[] keys;
+    private final float[] values;
+    private final ActionSequence[] handles;
+    private final boolean[] referenced;
+
+    /**
+     * CLOCK hand of each bucket, as a way index.
+     */
+    private final byte[] hands;
+
+    private final Object[] locks = new Object[lockStripes];
+
+    private final AtomicLong lookups = new AtomicLong(), hits = new AtomicLong(), inserts = new AtomicLong(),
+            improvements = new AtomicLong(), evictions = new AtomicLong();
+
+    /**
+     * Make a table with room for at least the given number of entries, rounded up to a power of two buckets.
+     * Default bin widths: 0.1 for positions and angles, 0.5 for velocities.
+     *
+     * @param capacity Entries to make room for. Must be positive.
+     */
+    public TranspositionTable(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive. Given: " + capacity);
+        if (capacity > (1 << 30))
+            throw new IllegalArgumentException("Capacity too large. Given: " + capacity);
+        int buckets = 1;
+        while (buckets * WAYS < capacity) {
+            buckets <<= 1;
+        }
+        bucketMask = buckets - 1;
+        keys = new long[buckets * WAYS];
+        values = new float[buckets * WAYS];
+        handles = new ActionSequence[buckets * WAYS];
+        referenced = new boolean[buckets * WAYS];
+        hands = new byte[buckets];
+        for (int i = 0; i < lockStripes; i++) {
+            locks[i] = new Object();
+        }
+        setBinWidth(State.StateName.X, 0.1f);
+        setBinWidth(State.StateName.Y, 0.1f);
+        setBinWidth(State.StateName.TH, 0.1f);
+        setBinWidth(State.StateName.DX, 0.5f);
+        setBinWidth(State.StateName.DY, 0.5f);
+        setBinWidth(State.StateName.DTH, 0.5f);
+    }
+
+    /**
+     * Bin width for one kind of value, for every body part. Only affects keys computed afterwards, so set widths
+     * before filling the table.
+     *
+     * @param width Positive width, or infinity to leave this kind of value out of keys.
+     */
+    public void setBinWidth(State.StateName name, float width) {
+        if (!(width > 0))
+            throw new IllegalArgumentException("Bin width must be positive. Given: " + width);
+        binWidths[name.ordinal()] = width;
+    }
+
+    public float getBinWidth(State.StateName name) {
+        return binWidths[name.ordinal()];
+    }
+
+    /**
+     * Hash of a state's binned values. Never 0.
+     */
+    public long key(State state) {
+        float[] features = state.flattenState();
+        int kinds = binWidths.length;
+        long h = 0;
+        for (int i = 1; i < features.length; i++) { // features[0] is torso x, which is always 0.
+            float width = binWidths[i % kinds];
+            long bin = width == Float.POSITIVE_INFINITY ? 0 : (long) Math.floor(features[i] / width);
+            h = (h ^ bin) * 0x9E3779B97F4A7C15L;
+        }
+        // Murmur3 finalizer, so the low bits which pick the bucket depend on every value.
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Best value stored for a state's key, or NaN if there is none.
+     */
+    public float getValue(State state) {
+        return getValue(key(state));
+    }
+
+    /**
+     * Best value stored for a key, or NaN if there is none.
+     */
+    public float getValue(long key) {
+        lookups.incrementAndGet();
+        int bucket = bucketOf(key);
+        synchronized (lockFor(bucket)) {
+            int slot = findInBucket(bucket, key);
+            if (slot < 0) return Float.NaN;
+            referenced[slot] = true;
+            hits.incrementAndGet();
+            return values[slot];
+        }
+    }
+
+    /**
+     * Handle of the best value stored for a key: the sequence which reached it. Null if there is none.
+     */
+    public ActionSequence getHandle(long key) {
+        int bucket = bucketOf(key);
+        synchronized (lockFor(bucket)) {
+            int slot = findInBucket(bucket, key);
+            return slot < 0 ? null : handles[slot];
+        }
+    }
+
+    /**
+     * Whether a state has already been reached with at least this value, i.e. whether a search can skip it.
+     * Counts as a lookup for {@link #getHitRate()}.
+     */
+    public boolean isDominated(State state, float value) {
+        float stored = getValue(state);
+        return stored >= value; // False for NaN.
+    }
+
+    /**
+     * Store a value for a state if it is better than what's there, replacing an old entry if the bucket is full.
+     *
+     * @param handle Sequence which reaches the state.
+     * @return True if the value was stored, false if an equal or better one was already there.
+     */
+    public boolean put(State state, float value, ActionSequence handle) {
+        return put(key(state), value, handle);
+    }
+
+    /**
+     * Store a value for a key. See {@link #put(State, float, ActionSequence)}.
+     */
+    public boolean put(long key, float value, ActionSequence handle) {
+        if (key == 0) throw new IllegalArgumentException("Key 0 is reserved for empty slots.");
+        int bucket = bucketOf(key);
+        synchronized (lockFor(bucket)) {
+            int slot = findInBucket(bucket, key);
+            if (slot >= 0) {
+                referenced[slot] = true;
+                if (!(value > values[slot])) return false;
+                values[slot] = value;
+                handles[slot] = handle;
+                improvements.incrementAndGet();
+                return true;
+            }
+            slot = victim(bucket);
+            if (keys[slot] != 0) evictions.incrementAndGet();
+            keys[slot] = key;
+            values[slot] = value;
+            handles[slot] = handle;
+            referenced[slot] = true;
+            inserts.incrementAndGet();
+            return true;
+        }
+    }
+
+    private int findInBucket(int bucket, long key) {
+        int first = bucket * WAYS;
+        for (int slot = first; slot < first + WAYS; slot++) {
+            if (keys[slot] == key) return slot;
+        }
+        return -1;
+    }
+
+    /**
+     * Empty slot in the bucket if there is one, otherwise the CLOCK choice.
+     */
+    private int victim(int bucket) {
+        int first = bucket * WAYS;
+        for (int slot = first; slot < first + WAYS; slot++) {
+            if (keys[slot] == 0) return slot;
+        }
+        int hand = hands[bucket];
+        while (referenced[first + hand]) {
+            referenced[first + hand] = false;
+            hand = (hand + 1) % WAYS;
+        }
+        hands[bucket] = (byte) ((hand + 1) % WAYS);
+        return first + hand;
+    }
+
+    private int bucketOf(long key) {
+        return (int) key & bucketMask;
+    }
+
+    private Object lockFor(int bucket) {
+        return locks[bucket & (lockStripes - 1)];
+    }
+
+    /**
+     * Remove every entry and reset the counters. Bin widths are kept. Not safe while other threads use the table.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(handles, null);
+        Arrays.fill(referenced, false);
+        Arrays.fill(hands, (byte) 0);
+        lookups.set(0);
+        hits.set(0);
+        inserts.set(0);
+        improvements.set(0);
+        evictions.set(0);
+    }
+
+    /**
+     * Number of entries the table can hold.
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    public long getLookupCount() {
+        return lookups.get();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Fraction of lookups which found their key, or 0 before the first lookup.
+     */
+    public double getHitRate() {
+        long n = lookups.get();
+        return n == 0 ? 0 : (double) hits.get() / n;
+    }
+
+    /**
+     * New keys stored, including ones which replaced an old entry.
+     */
+    public long getInsertCount() {
+        return inserts.get();
+    }
+
+    /**
+     * Times a better value replaced the stored one for a key.
+     */
+    public long getImprovementCount() {
+        return improvements.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+}
@@ -0,0 +1,59 @@
+package org.jbox2d.dynamics;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solves islands concurrently on a ForkJoinPool, splitting the range of
+ * islands in half until each task has a single island. Only worth it when the
+ * world holds several separate groups of bodies, e.g. many runners on one
+ * track. Lives outside the JSweet source tree, since the browser has no
+ * fork-join pool.
+ */
+public class ForkJoinIslandExecutor implements IslandExecutor {
+	private final ForkJoinPool pool;
+
+	/** Executor on the common pool. */
+	public ForkJoinIslandExecutor() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public ForkJoinIslandExecutor(final ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	public void invokeAll(final int count, final Job job) {
+		if (count == 1) {
+			job.run(0);
+		} else if (count > 1) {
+			pool.invoke(new Range(job, 0, count));
+		}
+	}
+
+	private static class Range extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Job job;
+		private final int start, end;
+
+		Range(final Job job, final int start, final int end) {
+			this.job = job;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start == 1) {
+				job.run(start);
+				return;
+			}
+			final int mid = (start + end) >>> 1;
+			invokeAll(new Range(job, start, mid), new Range(job, mid, end));
+		}
+	}
+}
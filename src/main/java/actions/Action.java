@@ -169,6 +169,16 @@ public class Action implements Serializable {
         return equal;
     }
 
+    /**
+     * Hash of the keypresses and total duration, consistent with {@link Action#equals(Object)}.
+     *
+     * @return Hash code of this action.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(keysPressed) + timestepsTotal;
+    }
+
     /**
      * Return a string with the current action keys, total time to hold, and time remaining. This method does not
      * print, it just returns the string for the caller to use.
@@ -214,6 +224,9 @@ public class Action implements Serializable {
      * These mostly arise when doing control on a timestep-by-timestep basis. Only timestepsTotal are
      * used. Timesteps remaining are not preserved. 0-duration actions are squashed away.
      * An empty array input or one containing nothing but 0 length actions will produce an exception.
+     * <p>
+     * Done in a single pass, so long lists are linear time and can't overflow the stack. Actions which aren't merged
+     * with a neighbour are returned as-is rather than copied.
      *
      * @param inActions A list of actions which we wish to consolidate.
      * @return A new list of actions which is the consolidated version of the input action list.
@@ -221,49 +234,52 @@ public class Action implements Serializable {
      *                                  actions.
      */
     public static List<Action> consolidateActions(List<Action> inActions) {
-        List<Action> outActions = new ArrayList<>(); //TODO: keeps making lists even when recursing. May just want to
-        // modify in place.
-
-        // Single element input.
-        if (inActions.size() == 1) {
-            if (inActions.get(0).getTimestepsTotal() == 0) { // Single element input + 0-duration -> exception.
-                throw new IllegalArgumentException("Input action list had only one element, and this one element had " +
-                        "0 duration.");
-            }
-            outActions.add(inActions.get(0));
-            return outActions;
+        List<Action> outActions = new ArrayList<>();
+        for (Action action : inActions) {
+            appendConsolidated(outActions, action);
         }
+        if (outActions.isEmpty()) {
+            throw new IllegalArgumentException("Tried to consolidate a list of Actions. All " + inActions.size() +
+                    " had 0-duration, so consolidation does not make sense.");
+        }
+        return outActions;
+    }
 
-        int consolidations = 0;
-        // Combine adjacent same button actions.
-        for (int i = 0; i < inActions.size() - 1; ) {
-            Action a1 = inActions.get(i);
-            Action a2 = inActions.get(i + 1);
-
-            if (a1.getTimestepsTotal() == 0) {
-                // Eliminate 0-duration actions.
-                i++;
-                if (inActions.size() - 1 == i && a2.getTimestepsTotal() != 0) outActions.add(a2);
-            } else if (Arrays.equals(a1.peek(), a2.peek())) {
-                outActions.add(new Action(a1.getTimestepsTotal() + a2.getTimestepsTotal(), a1.peek()));
-                consolidations++;
-                i += 2;
+    /**
+     * Consolidate actions in place, as in {@link Action#consolidateActions(List)}. The consolidated actions are moved
+     * to the front of the array and the rest of it is cleared.
+     *
+     * @param actions Array of actions to consolidate. Changed in place.
+     * @param count   Number of actions at the front of the array to consolidate.
+     * @return Number of actions after consolidation. 0 if all of them had 0 duration.
+     */
+    public static int consolidateActions(Action[] actions, int count) {
+        int out = 0;
+        for (int i = 0; i < count; i++) {
+            Action action = actions[i];
+            actions[i] = null;
+            if (action.getTimestepsTotal() == 0) continue;
+            if (out > 0 && Arrays.equals(actions[out - 1].peek(), action.peek())) {
+                actions[out - 1] = new Action(actions[out - 1].getTimestepsTotal() + action.getTimestepsTotal(),
+                        action.peek());
             } else {
-                outActions.add(a1);
-                i++;
-                if (inActions.size() - 1 == i && a2.getTimestepsTotal() != 0) outActions.add(a2);
+                actions[out++] = action;
             }
         }
+        return out;
+    }
 
-        // Recurse until no more combinations are made.
-        if (consolidations == 0) {
-            if (outActions.isEmpty()) {
-                throw new IllegalArgumentException("Tried to consolidate a multi-element list of Actions. All had " +
-                        "0-duration, so consolidation does not make sense.");
-            }
-            return outActions;
+    /**
+     * Add an action to the end of an already consolidated list, merging it into the last action if the keys match.
+     */
+    static void appendConsolidated(List<Action> outActions, Action action) {
+        if (action.getTimestepsTotal() == 0) return;
+        int last = outActions.size() - 1;
+        if (last >= 0 && Arrays.equals(outActions.get(last).peek(), action.peek())) {
+            outActions.set(last, new Action(outActions.get(last).getTimestepsTotal() + action.getTimestepsTotal(),
+                    action.peek()));
         } else {
-            return consolidateActions(outActions);
+            outActions.add(action);
         }
     }
 }
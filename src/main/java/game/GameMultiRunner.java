@@ -0,0 +1,353 @@
+package game;
+
+import org.jbox2d.collision.AABB;
+import org.jbox2d.collision.shapes.PolygonDef;
+import org.jbox2d.collision.shapes.Shape;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.ContactFilter;
+import org.jbox2d.dynamics.ContactListener;
+import org.jbox2d.dynamics.World;
+import org.jbox2d.dynamics.contacts.ContactPoint;
+import org.jbox2d.dynamics.contacts.ContactResult;
+
+import static game.GameConstants.*;
+
+/**
+ * Many QWOP runners in a single Box2D world.
+ * <p>
+ * Runner i gets collision group -(i + 1), so runner 0 is built exactly like the runner in {@link GameSingleThread}.
+ * <p>
+ * By default runners don't collide with each other. Then runner i gets its own copy of the static track and only
+ * touches that one. A shared track would tie the runners together: continuous collision advances the track's sweep
+ * time for one runner's impacts, and that moves the time other runners' impacts are computed from. Runner i is also
+ * built {@link #laneSpacing} * i further along x, so runners' bounds don't pile up along x in the sort-and-sweep
+ * broadphase. They still share one band along y, where every moving bound passes the bounds of the other runners, so
+ * the broadphase costs more per runner as runners are added. MultiRunnerBenchmark (under src/bench) measures this: one
+ * shared world is about as fast as separate worlds up to 8 runners, and slower beyond that. A runner's trajectory
+ * then doesn't depend on the other runners at all, and runner 0's matches {@link GameSingleThread} exactly. Other
+ * lanes round differently further from the origin, so their trajectories drift away from a lone runner's over time
+ * like any small perturbation would. States are reported as if every runner started at the same x.
+ * Runners are stepped together, each with its own keys, and each tracks its own failure.
+ *
+ * @author matt
+ * @see Runner
+ */
+public class GameMultiRunner {
+
+    /**
+     * Should enclose the entire area we want collision checked.
+     **/
+    private static final AABB worldAABB = new AABB(new Vec2(aabbMinX, aabbMinY), new Vec2(aabbMaxX, aabbMaxY));
+
+    /**
+     * Gravity vector. Positive since -y is up.
+     **/
+    private static final Vec2 gravity = new Vec2(0, gravityMagnitude);
+
+    private static final PolygonDef trackShape = new PolygonDef();
+
+    /**
+     * Distance along x between neighbouring runners' starting points, when runners don't collide with each other.
+     */
+    public static final float laneSpacing = 40f;
+
+    /**
+     * Most runners which fit in the world with room to run ahead of the last one.
+     */
+    public static final int maxRunners = (int) ((aabbMaxX - 1000f) / laneSpacing) + 1;
+
+    static {
+        trackShape.setAsBox(trackXDim, trackYDim);
+        trackShape.restitution = trackRest;
+        trackShape.friction = trackFric;
+        trackShape.filter.groupIndex = 1;
+    }
+
+    /**
+     * Number of runners in the world.
+     */
+    private final int runnerCount;
+
+    /**
+     * Whether runners in different groups collide with each other.
+     */
+    private final boolean runnersCollide;
+
+    /**
+     * Box2D world shared by all runners.
+     */
+    private World m_world;
+
+    private final Body[] trackBodies;
+
+    private final Runner[] runners;
+
+    /**
+     * Make a world with the given number of runners which only collide with the track.
+     *
+     * @param runnerCount Number of runners. Must be positive.
+     */
+    public GameMultiRunner(int runnerCount) {
+        this(runnerCount, false);
+    }
+
+    /**
+     * Make a world with the given number of runners.
+     *
+     * @param runnerCount    Number of runners. Must be positive, and at most {@link #maxRunners}.
+     * @param runnersCollide Whether runners collide with each other as well as the track. If so, every runner starts
+     *                       at the same x on one shared track.
+     */
+    public GameMultiRunner(int runnerCount, boolean runnersCollide) {
+        if (runnerCount <= 0)
+            throw new IllegalArgumentException("Need at least one runner. Given: " + runnerCount);
+        if (runnerCount > maxRunners)
+            throw new IllegalArgumentException("At most " + maxRunners + " runners fit in the world. Given: " +
+                    runnerCount);
+        this.runnerCount = runnerCount;
+        this.runnersCollide = runnersCollide;
+        runners = new Runner[runnerCount];
+        trackBodies = new Body[runnersCollide ? 1 : runnerCount];
+        makeNewWorld();
+    }
+
+    /**
+     * Throw away the current world and put every runner back at the initial state.
+     */
+    public void makeNewWorld() {
+        m_world = new World(worldAABB, gravity, true);
+        m_world.setWarmStarting(true);
+        m_world.setPositionCorrection(true);
+        m_world.setContinuousPhysics(true);
+        if (!runnersCollide) m_world.setContactFilter(new LaneFilter());
+
+        for (int i = 0; i < runnerCount; i++) {
+            float laneX = runnersCollide ? 0 : i * laneSpacing;
+
+            /* TRACK */
+            if (i < trackBodies.length) {
+                BodyDef trackDef = new BodyDef();
+                trackDef.position = new Vec2(trackPosX + laneX, trackPosY);
+                trackDef.tag = Runner.laneTag(i);
+                trackBodies[i] = m_world.createBody(trackDef);
+                trackBodies[i].createShape(trackShape);
+            }
+
+            runners[i] = GameSingleThread.buildRunner(m_world, -(i + 1), runnersCollide);
+            if (laneX != 0) runners[i].shiftX(laneX);
+        }
+        m_world.setContactListener(new MultiRunnerListener());
+    }
+
+    /**
+     * Step all runners forward 1 timestep with the same keys pressed.
+     *
+     * @param command 4-element QWOP keys array applied to every runner.
+     */
+    public void stepGame(boolean[] command) {
+        if (command.length != 4) {
+            throw new IllegalArgumentException("Command is not the correct length. Expected 4, got: " + command.length);
+        }
+        for (Runner runner : runners) {
+            runner.applyKeys(command[0], command[1], command[2], command[3]);
+        }
+        stepWorld();
+    }
+
+    /**
+     * Step all runners forward 1 timestep, each with its own keys pressed.
+     *
+     * @param commands One 4-element QWOP keys array per runner.
+     */
+    public void stepGame(boolean[][] commands) {
+        if (commands.length != runnerCount) {
+            throw new IllegalArgumentException("Expected one command per runner (" + runnerCount + "), got: " +
+                    commands.length);
+        }
+        for (int i = 0; i < runnerCount; i++) {
+            boolean[] command = commands[i];
+            if (command.length != 4) {
+                throw new IllegalArgumentException("Command for runner " + i + " is not the correct length. " +
+                        "Expected 4, got: " + command.length);
+            }
+            runners[i].applyKeys(command[0], command[1], command[2], command[3]);
+        }
+        stepWorld();
+    }
+
+    private void stepWorld() {
+        m_world.step(timestep, physIterations);
+        for (Runner runner : runners) {
+            runner.checkTorsoAngle();
+        }
+    }
+
+    /**
+     * Get the actual Box2D world.
+     **/
+    public World getWorld() {
+        return m_world;
+    }
+
+    public int getRunnerCount() {
+        return runnerCount;
+    }
+
+    public Runner getRunner(int index) {
+        return runners[index];
+    }
+
+    /**
+     * Get the current full state of one runner.
+     */
+    public State getCurrentState(int index) {
+        return runners[index].getCurrentState();
+    }
+
+    /**
+     * Get the current full state of every runner, in runner order.
+     */
+    public State[] getCurrentStates() {
+        State[] states = new State[runnerCount];
+        for (int i = 0; i < runnerCount; i++) {
+            states[i] = runners[i].getCurrentState();
+        }
+        return states;
+    }
+
+    /**
+     * Write every runner's state into one array, 72 floats per runner in runner order. Each block matches
+     * {@link State#flattenState()}: x positions are relative to that runner's torso.
+     *
+     * @param out Array of at least 72 * runner count floats, or null to allocate one.
+     * @return The filled array.
+     */
+    public float[] getFlatStates(float[] out) {
+        if (out == null) {
+            out = new float[72 * runnerCount];
+        } else if (out.length < 72 * runnerCount) {
+            throw new IllegalArgumentException("Output array too small. Need " + 72 * runnerCount + ", got: " +
+                    out.length);
+        }
+        for (int i = 0; i < runnerCount; i++) {
+            Runner r = runners[i];
+            int idx = 72 * i;
+            float torsoX = r.torsoBody.getMemberPosition().x;
+            idx = putBody(out, idx, r.torsoBody, torsoX);
+            idx = putBody(out, idx, r.headBody, torsoX);
+            idx = putBody(out, idx, r.rThighBody, torsoX);
+            idx = putBody(out, idx, r.lThighBody, torsoX);
+            idx = putBody(out, idx, r.rCalfBody, torsoX);
+            idx = putBody(out, idx, r.lCalfBody, torsoX);
+            idx = putBody(out, idx, r.rFootBody, torsoX);
+            idx = putBody(out, idx, r.lFootBody, torsoX);
+            idx = putBody(out, idx, r.rUArmBody, torsoX);
+            idx = putBody(out, idx, r.lUArmBody, torsoX);
+            idx = putBody(out, idx, r.rLArmBody, torsoX);
+            putBody(out, idx, r.lLArmBody, torsoX);
+        }
+        return out;
+    }
+
+    /**
+     * Write x (relative), y, th, dx, dy, dth of one body. Missing bodies (point feet) are written as zeros.
+     */
+    private static int putBody(float[] out, int idx, Body body, float torsoX) {
+        if (body == null) {
+            for (int i = 0; i < 6; i++) out[idx++] = 0;
+            return idx;
+        }
+        Vec2 pos = body.getMemberPosition();
+        Vec2 vel = body.getLinearVelocity();
+        out[idx++] = pos.x - torsoX;
+        out[idx++] = pos.y;
+        out[idx++] = body.getAngle();
+        out[idx++] = vel.x;
+        out[idx++] = vel.y;
+        out[idx++] = body.getAngularVelocity();
+        return idx;
+    }
+
+    /**
+     * Is a given runner in failure?
+     */
+    public boolean getFailureStatus(int index) {
+        return runners[index].getFailureStatus();
+    }
+
+    /**
+     * Get the failure status of every runner, in runner order.
+     */
+    public boolean[] getFailureStatuses() {
+        boolean[] failed = new boolean[runnerCount];
+        for (int i = 0; i < runnerCount; i++) {
+            failed[i] = runners[i].getFailureStatus();
+        }
+        return failed;
+    }
+
+    /**
+     * Number of runners which have failed.
+     */
+    public int getFailedCount() {
+        int count = 0;
+        for (Runner runner : runners) {
+            if (runner.getFailureStatus()) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Lets each runner touch only its own track. Otherwise the usual group, category and mask rules apply.
+     */
+    private class LaneFilter implements ContactFilter {
+
+        @Override
+        public boolean shouldCollide(Shape shape1, Shape shape2) {
+            if (Runner.runnerIndex(shape1.getBody().getTag()) != Runner.runnerIndex(shape2.getBody().getTag())) {
+                return false;
+            }
+            return ContactFilter.DEFAULT_FILTER.shouldCollide(shape1, shape2);
+        }
+
+        @Override
+        public boolean rayCollide(Object userData, Shape shape) {
+            return ContactFilter.DEFAULT_FILTER.rayCollide(userData, shape);
+        }
+    }
+
+    /**
+     * Routes contact events to the runner which owns each body, using the body tags. Head, lower arms, and thighs
+     * touching anything fail their runner. Feet touching and leaving are tracked per runner.
+     */
+    private class MultiRunnerListener implements ContactListener {
+
+        @Override
+        public void add(ContactPoint point) {
+            onContact(point.shape1.getBody().getTag(), true);
+            onContact(point.shape2.getBody().getTag(), true);
+        }
+
+        @Override
+        public void persist(ContactPoint point) {
+        }
+
+        @Override
+        public void remove(ContactPoint point) {
+            onContact(point.shape1.getBody().getTag(), false);
+            onContact(point.shape2.getBody().getTag(), false);
+        }
+
+        @Override
+        public void result(ContactResult point) {
+        }
+
+        private void onContact(int tag, boolean touching) {
+            if (Runner.isRunnerPart(tag)) {
+                runners[Runner.runnerIndex(tag)].handleContact(tag, touching);
+            }
+        }
+    }
+}
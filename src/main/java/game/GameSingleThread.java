@@ -4,12 +4,16 @@ import org.jbox2d.collision.AABB;
 import org.jbox2d.collision.MassData;
 import org.jbox2d.collision.shapes.*;
 import org.jbox2d.collision.shapes.Shape;
+import org.jbox2d.common.MathUtils;
+import org.jbox2d.common.TrigMode;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.common.XForm;
 import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.BufferedDebugDraw;
 import org.jbox2d.dynamics.ContactListener;
 import org.jbox2d.dynamics.World;
+import org.jbox2d.dynamics.WorldState;
 import org.jbox2d.dynamics.contacts.ContactPoint;
 import org.jbox2d.dynamics.contacts.ContactResult;
 import org.jbox2d.dynamics.joints.RevoluteJoint;
@@ -43,11 +47,6 @@ public class GameSingleThread {
      **/
     private World m_world;
 
-    /**
-     * Has this game reached failure conditions?
-     **/
-    private boolean isFailed = false;
-
     /**
      * Should enclose the entire area we want collision checked.
      **/
@@ -57,6 +56,13 @@ public class GameSingleThread {
     Body rFootBody, lFootBody, rCalfBody, lCalfBody, rThighBody, lThighBody, torsoBody, rUArmBody, lUArmBody,
             rLArmBody, lLArmBody, headBody, trackBody;
 
+    /**
+     * Bodies drawn as polygons by {@link #getDebugVertices(VertHolder)}, in output order.
+     */
+    private Body[] debugBodies;
+
+    private final Vec2 debugVert = new Vec2();
+
     /* Joint Definitions */
     public RevoluteJointDef rHipJDef, lHipJDef, rKneeJDef, lKneeJDef, rAnkleJDef, lAnkleJDef, rShoulderJDef,
             lShoulderJDef, rElbowJDef, lElbowJDef, neckJDef;
@@ -65,10 +71,21 @@ public class GameSingleThread {
     public RevoluteJoint rHipJ, lHipJ, rKneeJ, lKneeJ, rAnkleJ, lAnkleJ, rShoulderJ, lShoulderJ, rElbowJ, lElbowJ,
             neckJ;
 
+    /**
+     * The runner's bodies and joints. The fields above refer to the same objects.
+     */
+    private Runner runner;
+
     /**
      * Filters collisions. Prevents body parts from hitting other body parts.
      **/
-    private final int BODY_GROUP = -1;
+    private static final int BODY_GROUP = -1;
+
+    /**
+     * Collision categories used to keep runners sharing a world from hitting each other. The track keeps the
+     * default category.
+     */
+    static final int TRACK_CATEGORY = 0x0001, RUNNER_CATEGORY = 0x0002;
 
     /**
      * Gravity vector. Positive since -y is up.
@@ -155,13 +172,36 @@ public class GameSingleThread {
 
     private static boolean noFeet = false;
 
+    /**
+     * Sin/cos backend for new worlds. See {@link #setTrigMode(TrigMode)}.
+     */
+    private TrigMode trigMode = MathUtils.DEFAULT_TRIG_MODE;
+
+    /**
+     * Torso distance from the origin which triggers an origin shift, or 0 for never. See
+     * {@link #setOriginShiftThreshold(float)}.
+     */
+    private float originShiftThreshold = 0;
+
+    /**
+     * Whether new worlds get seeded terrain instead of the flat track, and its settings. See
+     * {@link #setTerrain(long, float)}.
+     */
+    private boolean useTerrain = false;
+    private long terrainSeed;
+    private float terrainRoughness;
+
+    /**
+     * Terrain of the current world, or null if it has the flat track.
+     */
+    private Terrain terrain;
+
     public GameSingleThread() {
         if (!hasOneTimeInitializationHappened) {
             oneTimeSetup();
             hasOneTimeInitializationHappened = true;
         }
         makeNewWorld();
-        getWorld().setContactListener(new CollisionListener());
     }
 
     /**
@@ -322,11 +362,11 @@ public class GameSingleThread {
     }
 
     public void makeNewWorld() {
-        isFailed = false;
         timestepsSimulated = 0;
 
         /* World Settings */
         m_world = new World(worldAABB, gravity, true);
+        m_world.setTrigMode(trigMode);
         m_world.setWarmStarting(true);
         m_world.setPositionCorrection(true);
         m_world.setContinuousPhysics(true);
@@ -335,198 +375,62 @@ public class GameSingleThread {
         // affect us if we are trying to match the single and multithreaded version.
 
         /* TRACK */
-        trackBody = m_world.createBody(trackDef);
-        trackBody.createShape(trackShape);
-
-        /* FEET */
-        if (!noFeet) {
-            rFootBody = getWorld().createBody(rFootDef);
-            lFootBody = getWorld().createBody(lFootDef);
-            rFootBody.createShape(rFootShape);
-            lFootBody.createShape(lFootShape);
+        if (useTerrain) {
+            trackBody = null;
+            terrain = new Terrain(m_world, terrainSeed, terrainRoughness);
+            terrain.update(torsoPosX);
+        } else {
+            terrain = null;
+            trackBody = m_world.createBody(trackDef);
+            trackBody.createShape(trackShape);
         }
 
-        /* CALVES */
-        rCalfBody = getWorld().createBody(rCalfDef);
-        lCalfBody = getWorld().createBody(lCalfDef);
-        rCalfBody.createShape(rCalfShape);
-        lCalfBody.createShape(lCalfShape);
-
-        /* THIGHS */
-        rThighBody = getWorld().createBody(rThighDef);
-        lThighBody = getWorld().createBody(lThighDef);
-        rThighBody.createShape(rThighShape);
-        lThighBody.createShape(lThighShape);
-
-        /* UPPER ARMS */
-        rUArmBody = getWorld().createBody(rUArmDef);
-        lUArmBody = getWorld().createBody(lUArmDef);
-        rUArmBody.createShape(rUArmShape);
-        lUArmBody.createShape(lUArmShape);
-
-        /* LOWER ARMS */
-        rLArmBody = getWorld().createBody(rLArmDef);
-        lLArmBody = getWorld().createBody(lLArmDef);
-        rLArmBody.createShape(rLArmShape);
-        lLArmBody.createShape(lLArmShape);
-
-        /* TORSO */
-        torsoBody = getWorld().createBody(torsoDef);
-        torsoBody.createShape(torsoShape);
-
-        /* HEAD */
-        headBody = getWorld().createBody(headDef);
-        headBody.createShape(headShape);
-
-
-        /*
-         *  Joints
-         */
+        runner = buildRunner(m_world, BODY_GROUP, true);
+        m_world.setContactListener(new CollisionListener());
+        rFootBody = runner.rFootBody;
+        lFootBody = runner.lFootBody;
+        rCalfBody = runner.rCalfBody;
+        lCalfBody = runner.lCalfBody;
+        rThighBody = runner.rThighBody;
+        lThighBody = runner.lThighBody;
+        torsoBody = runner.torsoBody;
+        rUArmBody = runner.rUArmBody;
+        lUArmBody = runner.lUArmBody;
+        rLArmBody = runner.rLArmBody;
+        lLArmBody = runner.lLArmBody;
+        headBody = runner.headBody;
 
         if (!noFeet) {
-            //Right Ankle:
-
-            rAnkleJDef = new RevoluteJointDef();
-            rAnkleJDef.initialize(rFootBody, rCalfBody, rAnklePos); //Body1, body2, anchor in world coords
-            rAnkleJDef.enableLimit = true;
-            rAnkleJDef.upperAngle = 0.5f;
-            rAnkleJDef.lowerAngle = -0.5f;
-            rAnkleJDef.enableMotor = false;
-            rAnkleJDef.maxMotorTorque = 2000f;
-            rAnkleJDef.motorSpeed = 0f; // Speed1,2: -2,2
-            rAnkleJDef.collideConnected = false;
-
-            rAnkleJ = (RevoluteJoint) getWorld().createJoint(rAnkleJDef);
-
-            //Left Ankle:
-            lAnkleJDef = new RevoluteJointDef();
-            lAnkleJDef.initialize(lFootBody, lCalfBody, lAnklePos);
-            lAnkleJDef.enableLimit = true;
-            lAnkleJDef.upperAngle = 0.5f;
-            lAnkleJDef.lowerAngle = -0.5f;
-            lAnkleJDef.enableMotor = false;
-            lAnkleJDef.maxMotorTorque = 2000f;
-            lAnkleJDef.motorSpeed = 0f;// Speed1,2: 2,-2
-            lAnkleJDef.collideConnected = false;
-
-            lAnkleJ = (RevoluteJoint) getWorld().createJoint(lAnkleJDef);
+            debugBodies = new Body[]{rFootBody, lFootBody, rCalfBody, lCalfBody, rThighBody, lThighBody, torsoBody,
+                    rUArmBody, lUArmBody, rLArmBody, lLArmBody};
+        } else {
+            debugBodies = new Body[]{rCalfBody, lCalfBody, rThighBody, lThighBody, torsoBody, rUArmBody,
+                    lUArmBody, rLArmBody, lLArmBody};
         }
 
-        /* Knee joints */
-        //Right Knee:
-        rKneeJDef = new RevoluteJointDef();
-        rKneeJDef.initialize(rCalfBody, rThighBody, rKneePos);
-        rKneeJDef.enableLimit = true;
-        rKneeJDef.upperAngle = 0.3f;
-        rKneeJDef.lowerAngle = -1.3f;
-        rKneeJDef.enableMotor = true;//?
-        rKneeJDef.maxMotorTorque = 3000f;
-        rKneeJDef.motorSpeed = 0f; //Speeds 1,2: -2.5,2.5
-        rKneeJDef.collideConnected = false;
-
-        rKneeJ = (RevoluteJoint) getWorld().createJoint(rKneeJDef);
-
-        //Left Knee:
-        lKneeJDef = new RevoluteJointDef();
-        lKneeJDef.initialize(lCalfBody, lThighBody, lKneePos);
-        lKneeJDef.enableLimit = true;
-        lKneeJDef.upperAngle = 0f;
-        lKneeJDef.lowerAngle = -1.6f;
-        lKneeJDef.enableMotor = true;
-        lKneeJDef.maxMotorTorque = 3000f;
-        lKneeJDef.motorSpeed = 0f;// Speed1,2: -2.5,2.5
-        lKneeJDef.collideConnected = false;
-
-        lKneeJ = (RevoluteJoint) getWorld().createJoint(lKneeJDef);
-
-        /* Hip Joints */
-
-        //Right Hip:
-        rHipJDef = new RevoluteJointDef();
-        rHipJDef.initialize(rThighBody, torsoBody, rHipPos);
-        rHipJDef.enableLimit = true;
-        rHipJDef.upperAngle = 0.7f;
-        rHipJDef.lowerAngle = -1.3f;
-        rHipJDef.enableMotor = true;
-        rHipJDef.motorSpeed = 0f;
-        rHipJDef.maxMotorTorque = 6000f;
-        rHipJDef.collideConnected = false;
-        rHipJ = (RevoluteJoint) getWorld().createJoint(rHipJDef);
-
-        //Left Hip:
-        lHipJDef = new RevoluteJointDef();
-        lHipJDef.initialize(lThighBody, torsoBody, lHipPos);
-        lHipJDef.enableLimit = true;
-        lHipJDef.upperAngle = 0.5f;
-        lHipJDef.lowerAngle = -1.5f;
-        lHipJDef.enableMotor = true;
-        lHipJDef.motorSpeed = 0f;
-        lHipJDef.maxMotorTorque = 6000f;
-        lHipJDef.collideConnected = false;
-        lHipJ = (RevoluteJoint) getWorld().createJoint(lHipJDef);
-
-        //Neck Joint
-        neckJDef = new RevoluteJointDef();
-        neckJDef.initialize(headBody, torsoBody, neckPos);
-        neckJDef.enableLimit = true;
-        neckJDef.upperAngle = 0f;
-        neckJDef.lowerAngle = -0.5f;
-        neckJDef.enableMotor = true;
-        neckJDef.maxMotorTorque = 1000f; //Arbitrarily large to allow for torque control.
-        neckJDef.motorSpeed = 0f;
-        neckJDef.collideConnected = false;
-        neckJ = (RevoluteJoint) getWorld().createJoint(neckJDef);
-
-        Body rUFake = getWorld().createBody(rUArmDef);
-        rUFake.createShape(rUArmShape);
-        /* Arm Joints */
-        //Right shoulder
-        rShoulderJDef = new RevoluteJointDef();
-        rShoulderJDef.initialize(rUArmBody, torsoBody, rShoulderPos);
-        rShoulderJDef.enableLimit = true;
-        rShoulderJDef.upperAngle = 1.5f;
-        rShoulderJDef.lowerAngle = -0.5f;
-        rShoulderJDef.enableMotor = true;
-        rShoulderJDef.maxMotorTorque = 1000f;
-        rShoulderJDef.motorSpeed = 0f; // Speed 1,2: 2,-2
-        rShoulderJDef.collideConnected = false;
-        rShoulderJ = (RevoluteJoint) getWorld().createJoint(rShoulderJDef);
-
-        //Left shoulder
-        lShoulderJDef = new RevoluteJointDef();
-        lShoulderJDef.initialize(lUArmBody, torsoBody, lShoulderPos);
-        lShoulderJDef.enableLimit = true;
-        lShoulderJDef.upperAngle = 0f;
-        lShoulderJDef.lowerAngle = -2f;
-        lShoulderJDef.enableMotor = true;
-        lShoulderJDef.maxMotorTorque = 1000f;
-        lShoulderJDef.motorSpeed = 0f; // Speed 1,2: -2,2
-        lShoulderJDef.collideConnected = false;
-        lShoulderJ = (RevoluteJoint) getWorld().createJoint(lShoulderJDef);
-
-        //Right elbow
-        rElbowJDef = new RevoluteJointDef();
-        rElbowJDef.initialize(rLArmBody, rUArmBody, rElbowPos);
-        rElbowJDef.enableLimit = true;
-        rElbowJDef.upperAngle = 0.5f;
-        rElbowJDef.lowerAngle = -0.1f;
-        rElbowJDef.enableMotor = true;
-        rElbowJDef.maxMotorTorque = 0f;
-        rElbowJDef.motorSpeed = 10f; //TODO: investigate further
-        rElbowJDef.collideConnected = false;
-        rElbowJ = (RevoluteJoint) getWorld().createJoint(rElbowJDef);
-
-        //Left elbow
-        lElbowJDef = new RevoluteJointDef();
-        lElbowJDef.initialize(lLArmBody, lUArmBody, lElbowPos);
-        lElbowJDef.enableLimit = true;
-        lElbowJDef.upperAngle = 0.5f;
-        lElbowJDef.lowerAngle = -0.1f;
-        lElbowJDef.enableMotor = true;
-        lElbowJDef.maxMotorTorque = 0f;
-        lElbowJDef.motorSpeed = 10f; //TODO: investigate further
-        lElbowJDef.collideConnected = false;
-        lElbowJ = (RevoluteJoint) getWorld().createJoint(lElbowJDef);
+        rHipJDef = runner.rHipJDef;
+        lHipJDef = runner.lHipJDef;
+        rKneeJDef = runner.rKneeJDef;
+        lKneeJDef = runner.lKneeJDef;
+        rAnkleJDef = runner.rAnkleJDef;
+        lAnkleJDef = runner.lAnkleJDef;
+        rShoulderJDef = runner.rShoulderJDef;
+        lShoulderJDef = runner.lShoulderJDef;
+        rElbowJDef = runner.rElbowJDef;
+        lElbowJDef = runner.lElbowJDef;
+        neckJDef = runner.neckJDef;
+
+        rHipJ = runner.rHipJ;
+        lHipJ = runner.lHipJ;
+        rKneeJ = runner.rKneeJ;
+        lKneeJ = runner.lKneeJ;
+        rAnkleJ = runner.rAnkleJ;
+        lAnkleJ = runner.lAnkleJ;
+        rShoulderJ = runner.rShoulderJ;
+        lShoulderJ = runner.lShoulderJ;
+        rElbowJ = runner.rElbowJ;
+        lElbowJ = runner.lElbowJ;
+        neckJ = runner.neckJ;
 
         //My current understanding is that the shapes never change. Only the transforms. Hence, this is now static and we only capture the states once.
         if (shapeList[0] == null) {
@@ -546,6 +450,248 @@ public class GameSingleThread {
         }
     }
 
+    /**
+     * Create the bodies and joints of one runner in an existing world. The track is not included. Several runners may
+     * share a world as long as each gets its own group index.
+     *
+     * @param world               World to add the runner to.
+     * @param groupIndex          Negative collision group for all of the runner's shapes. Keeps the runner from
+     *                            colliding with itself.
+     * @param collideWithRunners  Whether this runner collides with runners in other groups. If false, it only
+     *                            collides with the track.
+     * @return The new runner.
+     */
+    static synchronized Runner buildRunner(World world, int groupIndex, boolean collideWithRunners) {
+        Runner r = new Runner(world, groupIndex, !noFeet);
+
+        // The shape definitions are shared, so point them at this runner's filter while building it.
+        setRunnerFilter(groupIndex, collideWithRunners ? 0x0001 : RUNNER_CATEGORY,
+                collideWithRunners ? 0xFFFF : TRACK_CATEGORY);
+        try {
+            /* FEET */
+            if (!noFeet) {
+                r.rFootBody = world.createBody(rFootDef);
+                r.lFootBody = world.createBody(lFootDef);
+                r.rFootBody.createShape(rFootShape);
+                r.lFootBody.createShape(lFootShape);
+            }
+
+            /* CALVES */
+            r.rCalfBody = world.createBody(rCalfDef);
+            r.lCalfBody = world.createBody(lCalfDef);
+            r.rCalfBody.createShape(rCalfShape);
+            r.lCalfBody.createShape(lCalfShape);
+
+            /* THIGHS */
+            r.rThighBody = world.createBody(rThighDef);
+            r.lThighBody = world.createBody(lThighDef);
+            r.rThighBody.createShape(rThighShape);
+            r.lThighBody.createShape(lThighShape);
+
+            /* UPPER ARMS */
+            r.rUArmBody = world.createBody(rUArmDef);
+            r.lUArmBody = world.createBody(lUArmDef);
+            r.rUArmBody.createShape(rUArmShape);
+            r.lUArmBody.createShape(lUArmShape);
+
+            /* LOWER ARMS */
+            r.rLArmBody = world.createBody(rLArmDef);
+            r.lLArmBody = world.createBody(lLArmDef);
+            r.rLArmBody.createShape(rLArmShape);
+            r.lLArmBody.createShape(lLArmShape);
+
+            /* TORSO */
+            r.torsoBody = world.createBody(torsoDef);
+            r.torsoBody.createShape(torsoShape);
+
+            /* HEAD */
+            r.headBody = world.createBody(headDef);
+            r.headBody.createShape(headShape);
+
+
+            /*
+             *  Joints
+             */
+
+            if (!noFeet) {
+                //Right Ankle:
+
+                r.rAnkleJDef = new RevoluteJointDef();
+                r.rAnkleJDef.initialize(r.rFootBody, r.rCalfBody, rAnklePos); //Body1, body2, anchor in world coords
+                r.rAnkleJDef.enableLimit = true;
+                r.rAnkleJDef.upperAngle = 0.5f;
+                r.rAnkleJDef.lowerAngle = -0.5f;
+                r.rAnkleJDef.enableMotor = false;
+                r.rAnkleJDef.maxMotorTorque = 2000f;
+                r.rAnkleJDef.motorSpeed = 0f; // Speed1,2: -2,2
+                r.rAnkleJDef.collideConnected = false;
+
+                r.rAnkleJ = (RevoluteJoint) world.createJoint(r.rAnkleJDef);
+
+                //Left Ankle:
+                r.lAnkleJDef = new RevoluteJointDef();
+                r.lAnkleJDef.initialize(r.lFootBody, r.lCalfBody, lAnklePos);
+                r.lAnkleJDef.enableLimit = true;
+                r.lAnkleJDef.upperAngle = 0.5f;
+                r.lAnkleJDef.lowerAngle = -0.5f;
+                r.lAnkleJDef.enableMotor = false;
+                r.lAnkleJDef.maxMotorTorque = 2000f;
+                r.lAnkleJDef.motorSpeed = 0f;// Speed1,2: 2,-2
+                r.lAnkleJDef.collideConnected = false;
+
+                r.lAnkleJ = (RevoluteJoint) world.createJoint(r.lAnkleJDef);
+            }
+
+            /* Knee joints */
+            //Right Knee:
+            r.rKneeJDef = new RevoluteJointDef();
+            r.rKneeJDef.initialize(r.rCalfBody, r.rThighBody, rKneePos);
+            r.rKneeJDef.enableLimit = true;
+            r.rKneeJDef.upperAngle = 0.3f;
+            r.rKneeJDef.lowerAngle = -1.3f;
+            r.rKneeJDef.enableMotor = true;//?
+            r.rKneeJDef.maxMotorTorque = 3000f;
+            r.rKneeJDef.motorSpeed = 0f; //Speeds 1,2: -2.5,2.5
+            r.rKneeJDef.collideConnected = false;
+
+            r.rKneeJ = (RevoluteJoint) world.createJoint(r.rKneeJDef);
+
+            //Left Knee:
+            r.lKneeJDef = new RevoluteJointDef();
+            r.lKneeJDef.initialize(r.lCalfBody, r.lThighBody, lKneePos);
+            r.lKneeJDef.enableLimit = true;
+            r.lKneeJDef.upperAngle = 0f;
+            r.lKneeJDef.lowerAngle = -1.6f;
+            r.lKneeJDef.enableMotor = true;
+            r.lKneeJDef.maxMotorTorque = 3000f;
+            r.lKneeJDef.motorSpeed = 0f;// Speed1,2: -2.5,2.5
+            r.lKneeJDef.collideConnected = false;
+
+            r.lKneeJ = (RevoluteJoint) world.createJoint(r.lKneeJDef);
+
+            /* Hip Joints */
+
+            //Right Hip:
+            r.rHipJDef = new RevoluteJointDef();
+            r.rHipJDef.initialize(r.rThighBody, r.torsoBody, rHipPos);
+            r.rHipJDef.enableLimit = true;
+            r.rHipJDef.upperAngle = 0.7f;
+            r.rHipJDef.lowerAngle = -1.3f;
+            r.rHipJDef.enableMotor = true;
+            r.rHipJDef.motorSpeed = 0f;
+            r.rHipJDef.maxMotorTorque = 6000f;
+            r.rHipJDef.collideConnected = false;
+            r.rHipJ = (RevoluteJoint) world.createJoint(r.rHipJDef);
+
+            //Left Hip:
+            r.lHipJDef = new RevoluteJointDef();
+            r.lHipJDef.initialize(r.lThighBody, r.torsoBody, lHipPos);
+            r.lHipJDef.enableLimit = true;
+            r.lHipJDef.upperAngle = 0.5f;
+            r.lHipJDef.lowerAngle = -1.5f;
+            r.lHipJDef.enableMotor = true;
+            r.lHipJDef.motorSpeed = 0f;
+            r.lHipJDef.maxMotorTorque = 6000f;
+            r.lHipJDef.collideConnected = false;
+            r.lHipJ = (RevoluteJoint) world.createJoint(r.lHipJDef);
+
+            //Neck Joint
+            r.neckJDef = new RevoluteJointDef();
+            r.neckJDef.initialize(r.headBody, r.torsoBody, neckPos);
+            r.neckJDef.enableLimit = true;
+            r.neckJDef.upperAngle = 0f;
+            r.neckJDef.lowerAngle = -0.5f;
+            r.neckJDef.enableMotor = true;
+            r.neckJDef.maxMotorTorque = 1000f; //Arbitrarily large to allow for torque control.
+            r.neckJDef.motorSpeed = 0f;
+            r.neckJDef.collideConnected = false;
+            r.neckJ = (RevoluteJoint) world.createJoint(r.neckJDef);
+
+            Body rUFake = world.createBody(rUArmDef);
+            rUFake.createShape(rUArmShape);
+            /* Arm Joints */
+            //Right shoulder
+            r.rShoulderJDef = new RevoluteJointDef();
+            r.rShoulderJDef.initialize(r.rUArmBody, r.torsoBody, rShoulderPos);
+            r.rShoulderJDef.enableLimit = true;
+            r.rShoulderJDef.upperAngle = 1.5f;
+            r.rShoulderJDef.lowerAngle = -0.5f;
+            r.rShoulderJDef.enableMotor = true;
+            r.rShoulderJDef.maxMotorTorque = 1000f;
+            r.rShoulderJDef.motorSpeed = 0f; // Speed 1,2: 2,-2
+            r.rShoulderJDef.collideConnected = false;
+            r.rShoulderJ = (RevoluteJoint) world.createJoint(r.rShoulderJDef);
+
+            //Left shoulder
+            r.lShoulderJDef = new RevoluteJointDef();
+            r.lShoulderJDef.initialize(r.lUArmBody, r.torsoBody, lShoulderPos);
+            r.lShoulderJDef.enableLimit = true;
+            r.lShoulderJDef.upperAngle = 0f;
+            r.lShoulderJDef.lowerAngle = -2f;
+            r.lShoulderJDef.enableMotor = true;
+            r.lShoulderJDef.maxMotorTorque = 1000f;
+            r.lShoulderJDef.motorSpeed = 0f; // Speed 1,2: -2,2
+            r.lShoulderJDef.collideConnected = false;
+            r.lShoulderJ = (RevoluteJoint) world.createJoint(r.lShoulderJDef);
+
+            //Right elbow
+            r.rElbowJDef = new RevoluteJointDef();
+            r.rElbowJDef.initialize(r.rLArmBody, r.rUArmBody, rElbowPos);
+            r.rElbowJDef.enableLimit = true;
+            r.rElbowJDef.upperAngle = 0.5f;
+            r.rElbowJDef.lowerAngle = -0.1f;
+            r.rElbowJDef.enableMotor = true;
+            r.rElbowJDef.maxMotorTorque = 0f;
+            r.rElbowJDef.motorSpeed = 10f; //TODO: investigate further
+            r.rElbowJDef.collideConnected = false;
+            r.rElbowJ = (RevoluteJoint) world.createJoint(r.rElbowJDef);
+
+            //Left elbow
+            r.lElbowJDef = new RevoluteJointDef();
+            r.lElbowJDef.initialize(r.lLArmBody, r.lUArmBody, lElbowPos);
+            r.lElbowJDef.enableLimit = true;
+            r.lElbowJDef.upperAngle = 0.5f;
+            r.lElbowJDef.lowerAngle = -0.1f;
+            r.lElbowJDef.enableMotor = true;
+            r.lElbowJDef.maxMotorTorque = 0f;
+            r.lElbowJDef.motorSpeed = 10f; //TODO: investigate further
+            r.lElbowJDef.collideConnected = false;
+            r.lElbowJ = (RevoluteJoint) world.createJoint(r.lElbowJDef);
+        } finally {
+            setRunnerFilter(BODY_GROUP, 0x0001, 0xFFFF);
+        }
+
+        // Tag each part so contact listeners can find the runner and part with one lookup.
+        int runnerIndex = -groupIndex - 1;
+        if (!noFeet) {
+            r.rFootBody.setTag(Runner.makeTag(runnerIndex, State.ObjectName.RFOOT));
+            r.lFootBody.setTag(Runner.makeTag(runnerIndex, State.ObjectName.LFOOT));
+        }
+        r.rCalfBody.setTag(Runner.makeTag(runnerIndex, State.ObjectName.RCALF));
+        r.lCalfBody.setTag(Runner.makeTag(runnerIndex, State.ObjectName.LCALF));
+        r.rThighBody.setTag(Runner.makeTag(runnerIndex, State.ObjectName.RTHIGH));
+        r.lThighBody.setTag(Runner.makeTag(runnerIndex, State.ObjectName.LTHIGH));
+        r.torsoBody.setTag(Runner.makeTag(runnerIndex, State.ObjectName.BODY));
+        r.rUArmBody.setTag(Runner.makeTag(runnerIndex, State.ObjectName.RUARM));
+        r.lUArmBody.setTag(Runner.makeTag(runnerIndex, State.ObjectName.LUARM));
+        r.rLArmBody.setTag(Runner.makeTag(runnerIndex, State.ObjectName.RLARM));
+        r.lLArmBody.setTag(Runner.makeTag(runnerIndex, State.ObjectName.LLARM));
+        r.headBody.setTag(Runner.makeTag(runnerIndex, State.ObjectName.HEAD));
+        return r;
+    }
+
+    /**
+     * Set the collision filter on every runner shape definition.
+     */
+    private static void setRunnerFilter(int groupIndex, int categoryBits, int maskBits) {
+        for (ShapeDef def : new ShapeDef[]{rFootShape, lFootShape, rCalfShape, lCalfShape, rThighShape, lThighShape,
+                torsoShape, rUArmShape, lUArmShape, rLArmShape, lLArmShape, headShape}) {
+            def.filter.groupIndex = groupIndex;
+            def.filter.categoryBits = categoryBits;
+            def.filter.maskBits = maskBits;
+        }
+    }
+
     private void setMaxMotorTorque(float torqueLimitMultiplier) {
         if (!noFeet) {
             rAnkleJ.setMaxMotorTorque(2000f * torqueLimitMultiplier);
@@ -578,131 +724,79 @@ public class GameSingleThread {
      * Step the game forward 1 timestep with the specified keys pressed.
      **/
     public void stepGame(boolean q, boolean w, boolean o, boolean p) {
-        /* Involuntary Couplings (no QWOP presses) */
-
-        //Neck spring torque
-        float NeckTorque = -neckStiff * neckJ.getJointAngle() + 0 * neckDamp * neckJ.getJointSpeed();
-        NeckTorque = NeckTorque + 0 * 400f * (neckJ.getJointAngle() + 0.2f); //This bizarre term is probably a roundabout way of adjust equilibrium position.
-
-        //Elbow spring torque
-        float RElbowTorque = -rElbowStiff * rElbowJ.getJointAngle() + 0 * rElbowDamp * rElbowJ.getJointSpeed();
-        float LElbowTorque = -lElbowStiff * lElbowJ.getJointAngle() + 0 * lElbowDamp * lElbowJ.getJointSpeed();
-
-        //For now, using motors with high speed settings and torque limits to simulate springs. I don't know a better way for now.
-
-        neckJ.m_motorSpeed = (1000f * Math.signum(NeckTorque)); //If torque is negative, make motor speed negative.
-        rElbowJ.m_motorSpeed = (1000f * Math.signum(RElbowTorque));
-        lElbowJ.m_motorSpeed = (1000f * Math.signum(LElbowTorque));
-
-        neckJ.m_maxMotorTorque = (Math.abs(NeckTorque));
-        rElbowJ.m_maxMotorTorque = (Math.abs(RElbowTorque));
-        lElbowJ.m_maxMotorTorque = (Math.abs(LElbowTorque));
-
-        /* QW Press Stuff */
-        //See spreadsheet for complete rules and priority explanations.
-        if (q) {
-            //Set speed 1 for hips:
-            lHipJ.m_motorSpeed = (lHipSpeed2);
-            rHipJ.m_motorSpeed = (rHipSpeed2);
+        runner.applyKeys(q, w, o, p);
 
-            //Set speed 1 for shoulders:
-            lShoulderJ.m_motorSpeed = (lShoulderSpeed2);
-            rShoulderJ.m_motorSpeed = (rShoulderSpeed2);
-
-        } else if (w) {
-            //Set speed 2 for hips:
-            lHipJ.m_motorSpeed = (lHipSpeed1);
-            rHipJ.m_motorSpeed = (rHipSpeed1);
+        getWorld().step(timestep, physIterations);
 
-            //set speed 2 for shoulders:
-            lShoulderJ.m_motorSpeed = (lShoulderSpeed1);
-            rShoulderJ.m_motorSpeed = (rShoulderSpeed1);
 
-        } else {
-            //Set hip and ankle speeds to 0:
-            lHipJ.m_motorSpeed = (0f);
-            rHipJ.m_motorSpeed = (0f);
+        // Extra fail conditions besides contacts.
+        runner.checkTorsoAngle();
 
-            lShoulderJ.m_motorSpeed = (0f);
-            rShoulderJ.m_motorSpeed = (0f);
+        if (originShiftThreshold > 0) {
+            recentreOrigin();
         }
-
-        //Ankle/Hip Coupling -+ 0*Requires either Q or W pressed.
-        if (q || w && !noFeet) {
-            //Get world ankle positions (using foot and torso anchors -+ 0
-            Vec2 RAnkleCur = rAnkleJ.getAnchor1();
-            Vec2 LAnkleCur = lAnkleJ.getAnchor1();
-
-            Vec2 RHipCur = rHipJ.getAnchor1();
-
-
-            // if right ankle joint is behind the right hip jiont
-            // Set ankle motor speed to 1;
-            // else speed 2
-            if (RAnkleCur.x < RHipCur.x) {
-                rAnkleJ.m_motorSpeed = (rAnkleSpeed2);
-            } else {
-                rAnkleJ.m_motorSpeed = (rAnkleSpeed1);
-            }
-
-
-            // if left ankle joint is behind RIGHT hip joint (weird it's the right one here too)
-            // Set its motor speed to 1;
-            // else speed 2;
-            if (LAnkleCur.x < RHipCur.x) {
-                lAnkleJ.m_motorSpeed = (lAnkleSpeed2);
-            } else {
-                lAnkleJ.m_motorSpeed = (lAnkleSpeed1);
-            }
-
+        if (terrain != null) {
+            terrain.update(torsoBody.getMemberPosition().x + m_world.getOriginOffset().x);
         }
 
-        /* OP Keypress Stuff */
-        if (o) {
-            //Set speed 1 for knees
-            // set l hip limits(-1 1)
-            //set right hip limits (-1.3,0.7)
-            rKneeJ.m_motorSpeed = (rKneeSpeed2);
-            lKneeJ.m_motorSpeed = (lKneeSpeed2);
-
-            rHipJ.m_lowerAngle = (oRHipLimLo);
-            rHipJ.m_upperAngle = (oRHipLimHi);
-
-            lHipJ.m_lowerAngle = (oLHipLimLo);
-            lHipJ.m_upperAngle = (oLHipLimHi);
-
-        } else if (p) {
-            //Set speed 2 for knees
-            // set L hip limits(-1.5,0.5)
-            // set R hip limits(-0.8,1.2)
-
-            rKneeJ.m_motorSpeed = (rKneeSpeed1);
-            lKneeJ.m_motorSpeed = (lKneeSpeed1);
-
-            rHipJ.m_lowerAngle = (pRHipLimLo);
-            rHipJ.m_upperAngle = (pRHipLimHi);
-            lHipJ.m_lowerAngle = pLHipLimLo;
-            lHipJ.m_upperAngle = pLHipLimHi;
-
-        } else {
+        timestepsSimulated++;
+    }
 
-            // Set knee speeds to 0
-            //Joint limits not changed!!
-            rKneeJ.m_motorSpeed = (0f);
-            lKneeJ.m_motorSpeed = (0f);
+    /**
+     * Move the world origin to the torso once it is too far away. The track is uniform along x, so it is put back
+     * under the runner instead of being shifted away with everything else.
+     */
+    private void recentreOrigin() {
+        float torsoX = torsoBody.getMemberPosition().x;
+        if (Math.abs(torsoX) > originShiftThreshold) {
+            m_world.shiftOrigin(new Vec2((float) Math.floor(torsoX), 0));
+            if (trackBody != null) trackBody.setXForm(trackDef.position, 0);
         }
+    }
 
+    /**
+     * Run on endless seeded terrain instead of the flat track, from the next {@link #makeNewWorld()}. Ground is created
+     * ahead of the runner and destroyed behind it as it moves.
+     *
+     * @param seed      Seed for the ground shape. The same seed always gives the same ground.
+     * @param roughness Largest height of bumps and dips. 0 gives flat ground.
+     * @see Terrain
+     */
+    public void setTerrain(long seed, float roughness) {
+        if (roughness < 0)
+            throw new IllegalArgumentException("Roughness must not be negative. Given: " + roughness);
+        useTerrain = true;
+        terrainSeed = seed;
+        terrainRoughness = roughness;
+    }
 
-        getWorld().step(timestep, physIterations);
-
+    /**
+     * Go back to the flat track from the next {@link #makeNewWorld()}.
+     */
+    public void setFlatTrack() {
+        useTerrain = false;
+    }
 
-        // Extra fail conditions besides contacts.
-        float angle = torsoBody.getAngle();
-        if (angle > torsoAngUpper || angle < torsoAngLower) { // Fail if torso angles get too far out of whack.
-            isFailed = true;
-        }
+    /**
+     * Get the terrain of the current world, or null if it has the flat track.
+     */
+    public Terrain getTerrain() {
+        return terrain;
+    }
 
-        timestepsSimulated++;
+    /**
+     * Keep the runner near the world origin. Once the torso gets further than the threshold from the origin in x,
+     * the origin is moved to the torso and the track recentred, so runs are limited by neither the world AABB nor
+     * float precision. States and debug vertices still report positions from the original origin. Off (0) by
+     * default since each shift rounds positions slightly.
+     *
+     * @param threshold Distance in x which triggers a shift, at least 1, or 0 to never shift. Shifts are whole units,
+     *                  so a smaller threshold would shift by 0 every step while the torso is within 1 of the origin.
+     */
+    public void setOriginShiftThreshold(float threshold) {
+        if (threshold != 0 && !(threshold >= 1))
+            throw new IllegalArgumentException("Threshold must be 0 or at least 1. Given: " + threshold);
+        originShiftThreshold = threshold;
     }
 
     /**
@@ -723,44 +817,37 @@ public class GameSingleThread {
      * Get the current full state of the runner.
      */
     public synchronized State getCurrentState() {
-        return new State(
-                getCurrentBodyState(torsoBody),
-                getCurrentBodyState(headBody),
-                getCurrentBodyState(rThighBody),
-                getCurrentBodyState(lThighBody),
-                getCurrentBodyState(rCalfBody),
-                getCurrentBodyState(lCalfBody),
-                noFeet ? new StateVariable(0, 0, 0, 0, 0, 0) : getCurrentBodyState(rFootBody),
-                noFeet ? new StateVariable(0, 0, 0, 0, 0, 0) : getCurrentBodyState(lFootBody),
-                getCurrentBodyState(rUArmBody),
-                getCurrentBodyState(lUArmBody),
-                getCurrentBodyState(rLArmBody),
-                getCurrentBodyState(lLArmBody),
-                getFailureStatus());
-    }
-
-    /**
-     * Get a new StateVariable for a given body.
-     */
-    private StateVariable getCurrentBodyState(Body body) {
+        return runner.getCurrentState(getFailureStatus());
+    }
 
-        Vec2 pos = body.getPosition();
-        float x = pos.x;
-        float y = pos.y;
-        float th = body.getAngle();
+    /**
+     * Save the world and runner as they are now, so {@link #restoreState(SavedState)} can return to this point without
+     * replaying the actions which led here. Not supported with terrain, which adds and removes ground as it goes.
+     */
+    public SavedState saveState() {
+        if (terrain != null)
+            throw new UnsupportedOperationException("Can't save the state of a game with terrain.");
+        return new SavedState(m_world.saveState(), runner.getFailureStatus(), runner.isRightFootGrounded(),
+                runner.isLeftFootGrounded());
+    }
 
-        Vec2 vel = body.getLinearVelocity();
-        float dx = vel.x;
-        float dy = vel.y;
-        float dth = body.getAngularVelocity();
-        return new StateVariable(x, y, th, dx, dy, dth);
+    /**
+     * Return to a state saved by {@link #saveState()}, from this game or another. The world must have been built the
+     * same way as the saved one, i.e. with the same foot and track settings. Stepping on gives exactly the states that
+     * stepping on from the saved game would.
+     */
+    public void restoreState(SavedState state) {
+        if (terrain != null)
+            throw new UnsupportedOperationException("Can't restore the state of a game with terrain.");
+        m_world.restoreState(state.world);
+        runner.setStatus(state.failed, state.rightFootDown, state.leftFootDown);
     }
 
     /**
      * Is this state in failure?
      **/
     public boolean getFailureStatus() {
-        return isFailed;
+        return runner.getFailureStatus();
     }
 
     /**
@@ -788,6 +875,14 @@ public class GameSingleThread {
         noFeet = usePointFeet;
     }
 
+    /**
+     * Choose the sin/cos backend for body rotations. Takes effect on the next {@link #makeNewWorld()}, since switching
+     * part way through a run would change its trajectory.
+     */
+    public void setTrigMode(TrigMode mode) {
+        trigMode = mode;
+    }
+
     public void setBodyInertiaMultiplier(float multiplier) {
         MassData massData = new MassData();
         massData.mass = torsoMassData.mass;
@@ -819,40 +914,87 @@ public class GameSingleThread {
      * This is primarily for drawing using external tools, e.g. in MATLAB.
      **/
     public VertHolder getDebugVertices() {
+        return getDebugVertices(new VertHolder());
+    }
 
-        VertHolder vertHolder = new VertHolder();
-
-        vertHolder.groundHeight = XForm.mul(trackBody.getXForm(), trackShape.vertices.get(0)).y; // Never changes.
-        vertHolder.torsoX = torsoBody.getPosition().x;
-
-        Body[] bodies;
-        if (!noFeet) {
-            bodies = new Body[]{rFootBody, lFootBody, rCalfBody, lCalfBody, rThighBody, lThighBody, torsoBody, rUArmBody,
-                    lUArmBody, rLArmBody, lLArmBody};
+    /**
+     * Get vertices for debug drawing, reusing an existing holder. Nothing is allocated.
+     *
+     * @param vertHolder Holder to fill, e.g. from a previous call.
+     * @return The filled holder.
+     * @see #getDebugVertices()
+     **/
+    public VertHolder getDebugVertices(VertHolder vertHolder) {
+        // Report positions from the original origin, whatever shifts have happened.
+        Vec2 offset = m_world.getOriginOffset();
+        if (trackBody != null) {
+            XForm.mulToOut(trackBody.getMemberXForm(), trackShape.vertices.get(0), debugVert);
+            vertHolder.groundHeight = debugVert.y + offset.y; // Never changes.
         } else {
-            bodies = new Body[]{rCalfBody, lCalfBody, rThighBody, lThighBody, torsoBody, rUArmBody,
-                    lUArmBody, rLArmBody, lLArmBody};
+            vertHolder.groundHeight = Terrain.baseHeight - terrain.getHeight(torsoBody.getMemberPosition().x + offset.x);
         }
+        vertHolder.torsoX = torsoBody.getMemberPosition().x + offset.x;
 
-
+        Body[] bodies = debugBodies;
         for (int i = 0; i < bodies.length; i++) {
-            XForm xf = bodies[i].getXForm();
+            XForm xf = bodies[i].getMemberXForm();
             PolygonShape shape = (PolygonShape) bodies[i].getShapeList();
             Vec2[] shapeVerts = shape.m_vertices;
             for (int j = 0; j < shapeVerts.length; j++) {
-                Vec2 vert = XForm.mul(xf, shapeVerts[j]);
-                vertHolder.bodyVerts[i][2 * j] = vert.x;
-                vertHolder.bodyVerts[i][2 * j + 1] = vert.y;
+                XForm.mulToOut(xf, shapeVerts[j], debugVert);
+                vertHolder.bodyVerts[i][2 * j] = debugVert.x + offset.x;
+                vertHolder.bodyVerts[i][2 * j + 1] = debugVert.y + offset.y;
             }
         }
 
-        vertHolder.headLocAndRadius[0] = headBody.getPosition().x;
-        vertHolder.headLocAndRadius[1] = headBody.getPosition().y;
+        Vec2 headPos = headBody.getMemberPosition();
+        vertHolder.headLocAndRadius[0] = headPos.x + offset.x;
+        vertHolder.headLocAndRadius[1] = headPos.y + offset.y;
         vertHolder.headLocAndRadius[2] = headR;
 
         return vertHolder;
     }
 
+    /**
+     * Record everything in the world (shapes, joints, AABBs, etc., as chosen by the draw's flags) into a headless
+     * debug draw, replacing the frame it held. Positions are from the original origin, as in
+     * {@link #getDebugVertices(VertHolder)}. Nothing is allocated once the draw's arrays are big enough, so one draw can
+     * be reused every frame, e.g. by a canvas or video renderer.
+     *
+     * @param draw Draw to record into, with flags set, e.g. DebugDraw.e_shapeBit | DebugDraw.e_jointBit.
+     * @return The same draw.
+     */
+    public BufferedDebugDraw drawDebugFrame(BufferedDebugDraw draw) {
+        draw.clear();
+        Vec2 offset = m_world.getOriginOffset();
+        draw.setOffset(offset.x, offset.y);
+        m_world.drawDebugData(draw);
+        return draw;
+    }
+
+    /**
+     * A game saved by {@link #saveState()}. Never changes once saved, so it may be restored any number of times, into
+     * any number of games.
+     */
+    public static final class SavedState {
+        private final WorldState world;
+        private final boolean failed, rightFootDown, leftFootDown;
+
+        private SavedState(WorldState world, boolean failed, boolean rightFootDown, boolean leftFootDown) {
+            this.world = world;
+            this.failed = failed;
+            this.rightFootDown = rightFootDown;
+            this.leftFootDown = leftFootDown;
+        }
+
+        /**
+         * Whether the runner had fallen.
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+    }
+
     @SuppressWarnings("WeakerAccess")
     class VertHolder {
         public float torsoX;
@@ -862,48 +1004,18 @@ public class GameSingleThread {
     }
 
     /**
-     * Listens for collisions involving lower arms and head (implicitly with the ground)
+     * Listens for collisions involving lower arms and head (implicitly with the ground). Each body's tag says which
+     * part it is, so the runner resolves the event with a single table lookup.
      **/
     private class CollisionListener implements ContactListener {
 
-        /**
-         * Keep track of whether the right foot is on the ground.
-         **/
-        private boolean rFootDown = false;
-
-        /**
-         * Keep track of whether the left foot is on the ground.
-         **/
-        private boolean lFootDown = false;
-
         CollisionListener() {
         }
 
         @Override
         public void add(ContactPoint point) {
-            Shape fixtureA = point.shape1;
-            Shape fixtureB = point.shape2;
-
-            //Failure when head, arms, or thighs hit the ground.
-            if (fixtureA.m_body.equals(headBody) ||
-                    fixtureB.m_body.equals(headBody) ||
-                    fixtureA.m_body.equals(lLArmBody) ||
-                    fixtureB.m_body.equals(lLArmBody) ||
-                    fixtureA.m_body.equals(rLArmBody) ||
-                    fixtureB.m_body.equals(rLArmBody)) {
-                isFailed = true;
-            } else if (fixtureA.m_body.equals(lThighBody) ||
-                    fixtureB.m_body.equals(lThighBody) ||
-                    fixtureA.m_body.equals(rThighBody) ||
-                    fixtureB.m_body.equals(rThighBody)) {
-
-                isFailed = true;
-            } else if (!noFeet && fixtureA.m_body.equals(rFootBody) || fixtureB.m_body.equals(rFootBody)) {//Track when
-                // each foot hits the ground.
-                rFootDown = true;
-            } else if (!noFeet && fixtureA.m_body.equals(lFootBody) || fixtureB.m_body.equals(lFootBody)) {
-                lFootDown = true;
-            }
+            runner.handleContact(point.shape1.m_body.m_tag, true);
+            runner.handleContact(point.shape2.m_body.m_tag, true);
         }
 
         @Override
@@ -913,33 +1025,12 @@ public class GameSingleThread {
         @Override
         public void remove(ContactPoint point) {
             //Track when each foot leaves the ground.
-            Shape fixtureA = point.shape1;
-            Shape fixtureB = point.shape2;
-            if (!noFeet && fixtureA.m_body.equals(rFootBody) || fixtureB.m_body.equals(rFootBody)) {
-                rFootDown = false;
-            } else if (!noFeet && fixtureA.m_body.equals(lFootBody) || fixtureB.m_body.equals(lFootBody)) {
-                lFootDown = false;
-            }
+            runner.handleContact(point.shape1.m_body.m_tag, false);
+            runner.handleContact(point.shape2.m_body.m_tag, false);
         }
 
         @Override
         public void result(ContactResult point) {
         }
-
-        /**
-         * Check if the right foot is touching the ground.
-         **/
-        @SuppressWarnings("unused")
-        public boolean isRightFootGrounded() {
-            return rFootDown;
-        }
-
-        /**
-         * Check if the left foot is touching the ground.
-         **/
-        @SuppressWarnings("unused")
-        public boolean isLeftFootGrounded() {
-            return lFootDown;
-        }
     }
 }
@@ -0,0 +1,409 @@
+package game;
+
+import org.jbox2d.collision.shapes.Shape;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.World;
+import org.jbox2d.dynamics.joints.RevoluteJoint;
+import org.jbox2d.dynamics.joints.RevoluteJointDef;
+
+import static game.GameConstants.*;
+
+/**
+ * The bodies and joints of a single QWOP runner, along with the keypress to motor rules which drive them. A runner
+ * lives in a {@link World} which it may share with a track and other runners. Build one with
+ * {@link GameSingleThread#buildRunner(World, int, boolean)}.
+ *
+ * @author matt
+ * @see GameSingleThread
+ * @see GameMultiRunner
+ */
+public class Runner {
+
+    /**
+     * Body tags: the low bits hold the part id ({@link State.ObjectName} ordinal + 1, 0 for untagged bodies such as
+     * the track) and the bits above {@link #RUNNER_SHIFT} hold the runner index.
+     */
+    static final int PART_MASK = 0xFF, RUNNER_SHIFT = 8;
+
+    /**
+     * What a contact on each part means. Indexed by part id.
+     */
+    private static final byte CONTACT_IGNORED = 0, CONTACT_FAILS = 1, CONTACT_RFOOT = 2, CONTACT_LFOOT = 3;
+    private static final byte[] contactEvents = new byte[State.ObjectName.values().length + 1];
+
+    static {
+        // Failure when head, arms, or thighs hit the ground.
+        contactEvents[partId(State.ObjectName.HEAD)] = CONTACT_FAILS;
+        contactEvents[partId(State.ObjectName.LLARM)] = CONTACT_FAILS;
+        contactEvents[partId(State.ObjectName.RLARM)] = CONTACT_FAILS;
+        contactEvents[partId(State.ObjectName.LTHIGH)] = CONTACT_FAILS;
+        contactEvents[partId(State.ObjectName.RTHIGH)] = CONTACT_FAILS;
+        // Track when each foot touches and leaves the ground.
+        contactEvents[partId(State.ObjectName.RFOOT)] = CONTACT_RFOOT;
+        contactEvents[partId(State.ObjectName.LFOOT)] = CONTACT_LFOOT;
+    }
+
+    /**
+     * World this runner was built in.
+     */
+    private final World world;
+
+    /**
+     * Collision group shared by all of this runner's shapes. Always negative, so the runner's parts never collide
+     * with each other.
+     */
+    private final int groupIndex;
+
+    /**
+     * Whether this runner was built with feet.
+     */
+    private final boolean hasFeet;
+
+    /* Individual body objects */
+    Body rFootBody, lFootBody, rCalfBody, lCalfBody, rThighBody, lThighBody, torsoBody, rUArmBody, lUArmBody,
+            rLArmBody, lLArmBody, headBody;
+
+    /* Joint Definitions */
+    public RevoluteJointDef rHipJDef, lHipJDef, rKneeJDef, lKneeJDef, rAnkleJDef, lAnkleJDef, rShoulderJDef,
+            lShoulderJDef, rElbowJDef, lElbowJDef, neckJDef;
+
+    /* Joint objects */
+    public RevoluteJoint rHipJ, lHipJ, rKneeJ, lKneeJ, rAnkleJ, lAnkleJ, rShoulderJ, lShoulderJ, rElbowJ, lElbowJ,
+            neckJ;
+
+    /* Scratch joint anchor positions for applyKeys. */
+    private final Vec2 rAnkleCur = new Vec2(), lAnkleCur = new Vec2(), rHipCur = new Vec2();
+
+    /**
+     * Has this runner reached failure conditions?
+     */
+    private boolean isFailed = false;
+
+    /**
+     * Keep track of whether each foot is on the ground.
+     */
+    private boolean rFootDown = false, lFootDown = false;
+
+    /**
+     * How far this runner was moved along x after it was built, e.g. into its own lane of a {@link GameMultiRunner}.
+     * Subtracted from reported positions, so a runner reports the same states in any lane.
+     */
+    private float xOffset = 0;
+
+    Runner(World world, int groupIndex, boolean hasFeet) {
+        if (groupIndex >= 0)
+            throw new IllegalArgumentException("Runner collision groups must be negative. Given: " + groupIndex);
+        this.world = world;
+        this.groupIndex = groupIndex;
+        this.hasFeet = hasFeet;
+    }
+
+    /**
+     * Set the joint motors and limits for one timestep with the specified keys pressed. Does not step the world.
+     *
+     * @param q Whether the Q key is pressed.
+     * @param w Whether the W key is pressed.
+     * @param o Whether the O key is pressed.
+     * @param p Whether the P key is pressed.
+     */
+    public void applyKeys(boolean q, boolean w, boolean o, boolean p) {
+        /* Involuntary Couplings (no QWOP presses) */
+
+        //Neck spring torque
+        float NeckTorque = -neckStiff * neckJ.getJointAngle() + 0 * neckDamp * neckJ.getJointSpeed();
+        NeckTorque = NeckTorque + 0 * 400f * (neckJ.getJointAngle() + 0.2f); //This bizarre term is probably a roundabout way of adjust equilibrium position.
+
+        //Elbow spring torque
+        float RElbowTorque = -rElbowStiff * rElbowJ.getJointAngle() + 0 * rElbowDamp * rElbowJ.getJointSpeed();
+        float LElbowTorque = -lElbowStiff * lElbowJ.getJointAngle() + 0 * lElbowDamp * lElbowJ.getJointSpeed();
+
+        //For now, using motors with high speed settings and torque limits to simulate springs. I don't know a better way for now.
+
+        neckJ.m_motorSpeed = (1000f * Math.signum(NeckTorque)); //If torque is negative, make motor speed negative.
+        rElbowJ.m_motorSpeed = (1000f * Math.signum(RElbowTorque));
+        lElbowJ.m_motorSpeed = (1000f * Math.signum(LElbowTorque));
+
+        neckJ.m_maxMotorTorque = (Math.abs(NeckTorque));
+        rElbowJ.m_maxMotorTorque = (Math.abs(RElbowTorque));
+        lElbowJ.m_maxMotorTorque = (Math.abs(LElbowTorque));
+
+        /* QW Press Stuff */
+        //See spreadsheet for complete rules and priority explanations.
+        if (q) {
+            //Set speed 1 for hips:
+            lHipJ.m_motorSpeed = (lHipSpeed2);
+            rHipJ.m_motorSpeed = (rHipSpeed2);
+
+            //Set speed 1 for shoulders:
+            lShoulderJ.m_motorSpeed = (lShoulderSpeed2);
+            rShoulderJ.m_motorSpeed = (rShoulderSpeed2);
+
+        } else if (w) {
+            //Set speed 2 for hips:
+            lHipJ.m_motorSpeed = (lHipSpeed1);
+            rHipJ.m_motorSpeed = (rHipSpeed1);
+
+            //set speed 2 for shoulders:
+            lShoulderJ.m_motorSpeed = (lShoulderSpeed1);
+            rShoulderJ.m_motorSpeed = (rShoulderSpeed1);
+
+        } else {
+            //Set hip and ankle speeds to 0:
+            lHipJ.m_motorSpeed = (0f);
+            rHipJ.m_motorSpeed = (0f);
+
+            lShoulderJ.m_motorSpeed = (0f);
+            rShoulderJ.m_motorSpeed = (0f);
+        }
+
+        //Ankle/Hip Coupling -+ 0*Requires either Q or W pressed.
+        if ((q || w) && hasFeet) {
+            //Get world ankle positions (using foot and torso anchors -+ 0
+            Vec2 RAnkleCur = rAnkleCur;
+            Vec2 LAnkleCur = lAnkleCur;
+            rAnkleJ.getAnchor1ToOut(RAnkleCur);
+            lAnkleJ.getAnchor1ToOut(LAnkleCur);
+
+            Vec2 RHipCur = rHipCur;
+            rHipJ.getAnchor1ToOut(RHipCur);
+
+
+            // if right ankle joint is behind the right hip jiont
+            // Set ankle motor speed to 1;
+            // else speed 2
+            if (RAnkleCur.x < RHipCur.x) {
+                rAnkleJ.m_motorSpeed = (rAnkleSpeed2);
+            } else {
+                rAnkleJ.m_motorSpeed = (rAnkleSpeed1);
+            }
+
+
+            // if left ankle joint is behind RIGHT hip joint (weird it's the right one here too)
+            // Set its motor speed to 1;
+            // else speed 2;
+            if (LAnkleCur.x < RHipCur.x) {
+                lAnkleJ.m_motorSpeed = (lAnkleSpeed2);
+            } else {
+                lAnkleJ.m_motorSpeed = (lAnkleSpeed1);
+            }
+
+        }
+
+        /* OP Keypress Stuff */
+        if (o) {
+            //Set speed 1 for knees
+            // set l hip limits(-1 1)
+            //set right hip limits (-1.3,0.7)
+            rKneeJ.m_motorSpeed = (rKneeSpeed2);
+            lKneeJ.m_motorSpeed = (lKneeSpeed2);
+
+            rHipJ.m_lowerAngle = (oRHipLimLo);
+            rHipJ.m_upperAngle = (oRHipLimHi);
+
+            lHipJ.m_lowerAngle = (oLHipLimLo);
+            lHipJ.m_upperAngle = (oLHipLimHi);
+
+        } else if (p) {
+            //Set speed 2 for knees
+            // set L hip limits(-1.5,0.5)
+            // set R hip limits(-0.8,1.2)
+
+            rKneeJ.m_motorSpeed = (rKneeSpeed1);
+            lKneeJ.m_motorSpeed = (lKneeSpeed1);
+
+            rHipJ.m_lowerAngle = (pRHipLimLo);
+            rHipJ.m_upperAngle = (pRHipLimHi);
+            lHipJ.m_lowerAngle = pLHipLimLo;
+            lHipJ.m_upperAngle = pLHipLimHi;
+
+        } else {
+
+            // Set knee speeds to 0
+            //Joint limits not changed!!
+            rKneeJ.m_motorSpeed = (0f);
+            lKneeJ.m_motorSpeed = (0f);
+        }
+    }
+
+    /**
+     * Check the failure conditions which don't come from contacts. Call after each world step.
+     *
+     * @return Whether the runner is now failed.
+     */
+    boolean checkTorsoAngle() {
+        float angle = torsoBody.getAngle();
+        if (angle > torsoAngUpper || angle < torsoAngLower) { // Fail if torso angles get too far out of whack.
+            isFailed = true;
+        }
+        return isFailed;
+    }
+
+    /**
+     * Get the current full state of the runner.
+     */
+    public State getCurrentState() {
+        return getCurrentState(isFailed);
+    }
+
+    /**
+     * Get the current full state of the runner, with the failure status given by the caller.
+     */
+    State getCurrentState(boolean failed) {
+        return new State(
+                getCurrentBodyState(torsoBody),
+                getCurrentBodyState(headBody),
+                getCurrentBodyState(rThighBody),
+                getCurrentBodyState(lThighBody),
+                getCurrentBodyState(rCalfBody),
+                getCurrentBodyState(lCalfBody),
+                hasFeet ? getCurrentBodyState(rFootBody) : new StateVariable(0, 0, 0, 0, 0, 0),
+                hasFeet ? getCurrentBodyState(lFootBody) : new StateVariable(0, 0, 0, 0, 0, 0),
+                getCurrentBodyState(rUArmBody),
+                getCurrentBodyState(lUArmBody),
+                getCurrentBodyState(rLArmBody),
+                getCurrentBodyState(lLArmBody),
+                failed);
+    }
+
+    /**
+     * Get a new StateVariable for a given body.
+     */
+    private StateVariable getCurrentBodyState(Body body) {
+
+        // Positions are reported from the original origin, whatever shifts the world has had, and from this
+        // runner's own lane.
+        Vec2 pos = body.getMemberPosition();
+        Vec2 offset = body.getWorld().getOriginOffset();
+        float x = pos.x + offset.x - xOffset;
+        float y = pos.y + offset.y;
+        float th = body.getAngle();
+
+        Vec2 vel = body.getLinearVelocity();
+        float dx = vel.x;
+        float dy = vel.y;
+        float dth = body.getAngularVelocity();
+        return new StateVariable(x, y, th, dx, dy, dth);
+    }
+
+    /**
+     * Move every body of a newly built runner along x, before the world is stepped. Reported states don't change.
+     * Shapes are refiltered too: the broadphase first paired them before their bodies were tagged.
+     */
+    void shiftX(float dx) {
+        Body[] bodies = {torsoBody, headBody, rThighBody, lThighBody, rCalfBody, lCalfBody, rFootBody, lFootBody,
+                rUArmBody, lUArmBody, rLArmBody, lLArmBody};
+        for (Body body : bodies) {
+            if (body == null) continue; // No feet.
+            Vec2 pos = body.getMemberPosition();
+            body.setXForm(new Vec2(pos.x + dx, pos.y), body.getAngle());
+            for (Shape shape = body.getShapeList(); shape != null; shape = shape.getNext()) {
+                body.getWorld().refilter(shape);
+            }
+        }
+        xOffset += dx;
+    }
+
+    /**
+     * Is this runner in failure?
+     **/
+    public boolean getFailureStatus() {
+        return isFailed;
+    }
+
+    /**
+     * Set the failure and foot contact status, e.g. when the world is put back to a saved state.
+     */
+    void setStatus(boolean failed, boolean rightFootDown, boolean leftFootDown) {
+        isFailed = failed;
+        rFootDown = rightFootDown;
+        lFootDown = leftFootDown;
+    }
+
+    /**
+     * Check if the right foot is touching the ground.
+     **/
+    public boolean isRightFootGrounded() {
+        return rFootDown;
+    }
+
+    /**
+     * Check if the left foot is touching the ground.
+     **/
+    public boolean isLeftFootGrounded() {
+        return lFootDown;
+    }
+
+    static int partId(State.ObjectName part) {
+        return part.ordinal() + 1;
+    }
+
+    /**
+     * Tag for a body which belongs to a runner's lane without being one of its parts, e.g. its own track.
+     */
+    static int laneTag(int runnerIndex) {
+        return runnerIndex << RUNNER_SHIFT;
+    }
+
+    /**
+     * Make the tag for one part of a runner.
+     */
+    static int makeTag(int runnerIndex, State.ObjectName part) {
+        return (runnerIndex << RUNNER_SHIFT) | partId(part);
+    }
+
+    /**
+     * Runner index from a body tag.
+     */
+    static int runnerIndex(int tag) {
+        return tag >>> RUNNER_SHIFT;
+    }
+
+    /**
+     * Whether a body tag belongs to a runner part at all.
+     */
+    static boolean isRunnerPart(int tag) {
+        return (tag & PART_MASK) != 0;
+    }
+
+    /**
+     * Update failure and foot contact status for a contact starting or ending on one of this runner's bodies.
+     *
+     * @param tag      Tag of this runner's body in the contact.
+     * @param touching True for a new contact point, false for a removed one.
+     */
+    void handleContact(int tag, boolean touching) {
+        switch (contactEvents[tag & PART_MASK]) {
+            case CONTACT_FAILS:
+                if (touching) isFailed = true;
+                break;
+            case CONTACT_RFOOT:
+                rFootDown = touching;
+                break;
+            case CONTACT_LFOOT:
+                lFootDown = touching;
+                break;
+            default:
+                break;
+        }
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public int getGroupIndex() {
+        return groupIndex;
+    }
+
+    public boolean hasFeet() {
+        return hasFeet;
+    }
+
+    /**
+     * Get the torso body.
+     */
+    public Body getTorso() {
+        return torsoBody;
+    }
+}
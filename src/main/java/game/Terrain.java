@@ -0,0 +1,197 @@
+package game;
+
+import org.jbox2d.collision.shapes.EdgeChainDef;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.dynamics.Body;
+import org.jbox2d.dynamics.BodyDef;
+import org.jbox2d.dynamics.World;
+
+import static game.GameConstants.*;
+
+/**
+ * Endless, seeded ground made of edge chains, in place of the flat track. The ground is split into chunks of
+ * {@link #chunkLength}, each a static body holding one open edge chain. {@link #update(float)} keeps the chunks around
+ * a point (normally the torso) in the world: chunks ahead are created as the point moves, and chunks behind are
+ * destroyed. The number of bodies and broadphase proxies therefore stays the same however far the runner goes.
+ * <p>
+ * The ground is a function of the seed and the x coordinate only, so the same seed always gives the same ground, and a
+ * chunk which is destroyed and created again is identical. It is flat up to {@link #flatEnd}, where the runner
+ * starts, and ramps up to full roughness over the following {@link #rampLength}. Chunks are placed using the world's
+ * origin offset, so terrain works together with origin shifting.
+ *
+ * @author matt
+ * @see GameSingleThread#setTerrain(long, float)
+ */
+public class Terrain {
+
+    /**
+     * Length of one chunk, and the number of edges in it.
+     */
+    public static final float chunkLength = 10f;
+    public static final int segmentsPerChunk = 20;
+
+    /**
+     * Chunks kept ahead of and behind the one containing the point given to {@link #update(float)}.
+     */
+    public static final int chunksAhead = 3, chunksBehind = 1;
+
+    /**
+     * The ground is flat before this x, then gets rough over the following distance.
+     */
+    public static final float flatEnd = 10f, rampLength = 20f;
+
+    /**
+     * Coarse height points are this many segments apart. Heights in between are interpolated, with a little extra fine
+     * noise on top.
+     */
+    private static final int coarseSpacing = 8;
+    private static final float fineFraction = 0.1f;
+
+    /**
+     * Height of flat ground, i.e. the top of the usual track. Remember -y is up.
+     */
+    public static final float baseHeight = trackPosY - trackYDim;
+
+    private final World world;
+
+    private final long seed;
+
+    /**
+     * Largest height of the ground above or below {@link #baseHeight}.
+     */
+    private final float roughness;
+
+    /**
+     * Chunk bodies, in slots by chunk index modulo the slot count. The chunk index held by each slot is in
+     * slotChunk, or Integer.MIN_VALUE if empty.
+     */
+    private final Body[] slots = new Body[chunksAhead + chunksBehind + 1];
+    private final int[] slotChunk = new int[slots.length];
+
+    private long chunksCreated, chunksDestroyed;
+
+    private final BodyDef chunkDef = new BodyDef();
+
+    /**
+     * Make terrain in a world. No chunks exist until the first {@link #update(float)}.
+     *
+     * @param world     World to add the ground to.
+     * @param seed      Seed for the ground shape.
+     * @param roughness Largest height of bumps and dips. 0 gives flat ground.
+     */
+    public Terrain(World world, long seed, float roughness) {
+        if (roughness < 0)
+            throw new IllegalArgumentException("Roughness must not be negative. Given: " + roughness);
+        this.world = world;
+        this.seed = seed;
+        this.roughness = roughness;
+        for (int i = 0; i < slotChunk.length; i++) {
+            slotChunk[i] = Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Create and destroy chunks so that the ground exists from {@link #chunksBehind} chunks behind x to
+     * {@link #chunksAhead} chunks ahead of it. Must not be called while the world is stepping.
+     *
+     * @param x Absolute x coordinate to keep ground around, i.e. not counting origin shifts.
+     */
+    public void update(float x) {
+        int current = (int) Math.floor(x / chunkLength);
+        for (int chunk = current - chunksBehind; chunk <= current + chunksAhead; chunk++) {
+            int slot = ((chunk % slots.length) + slots.length) % slots.length;
+            if (slotChunk[slot] == chunk) continue;
+
+            if (slots[slot] != null) {
+                world.destroyBody(slots[slot]);
+                chunksDestroyed++;
+            }
+            slots[slot] = createChunk(chunk);
+            slotChunk[slot] = chunk;
+            chunksCreated++;
+        }
+    }
+
+    private Body createChunk(int chunk) {
+        Vec2 offset = world.getOriginOffset();
+        float startX = chunk * chunkLength;
+        chunkDef.position.set(startX - offset.x, baseHeight - offset.y);
+        Body body = world.createBody(chunkDef);
+
+        EdgeChainDef edges = new EdgeChainDef();
+        edges.setIsLoop(false);
+        edges.friction = trackFric;
+        edges.restitution = trackRest;
+        edges.filter.groupIndex = 1;
+        float segment = chunkLength / segmentsPerChunk;
+        for (int i = 0; i <= segmentsPerChunk; i++) {
+            // Vertices shared by neighbouring chunks come from the same global index, so the chunks line up.
+            edges.addVertex(new Vec2(i * segment, -heightAtVertex(chunk * segmentsPerChunk + i)));
+        }
+        body.createShape(edges);
+        return body;
+    }
+
+    /**
+     * Height of the ground above {@link #baseHeight} at an absolute x. Positive is up, i.e. the ground surface is at
+     * y = baseHeight - getHeight(x).
+     */
+    public float getHeight(float x) {
+        float position = x * segmentsPerChunk / chunkLength;
+        int vertex = (int) Math.floor(position);
+        float t = position - vertex;
+        return (1 - t) * heightAtVertex(vertex) + t * heightAtVertex(vertex + 1);
+    }
+
+    private float heightAtVertex(int vertex) {
+        float x = vertex * chunkLength / segmentsPerChunk;
+        if (x <= flatEnd || roughness == 0) return 0;
+        float ramp = Math.min((x - flatEnd) / rampLength, 1f);
+
+        int coarse = (int) Math.floor((double) vertex / coarseSpacing);
+        float t = (float) (vertex - coarse * coarseSpacing) / coarseSpacing;
+        t = t * t * (3 - 2 * t); // Smoothstep, so slopes change gradually between coarse points.
+        float height = (1 - t) * random(coarse, 0) + t * random(coarse + 1, 0);
+        height += fineFraction * random(vertex, 1);
+        return ramp * roughness * height / (1 + fineFraction);
+    }
+
+    /**
+     * Uniform value in [-1, 1] for an integer position, from the seed. The layer separates the coarse and fine noise.
+     */
+    private float random(int position, int layer) {
+        // SplitMix64 finalizer over the seed, position, and layer.
+        long z = seed + 0x9E3779B97F4A7C15L * (2L * position + layer + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (float) ((double) (z >>> 11) / (1L << 53)) * 2 - 1;
+    }
+
+    /**
+     * Number of chunks currently in the world.
+     */
+    public int getChunkCount() {
+        int count = 0;
+        for (Body body : slots) {
+            if (body != null) count++;
+        }
+        return count;
+    }
+
+    public long getChunksCreated() {
+        return chunksCreated;
+    }
+
+    public long getChunksDestroyed() {
+        return chunksDestroyed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public float getRoughness() {
+        return roughness;
+    }
+}
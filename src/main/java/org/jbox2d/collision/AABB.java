@@ -82,6 +82,12 @@ public class AABB {
 		return lowerBound.isValid() && upperBound.isValid();
 	}
 
+	/** Check if this AABB fully contains the given one. */
+	public final boolean contains(final AABB box) {
+		return lowerBound.x <= box.lowerBound.x && lowerBound.y <= box.lowerBound.y
+				&& box.upperBound.x <= upperBound.x && box.upperBound.y <= upperBound.y;
+	}
+
 	/** Check if AABBs overlap. djm optimized */
 	public final boolean testOverlap(final AABB box) {
 		final float d1x = box.lowerBound.x - upperBound.x;
@@ -1,11 +1,11 @@
 package org.jbox2d.collision;
 
 public class BoundValues {
-	public final Integer[] lowerValues;
-	public final Integer[] upperValues;
+	public final int[] lowerValues;
+	public final int[] upperValues;
 
 	public BoundValues() {
-		lowerValues = new Integer[2];
-		upperValues = new Integer[2];
+		lowerValues = new int[2];
+		upperValues = new int[2];
 	}
 }
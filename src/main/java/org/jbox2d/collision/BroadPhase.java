@@ -78,6 +78,9 @@ public class BroadPhase {
 
 	public int m_proxyCount;
 
+	/** Proxy moves done, and moves skipped because a shape stayed inside its fat AABB. */
+	public long m_moveCount, m_skippedMoveCount;
+
 	int m_timeStamp;
 
 	private static final boolean debugPrint = false;
@@ -210,8 +213,7 @@ public class BroadPhase {
 	}
 
 	// djm pooling
-	private final static IntegerArray tlLowerValues = new IntegerArray();
-	private final static IntegerArray tlUpperValues = new IntegerArray();
+	private final static TLBoundValues tlQueryValues = new TLBoundValues();
 	private final static IntegerArray tlIndexes = new IntegerArray();
 	
 	// Create and destroy proxies. These call Flush first.
@@ -241,8 +243,9 @@ public class BroadPhase {
 		final int boundCount = 2 * m_proxyCount;
 
 		// pooling
-		final Integer lowerValues[] = tlLowerValues.get(2);
-		final Integer upperValues[] = tlUpperValues.get(2);
+		final BoundValues queryValues = tlQueryValues.get();
+		final int lowerValues[] = queryValues.lowerValues;
+		final int upperValues[] = queryValues.upperValues;
 		final Integer[] indexes = tlIndexes.get(2);
 		
 		computeBounds( lowerValues, upperValues, aabb);
@@ -449,6 +452,7 @@ public class BroadPhase {
 		final int boundCount = 2 * m_proxyCount;
 
 		final Proxy proxy = m_proxyPool[proxyId];
+		++m_moveCount;
 
 		// Get new bound values
 		computeBounds( newValues.lowerValues, newValues.upperValues, aabb);
@@ -623,6 +627,95 @@ public class BroadPhase {
 		m_pairManager.commit();
 	}
 
+	/** Number of ints {@link #saveState(int[], int)} writes. */
+	public int getStateSize() {
+		return 2 + 2 * 2 * m_proxyCount * 3 + 2 * m_proxyCount + 1 + 3 * m_pairManager.m_pairCount;
+	}
+
+	/**
+	 * Write the sorted bounds, proxy time stamps and live pairs into state
+	 * from offset. Proxies themselves aren't saved, so the state can only be
+	 * restored into a broadphase with the same proxies, e.g. of a world built
+	 * the same way. Must not be called between a move and the commit.
+	 * @return the offset after the last int written.
+	 */
+	public int saveState(final int[] state, int offset) {
+		state[offset++] = m_timeStamp;
+		state[offset++] = m_proxyCount;
+		final int boundCount = 2 * m_proxyCount;
+		for (int axis = 0; axis < 2; ++axis) {
+			final Bound[] bounds = m_bounds[axis];
+			for (int i = 0; i < boundCount; ++i) {
+				state[offset++] = bounds[i].value;
+				state[offset++] = bounds[i].proxyId;
+				state[offset++] = bounds[i].stabbingCount;
+			}
+		}
+		// Each proxy has one lower bound on the x axis.
+		final Bound[] bounds = m_bounds[0];
+		for (int i = 0; i < boundCount; ++i) {
+			if (bounds[i].isLower()) {
+				final Proxy proxy = m_proxyPool[bounds[i].proxyId];
+				state[offset++] = proxy.overlapCount;
+				state[offset++] = proxy.timeStamp;
+			}
+		}
+		return m_pairManager.savePairs(state, offset);
+	}
+
+	/**
+	 * Put back bounds and pairs written by {@link #saveState(int[], int)}.
+	 * No pair callbacks are made.
+	 * @param pairUserData user data for every restored pair.
+	 * @return the offset after the last int read.
+	 * @throws IllegalArgumentException if the saved proxies aren't the ones in
+	 * this broadphase.
+	 */
+	public int restoreState(final int[] state, int offset, final Object pairUserData) {
+		final int timeStamp = state[offset++];
+		final int proxyCount = state[offset++];
+		if (proxyCount != m_proxyCount) {
+			throw new IllegalArgumentException("State has a different number of proxies. Given: " + proxyCount
+					+ ", expected: " + m_proxyCount);
+		}
+		final int boundCount = 2 * proxyCount;
+		for (int i = 0; i < 2 * boundCount; ++i) {
+			final int proxyId = state[offset + 3 * i + 1];
+			if (proxyId < 0 || proxyId >= Settings.maxProxies || m_proxyPool[proxyId].isValid() == false) {
+				throw new IllegalArgumentException("State has a proxy this broadphase doesn't. Given: " + proxyId);
+			}
+		}
+		// Pairs are found from the bounds, so go before the bounds change.
+		m_pairManager.clearPairs();
+		for (int axis = 0; axis < 2; ++axis) {
+			final Bound[] bounds = m_bounds[axis];
+			for (int i = 0; i < boundCount; ++i) {
+				final Bound bound = bounds[i];
+				bound.value = state[offset++];
+				bound.proxyId = state[offset++];
+				bound.stabbingCount = state[offset++];
+				final Proxy proxy = m_proxyPool[bound.proxyId];
+				if (bound.isLower()) {
+					proxy.lowerBounds[axis] = i;
+				}
+				else {
+					proxy.upperBounds[axis] = i;
+				}
+			}
+		}
+		final Bound[] bounds = m_bounds[0];
+		for (int i = 0; i < boundCount; ++i) {
+			if (bounds[i].isLower()) {
+				final Proxy proxy = m_proxyPool[bounds[i].proxyId];
+				proxy.overlapCount = state[offset++];
+				proxy.timeStamp = state[offset++];
+			}
+		}
+		m_timeStamp = timeStamp;
+		m_queryResultCount = 0;
+		return m_pairManager.restorePairs(state, offset, pairUserData);
+	}
+
 		
 	/**
 	 * Query an AABB for overlapping proxies, returns the user data and the
@@ -632,10 +725,25 @@ public class BroadPhase {
 		if ( BroadPhase.debugPrint) {
 			System.out.println( "Query(2 args)");
 		}
-		
+
+		final Object[] results = new Object[maxCount];
+		final int count = query( aabb, results, maxCount);
+
+		final Object[] copy = new Object[count];
+		System.arraycopy( results, 0, copy, 0, count);
+		return copy;
+	}
+
+	/**
+	 * Query an AABB for overlapping proxies without allocating. The user data
+	 * of up to maxCount proxies is written to the start of userData.
+	 * @return the number of proxies written.
+	 */
+	public int query( final AABB aabb, final Object[] userData, final int maxCount) {
 		// djm pooling from above
-		final Integer lowerValues[] = tlUpperValues.get(2);
-		final Integer upperValues[] = tlLowerValues.get(2);
+		final BoundValues queryValues = tlQueryValues.get();
+		final int lowerValues[] = queryValues.lowerValues;
+		final int upperValues[] = queryValues.upperValues;
 		computeBounds( lowerValues, upperValues, aabb);
 
 		final Integer indexes[] = tlIndexes.get(2); // lowerIndex, upperIndex;
@@ -645,23 +753,19 @@ public class BroadPhase {
 
 		assert m_queryResultCount < Settings.maxProxies;
 
-		Object[] results = new Object[maxCount];
 		int count = 0;
 		for ( int i = 0; i < m_queryResultCount && count < maxCount; ++i, ++count) {
 			assert m_queryResults[i] < Settings.maxProxies;
 			final Proxy proxy = m_proxyPool[m_queryResults[i]];
 			proxy.isValid();
-			results[i] = proxy.userData;
+			userData[i] = proxy.userData;
 		}
 
-		final Object[] copy = new Object[count];
-		System.arraycopy( results, 0, copy, 0, count);
-
 		// Prepare for next query.
 		m_queryResultCount = 0;
 		incrementTimeStamp();
 		
-		return copy;// results;
+		return count;
 	}
 
 	public void validate() {
@@ -697,7 +801,7 @@ public class BroadPhase {
 
 	}
 
-	private void computeBounds( final Integer[] lowerValues, final Integer[] upperValues, final AABB aabb) {
+	private void computeBounds( final int[] lowerValues, final int[] upperValues, final AABB aabb) {
 		if ( BroadPhase.debugPrint) {
 			System.out.println( "ComputeBounds()");
 		}
@@ -863,8 +967,6 @@ public class BroadPhase {
 		float p1x = (segment.p1.x-m_worldAABB.lowerBound.x)*m_quantizationFactor.x;
 		float p1y = (segment.p1.y-m_worldAABB.lowerBound.y)*m_quantizationFactor.y;
 
-		int[] startValues = new int[2];
-		int[] startValues2 = new int[2];
 
 		int xIndex;
 		int yIndex;
@@ -873,20 +975,20 @@ public class BroadPhase {
 		Proxy proxy = null;
 		
 		// TODO_ERIN implement fast float to int conversion.
-		startValues[0] = (int)(p1x) & (Integer.MAX_VALUE - 1);
-		startValues2[0] = (int)(p1x) | 1;
+		final int startX = (int)(p1x) & (Integer.MAX_VALUE - 1);
+		final int startX2 = (int)(p1x) | 1;
 
-		startValues[1] = (int)(p1y) & (Integer.MAX_VALUE - 1);
-		startValues2[1] = (int)(p1y) | 1;
+		final int startY = (int)(p1y) & (Integer.MAX_VALUE - 1);
+		final int startY2 = (int)(p1y) | 1;
 
 		//First deal with all the proxies that contain segment.p1
 //		int lowerIndex;
 //		int upperIndex;
 		Integer[] results = tlResults.get(2);
-		query(results,startValues[0],startValues2[0],m_bounds[0],2*m_proxyCount,0);
+		query(results,startX,startX2,m_bounds[0],2*m_proxyCount,0);
 		if(sx>=0)	xIndex = results[1]-1;
 		else		xIndex = results[0];
-		query(results,startValues[1],startValues2[1],m_bounds[1],2*m_proxyCount,1);
+		query(results,startY,startY2,m_bounds[1],2*m_proxyCount,1);
 		if(sy>=0)	yIndex = results[1]-1;
 		else		yIndex = results[0];
 
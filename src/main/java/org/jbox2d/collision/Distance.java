@@ -47,6 +47,7 @@ import org.jbox2d.collision.shapes.PointShape;
 import org.jbox2d.collision.shapes.PolygonShape;
 import org.jbox2d.collision.shapes.Shape;
 import org.jbox2d.collision.shapes.ShapeType;
+import org.jbox2d.common.Mat22;
 import org.jbox2d.common.MathUtils;
 import org.jbox2d.common.Settings;
 import org.jbox2d.common.Vec2;
@@ -251,11 +252,50 @@ public final class Distance {
 	public final float DistanceGeneric(final Vec2 x1, final Vec2 x2,
 			final SupportsGenericDistance shape1, final XForm xf1,
 			final SupportsGenericDistance shape2, final XForm xf2) {
+		return DistanceGeneric(x1, x2, shape1, xf1, shape2, xf2, null, null);
+	}
+
+	/**
+	 * Distance between any two objects that implement SupportsGeneric, warm
+	 * started from the separating axis left in the cache by the previous query
+	 * between the same pair. The cache is updated on return.
+	 * 
+	 * @param x1
+	 *            Set to closest point on shape1 (result parameter)
+	 * @param x2
+	 *            Set to closest point on shape2 (result parameter)
+	 * @param shape1
+	 *            Shape to test
+	 * @param xf1
+	 *            Transform of shape1
+	 * @param shape2
+	 *            Shape to test
+	 * @param xf2
+	 *            Transform of shape2
+	 * @param cache
+	 *            Warm starting data for this shape pair, may be null
+	 * @param stats
+	 *            Counters to record this query in, may be null
+	 * @return the distance
+	 */
+	public final float DistanceGeneric(final Vec2 x1, final Vec2 x2,
+			final SupportsGenericDistance shape1, final XForm xf1,
+			final SupportsGenericDistance shape2, final XForm xf2,
+			final SimplexCache cache, final DistanceStats stats) {
 
 		int pointCount = 0;
 
-		shape1.getFirstVertexToOut(xf1, x1);
-		shape2.getFirstVertexToOut(xf2, x2);
+		final boolean warmStarted = cache != null && cache.valid;
+		if (warmStarted) {
+			// Start from the support points along the last separating axis.
+			Mat22.mulToOut(xf1.R, cache.localAxis, v);
+			shape1.support(x1, xf1, v);
+			vNeg.set(-v.x, -v.y);
+			shape2.support(x2, xf2, vNeg);
+		} else {
+			shape1.getFirstVertexToOut(xf1, x1);
+			shape2.getFirstVertexToOut(xf2, x2);
+		}
 
 		float vSqr = 0.0f;
 		final int maxIterations = 20;
@@ -277,7 +317,7 @@ public final class Distance {
 					x1.set(w1);
 					x2.set(w2);
 				}
-				g_GJK_Iterations = iter;
+				finishGeneric(iter, x1, x2, xf1, cache, stats, warmStarted);
 				return MathUtils.sqrt(vSqr);
 			}
 
@@ -309,7 +349,7 @@ public final class Distance {
 			// If we have three points, then the origin is in the corresponding
 			// triangle.
 			if (pointCount == 3) {
-				g_GJK_Iterations = iter;
+				finishGeneric(iter, x1, x2, xf1, cache, stats, warmStarted);
 				return 0.0f;
 				//
 			}
@@ -320,7 +360,7 @@ public final class Distance {
 			}
 
 			if (pointCount == 3 || vSqr <= 100.0f * Settings.EPSILON * maxSqr) {
-				g_GJK_Iterations = iter;
+				finishGeneric(iter, x1, x2, xf1, cache, stats, warmStarted);
 				final float vx = x2.x - x1.x;
 				final float vy = x2.y - x1.y;
 				vSqr = vx * vx + vy * vy;
@@ -330,11 +370,35 @@ public final class Distance {
 			}
 		}
 
-		g_GJK_Iterations = maxIterations;
+		finishGeneric(maxIterations, x1, x2, xf1, cache, stats, warmStarted);
 		return MathUtils.sqrt(vSqr);
 		//
 	}
 
+	// djm pooled
+	private final Vec2 cacheAxis = new Vec2();
+
+	/** Record the iteration count and keep the separating axis for the next query. */
+	private final void finishGeneric(final int iter, final Vec2 x1, final Vec2 x2, final XForm xf1,
+			final SimplexCache cache, final DistanceStats stats, final boolean warmStarted) {
+		g_GJK_Iterations = iter;
+		if (stats != null) {
+			stats.record(iter, warmStarted);
+		}
+		if (cache != null) {
+			cache.iterations = iter;
+			cacheAxis.set(x2.x - x1.x, x2.y - x1.y);
+			// Touching shapes have no usable axis, start cold next time.
+			if (cacheAxis.lengthSquared() > Settings.EPSILON * Settings.EPSILON) {
+				Mat22.mulTransToOut(xf1.R, cacheAxis, cache.localAxis);
+				cache.valid = true;
+			}
+			else {
+				cache.valid = false;
+			}
+		}
+	}
+
 	// djm pooled
 	private final Vec2 distCCp1 = new Vec2();
 	private final Vec2 distCCp2 = new Vec2();
@@ -507,6 +571,18 @@ public final class Distance {
 	 */
 	public final float DistancePC(final Vec2 x1, final Vec2 x2, final PolygonShape polygon,
 			final XForm xf1, final CircleShape circle, final XForm xf2) {
+		return DistancePC(x1, x2, polygon, xf1, circle, xf2, null, null);
+	}
+
+	/**
+	 * Distance between a polygon and a circle, warm started from the cache.
+	 * 
+	 * @see #DistancePC(Vec2, Vec2, PolygonShape, XForm, CircleShape, XForm)
+	 * @see #DistanceGeneric(Vec2, Vec2, SupportsGenericDistance, XForm, SupportsGenericDistance, XForm, SimplexCache, DistanceStats)
+	 */
+	public final float DistancePC(final Vec2 x1, final Vec2 x2, final PolygonShape polygon,
+			final XForm xf1, final CircleShape circle, final XForm xf2,
+			final SimplexCache cache, final DistanceStats stats) {
 		// v is just used as a dummy Vec2 since it gets overwritten in a moment
 		// Point point = new Point(v); djm we don't need this
 		// INLINED
@@ -516,7 +592,7 @@ public final class Distance {
 												* circle.m_localPosition.x + xf2.R.col2.y
 												* circle.m_localPosition.y);
 
-		float distance = DistanceGeneric(x1, x2, polygon, xf1, point, XForm.identity);
+		float distance = DistanceGeneric(x1, x2, polygon, xf1, point, XForm.identity, cache, stats);
 
 		final float r = circle.getRadius() - Settings.toiSlop;
 
@@ -559,6 +635,18 @@ public final class Distance {
 	// djm pooled from above
 	public final float DistancePolygonPoint(final Vec2 x1, final Vec2 x2,
 			final PolygonShape polygon, final XForm xf1, final PointShape pt, final XForm xf2) {
+		return DistancePolygonPoint(x1, x2, polygon, xf1, pt, xf2, null, null);
+	}
+
+	/**
+	 * Distance between a polygon and a point, warm started from the cache.
+	 * 
+	 * @see #DistancePolygonPoint(Vec2, Vec2, PolygonShape, XForm, PointShape, XForm)
+	 * @see #DistanceGeneric(Vec2, Vec2, SupportsGenericDistance, XForm, SupportsGenericDistance, XForm, SimplexCache, DistanceStats)
+	 */
+	public final float DistancePolygonPoint(final Vec2 x1, final Vec2 x2,
+			final PolygonShape polygon, final XForm xf1, final PointShape pt, final XForm xf2,
+			final SimplexCache cache, final DistanceStats stats) {
 		// v is just used as a dummy Vec2 since it gets overwritten in a moment
 		// Point point = new Point(v);
 		// INLINED
@@ -568,7 +656,7 @@ public final class Distance {
 											+ xf2.R.col2.y * pt.m_localPosition.y);
 
 		// TODO: check if we need to subtract toi slop from this...
-		float distance = DistanceGeneric(x1, x2, polygon, xf1, point, XForm.identity);
+		float distance = DistanceGeneric(x1, x2, polygon, xf1, point, XForm.identity, cache, stats);
 		// ...or if it's better to do it here
 		final float r = -Settings.toiSlop;
 
@@ -668,6 +756,34 @@ public final class Distance {
 	 */
 	public final float distance(final Vec2 x1, final Vec2 x2, final Shape shape1, final XForm xf1,
 			final Shape shape2, final XForm xf2) {
+		return distance(x1, x2, shape1, xf1, shape2, xf2, null, null);
+	}
+
+	/**
+	 * Find the closest points between two shapes, warm starting the GJK based
+	 * queries from a per pair cache. Pass the shapes in the same order every
+	 * time the same cache is used.
+	 * 
+	 * @param x1
+	 *            Closest point on shape1 is put here (result parameter)
+	 * @param x2
+	 *            Closest point on shape2 is put here (result parameter)
+	 * @param shape1
+	 *            First shape to test
+	 * @param xf1
+	 *            Transform of first shape
+	 * @param shape2
+	 *            Second shape to test
+	 * @param xf2
+	 *            Transform of second shape
+	 * @param cache
+	 *            Warm starting data for this shape pair, may be null
+	 * @param stats
+	 *            Counters to record GJK queries in, may be null
+	 * @return the distance
+	 */
+	public final float distance(final Vec2 x1, final Vec2 x2, final Shape shape1, final XForm xf1,
+			final Shape shape2, final XForm xf2, final SimplexCache cache, final DistanceStats stats) {
 
 		final ShapeType type1 = shape1.getType();
 		final ShapeType type2 = shape2.getType();
@@ -676,13 +792,13 @@ public final class Distance {
 			return DistanceCC(x1, x2, (CircleShape) shape1, xf1, (CircleShape) shape2, xf2);
 		}
 		else if (type1 == ShapeType.POLYGON_SHAPE && type2 == ShapeType.CIRCLE_SHAPE) {
-			return DistancePC(x1, x2, (PolygonShape) shape1, xf1, (CircleShape) shape2, xf2);
+			return DistancePC(x1, x2, (PolygonShape) shape1, xf1, (CircleShape) shape2, xf2, cache, stats);
 		}
 		else if (type1 == ShapeType.CIRCLE_SHAPE && type2 == ShapeType.POLYGON_SHAPE) {
-			return DistancePC(x2, x1, (PolygonShape) shape2, xf2, (CircleShape) shape1, xf1);
+			return DistancePC(x2, x1, (PolygonShape) shape2, xf2, (CircleShape) shape1, xf1, cache, stats);
 		}
 		else if (type1 == ShapeType.POLYGON_SHAPE && type2 == ShapeType.POLYGON_SHAPE) {
-			return DistanceGeneric(x1, x2, (PolygonShape) shape1, xf1, (PolygonShape) shape2, xf2);
+			return DistanceGeneric(x1, x2, (PolygonShape) shape1, xf1, (PolygonShape) shape2, xf2, cache, stats);
 		}
 		else if (type1 == ShapeType.EDGE_SHAPE && type2 == ShapeType.CIRCLE_SHAPE) {
 			return DistanceEdgeCircle(x1, x2, (EdgeShape) shape1, xf1, (CircleShape) shape2, xf2);
@@ -691,10 +807,10 @@ public final class Distance {
 			return DistanceEdgeCircle(x2, x1, (EdgeShape) shape2, xf2, (CircleShape) shape1, xf1);
 		}
 		else if (type1 == ShapeType.POLYGON_SHAPE && type2 == ShapeType.EDGE_SHAPE) {
-			return DistanceGeneric(x2, x1, (EdgeShape) shape2, xf2, (PolygonShape) shape1, xf1);
+			return DistanceGeneric(x2, x1, (EdgeShape) shape2, xf2, (PolygonShape) shape1, xf1, cache, stats);
 		}
 		else if (type1 == ShapeType.EDGE_SHAPE && type2 == ShapeType.POLYGON_SHAPE) {
-			return DistanceGeneric(x1, x2, (EdgeShape) shape1, xf1, (PolygonShape) shape2, xf2);
+			return DistanceGeneric(x1, x2, (EdgeShape) shape1, xf1, (PolygonShape) shape2, xf2, cache, stats);
 		}
 		else if (type1 == ShapeType.POINT_SHAPE && type2 == ShapeType.POINT_SHAPE) {
 			return Float.MAX_VALUE;
@@ -707,11 +823,11 @@ public final class Distance {
 		}
 		else if (type1 == ShapeType.POINT_SHAPE && type2 == ShapeType.POLYGON_SHAPE) {
 			return DistancePolygonPoint(x2, x1, (PolygonShape) shape2, xf2, (PointShape) shape1,
-					xf1);
+					xf1, cache, stats);
 		}
 		else if (type1 == ShapeType.POLYGON_SHAPE && type2 == ShapeType.POINT_SHAPE) {
 			return DistancePolygonPoint(x1, x2, (PolygonShape) shape1, xf1, (PointShape) shape2,
-					xf2);
+					xf2, cache, stats);
 		}
 
 		return 0.0f;
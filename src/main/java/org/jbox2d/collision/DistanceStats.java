@@ -0,0 +1,67 @@
+package org.jbox2d.collision;
+
+/**
+ * GJK counters. Each World owns one (see World.getDistanceStats()), so
+ * statistics from different worlds never mix. Like the rest of a world, they
+ * are only updated from the thread stepping it.
+ */
+public class DistanceStats {
+	private long calls;
+	private long iterations;
+	private long maxIterations;
+	private long warmStarts;
+
+	/**
+	 * Record one GJK query.
+	 * @param iters iterations used by the query.
+	 * @param warmStarted whether the query started from a cached axis.
+	 */
+	public void record(final int iters, final boolean warmStarted) {
+		++calls;
+		iterations += iters;
+		if (warmStarted) {
+			++warmStarts;
+		}
+		if (iters > maxIterations) {
+			maxIterations = iters;
+		}
+	}
+
+	/** Number of GJK queries since the last reset. */
+	public long getCalls() {
+		return calls;
+	}
+
+	/** Total GJK iterations since the last reset. */
+	public long getIterations() {
+		return iterations;
+	}
+
+	/** Largest iteration count of a single query since the last reset. */
+	public long getMaxIterations() {
+		return maxIterations;
+	}
+
+	/** Number of queries which were seeded from a {@link SimplexCache}. */
+	public long getWarmStarts() {
+		return warmStarts;
+	}
+
+	/** Mean iterations per query, or 0 if there were no queries. */
+	public float getAverageIterations() {
+		return calls == 0 ? 0.0f : (float) iterations / calls;
+	}
+
+	public void reset() {
+		calls = 0;
+		iterations = 0;
+		maxIterations = 0;
+		warmStarts = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "GJK calls: " + getCalls() + ", iterations: " + getIterations() + " (avg "
+				+ getAverageIterations() + ", max " + getMaxIterations() + "), warm starts: " + getWarmStarts();
+	}
+}
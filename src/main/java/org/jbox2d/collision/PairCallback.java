@@ -43,4 +43,11 @@ public abstract interface PairCallback {
 	 */
 	public void pairRemoved(Object proxyUserData1,
 	                                 Object proxyUserData2, Object pairUserData);
+
+	/**
+	 * Return false if these two proxies can never collide, so the pair
+	 * manager doesn't need to track them at all. Filtered pairs use no pair
+	 * slots, which matters when many overlapping shapes are filtered apart.
+	 */
+	public boolean shouldPair(Object proxyUserData1, Object proxyUserData2);
 }
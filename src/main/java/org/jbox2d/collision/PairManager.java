@@ -54,6 +54,9 @@ public class PairManager {
 	public final BufferedPair[] m_pairBuffer;
 	public int m_pairBufferCount;
 
+	/** Scratch list of live pairs for savePairs and restorePairs. */
+	private Pair[] m_collectedPairs = new Pair[16];
+
 	public PairManager() {
 		m_pairs = new Pair[Settings.maxPairs];
 		m_hashTable = new int[PairManager.TABLE_CAPACITY];
@@ -200,6 +203,12 @@ public class PairManager {
 		assert(id1 != PairManager.NULL_PROXY && id2 != PairManager.NULL_PROXY);
 		assert(m_pairBufferCount < Settings.maxPairs);
 
+		final Proxy[] proxies = m_broadPhase.m_proxyPool;
+		if (m_callback.shouldPair(proxies[id1].userData, proxies[id2].userData) == false) {
+			// Filtered out, removeBufferedPair allows for pairs which never existed.
+			return;
+		}
+
 		final Pair pair = addPair(id1, id2);
 
 		// If this pair is not in the pair buffer ...
@@ -495,6 +504,101 @@ public class PairManager {
 	//        return index;
 	//    }
 
+	/**
+	 * Write the live pairs into state from offset: the pair count, then the
+	 * two proxy ids and status of each pair. User data isn't written. Must
+	 * not be called between a move and the commit.
+	 * @return the offset after the last int written.
+	 */
+	public int savePairs(final int[] state, int offset) {
+		assert(m_pairBufferCount == 0);
+		final int count = collectPairs();
+		state[offset++] = count;
+		for (int i = 0; i < count; ++i) {
+			final Pair pair = m_collectedPairs[i];
+			state[offset++] = pair.proxyId1;
+			state[offset++] = pair.proxyId2;
+			state[offset++] = pair.status;
+		}
+		return offset;
+	}
+
+	/**
+	 * Remove every pair without making callbacks. Pairs are found from the
+	 * proxies' bounds, so call this before changing them.
+	 */
+	public void clearPairs() {
+		assert(m_pairBufferCount == 0);
+		final int count = collectPairs();
+		for (int i = 0; i < count; ++i) {
+			final Pair pair = m_collectedPairs[i];
+			removePair(pair.proxyId1, pair.proxyId2);
+		}
+	}
+
+	/**
+	 * Replace every pair with the pairs written by {@link #savePairs(int[], int)}.
+	 * No callbacks are made. Pair indices may differ from the saved ones, which
+	 * nothing outside the pair manager sees.
+	 * @param userData user data for every restored pair.
+	 * @return the offset after the last int read.
+	 */
+	public int restorePairs(final int[] state, int offset, final Object userData) {
+		clearPairs();
+		final int count = state[offset++];
+		for (int i = 0; i < count; ++i) {
+			final Pair pair = addPair(state[offset], state[offset + 1]);
+			pair.status = state[offset + 2];
+			pair.userData = userData;
+			offset += 3;
+		}
+		return offset;
+	}
+
+	/**
+	 * Put every live pair in m_collectedPairs. After a commit the proxies of
+	 * every pair overlap, so pairs are found by sweeping the x axis bounds,
+	 * which costs much less than walking the whole hash table. The table is
+	 * only walked if the sweep misses any.
+	 * @return the number of pairs.
+	 */
+	private int collectPairs() {
+		if (m_collectedPairs.length < m_pairCount) {
+			m_collectedPairs = new Pair[Math.max(m_pairCount, 2 * m_collectedPairs.length)];
+		}
+		final Bound[] bounds = m_broadPhase.m_bounds[0];
+		final Proxy[] proxies = m_broadPhase.m_proxyPool;
+		final int boundCount = 2 * m_broadPhase.m_proxyCount;
+		int count = 0;
+		for (int i = 0; i < boundCount && count < m_pairCount; ++i) {
+			if (bounds[i].isUpper()) {
+				continue;
+			}
+			// Proxies starting inside this one's x interval overlap it in x.
+			final int proxyId = bounds[i].proxyId;
+			final int upperIndex = proxies[proxyId].upperBounds[0];
+			for (int j = i + 1; j < upperIndex; ++j) {
+				if (bounds[j].isLower()) {
+					final Pair pair = find(proxyId, bounds[j].proxyId);
+					if (pair != null) {
+						m_collectedPairs[count++] = pair;
+					}
+				}
+			}
+		}
+		if (count == m_pairCount) {
+			return count;
+		}
+
+		count = 0;
+		for (int i = 0; i < PairManager.TABLE_CAPACITY; ++i) {
+			for (int index = m_hashTable[i]; index != PairManager.NULL_PAIR; index = m_pairs[index].next) {
+				m_collectedPairs[count++] = m_pairs[index];
+			}
+		}
+		return count;
+	}
+
 	private final int hash(final int proxyId1, final int proxyId2) {
 		// djm: this operation here is pretty self explanitory,
 		// so i don't think I need to describe what's happening,
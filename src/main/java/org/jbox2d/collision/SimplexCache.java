@@ -0,0 +1,39 @@
+package org.jbox2d.collision;
+
+import org.jbox2d.common.Vec2;
+
+/**
+ * Warm starting data for {@link Distance#DistanceGeneric}. Keep one of these per
+ * shape pair (contacts own one) and pass it to every distance query between the
+ * same two shapes, always in the same shape order. GJK then seeds its first
+ * support points from the previous separating axis instead of from the first
+ * vertices, which usually saves most of the iterations.
+ */
+public class SimplexCache {
+	/** Last separating axis (shape1 toward shape2), in the local frame of shape1. */
+	public final Vec2 localAxis = new Vec2();
+
+	/** Whether {@link #localAxis} holds a usable axis. */
+	public boolean valid;
+
+	/** GJK iterations used by the last query made with this cache. */
+	public int iterations;
+
+	public SimplexCache() {
+		reset();
+	}
+
+	/** Forget the cached axis, the next query will start cold. */
+	public void reset() {
+		localAxis.setZero();
+		valid = false;
+		iterations = 0;
+	}
+
+	public SimplexCache set(final SimplexCache argOther) {
+		localAxis.set(argOther.localAxis);
+		valid = argOther.valid;
+		iterations = argOther.iterations;
+		return this;
+	}
+}
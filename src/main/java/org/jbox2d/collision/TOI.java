@@ -27,6 +27,7 @@ import org.jbox2d.collision.shapes.Shape;
 import org.jbox2d.common.MathUtils;
 import org.jbox2d.common.Settings;
 import org.jbox2d.common.Sweep;
+import org.jbox2d.common.TrigMode;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.common.XForm;
 import org.jbox2d.pooling.SingletonPool;
@@ -57,6 +58,23 @@ public class TOI {
 	 */
 	public static final float timeOfImpact(final Shape shape1, final Sweep sweep1,
 	                                       final Shape shape2, final Sweep sweep2) {
+		return timeOfImpact(shape1, sweep1, shape2, sweep2, null, null, MathUtils.DEFAULT_TRIG_MODE);
+	}
+
+	/**
+	 * Compute the time of impact, warm starting every distance query from the
+	 * pair's simplex cache. Each conservative advancement step only moves the
+	 * shapes a little, so the previous separating axis is nearly always right.
+	 * @param cache warm starting data for this shape pair, may be null.
+	 * @param stats counters to record the distance queries in, may be null.
+	 * @param trig backend for the sweep rotations, normally the world's.
+	 * @return the fraction between [0,1] in which the shapes first touch.
+	 * @see #timeOfImpact(Shape, Sweep, Shape, Sweep)
+	 */
+	public static final float timeOfImpact(final Shape shape1, final Sweep sweep1,
+	                                       final Shape shape2, final Sweep sweep2,
+	                                       final SimplexCache cache, final DistanceStats stats,
+	                                       final TrigMode trig) {
 
 		final XForm xf1 = tlxf1.get();
 		final XForm xf2 = tlxf2.get();
@@ -87,11 +105,11 @@ public class TOI {
 		float targetDistance = 0.0f;
 		while(true){
 			final float t = (1.0f - alpha) * t0 + alpha;
-			sweep1.getXForm(xf1, t);
-			sweep2.getXForm(xf2, t);
+			sweep1.getXForm(xf1, t, trig);
+			sweep2.getXForm(xf2, t, trig);
 
 			// Get the distance between shapes.
-			distance = SingletonPool.getDistance().distance(p1, p2, shape1, xf1, shape2, xf2);
+			distance = SingletonPool.getDistance().distance(p1, p2, shape1, xf1, shape2, xf2, cache, stats);
 			//System.out.println("Distance: "+distance + " alpha: "+alpha);
 
 			if (iter == 0) {
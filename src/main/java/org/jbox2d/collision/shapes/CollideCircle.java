@@ -44,6 +44,7 @@ public class CollideCircle {
 	private final Vec2 colCCP2 = new Vec2();
 	private final Vec2 colCCD = new Vec2();
 	private final Vec2 colCCP = new Vec2();
+	private final Vec2 colCCTemp = new Vec2();
 
 	/**
 	 * puts collision information of the two circles in the manifold
@@ -92,9 +93,10 @@ public class CollideCircle {
 		manifold.points[0].id.zero(); //use this instead of zeroing through key
 		manifold.points[0].separation = separation;
 
-		// let this one slide
-		colCCP1.addLocal(manifold.normal.mul(r1));
-		colCCP2.subLocal(manifold.normal.mul(r2));
+		Vec2.mulToOut(manifold.normal, r1, colCCTemp);
+		colCCP1.addLocal(colCCTemp);
+		Vec2.mulToOut(manifold.normal, r2, colCCTemp);
+		colCCP2.subLocal(colCCTemp);
 
 		colCCP.x = 0.5f * (colCCP1.x + colCCP2.x);
 		colCCP.y = 0.5f * (colCCP1.y + colCCP2.y);
@@ -108,6 +110,7 @@ public class CollideCircle {
 	private final Vec2 colPCP2 = new Vec2();
 	private final Vec2 colPCD = new Vec2();
 	private final Vec2 colPCP = new Vec2();
+	private final Vec2 colPCTemp = new Vec2();
 
 	/**
 	 * Puts collision information in the manifold about a collision between a point and a circle
@@ -155,8 +158,8 @@ public class CollideCircle {
 		manifold.points[0].id.zero(); //use this instead of zeroing through key
 		manifold.points[0].separation = separation;
 
-		// leave this for now
-		colPCP2.subLocal(manifold.normal.mul(r2));
+		Vec2.mulToOut(manifold.normal, r2, colPCTemp);
+		colPCP2.subLocal(colPCTemp);
 
 		colPCP.x = 0.5f * (colPCP1.x + colPCP2.x);
 		colPCP.y = 0.5f * (colPCP1.y + colPCP2.y);
@@ -48,6 +48,10 @@ public class CollidePoly {
 		}
 	}
 
+	/**
+	 * Clip a segment to a line. vOut must hold two ClipVertex objects, which
+	 * are overwritten.
+	 */
 	public final int clipSegmentToLine(final ClipVertex vOut[], final ClipVertex vIn[],
 	                                          final Vec2 normal, final float offset) {
 		// Start with no output points
@@ -59,12 +63,10 @@ public class CollidePoly {
 
 		// If the points are behind the plane
 		if (distance0 <= 0.0f) {
-			vOut[numOut] = new ClipVertex();
 			vOut[numOut].id.set(vIn[0].id);
 			vOut[numOut++].v.set(vIn[0].v);
 		}
 		if (distance1 <= 0.0f) {
-			vOut[numOut] = new ClipVertex();
 			vOut[numOut].id.set(vIn[1].id);
 			vOut[numOut++].v.set(vIn[1].v);
 		}
@@ -73,7 +75,6 @@ public class CollidePoly {
 		if (distance0 * distance1 < 0.0f) {
 			// Find intersection point of edge and plane
 			final float interp = distance0 / (distance0 - distance1);
-			vOut[numOut] = new ClipVertex();
 			vOut[numOut].v.x = vIn[0].v.x + interp * (vIn[1].v.x - vIn[0].v.x);
 			vOut[numOut].v.y = vIn[0].v.y + interp * (vIn[1].v.y - vIn[0].v.y);
 
@@ -148,13 +149,25 @@ public class CollidePoly {
 	 */
 	public final MaxSeparation findMaxSeparation(final PolygonShape poly1, final XForm xf1,
 	                                                    final PolygonShape poly2, final XForm xf2) {
-		final MaxSeparation separation = new MaxSeparation();
+		return findMaxSeparationToOut(poly1, xf1, poly2, xf2, new MaxSeparation());
+	}
+
+	/**
+	 * Find the max separation between poly1 and poly2 using face normals
+	 * from poly1.
+	 * @param separation where to put the result
+	 * @return separation
+	 */
+	public final MaxSeparation findMaxSeparationToOut(final PolygonShape poly1, final XForm xf1,
+	                                                  final PolygonShape poly2, final XForm xf2,
+	                                                  final MaxSeparation separation) {
+		separation.bestFaceIndex = 0;
 
 		final int count1 = poly1.getVertexCount();
 		final Vec2[] normals1 = poly1.getNormals();
 
-		final Vec2 v = poly1.getCentroid();
-		final Vec2 v1 = poly2.getCentroid();
+		final Vec2 v = poly1.m_centroid;
+		final Vec2 v1 = poly2.m_centroid;
 
 		// Vector pointing from the centroid of poly1 to the centroid of poly2.
 		//Vec2 d = XForm.mul(xf2, poly2.m_centroid).subLocal(XForm.mul(xf1, poly1.m_centroid));
@@ -253,6 +266,7 @@ public class CollidePoly {
 	private Vec2 mulTemp = new Vec2();
 	private Vec2 normal1 = new Vec2();
 	// djm optimized
+	/** c must hold two ClipVertex objects, which are overwritten. */
 	public final void findIncidentEdge(final ClipVertex c[],
 	                                          final PolygonShape poly1, final XForm xf1, final int edge1,
 	                                          final PolygonShape poly2, final XForm xf2) {
@@ -285,8 +299,8 @@ public class CollidePoly {
 		final int i1 = index;
 		final int i2 = i1 + 1 < count2 ? i1 + 1 : 0;
 
-		c[0] = new ClipVertex();
-		c[1] = new ClipVertex();
+		c[0].id.zero();
+		c[1].id.zero();
 
 		XForm.mulToOut(xf2, vertices2[i1], c[0].v);
 		c[0].id.features.referenceEdge = edge1;
@@ -317,12 +331,12 @@ public class CollidePoly {
 
 		//testbed.PTest.debugCount++;
 		manif.pointCount = 0; // Fixed a problem with contacts
-		final MaxSeparation sepA = findMaxSeparation(polyA, xfA, polyB, xfB);
+		final MaxSeparation sepA = findMaxSeparationToOut(polyA, xfA, polyB, xfB, p_sepA);
 		if (sepA.bestSeparation > 0.0f) {
 			return;
 		}
 
-		final MaxSeparation sepB = findMaxSeparation(polyB, xfB, polyA, xfA);
+		final MaxSeparation sepB = findMaxSeparationToOut(polyB, xfB, polyA, xfA, p_sepB);
 		if (sepB.bestSeparation > 0.0f) {
 			return;
 		}
@@ -355,7 +369,7 @@ public class CollidePoly {
 			flip = 0;
 		}
 
-		final ClipVertex incidentEdge[] = new ClipVertex[2];
+		final ClipVertex incidentEdge[] = p_incidentEdge;
 		findIncidentEdge(incidentEdge, poly1, xf1, edge1, poly2, xf2);
 
 		final int count1 = poly1.getVertexCount();
@@ -387,12 +401,13 @@ public class CollidePoly {
 		final float sideOffset2 = sideNormal.x * v12x + sideNormal.y * v12y;
 
 		// Clip incident edge against extruded edge1 side edges.
-		final ClipVertex clipPoints1[] = new ClipVertex[2];
-		final ClipVertex clipPoints2[] = new ClipVertex[2];
+		final ClipVertex clipPoints1[] = p_clipPoints1;
+		final ClipVertex clipPoints2[] = p_clipPoints2;
 		int np;
 
 		// Clip to box side 1
-		np = clipSegmentToLine(clipPoints1, incidentEdge, sideNormal.negate(), sideOffset1);
+		Vec2.negateToOut(sideNormal, negSideNormal);
+		np = clipSegmentToLine(clipPoints1, incidentEdge, negSideNormal, sideOffset1);
 
 		if (np < 2) {
 			return;
@@ -737,7 +752,8 @@ public class CollidePoly {
 			manifold.points[0].id.features.referenceEdge = 0;
 			manifold.points[0].id.features.flip = 0;
 			manifold.points[0].localPoint1.set(vertices[enterEndIndex]);
-			XForm.mulTransToOut(xf2, XForm.mul(xf1, vertices[enterEndIndex]), manifold.points[0].localPoint2);
+			XForm.mulToOut(xf1, vertices[enterEndIndex], manifold.points[0].localPoint2);
+			XForm.mulTransToOut(xf2, manifold.points[0].localPoint2, manifold.points[0].localPoint2);
 			manifold.points[0].separation = enterSepN;
 			return;
 		}
@@ -783,7 +799,8 @@ public class CollidePoly {
 			}
 		} else {
 			manifold.points[0].localPoint1.set(vertices[enterEndIndex]);
-			XForm.mulTransToOut(xf2, XForm.mul(xf1, vertices[enterEndIndex]), manifold.points[0].localPoint2);
+			XForm.mulToOut(xf1, vertices[enterEndIndex], manifold.points[0].localPoint2);
+			XForm.mulTransToOut(xf2, manifold.points[0].localPoint2, manifold.points[0].localPoint2);
 			manifold.points[0].separation = enterSepN;
 		}
 
@@ -803,7 +820,8 @@ public class CollidePoly {
 			}
 		} else {
 			manifold.points[1].localPoint1.set(vertices[exitStartIndex]);
-			XForm.mulTransToOut(xf2, XForm.mul(xf1, vertices[exitStartIndex]), manifold.points[1].localPoint2);
+			XForm.mulToOut(xf1, vertices[exitStartIndex], manifold.points[1].localPoint2);
+			XForm.mulTransToOut(xf2, manifold.points[1].localPoint2, manifold.points[1].localPoint2);
 			manifold.points[1].separation = exitSepN;
 		}
 	}
@@ -811,6 +829,12 @@ public class CollidePoly {
 	// "Pool" objects
 	private final Vec2 sideNormal = new Vec2();
 	private final Vec2 frontNormal = new Vec2();
+	private final Vec2 negSideNormal = new Vec2();
+	private final MaxSeparation p_sepA = new MaxSeparation();
+	private final MaxSeparation p_sepB = new MaxSeparation();
+	private final ClipVertex[] p_incidentEdge = {new ClipVertex(), new ClipVertex()};
+	private final ClipVertex[] p_clipPoints1 = {new ClipVertex(), new ClipVertex()};
+	private final ClipVertex[] p_clipPoints2 = {new ClipVertex(), new ClipVertex()};
 
 	private final XForm p_xf1 = new XForm();
 	private final XForm p_xf2 = new XForm();
@@ -330,7 +330,7 @@ public class EdgeShape extends Shape implements SupportsGenericDistance {
 		
 		//Note that v0 is independent of any details of the specific edge
 		//We are relying on v0 being consistent between multiple edges of the same body
-		v0.set(normal).mul(offset);
+		Vec2.mulToOut(normal, offset, v0);
 		//b2Vec2 v0 = xf.position + (offset - b2Dot(normal, xf.position)) * normal;
 
 		XForm.mulToOut(xf, m_v1, v1);
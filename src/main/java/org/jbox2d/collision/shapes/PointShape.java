@@ -40,7 +40,7 @@ public class PointShape extends Shape {
 		//Vec2 p = transform.position.add(Mat22.mul(transform.R, m_localPosition));
 		final Vec2 p = tlP.get();
 		Mat22.mulToOut(transform.R, m_localPosition, p);
-		p.add(transform.position);
+		p.addLocal(transform.position);
 		aabb.lowerBound.set(p.x-Settings.EPSILON, p.y-Settings.EPSILON);
 		aabb.upperBound.set(p.x+Settings.EPSILON, p.y+Settings.EPSILON);
 	}
@@ -642,6 +642,11 @@ public class PolygonShape extends Shape implements SupportsGenericDistance{
 		return m_centroid.clone();
 	}
 
+	/** Get the local centroid relative to the parent body. */
+	public void getCentroidToOut(final Vec2 out) {
+		out.set(m_centroid);
+	}
+
 	/** Get the number of vertices. */
 	public int getVertexCount() {
 		return m_vertexCount;
@@ -670,6 +675,11 @@ public class PolygonShape extends Shape implements SupportsGenericDistance{
 	public Vec2 centroid(final XForm xf) {
 		return XForm.mul(xf, m_centroid);
 	}
+
+	/** Get the centroid and apply the supplied transform. */
+	public void centroidToOut(final XForm xf, final Vec2 out) {
+		XForm.mulToOut(xf, m_centroid, out);
+	}
 	
 	// djm pooling, and from above
 	private static final TLVec2 tlNormalL = new TLVec2();
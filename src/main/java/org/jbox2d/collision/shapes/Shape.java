@@ -62,6 +62,8 @@ public abstract class Shape {
 	public ShapeType m_type;
 	public Shape m_next;
 	public Body m_body;
+	/** Handle in the world's dense shape array, or -1 if not attached. */
+	public int m_handle = -1;
 
 	/** Sweep radius relative to the parent body's center of mass. */
 	public float m_sweepRadius;
@@ -73,6 +75,10 @@ public abstract class Shape {
 
 	public int m_proxyId;
 
+	/** Enlarged AABB the proxy was last moved to, when fat AABBs are in use. */
+	final AABB m_fatAABB = new AABB();
+	boolean m_fatAABBValid;
+
 	public FilterData m_filter;
 
 	public boolean m_isSensor;
@@ -176,6 +182,14 @@ public abstract class Shape {
 		return m_next;
 	}
 
+	/**
+	 * Get this shape's handle, which stays valid until the shape is destroyed.
+	 * @see org.jbox2d.dynamics.World#getShapeByHandle(int)
+	 */
+	public int getHandle() {
+		return m_handle;
+	}
+
 	/**
 	 * Get the sweep radius of the shape.
 	 * @return the sweep radius
@@ -243,6 +257,15 @@ public abstract class Shape {
 	private static final TLAABB tlAabb = new TLAABB();
 	/** Internal */
 	public boolean synchronize(final BroadPhase broadPhase, final XForm transform1, final XForm transform2) {
+		return synchronize(broadPhase, transform1, transform2, 0.0f);
+	}
+
+	/**
+	 * Internal. With a positive margin the proxy is given an AABB enlarged by
+	 * the margin, and is only moved again once the swept AABB leaves it.
+	 */
+	public boolean synchronize(final BroadPhase broadPhase, final XForm transform1, final XForm transform2,
+	                           final float margin) {
 		if (m_proxyId == PairManager.NULL_PROXY) {
 			return false;
 		}
@@ -255,6 +278,22 @@ public abstract class Shape {
 		//	System.out.println("Resulting AABB: "+aabb);
 		//}
 		if (broadPhase.inRange(aabb)) {
+			if (margin > 0.0f) {
+				if (m_fatAABBValid && m_fatAABB.contains(aabb)) {
+					++broadPhase.m_skippedMoveCount;
+					return true;
+				}
+				m_fatAABB.lowerBound.set(aabb.lowerBound.x - margin, aabb.lowerBound.y - margin);
+				m_fatAABB.upperBound.set(aabb.upperBound.x + margin, aabb.upperBound.y + margin);
+				// Near the edge of the world just use the tight box.
+				m_fatAABBValid = broadPhase.inRange(m_fatAABB);
+				if (m_fatAABBValid) {
+					aabb = m_fatAABB;
+				}
+			}
+			else {
+				m_fatAABBValid = false;
+			}
 			broadPhase.moveProxy(m_proxyId, aabb);
 			return true;
 		} else {
@@ -262,11 +301,39 @@ public abstract class Shape {
 		}
 	}
 
+	/**
+	 * Internal, for World.saveState. Writes the fat AABB's bounds into state
+	 * from offset, then 1 if it is in use or 0.
+	 * @return the offset after the last float written.
+	 */
+	public int saveFatAABB(final float[] state, int offset) {
+		state[offset++] = m_fatAABB.lowerBound.x;
+		state[offset++] = m_fatAABB.lowerBound.y;
+		state[offset++] = m_fatAABB.upperBound.x;
+		state[offset++] = m_fatAABB.upperBound.y;
+		state[offset++] = m_fatAABBValid ? 1.0f : 0.0f;
+		return offset;
+	}
+
+	/**
+	 * Internal, for World.restoreState. Reads back what saveFatAABB wrote.
+	 * @return the offset after the last float read.
+	 */
+	public int restoreFatAABB(final float[] state, int offset) {
+		m_fatAABB.lowerBound.x = state[offset++];
+		m_fatAABB.lowerBound.y = state[offset++];
+		m_fatAABB.upperBound.x = state[offset++];
+		m_fatAABB.upperBound.y = state[offset++];
+		m_fatAABBValid = state[offset++] != 0.0f;
+		return offset;
+	}
+
 	/** Internal */
 	public void refilterProxy(final BroadPhase broadPhase, final XForm transform){
 		if (m_proxyId == PairManager.NULL_PROXY){
 			return;
 		}
+		m_fatAABBValid = false;
 
 		broadPhase.destroyProxy(m_proxyId);
 		// djm don't pool this, it could be used to
@@ -322,6 +389,7 @@ public abstract class Shape {
 	/** Internal */
 	public void createProxy(final BroadPhase broadPhase, final XForm transform) {
 		assert(m_proxyId == PairManager.NULL_PROXY);
+		m_fatAABBValid = false;
 
 		// djm don't pool this,
 		// could be used
@@ -109,6 +109,16 @@ public class Mat22 {
 		col1.y = s; col2.y = c;
 	}
 
+	/**
+	 * Set as a matrix representing a rotation, using the given trig backend.
+	 * @param angle Rotation (in radians) that matrix represents.
+	 */
+	public final void set(final float angle, final TrigMode mode) {
+		final float c = MathUtils.cos(angle, mode), s = MathUtils.sin(angle, mode);
+		col1.x = c; col2.x = -s;
+		col1.y = s; col2.y = c;
+	}
+
 	/**
 	 * Set as the identity matrix.
 	 */
@@ -347,6 +357,18 @@ public class Mat22 {
 		return m;
 	}
 
+	/**
+	 * Add this matrix to B, put the result in out. out may be this or B.
+	 * @param B
+	 * @param out
+	 */
+	public final void addToOut(final Mat22 B, final Mat22 out) {
+		out.col1.x = col1.x + B.col1.x;
+		out.col1.y = col1.y + B.col1.y;
+		out.col2.x = col2.x + B.col2.x;
+		out.col2.y = col2.y + B.col2.y;
+	}
+
 	/**
 	 * Add B to this matrix locally.
 	 * @param B
@@ -39,6 +39,13 @@ public class Mat33 {
 		col3 = argCol3.clone();
 	}
 	
+	public Mat33 set(Mat33 argOther){
+		col1.set(argOther.col1);
+		col2.set(argOther.col2);
+		col3.set(argOther.col3);
+		return this;
+	}
+
 	public void setZero(){
 		col1.setZero();
 		col2.setZero();
@@ -41,72 +41,127 @@ public class MathUtils {
 		}
 	}
 	
+	/**
+	 * The mode matching the compile time settings, used by {@link #sin(float)}
+	 * and {@link #cos(float)} and by worlds which have not picked one.
+	 */
+	public static final TrigMode DEFAULT_TRIG_MODE = !Settings.SINCOS_LUT_ENABLED ? TrigMode.STRICT
+			: Settings.SINCOS_LUT_LERP ? TrigMode.LUT_LERP : TrigMode.LUT;
+
 	public static final float sin(float x){
-		if(Settings.SINCOS_LUT_ENABLED){
-			x %= TWOPI;
-			
-			while(x < 0){
-				x += TWOPI;
-			}
-			
-			if(Settings.SINCOS_LUT_LERP){
-				
-				x /= Settings.SINCOS_LUT_PRECISION;
-								
-				final int index = (int)x;
-				
-				if(index != 0){
-					x %= index;
-				}
-				
-				// the next index is 0
-				if(index == Settings.SINCOS_LUT_LENGTH-1){
-					return ( (1-x)*sinLUT[index] + x * sinLUT[0]);
-				}else{
-					return ( (1-x)*sinLUT[index] + x * sinLUT[index + 1]);
-				}
-				
-			}else{
-				return sinLUT[ MathUtils.round(x / Settings.SINCOS_LUT_PRECISION) % Settings.SINCOS_LUT_LENGTH];
-			}
-			
-		}else{
-			return (float) Math.sin(x);
-		}
+		return sin(x, DEFAULT_TRIG_MODE);
 	}
-	
+
 	public static final float cos(float x){
-		if(Settings.SINCOS_LUT_ENABLED){
-			x %= TWOPI;
-			
-			while(x < 0){
-				x += TWOPI;
-			}
-			
-			if(Settings.SINCOS_LUT_LERP){
-				
-				x /= Settings.SINCOS_LUT_PRECISION;
-								
-				final int index = (int)x;
-				
-				if(index != 0){
-					x %= index;
-				}
-				
-				// the next index is 0
-				if(index == Settings.SINCOS_LUT_LENGTH-1){
-					return ( (1-x)*cosLUT[index] + x * cosLUT[0]);
-				}else{
-					return ( (1-x)*cosLUT[index] + x * cosLUT[index + 1]);
-				}
-				
-			}else{
-				return cosLUT[ MathUtils.round(x / Settings.SINCOS_LUT_PRECISION) % Settings.SINCOS_LUT_LENGTH];
-			}
-			
-		}else{
-			return (float) Math.cos(x);
+		return cos(x, DEFAULT_TRIG_MODE);
+	}
+
+	/**
+	 * Sine using the given backend.
+	 * @see TrigMode
+	 */
+	public static final float sin(final float x, final TrigMode mode){
+		switch(mode){
+			case LUT:
+				return sinLUT[lutIndex(x)];
+			case LUT_LERP:
+				return lerpLUT(sinLUT, x);
+			case POLYNOMIAL:
+				return sinPoly(x);
+			default:
+				return (float) StrictMath.sin(x);
+		}
+	}
+
+	/**
+	 * Cosine using the given backend.
+	 * @see TrigMode
+	 */
+	public static final float cos(final float x, final TrigMode mode){
+		switch(mode){
+			case LUT:
+				return cosLUT[lutIndex(x)];
+			case LUT_LERP:
+				return lerpLUT(cosLUT, x);
+			case POLYNOMIAL:
+				return cosPoly(x);
+			default:
+				return (float) StrictMath.cos(x);
+		}
+	}
+
+	private static final int lutIndex(float x){
+		x %= TWOPI;
+		while(x < 0){
+			x += TWOPI;
+		}
+		return MathUtils.round(x / Settings.SINCOS_LUT_PRECISION) % Settings.SINCOS_LUT_LENGTH;
+	}
+
+	private static final float lerpLUT(final float[] lut, float x){
+		x %= TWOPI;
+		if(x < 0){
+			x += TWOPI;
+		}
+		final int last = Settings.SINCOS_LUT_LENGTH - 1;
+		final int index = (int)(x / Settings.SINCOS_LUT_PRECISION);
+		if(index >= last){
+			// the table doesn't end exactly at 2pi, so the last gap is shorter and wraps to the first entry
+			final float start = last * Settings.SINCOS_LUT_PRECISION;
+			final float t = (x - start) / (TWOPI - start);
+			return (1-t)*lut[last] + t*lut[0];
+		}
+		final float t = x / Settings.SINCOS_LUT_PRECISION - index;
+		return (1-t)*lut[index] + t*lut[index + 1];
+	}
+
+	private static final float HALF_PI = PI / 2;
+
+	/** x reduced to [-pi, pi]. */
+	private static final float reduce(final float x){
+		return x - TWOPI * MathUtils.round(x / TWOPI);
+	}
+
+	private static final float sinPoly(float x){
+		x = reduce(x);
+		// sin(x) = sin(pi - x)
+		if(x > HALF_PI){
+			x = PI - x;
+		}else if(x < -HALF_PI){
+			x = -PI - x;
+		}
+		final float x2 = x * x;
+		return x * (1f + x2 * (-1.6666667e-1f + x2 * (8.3333333e-3f + x2 * (-1.9841270e-4f
+				+ x2 * (2.7557319e-6f + x2 * -2.5052108e-8f)))));
+	}
+
+	private static final float cosPoly(float x){
+		x = MathUtils.abs(reduce(x));
+		// cos(x) = -cos(pi - x)
+		float sign = 1f;
+		if(x > HALF_PI){
+			x = PI - x;
+			sign = -1f;
+		}
+		final float x2 = x * x;
+		return sign * (1f + x2 * (-0.5f + x2 * (4.1666667e-2f + x2 * (-1.3888889e-3f
+				+ x2 * (2.4801587e-5f + x2 * (-2.7557319e-7f + x2 * 2.0876757e-9f))))));
+	}
+
+	/**
+	 * Largest difference of {@link #sin(float, TrigMode)} and
+	 * {@link #cos(float, TrigMode)} from {@link StrictMath}, over evenly spaced
+	 * angles in [-2pi, 2pi].
+	 * @param samples number of angles to try.
+	 */
+	public static final float maxSinCosError(final TrigMode mode, final int samples){
+		double max = 0;
+		for(int i=0; i<samples; i++){
+			final float x = -TWOPI + 2 * TWOPI * i / (samples - 1);
+			max = Math.max(max, Math.abs(sin(x, mode) - StrictMath.sin(x)));
+			max = Math.max(max, Math.abs(cos(x, mode) - StrictMath.cos(x)));
 		}
+		return (float) max;
 	}
 
 	public static final float abs(final float x) {
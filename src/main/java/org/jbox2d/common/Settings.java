@@ -158,6 +158,16 @@ public class Settings {
      * larger than b2_linearSlop.
      */
     public static final float toiSlop = 8.0f * linearSlop;
+
+    /**
+     * With contact coherence enabled, a polygon contact reuses its previous manifold while
+     * the relative position of its bodies has drifted less than this since the last full
+     * collision. This is each world's default, see World.setContactCoherenceSlop.
+     */
+    public static final float coherenceLinearSlop = 0.1f * linearSlop;
+
+    /** Relative rotation counterpart of {@link #coherenceLinearSlop}. */
+    public static final float coherenceAngularSlop = 0.1f * angularSlop;
     
     /**
      * The maximum linear velocity of a body. This limit is very large and is used
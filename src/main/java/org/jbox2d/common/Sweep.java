@@ -73,6 +73,16 @@ public class Sweep {
 	 * @param t the normalized time in [0,1].
 	 */
 	public void getXForm(XForm xf, float t) {
+		getXForm(xf, t, MathUtils.DEFAULT_TRIG_MODE);
+	}
+
+	/**
+	 * Get the interpolated transform at a specific time.
+	 * @param xf the result is placed here - must not be null
+	 * @param t the normalized time in [0,1].
+	 * @param mode trig backend for the rotation.
+	 */
+	public void getXForm(XForm xf, float t, TrigMode mode) {
 		assert(xf != null);
 		//if (xf == null)
 		//	xf = new XForm();
@@ -82,10 +92,10 @@ public class Sweep {
 			xf.position.x = (1.0f - alpha) * c0.x + alpha * c.x;
 			xf.position.y = (1.0f - alpha) * c0.y + alpha * c.y;
 			float angle = (1.0f - alpha) * a0 + alpha * a;
-			xf.R.set(angle);
+			xf.R.set(angle, mode);
 		} else {
 			xf.position.set(c);
-			xf.R.set(a);
+			xf.R.set(a, mode);
 		}
 
 		// Shift to origin
@@ -94,6 +104,21 @@ public class Sweep {
 		xf.position.y -= xf.R.col1.y * localCenter.x + xf.R.col2.y * localCenter.y;
 	}
 
+	/**
+	 * Get the interpolated center of mass at a specific time.
+	 * @param t the normalized time in [0,1].
+	 * @param out the result is placed here - must not be null
+	 */
+	public void getCenterToOut(float t, Vec2 out) {
+		if (1.0f - t0 > Settings.EPSILON) {
+			float alpha = (t - t0) / (1.0f - t0);
+			out.x = (1.0f - alpha) * c0.x + alpha * c.x;
+			out.y = (1.0f - alpha) * c0.y + alpha * c.y;
+		} else {
+			out.set(c);
+		}
+	}
+
 	/** 
 	 * Advance the sweep forward, yielding a new initial state.
 	 * @param t the new initial time.
@@ -0,0 +1,21 @@
+package org.jbox2d.common;
+
+/**
+ * How a World turns angles into rotations. Every mode but {@link #STRICT}
+ * trades some accuracy for speed, and since the simulation is chaotic any
+ * change of mode changes trajectories, so pick one per World and keep it.
+ * Use {@link MathUtils#maxSinCosError(TrigMode, int)} to see what each costs
+ * in accuracy.
+ * @see MathUtils#sin(float, TrigMode)
+ * @see org.jbox2d.dynamics.World#setTrigMode(TrigMode)
+ */
+public enum TrigMode {
+	/** Nearest entry of the shared lookup table. Max error is about half the table precision. */
+	LUT,
+	/** Linear interpolation between the two nearest table entries. */
+	LUT_LERP,
+	/** Odd/even polynomials after reduction to [-pi/2, pi/2]. No table, max error around 1e-7. */
+	POLYNOMIAL,
+	/** {@link StrictMath}, reproducible on every platform. */
+	STRICT;
+}
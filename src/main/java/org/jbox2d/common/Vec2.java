@@ -256,6 +256,24 @@ public class Vec2 {
 		out.y = a.y > b.y ? a.y : b.y;
 	}
 
+	/** out = a + b. out may be a or b. */
+	public final static void addToOut(Vec2 a, Vec2 b, Vec2 out) {
+		out.x = a.x + b.x;
+		out.y = a.y + b.y;
+	}
+
+	/** out = a - b. out may be a or b. */
+	public final static void subToOut(Vec2 a, Vec2 b, Vec2 out) {
+		out.x = a.x - b.x;
+		out.y = a.y - b.y;
+	}
+
+	/** out = a * s. out may be a. */
+	public final static void mulToOut(Vec2 a, float s, Vec2 out) {
+		out.x = a.x * s;
+		out.y = a.y * s;
+	}
+
 	/**
 	 * @see java.lang.Object#hashCode()
 	 */
@@ -67,6 +67,13 @@ public class XForm {
 		return this;
 	}
 
+	/** Set this from a position and a rotation angle in radians. */
+	public final XForm set(final Vec2 _position, final float angle) {
+		position.set(_position);
+		R.set(angle);
+		return this;
+	}
+
 	/** Set this to the identity transform. */
 	public final void setIdentity(){
 		position.setZero();
@@ -95,6 +95,8 @@ public class Body {
 	public World m_world;
 	public Body m_prev;
 	public Body m_next;
+	/** Handle in the world's dense body array, or -1 if not in a world. */
+	public int m_handle = -1;
 
 	public Shape m_shapeList;
 	public int m_shapeCount;
@@ -119,6 +121,9 @@ public class Body {
 	 */
 	public Object m_userData;
 
+	/** Integer tag for fast lookups, copied from the BodyDef. */
+	public int m_tag;
+
 	/**
 	 * Empty body, with no world
 	 */
@@ -162,13 +167,13 @@ public class Body {
 		m_xf = new XForm();
 
 		m_xf.position.set(bd.position);
-		m_xf.R.set(bd.angle);
+		m_xf.R.set(bd.angle, m_world.m_trigMode);
 
 		m_sweep = new Sweep();
 		m_sweep.localCenter.set(bd.massData.center);
 		m_sweep.t0 = 1.0f;
 		m_sweep.a0 = m_sweep.a = bd.angle;
-		m_sweep.c.set(XForm.mul(m_xf, m_sweep.localCenter));
+		XForm.mulToOut(m_xf, m_sweep.localCenter, m_sweep.c);
 		m_sweep.c0.set(m_sweep.c);
 
 		m_jointList = null;
@@ -212,6 +217,7 @@ public class Body {
 		}
 
 		m_userData = bd.userData;
+		m_tag = bd.tag;
 
 		m_shapeList = null;
 		m_shapeCount = 0;
@@ -276,6 +282,7 @@ public class Body {
 				s2.m_next = m_shapeList;
 				m_shapeList = s2;
 				++m_shapeCount;
+				s2.m_handle = m_world.m_shapes.add(s2);
 				s2.m_body = this;
 				s2.createProxy(m_world.m_broadPhase, m_xf);
 				s2.updateSweepRadius(m_sweep.localCenter);
@@ -301,6 +308,7 @@ public class Body {
 		s.m_next = m_shapeList;
 		m_shapeList = s;
 		++m_shapeCount;
+		s.m_handle = m_world.m_shapes.add(s);
 
 		s.m_body = this;
 
@@ -372,6 +380,8 @@ public class Body {
 
 		s.m_body = null;
 		s.m_next = null;
+		m_world.m_shapes.remove(s.m_handle);
+		s.m_handle = -1;
 
 		--m_shapeCount;
 		Shape.destroy(s);
@@ -523,7 +533,7 @@ public class Body {
 			return false;
 		}
 
-		m_xf.R.set(angle);
+		m_xf.R.set(angle, m_world.m_trigMode);
 		m_xf.position.set(position);
 
 		XForm.mulToOut(m_xf, m_sweep.localCenter, m_sweep.c);
@@ -533,7 +543,7 @@ public class Body {
 		boolean freeze = false;
 
 		for (Shape s = m_shapeList; s != null; s = s.m_next) {
-			final boolean inRange = s.synchronize(m_world.m_broadPhase, m_xf, m_xf);
+			final boolean inRange = s.synchronize(m_world.m_broadPhase, m_xf, m_xf, m_world.m_fatAABBMargin);
 
 			if (inRange == false) {
 				freeze = true;
@@ -569,6 +579,14 @@ public class Body {
 		return xf;
 	}
 
+	/**
+	 * Get the body transform for the body's origin.
+	 * @param out where to put the world transform of the body's origin.
+	 */
+	public void getXFormToOut(final XForm out){
+		out.set(m_xf);
+	}
+
 	/**
 	 * More for internal use.  It isn't copied,
 	 * so don't modify it.  instead try to use {@link #setXForm(Vec2, float)}.
@@ -600,6 +618,15 @@ public class Body {
 		return m_xf.position.clone();
 	}
 
+	/**
+	 * Get the world body origin position.
+	 * @param out where to put the world position of the body's origin.
+	 * @see #getPosition()
+	 */
+	public void getPositionToOut(final Vec2 out){
+		out.set(m_xf.position);
+	}
+
 	/**
 	 * This is more for internal use.  It isn't copied, so don't
 	 * modify it.  This is the position of the body's XForm
@@ -629,6 +656,14 @@ public class Body {
 		return m_sweep.c.clone();
 	}
 
+	/**
+	 * Get the world position of the center of mass.
+	 * @param out where to put the world position
+	 */
+	public void getWorldCenterToOut(final Vec2 out){
+		out.set(m_sweep.c);
+	}
+
 	/**
 	 * More for internal use. It isn't copied, so don't
 	 * modify it.  Modifying this will not do what you want,
@@ -648,6 +683,14 @@ public class Body {
 		return m_sweep.localCenter.clone();
 	}
 
+	/**
+	 * Get local position of the center of mass.
+	 * @param out where to put the local position of the center of mass
+	 */
+	public void getLocalCenterToOut(final Vec2 out){
+		out.set(m_sweep.localCenter);
+	}
+
 	/**
 	 * More for internal use. It isn't a copy, so don't
 	 * modify it.
@@ -931,6 +974,14 @@ public class Body {
 		return m_next;
 	}
 
+	/**
+	 * Get this body's handle, which stays valid until the body is destroyed.
+	 * @see World#getBodyByHandle(int)
+	 */
+	public int getHandle(){
+		return m_handle;
+	}
+
 	/** Get the user data Object reference that was provided in the body definition. */
 	public Object getUserData(){
 		return m_userData;
@@ -950,7 +1001,7 @@ public class Body {
 	public boolean synchronizeShapes(){
 		// INLINED
 		final XForm xf1 = tlXf1.get();
-		xf1.R.set(m_sweep.a0);
+		xf1.R.set(m_sweep.a0, m_world.m_trigMode);
 		Mat22 R = xf1.R;
 		Vec2 v = m_sweep.localCenter;
 		xf1.position.set(m_sweep.c0.x - (R.col1.x * v.x + R.col2.x * v.y),
@@ -958,7 +1009,7 @@ public class Body {
 
 		boolean inRange = true;
 		for (Shape s = m_shapeList; s != null; s = s.m_next) {
-			inRange = s.synchronize(m_world.m_broadPhase, xf1, m_xf);
+			inRange = s.synchronize(m_world.m_broadPhase, xf1, m_xf, m_world.m_fatAABBMargin);
 			if (inRange == false) {
 				break;
 			}
@@ -982,7 +1033,7 @@ public class Body {
 
 	/** For internal use only. */
 	public void synchronizeTransform(){
-		m_xf.R.set(m_sweep.a);
+		m_xf.R.set(m_sweep.a, m_world.m_trigMode);
 		//m_xf.position.set(m_sweep.c.sub(Mat22.mul(m_xf.R,m_sweep.localCenter)));
 		final Vec2 v1 = m_sweep.localCenter;
 		m_xf.position.x = m_sweep.c.x - (m_xf.R.col1.x * v1.x + m_xf.R.col2.x * v1.y);
@@ -1110,6 +1161,16 @@ public class Body {
 		m_userData = data;
 	}
 
+	/** Get the integer tag that was provided in the body definition. */
+	public int getTag() {
+		return m_tag;
+	}
+
+	/** Set the integer tag, see {@link BodyDef#tag}. */
+	public void setTag(final int tag) {
+		m_tag = tag;
+	}
+
 	public World getWorld() {
 		return m_world;
 	}
@@ -47,6 +47,11 @@ public class BodyDef {
 	
 	/** Use this to store application specific body data */
     public Object userData;
+    /**
+     * Application specific integer tag, e.g. a part id or bitmask. Cheaper than
+     * userData for lookups in contact callbacks.
+     */
+    public int tag;
 
     /**
      * The world position of the body.  Avoid creating bodies at the origin
@@ -110,6 +115,7 @@ public class BodyDef {
         massData.mass = 0.0f;
         massData.I = 0.0f;
         userData = null;
+        tag = 0;
         position = new Vec2(0.0f, 0.0f);
         angle = 0.0f;
         linearDamping = 0.0f;
@@ -0,0 +1,207 @@
+package org.jbox2d.dynamics;
+
+import org.jbox2d.common.Color3f;
+import org.jbox2d.common.OBBViewportTransform;
+import org.jbox2d.common.Vec2;
+import org.jbox2d.common.XForm;
+
+/**
+ * Headless debug draw which records a frame into one float array instead of
+ * drawing it, for renderers which consume whole frames (a canvas, or offline
+ * video export). Each draw call appends its floats to the vertex array and one
+ * command to the command index, saying what was drawn, where its floats start,
+ * how many there are, and its color. Both arrays are kept between frames and only
+ * grow, so recording a frame allocates nothing once they are big enough.
+ * <p>
+ * Floats per command type:
+ * <ul><li>POLYGON, SOLID_POLYGON: x, y of each vertex, in CCW order.</li>
+ * <li>CIRCLE: center x, y, radius.</li>
+ * <li>SOLID_CIRCLE: center x, y, radius, axis x, y.</li>
+ * <li>POINT: x, y, size.</li>
+ * <li>SEGMENT: x1, y1, x2, y2.</li>
+ * <li>XFORM: position x, y, rotation column 1 x, y, column 2 x, y.</li></ul>
+ * Coordinates are world coordinates plus the offset given to {@link #setOffset(float, float)}.
+ * Strings are not recorded.
+ */
+public class BufferedDebugDraw extends DebugDraw {
+
+	public static final int POLYGON = 0;
+	public static final int SOLID_POLYGON = 1;
+	public static final int CIRCLE = 2;
+	public static final int SOLID_CIRCLE = 3;
+	public static final int POINT = 4;
+	public static final int SEGMENT = 5;
+	public static final int XFORM = 6;
+
+	/** Ints per command: type, first float, float count, color. */
+	public static final int COMMAND_STRIDE = 4;
+
+	private float[] m_vertices;
+	private int m_vertexFloatCount;
+
+	private int[] m_commands;
+	private int m_commandCount;
+
+	private float m_offsetX;
+	private float m_offsetY;
+
+	public BufferedDebugDraw() {
+		this(1024, 64);
+	}
+
+	/**
+	 * @param floatCapacity initial size of the vertex array.
+	 * @param commandCapacity initial number of commands.
+	 */
+	public BufferedDebugDraw(final int floatCapacity, final int commandCapacity) {
+		super(new OBBViewportTransform());
+		m_vertices = new float[floatCapacity];
+		m_commands = new int[commandCapacity * COMMAND_STRIDE];
+	}
+
+	/** Forget the recorded frame, keeping the arrays. */
+	public void clear() {
+		m_vertexFloatCount = 0;
+		m_commandCount = 0;
+	}
+
+	/** Add this to every recorded position, e.g. to undo origin shifts. */
+	public void setOffset(final float x, final float y) {
+		m_offsetX = x;
+		m_offsetY = y;
+	}
+
+	/** The recorded floats. Only the first {@link #getVertexFloatCount()} are valid. */
+	public float[] getVertices() {
+		return m_vertices;
+	}
+
+	public int getVertexFloatCount() {
+		return m_vertexFloatCount;
+	}
+
+	/**
+	 * The command index, {@link #COMMAND_STRIDE} ints per command. Only the first
+	 * {@link #getCommandCount()} commands are valid.
+	 */
+	public int[] getCommands() {
+		return m_commands;
+	}
+
+	public int getCommandCount() {
+		return m_commandCount;
+	}
+
+	public int getCommandType(final int command) {
+		return m_commands[command * COMMAND_STRIDE];
+	}
+
+	/** Index in {@link #getVertices()} of the command's first float. */
+	public int getCommandStart(final int command) {
+		return m_commands[command * COMMAND_STRIDE + 1];
+	}
+
+	public int getCommandFloatCount(final int command) {
+		return m_commands[command * COMMAND_STRIDE + 2];
+	}
+
+	/** Color of the command, packed as 0xRRGGBB. */
+	public int getCommandColor(final int command) {
+		return m_commands[command * COMMAND_STRIDE + 3];
+	}
+
+	@Override
+	public void drawPolygon(final Vec2[] vertices, final int vertexCount, final Color3f color) {
+		addPolygon(POLYGON, vertices, vertexCount, color);
+	}
+
+	@Override
+	public void drawSolidPolygon(final Vec2[] vertices, final int vertexCount, final Color3f color) {
+		addPolygon(SOLID_POLYGON, vertices, vertexCount, color);
+	}
+
+	@Override
+	public void drawCircle(final Vec2 center, final float radius, final Color3f color) {
+		final int start = begin(CIRCLE, 3, color);
+		m_vertices[start] = center.x + m_offsetX;
+		m_vertices[start + 1] = center.y + m_offsetY;
+		m_vertices[start + 2] = radius;
+	}
+
+	@Override
+	public void drawSolidCircle(final Vec2 center, final float radius, final Vec2 axis, final Color3f color) {
+		final int start = begin(SOLID_CIRCLE, 5, color);
+		m_vertices[start] = center.x + m_offsetX;
+		m_vertices[start + 1] = center.y + m_offsetY;
+		m_vertices[start + 2] = radius;
+		m_vertices[start + 3] = axis.x;
+		m_vertices[start + 4] = axis.y;
+	}
+
+	@Override
+	public void drawPoint(final Vec2 position, final float f, final Color3f color) {
+		final int start = begin(POINT, 3, color);
+		m_vertices[start] = position.x + m_offsetX;
+		m_vertices[start + 1] = position.y + m_offsetY;
+		m_vertices[start + 2] = f;
+	}
+
+	@Override
+	public void drawSegment(final Vec2 p1, final Vec2 p2, final Color3f color) {
+		final int start = begin(SEGMENT, 4, color);
+		m_vertices[start] = p1.x + m_offsetX;
+		m_vertices[start + 1] = p1.y + m_offsetY;
+		m_vertices[start + 2] = p2.x + m_offsetX;
+		m_vertices[start + 3] = p2.y + m_offsetY;
+	}
+
+	@Override
+	public void drawXForm(final XForm xf) {
+		final int start = begin(XFORM, 6, Color3f.WHITE);
+		m_vertices[start] = xf.position.x + m_offsetX;
+		m_vertices[start + 1] = xf.position.y + m_offsetY;
+		m_vertices[start + 2] = xf.R.col1.x;
+		m_vertices[start + 3] = xf.R.col1.y;
+		m_vertices[start + 4] = xf.R.col2.x;
+		m_vertices[start + 5] = xf.R.col2.y;
+	}
+
+	@Override
+	public void drawString(final float x, final float y, final String s, final Color3f color) {
+		// Not recorded.
+	}
+
+	private void addPolygon(final int type, final Vec2[] vertices, final int vertexCount, final Color3f color) {
+		int index = begin(type, 2 * vertexCount, color);
+		for (int i = 0; i < vertexCount; ++i) {
+			m_vertices[index++] = vertices[i].x + m_offsetX;
+			m_vertices[index++] = vertices[i].y + m_offsetY;
+		}
+	}
+
+	/**
+	 * Add a command and make room for its floats.
+	 * @return index of the command's first float.
+	 */
+	private int begin(final int type, final int floatCount, final Color3f color) {
+		final int start = m_vertexFloatCount;
+		if (start + floatCount > m_vertices.length) {
+			final float[] vertices = new float[Math.max(2 * m_vertices.length, start + floatCount)];
+			System.arraycopy(m_vertices, 0, vertices, 0, start);
+			m_vertices = vertices;
+		}
+		if ((m_commandCount + 1) * COMMAND_STRIDE > m_commands.length) {
+			final int[] commands = new int[Math.max(2 * m_commands.length, COMMAND_STRIDE)];
+			System.arraycopy(m_commands, 0, commands, 0, m_commandCount * COMMAND_STRIDE);
+			m_commands = commands;
+		}
+		final int c = m_commandCount * COMMAND_STRIDE;
+		m_commands[c] = type;
+		m_commands[c + 1] = start;
+		m_commands[c + 2] = floatCount;
+		m_commands[c + 3] = ((int) color.x & 0xFF) << 16 | ((int) color.y & 0xFF) << 8 | ((int) color.z & 0xFF);
+		++m_commandCount;
+		m_vertexFloatCount = start + floatCount;
+		return start;
+	}
+}
@@ -77,26 +77,38 @@ public class ContactManager implements PairCallback {
 			return m_nullContact;
 		}
 
+		final Contact c = addContact(shape1, shape2);
+		return c == null ? m_nullContact : c;
+	}
+
+	/**
+	 * Create a contact between two shapes and put it at the head of the
+	 * world's contact list and both bodies' contact lists.
+	 * @return the contact, or null if these shape types don't collide.
+	 */
+	Contact addContact(final Shape s1, final Shape s2) {
 		// Call the factory.
-		final Contact c = Contact.createContact(shape1, shape2);
+		final Contact c = Contact.createContact(s1, s2, m_world.m_contactPool);
 
 		if (c == null) {
-			return m_nullContact;
+			return null;
 		}
 
 		// Contact creation may swap shapes.
-		shape1 = c.getShape1();
-		shape2 = c.getShape2();
-		body1 = shape1.getBody();
-		body2 = shape2.getBody();
+		final Shape shape1 = c.getShape1();
+		final Shape shape2 = c.getShape2();
+		final Body body1 = shape1.getBody();
+		final Body body2 = shape2.getBody();
 
 		// Insert into the world.
+		c.m_world = m_world;
 		c.m_prev = null;
 		c.m_next = m_world.m_contactList;
 		if (m_world.m_contactList != null) {
 			m_world.m_contactList.m_prev = c;
 		}
 		m_world.m_contactList = c;
+		c.m_handle = m_world.m_contacts.add(c);
 
 		// Connect to island graph.
 
@@ -126,6 +138,16 @@ public class ContactManager implements PairCallback {
 		return c;
 	}
 
+	// This is a callback from the broadphase before it tracks a new pair of
+	// overlapping proxies. Shapes the contact filter keeps apart are never
+	// paired, so they don't fill up the pair table.
+	public boolean shouldPair(final Object proxyUserData1, final Object proxyUserData2) {
+		if (m_world.m_contactFilter == null) {
+			return true;
+		}
+		return m_world.m_contactFilter.shouldCollide((Shape) proxyUserData1, (Shape) proxyUserData2);
+	}
+
 	// This is a callback from the broadphase when two AABB proxies cease
 	// to overlap. We retire the b2Contact.
 	public void pairRemoved(final Object proxyUserData1, final Object proxyUserData2,
@@ -201,6 +223,8 @@ public class ContactManager implements PairCallback {
 		if (c == m_world.m_contactList) {
 			m_world.m_contactList = c.m_next;
 		}
+		m_world.m_contacts.remove(c.m_handle);
+		c.m_handle = -1;
 
 		final Body body1 = shape1.getBody();
 		final Body body2 = shape2.getBody();
@@ -231,15 +255,17 @@ public class ContactManager implements PairCallback {
 			body2.m_contactList = c.m_node2.next;
 		}
 
-		// Call the factory.
-		Contact.destroy(c);
+		// Call the factory. The contact goes back to the world's pool.
+		Contact.destroy(c, m_world.m_contactPool);
 		--m_world.m_contactCount;
 		
 	}
 
 	public void collide() {
-		// Update awake contacts.
-		for (Contact c = m_world.m_contactList; c != null; c = c.getNext()) {
+		// Update awake contacts, in list order.
+		final DenseArray<Contact> contacts = m_world.m_contacts;
+		for (int i = contacts.size() - 1; i >= 0; --i) {
+			final Contact c = contacts.get(i);
 			final Body body1 = c.getShape1().getBody();
 			final Body body2 = c.getShape2().getBody();
 			if (body1.isSleeping() && body2.isSleeping()) {
@@ -247,6 +273,10 @@ public class ContactManager implements PairCallback {
 			}
 
 			c.update(m_world.m_contactListener);
+			++m_world.m_narrowphaseCount;
+			if (c.m_manifoldReused) {
+				++m_world.m_narrowphaseReuseCount;
+			}
 		}
 	}
 }
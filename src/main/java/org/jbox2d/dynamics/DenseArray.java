@@ -0,0 +1,166 @@
+package org.jbox2d.dynamics;
+
+/**
+ * Gap free array of world objects, in the order they were added, with
+ * stable integer handles. Each item is known by the handle returned when
+ * it was added, which stays valid until the item is removed, however the
+ * items move around. Handles of removed items are reused.
+ * <p>
+ * Removing leaves a hole, which is closed up by the next call to
+ * {@link #size()}. Closing holes shifts the later items down without
+ * reordering them, so one pass pays for any number of removals. Call
+ * size() again after anything that may have removed items before
+ * indexing the array.
+ * <p>
+ * The World keeps one of these next to each of its linked lists, and
+ * walks them instead of chasing m_next pointers through the heap. The
+ * lists put the newest item first, so walking an array from
+ * size() - 1 down to 0 visits items in list order.
+ * Only the World adds and removes items; to everyone else the array is
+ * read only.
+ */
+public class DenseArray<T> {
+	private Object[] m_items;
+	/** Handle of the item in each slot. */
+	private int[] m_handles;
+	/** Slot of the item for each handle, or the next free handle once removed. */
+	private int[] m_slots;
+	private boolean[] m_live;
+	/** Slots in use, holes included. */
+	private int m_count;
+	private int m_holeCount;
+	private int m_handleCount;
+	private int m_freeHandle = -1;
+
+	DenseArray() {
+		this(16);
+	}
+
+	DenseArray(final int capacity) {
+		final int size = Math.max(capacity, 1);
+		m_items = new Object[size];
+		m_handles = new int[size];
+		m_slots = new int[size];
+		m_live = new boolean[size];
+	}
+
+	/**
+	 * Add an item at the end of the array.
+	 * @return the item's handle.
+	 */
+	int add(final T item) {
+		if (m_count == m_items.length) {
+			compact();
+		}
+		if (m_count == m_items.length) {
+			final int size = m_items.length * 2;
+			final Object[] items = new Object[size];
+			System.arraycopy(m_items, 0, items, 0, m_count);
+			m_items = items;
+			final int[] handles = new int[size];
+			System.arraycopy(m_handles, 0, handles, 0, m_count);
+			m_handles = handles;
+		}
+		final int handle;
+		if (m_freeHandle != -1) {
+			handle = m_freeHandle;
+			m_freeHandle = m_slots[handle];
+		}
+		else {
+			if (m_handleCount == m_slots.length) {
+				final int size = m_slots.length * 2;
+				final int[] slots = new int[size];
+				System.arraycopy(m_slots, 0, slots, 0, m_handleCount);
+				m_slots = slots;
+				final boolean[] live = new boolean[size];
+				System.arraycopy(m_live, 0, live, 0, m_handleCount);
+				m_live = live;
+			}
+			handle = m_handleCount++;
+		}
+		m_items[m_count] = item;
+		m_handles[m_count] = handle;
+		m_slots[handle] = m_count;
+		m_live[handle] = true;
+		++m_count;
+		return handle;
+	}
+
+	/**
+	 * Remove the item with this handle, leaving a hole until the next
+	 * call to {@link #size()}.
+	 */
+	void remove(final int handle) {
+		assert(contains(handle));
+		m_items[m_slots[handle]] = null;
+		++m_holeCount;
+		m_live[handle] = false;
+		m_slots[handle] = m_freeHandle;
+		m_freeHandle = handle;
+	}
+
+	/** Shift items down over the holes, keeping their order. */
+	private void compact() {
+		if (m_holeCount == 0) {
+			return;
+		}
+		int to = 0;
+		for (int from = 0; from < m_count; ++from) {
+			final Object item = m_items[from];
+			if (item == null) {
+				continue;
+			}
+			if (to != from) {
+				m_items[to] = item;
+				m_handles[to] = m_handles[from];
+				m_slots[m_handles[to]] = to;
+			}
+			++to;
+		}
+		for (int i = to; i < m_count; ++i) {
+			m_items[i] = null;
+		}
+		m_count = to;
+		m_holeCount = 0;
+	}
+
+	/** Is this handle held by an item currently in the array? */
+	public boolean contains(final int handle) {
+		return handle >= 0 && handle < m_handleCount && m_live[handle];
+	}
+
+	/** Get the item with this handle, or null if it was removed. */
+	@SuppressWarnings("unchecked")
+	public T getByHandle(final int handle) {
+		return contains(handle) ? (T) m_items[m_slots[handle]] : null;
+	}
+
+	/**
+	 * Get the item in a slot, 0 to {@link #size()} - 1. Items are in the
+	 * order they were added.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(final int slot) {
+		return (T) m_items[slot];
+	}
+
+	/** Number of items, after closing up any holes left by removals. */
+	public int size() {
+		compact();
+		return m_count;
+	}
+
+	/** Remove every item. Handles start again from 0. */
+	void clear() {
+		for (int i = 0; i < m_count; ++i) {
+			m_items[i] = null;
+		}
+		for (int i = 0; i < m_handleCount; ++i) {
+			m_live[i] = false;
+		}
+		m_count = 0;
+		m_holeCount = 0;
+		m_handleCount = 0;
+		m_freeHandle = -1;
+	}
+}
@@ -23,6 +23,7 @@
 
 package org.jbox2d.dynamics;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.jbox2d.collision.Manifold;
@@ -63,12 +64,23 @@ public class Island {
 
 	public int m_jointCapacity;
 
-	public static int m_positionIterationCount = 0;
+	public int m_positionIterationCount = 0;
 
 	public float m_positionError;
 
 	public ContactListener m_listener;
 
+	/**
+	 * Buffer contact results instead of reporting them from solve(), so that
+	 * islands solved on other threads can be reported in a fixed order with
+	 * {@link #flushReports()}.
+	 */
+	public boolean m_deferReports = false;
+
+	// djm pooling
+	private final ArrayList<ContactResult> m_deferredResults = new ArrayList<ContactResult>();
+	private int m_deferredCount = 0;
+
 	//begin .h methods
 	public void clear() {
 		m_bodyCount = 0;
@@ -114,11 +126,34 @@ public class Island {
 
 		m_listener = listener;
 
-		m_bodies = new Body[bodyCapacity];
-		m_contacts = new Contact[contactCapacity];
-		m_joints = new Joint[jointCapacity];
+		// Keep the arrays from the last step if they are big enough.
+		if (m_bodies == null || m_bodies.length < bodyCapacity) {
+			m_bodies = new Body[bodyCapacity];
+		}
+		if (m_contacts == null || m_contacts.length < contactCapacity) {
+			m_contacts = new Contact[contactCapacity];
+		}
+		if (m_joints == null || m_joints.length < jointCapacity) {
+			m_joints = new Joint[jointCapacity];
+		}
 
 		m_positionIterationCount = 0;
+		m_deferReports = false;
+		m_deferredCount = 0;
+	}
+
+	/**
+	 * Hold the bodies, contacts and joints another island found, in arrays
+	 * sized to fit them rather than the whole world.
+	 */
+	final void copyFrom(final Island other, final ContactListener listener) {
+		init(other.m_bodyCount, other.m_contactCount, other.m_jointCount, listener);
+		System.arraycopy(other.m_bodies, 0, m_bodies, 0, other.m_bodyCount);
+		System.arraycopy(other.m_contacts, 0, m_contacts, 0, other.m_contactCount);
+		System.arraycopy(other.m_joints, 0, m_joints, 0, other.m_jointCount);
+		m_bodyCount = other.m_bodyCount;
+		m_contactCount = other.m_contactCount;
+		m_jointCount = other.m_jointCount;
 	}
 
 	// djm pooling
@@ -374,6 +409,9 @@ public class Island {
 		report(cc);
 	}
 
+	// djm pooled
+	private final ContactResult m_report = new ContactResult();
+
 	public void report(final ContactConstraint[] constraints) {
 		if (m_listener == null) {
 			return;
@@ -382,7 +420,7 @@ public class Island {
 		for (int i = 0; i < m_contactCount; ++i) {
 			final Contact c = m_contacts[i];
 			final ContactConstraint cc = constraints[i];
-			final ContactResult cr = new ContactResult();
+			final ContactResult cr = m_report;
 			cr.shape1 = c.getShape1();
 			cr.shape2 = c.getShape2();
 			final Body b1 = cr.shape1.getBody();
@@ -402,9 +440,29 @@ public class Island {
 					cr.tangentImpulse = ccp.tangentImpulse;
 					cr.id.set(point.id);
 
-					m_listener.result(cr);
+					if (m_deferReports) {
+						if (m_deferredCount == m_deferredResults.size()) {
+							m_deferredResults.add(new ContactResult());
+						}
+						m_deferredResults.get(m_deferredCount++).set(cr);
+					} else {
+						m_listener.result(cr);
+					}
 				}
 			}
 		}
 	}
+
+	/**
+	 * Report the contact results buffered while {@link #m_deferReports} was set,
+	 * in the order they were produced.
+	 */
+	public void flushReports() {
+		if (m_listener != null) {
+			for (int i = 0; i < m_deferredCount; ++i) {
+				m_listener.result(m_deferredResults.get(i));
+			}
+		}
+		m_deferredCount = 0;
+	}
 }
@@ -0,0 +1,20 @@
+package org.jbox2d.dynamics;
+
+/**
+ * Runs the island solves of one step for World. Islands share no bodies other
+ * than static ones, so they may be solved in any order or at the same time.
+ * World uses a {@link SequentialIslandExecutor} unless given another with
+ * {@link World#setIslandExecutor(IslandExecutor)}.
+ */
+public interface IslandExecutor {
+	/**
+	 * Call job.run(i) for every i from 0 to count - 1, and return once all of
+	 * them have finished.
+	 */
+	void invokeAll(int count, Job job);
+
+	/** Solves one island, by index. */
+	interface Job {
+		void run(int index);
+	}
+}
@@ -0,0 +1,15 @@
+package org.jbox2d.dynamics;
+
+import org.jbox2d.collision.shapes.Shape;
+
+/**
+ * Called for each shape found by {@link World#query(org.jbox2d.collision.AABB, QueryCallback)}.
+ */
+public interface QueryCallback {
+
+	/**
+	 * Called for each shape whose bounding box overlaps the query box.
+	 * @return false to stop the query.
+	 */
+	public boolean reportShape(Shape shape);
+}
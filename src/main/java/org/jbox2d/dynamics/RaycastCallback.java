@@ -0,0 +1,26 @@
+package org.jbox2d.dynamics;
+
+import org.jbox2d.collision.shapes.Shape;
+import org.jbox2d.common.Vec2;
+
+/**
+ * Called for each shape hit by
+ * {@link World#raycast(org.jbox2d.collision.Segment, RaycastCallback, boolean, Object)}.
+ * The return value controls how the ray continues:
+ * <ul><li>-1 ignores this shape and continues as if it had not been hit,</li>
+ * <li>0 stops the ray cast,</li>
+ * <li>the given lambda clips the ray to this hit, so only closer shapes are reported from now on,</li>
+ * <li>1 continues without clipping, so every hit is reported.</li></ul>
+ * Hits are not reported in order of distance.
+ */
+public interface RaycastCallback {
+
+	/**
+	 * @param shape the shape hit.
+	 * @param point the hit point. Only valid during the call.
+	 * @param normal the surface normal at the hit point. Only valid during the call.
+	 * @param lambda the hit fraction along the segment.
+	 * @return -1 to ignore, 0 to stop, lambda to clip, or 1 to continue.
+	 */
+	public float reportShape(Shape shape, Vec2 point, Vec2 normal, float lambda);
+}
@@ -0,0 +1,13 @@
+package org.jbox2d.dynamics;
+
+/**
+ * Solves islands one after another on the stepping thread. The default for
+ * every World.
+ */
+public class SequentialIslandExecutor implements IslandExecutor {
+	public void invokeAll(final int count, final Job job) {
+		for (int i = 0; i < count; ++i) {
+			job.run(i);
+		}
+	}
+}
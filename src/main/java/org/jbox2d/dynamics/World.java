@@ -26,6 +26,7 @@ package org.jbox2d.dynamics;
 import java.util.ArrayList;
 import org.jbox2d.collision.AABB;
 import org.jbox2d.collision.BroadPhase;
+import org.jbox2d.collision.DistanceStats;
 import org.jbox2d.collision.OBB;
 import org.jbox2d.collision.Pair;
 import org.jbox2d.collision.PairManager;
@@ -45,10 +46,13 @@ import org.jbox2d.common.Mat22;
 import org.jbox2d.common.MathUtils;
 import org.jbox2d.common.RaycastResult;
 import org.jbox2d.common.Settings;
+import org.jbox2d.common.Sweep;
+import org.jbox2d.common.TrigMode;
 import org.jbox2d.common.Vec2;
 import org.jbox2d.common.XForm;
 import org.jbox2d.dynamics.contacts.Contact;
 import org.jbox2d.dynamics.contacts.ContactEdge;
+import org.jbox2d.dynamics.contacts.ContactPool;
 import org.jbox2d.dynamics.controllers.Controller;
 import org.jbox2d.dynamics.controllers.ControllerDef;
 import org.jbox2d.dynamics.controllers.ControllerEdge;
@@ -127,7 +131,210 @@ public class World {
 	private final ArrayList<Steppable> postStepList;
 
 	private boolean autoDebugDraw = true;
+
+	/** GJK counters for the distance queries made by this world. */
+	private final DistanceStats m_distanceStats = new DistanceStats();
+
+	private boolean m_warmStartDistance = false;
+
+	/** Solves the islands found in each step. */
+	private IslandExecutor m_islandExecutor = new SequentialIslandExecutor();
+
+	/** Should resting polygon contacts reuse their manifold? See {@link #setContactCoherence(boolean)}. */
+	private boolean m_contactCoherence = false;
+
+	/** Relative motion below which a coherent contact keeps its manifold. */
+	private float m_coherenceLinearSlop = Settings.coherenceLinearSlop;
+	private float m_coherenceAngularSlop = Settings.coherenceAngularSlop;
+
+	/** Margin for fat proxy AABBs, or 0 to move proxies every step. See {@link #setFatAABBMargin(float)}. */
+	float m_fatAABBMargin = 0.0f;
+
+	/** Sum of every shiftOrigin() call. World position = position in this world + offset. */
+	private final Vec2 m_originOffset = new Vec2();
+
+	/** Contacts updated, and how many of those reused their manifold, since the last reset. */
+	long m_narrowphaseCount, m_narrowphaseReuseCount;
+
+	/** Scratch body stack for the island searches in solve() and solveTOI(). */
+	private Body[] m_bodyStack = new Body[0];
+
+	/** Destroyed contacts waiting to be reused for new shape pairs. */
+	final ContactPool m_contactPool = new ContactPool();
+
+	/*
+	 * Dense copies of the body, shape, contact and joint lists, in creation
+	 * order. The step walks these backwards, which visits items in the same
+	 * order as the lists, so results don't depend on which one is walked.
+	 */
+	final DenseArray<Body> m_bodies = new DenseArray<Body>();
+	final DenseArray<Shape> m_shapes = new DenseArray<Shape>();
+	final DenseArray<Contact> m_contacts = new DenseArray<Contact>();
+	final DenseArray<Joint> m_joints = new DenseArray<Joint>();
+
+	/** How body angles are turned into rotations. See {@link #setTrigMode(TrigMode)}. */
+	TrigMode m_trigMode = MathUtils.DEFAULT_TRIG_MODE;
 	
+	private final Body[] getBodyStack(final int size) {
+		if (m_bodyStack.length < size) {
+			m_bodyStack = new Body[size];
+		}
+		return m_bodyStack;
+	}
+
+	/**
+	 * Get this world's contact free lists, for the pool hit and miss counts.
+	 */
+	public ContactPool getContactPool() {
+		return m_contactPool;
+	}
+
+	/**
+	 * Get the GJK counters for this world. Only queries made while stepping
+	 * this world are counted.
+	 */
+	public DistanceStats getDistanceStats() {
+		return m_distanceStats;
+	}
+
+	/**
+	 * Warm start TOI distance queries from the contact's simplex cache. Off by
+	 * default: results differ from a cold start by floating point noise, which
+	 * is enough to change the replay of a recorded action sequence.
+	 */
+	public void setWarmStartDistance(final boolean flag) {
+		m_warmStartDistance = flag;
+		if (!flag) {
+			for (Contact c = m_contactList; c != null; c = c.getNext()) {
+				c.m_simplexCache.reset();
+			}
+		}
+	}
+
+	public boolean isWarmStartDistance() {
+		return m_warmStartDistance;
+	}
+
+	/**
+	 * Choose the sin/cos backend used for body rotations in this world. The
+	 * default follows Settings.SINCOS_LUT_ENABLED/SINCOS_LUT_LERP. Switching
+	 * changes trajectories, so set it before the first step and keep it if
+	 * recorded action sequences must replay exactly.
+	 * @see MathUtils#maxSinCosError(TrigMode, int)
+	 */
+	public void setTrigMode(final TrigMode mode) {
+		assert(mode != null);
+		m_trigMode = mode;
+	}
+
+	public TrigMode getTrigMode() {
+		return m_trigMode;
+	}
+
+	/**
+	 * Set how the islands found in each step are solved. The default solves
+	 * them one after another on the stepping thread. Islands share no bodies
+	 * other than static ones, so the results are the same with any executor,
+	 * and ContactListener.result() is still called from the stepping thread in
+	 * the same order.
+	 */
+	public void setIslandExecutor(final IslandExecutor executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("Island executor must not be null.");
+		}
+		m_islandExecutor = executor;
+	}
+
+	public IslandExecutor getIslandExecutor() {
+		return m_islandExecutor;
+	}
+
+	/**
+	 * Let polygon contacts skip the narrowphase while their bodies barely move
+	 * relative to each other, e.g. a foot resting flat on the ground. The old
+	 * manifold is kept, with its normal and separations refined for the small
+	 * motion. The thresholds are set by {@link #setContactCoherenceSlop(float, float)}.
+	 * Off by default since it changes results slightly.
+	 */
+	public void setContactCoherence(final boolean flag) {
+		m_contactCoherence = flag;
+	}
+
+	public boolean isContactCoherence() {
+		return m_contactCoherence;
+	}
+
+	/**
+	 * Set how far a coherent contact's bodies may move relative to each other
+	 * since its last full collision before the manifold is recomputed. Defaults
+	 * to Settings.coherenceLinearSlop and Settings.coherenceAngularSlop.
+	 * @param linearSlop relative translation, in length units.
+	 * @param angularSlop relative rotation, in radians.
+	 */
+	public void setContactCoherenceSlop(final float linearSlop, final float angularSlop) {
+		assert(linearSlop >= 0.0f && angularSlop >= 0.0f);
+		m_coherenceLinearSlop = linearSlop;
+		m_coherenceAngularSlop = angularSlop;
+	}
+
+	public float getCoherenceLinearSlop() {
+		return m_coherenceLinearSlop;
+	}
+
+	public float getCoherenceAngularSlop() {
+		return m_coherenceAngularSlop;
+	}
+
+	/** Number of contact updates since the last reset. */
+	public long getNarrowphaseCount() {
+		return m_narrowphaseCount;
+	}
+
+	/** Number of contact updates which reused the previous manifold since the last reset. */
+	public long getNarrowphaseReuseCount() {
+		return m_narrowphaseReuseCount;
+	}
+
+	/** Fraction of contact updates which reused the previous manifold, or 0 if there were none. */
+	public float getNarrowphaseReuseRate() {
+		return m_narrowphaseCount == 0 ? 0.0f : (float) m_narrowphaseReuseCount / m_narrowphaseCount;
+	}
+
+	public void resetNarrowphaseCounters() {
+		m_narrowphaseCount = 0;
+		m_narrowphaseReuseCount = 0;
+	}
+
+	/**
+	 * Give broadphase proxies AABBs enlarged by this margin, so a shape's proxy
+	 * is only moved once the shape leaves its enlarged box instead of every
+	 * step. Pairs are then found a little early, which changes contact order
+	 * and therefore results, so this is off (0) by default. Takes effect as
+	 * proxies are next moved.
+	 */
+	public void setFatAABBMargin(final float margin) {
+		assert(margin >= 0.0f);
+		m_fatAABBMargin = margin;
+	}
+
+	public float getFatAABBMargin() {
+		return m_fatAABBMargin;
+	}
+
+	/** Number of broadphase proxy moves since the last reset. */
+	public long getProxyMoveCount() {
+		return m_broadPhase.m_moveCount;
+	}
+
+	/** Number of proxy moves skipped since the last reset because the shape stayed inside its fat AABB. */
+	public long getSkippedProxyMoveCount() {
+		return m_broadPhase.m_skippedMoveCount;
+	}
+
+	public void resetProxyMoveCounters() {
+		m_broadPhase.m_moveCount = 0;
+		m_broadPhase.m_skippedMoveCount = 0;
+	}
 	
 	/**
 	 * @return the autoDebugDraw
@@ -185,6 +392,234 @@ public class World {
 		return m_groundBody;
 	}
 
+	/**
+	 * Move the world's origin to the given point, so that every body ends up
+	 * at its old position minus newOrigin. Use this to keep a body which
+	 * travels far, such as a runner, close to the origin where floats are most
+	 * precise and inside the broadphase AABB. Contacts and their warm starting
+	 * impulses are kept, since the bodies don't move relative to each other.
+	 * Controllers holding world coordinates are not shifted.
+	 * <BR><em>Warning</em>: This function is locked during callbacks.
+	 * @see #getOriginOffset()
+	 */
+	public void shiftOrigin(final Vec2 newOrigin) {
+		assert(m_lock == false);
+		if (m_lock == true) {
+			return;
+		}
+
+		for (Body b = m_bodyList; b != null; b = b.m_next) {
+			b.m_xf.position.subLocal(newOrigin);
+			b.m_sweep.c0.subLocal(newOrigin);
+			b.m_sweep.c.subLocal(newOrigin);
+		}
+
+		for (Joint j = m_jointList; j != null; j = j.m_next) {
+			j.shiftOrigin(newOrigin);
+		}
+
+		// Proxies cross each other while they are moved one at a time, but the
+		// pairs all end up as they started, so commit creates and destroys nothing.
+		for (Body b = m_bodyList; b != null; b = b.m_next) {
+			if (b.isFrozen()) {
+				continue;
+			}
+			final boolean inRange = b.synchronizeShapes();
+			if (inRange == false && m_boundaryListener != null) {
+				m_boundaryListener.violation(b);
+			}
+		}
+		m_broadPhase.commit();
+
+		m_originOffset.addLocal(newOrigin);
+	}
+
+	/**
+	 * Get the total shift of this world's origin. The position of a body in
+	 * the original frame is its position plus this offset.
+	 * @see #shiftOrigin(Vec2)
+	 */
+	public Vec2 getOriginOffset() {
+		return m_originOffset;
+	}
+
+	/**
+	 * Save everything which changes as this world steps, so it can be put
+	 * back later with {@link #restoreState(WorldState)}, e.g. to try several
+	 * continuations from one point without replaying how it was reached.
+	 * Every joint must support saving; revolute joints do.
+	 * <BR><em>Warning</em>: This function is locked during callbacks.
+	 * @see WorldState
+	 */
+	public WorldState saveState() {
+		if (m_lock) {
+			throw new IllegalStateException("Can't save a world's state during a step.");
+		}
+		final int bodyCount = m_bodies.size();
+		final int shapeCount = m_shapes.size();
+		final int jointCount = m_joints.size();
+		final int contactCount = m_contacts.size();
+		int jointFloats = 0;
+		for (int i = 0; i < jointCount; ++i) {
+			jointFloats += m_joints.get(i).getStateSize();
+		}
+		final WorldState state = new WorldState(bodyCount, shapeCount, jointCount, jointFloats, contactCount,
+				m_broadPhase.getStateSize(), m_inv_dt0, m_originOffset.x, m_originOffset.y);
+
+		final float[] bodyFloats = state.m_bodyFloats;
+		int offset = 0;
+		for (int i = 0; i < bodyCount; ++i) {
+			final Body b = m_bodies.get(i);
+			state.m_bodyInts[i] = b.m_flags;
+			final XForm xf = b.m_xf;
+			bodyFloats[offset++] = xf.position.x;
+			bodyFloats[offset++] = xf.position.y;
+			bodyFloats[offset++] = xf.R.col1.x;
+			bodyFloats[offset++] = xf.R.col1.y;
+			bodyFloats[offset++] = xf.R.col2.x;
+			bodyFloats[offset++] = xf.R.col2.y;
+			final Sweep sweep = b.m_sweep;
+			bodyFloats[offset++] = sweep.localCenter.x;
+			bodyFloats[offset++] = sweep.localCenter.y;
+			bodyFloats[offset++] = sweep.c0.x;
+			bodyFloats[offset++] = sweep.c0.y;
+			bodyFloats[offset++] = sweep.c.x;
+			bodyFloats[offset++] = sweep.c.y;
+			bodyFloats[offset++] = sweep.a0;
+			bodyFloats[offset++] = sweep.a;
+			bodyFloats[offset++] = sweep.t0;
+			bodyFloats[offset++] = b.m_linearVelocity.x;
+			bodyFloats[offset++] = b.m_linearVelocity.y;
+			bodyFloats[offset++] = b.m_angularVelocity;
+			bodyFloats[offset++] = b.m_force.x;
+			bodyFloats[offset++] = b.m_force.y;
+			bodyFloats[offset++] = b.m_torque;
+			bodyFloats[offset++] = b.m_sleepTime;
+		}
+
+		offset = 0;
+		for (int i = 0; i < shapeCount; ++i) {
+			final Shape s = m_shapes.get(i);
+			state.m_shapeInts[i] = s.m_proxyId;
+			offset = s.saveFatAABB(state.m_shapeFloats, offset);
+		}
+
+		offset = 0;
+		for (int i = 0; i < jointCount; ++i) {
+			offset = m_joints.get(i).saveState(state.m_jointFloats, offset);
+		}
+
+		// Contacts go in list order. Each copy is made by the same factory as
+		// the original, then let go of the shapes so the state doesn't keep
+		// this world alive.
+		int n = 0;
+		for (Contact c = m_contactList; c != null; c = c.m_next, ++n) {
+			final Contact copy = Contact.createContact(c.m_shape1, c.m_shape2);
+			copy.setState(c);
+			copy.m_shape1 = null;
+			copy.m_shape2 = null;
+			state.m_contacts[n] = copy;
+			state.m_contactShapes[2 * n] = c.m_shape1.m_handle;
+			state.m_contactShapes[2 * n + 1] = c.m_shape2.m_handle;
+		}
+
+		m_broadPhase.saveState(state.m_broadPhase, 0);
+		return state;
+	}
+
+	/**
+	 * Put back a state saved by {@link #saveState()}, from this world or from
+	 * another built the same way. Stepping on gives exactly the results of
+	 * stepping on from the saved world. The contact listener isn't told about
+	 * contacts which come and go.
+	 * <BR><em>Warning</em>: This function is locked during callbacks.
+	 * @throws IllegalArgumentException if the state is from a world with
+	 * different bodies, shapes or joints.
+	 */
+	public void restoreState(final WorldState state) {
+		if (m_lock) {
+			throw new IllegalStateException("Can't restore a world's state during a step.");
+		}
+		final int bodyCount = m_bodies.size();
+		final int shapeCount = m_shapes.size();
+		if (state.m_bodyCount != bodyCount || state.m_shapeCount != shapeCount
+				|| state.m_jointCount != m_joints.size()) {
+			throw new IllegalArgumentException("State is from a world with different bodies, shapes or joints. Given: "
+					+ state.m_bodyCount + " bodies, " + state.m_shapeCount + " shapes, " + state.m_jointCount
+					+ " joints, expected: " + bodyCount + ", " + shapeCount + ", " + m_joints.size());
+		}
+		for (int i = 0; i < shapeCount; ++i) {
+			if (m_shapes.get(i).m_proxyId != state.m_shapeInts[i]) {
+				throw new IllegalArgumentException("State is from a world with different broadphase proxies. Given: "
+						+ state.m_shapeInts[i] + " for shape " + i + ", expected: " + m_shapes.get(i).m_proxyId);
+			}
+		}
+
+		// Destroy every contact and make the saved ones again, oldest first.
+		// Contacts go on the head of each list, so the world's list and every
+		// body's list come out in the saved order.
+		final ContactListener listener = m_contactListener;
+		m_contactListener = null;
+		while (m_contactList != null) {
+			m_contactManager.destroy(m_contactList);
+		}
+		m_contactListener = listener;
+		m_broadPhase.restoreState(state.m_broadPhase, 0, m_contactManager.m_nullContact);
+		final PairManager pairManager = m_broadPhase.m_pairManager;
+		for (int n = state.m_contacts.length - 1; n >= 0; --n) {
+			final Shape shape1 = m_shapes.getByHandle(state.m_contactShapes[2 * n]);
+			final Shape shape2 = m_shapes.getByHandle(state.m_contactShapes[2 * n + 1]);
+			final Contact c = m_contactManager.addContact(shape1, shape2);
+			c.setState(state.m_contacts[n]);
+			pairManager.find(shape1.m_proxyId, shape2.m_proxyId).userData = c;
+		}
+
+		// Bodies last, since destroying contacts wakes them.
+		final float[] bodyFloats = state.m_bodyFloats;
+		int offset = 0;
+		for (int i = 0; i < bodyCount; ++i) {
+			final Body b = m_bodies.get(i);
+			b.m_flags = state.m_bodyInts[i];
+			final XForm xf = b.m_xf;
+			xf.position.x = bodyFloats[offset++];
+			xf.position.y = bodyFloats[offset++];
+			xf.R.col1.x = bodyFloats[offset++];
+			xf.R.col1.y = bodyFloats[offset++];
+			xf.R.col2.x = bodyFloats[offset++];
+			xf.R.col2.y = bodyFloats[offset++];
+			final Sweep sweep = b.m_sweep;
+			sweep.localCenter.x = bodyFloats[offset++];
+			sweep.localCenter.y = bodyFloats[offset++];
+			sweep.c0.x = bodyFloats[offset++];
+			sweep.c0.y = bodyFloats[offset++];
+			sweep.c.x = bodyFloats[offset++];
+			sweep.c.y = bodyFloats[offset++];
+			sweep.a0 = bodyFloats[offset++];
+			sweep.a = bodyFloats[offset++];
+			sweep.t0 = bodyFloats[offset++];
+			b.m_linearVelocity.x = bodyFloats[offset++];
+			b.m_linearVelocity.y = bodyFloats[offset++];
+			b.m_angularVelocity = bodyFloats[offset++];
+			b.m_force.x = bodyFloats[offset++];
+			b.m_force.y = bodyFloats[offset++];
+			b.m_torque = bodyFloats[offset++];
+			b.m_sleepTime = bodyFloats[offset++];
+		}
+
+		offset = 0;
+		for (int i = 0; i < shapeCount; ++i) {
+			offset = m_shapes.get(i).restoreFatAABB(state.m_shapeFloats, offset);
+		}
+
+		offset = 0;
+		for (int i = 0; i < state.m_jointCount; ++i) {
+			offset = m_joints.get(i).restoreState(state.m_jointFloats, offset);
+		}
+
+		m_inv_dt0 = state.m_inv_dt0;
+		m_originOffset.set(state.m_originOffsetX, state.m_originOffsetY);
+	}
+
 	/**
 	 * Get the world body list. With the returned body, use Body.getNext() to get
 	 * the next body in the world list. A NULL body indicates the end of the list.
@@ -203,6 +638,54 @@ public class World {
 		return m_jointList;
 	}
 
+	/**
+	 * Get every body in the world as a read only dense array, oldest first.
+	 * Add and remove bodies with createBody and destroyBody.
+	 */
+	public DenseArray<Body> getBodies() {
+		return m_bodies;
+	}
+
+	/** Get every shape in the world as a read only dense array, oldest first. */
+	public DenseArray<Shape> getShapes() {
+		return m_shapes;
+	}
+
+	/** Get every contact in the world as a read only dense array, oldest first. */
+	public DenseArray<Contact> getContacts() {
+		return m_contacts;
+	}
+
+	/** Get every joint in the world as a read only dense array, oldest first. */
+	public DenseArray<Joint> getJoints() {
+		return m_joints;
+	}
+
+	/**
+	 * Get a body from its handle.
+	 * @return the body, or null if it has been destroyed.
+	 * @see Body#getHandle()
+	 */
+	public Body getBodyByHandle(final int handle) {
+		return m_bodies.getByHandle(handle);
+	}
+
+	/**
+	 * Get a shape from its handle.
+	 * @return the shape, or null if it has been destroyed.
+	 */
+	public Shape getShapeByHandle(final int handle) {
+		return m_shapes.getByHandle(handle);
+	}
+
+	/**
+	 * Get a joint from its handle.
+	 * @return the joint, or null if it has been destroyed.
+	 */
+	public Joint getJointByHandle(final int handle) {
+		return m_joints.getByHandle(handle);
+	}
+
 	/**
 	 * Construct a world object.
 	 * @param worldAABB a bounding box that completely encompasses all your shapes.
@@ -306,6 +789,7 @@ public class World {
 		}
 		m_bodyList = b;
 		++m_bodyCount;
+		b.m_handle = m_bodies.add(b);
 
 		return b;
 	}
@@ -357,6 +841,8 @@ public class World {
 			}
 
 			s0.destroyProxy(m_broadPhase);
+			m_shapes.remove(s0.m_handle);
+			s0.m_handle = -1;
 			Shape.destroy(s0);
 		}
 
@@ -372,6 +858,8 @@ public class World {
 		if (b == m_bodyList) {
 			m_bodyList = b.m_next;
 		}
+		m_bodies.remove(b.m_handle);
+		b.m_handle = -1;
 
 		--m_bodyCount;
 		//b->~b2Body();
@@ -395,6 +883,7 @@ public class World {
 		}
 		m_jointList = j;
 		++m_jointCount;
+		j.m_handle = m_joints.add(j);
 
 		// Connect to the bodies' doubly linked lists
 		j.m_node1.joint = j;
@@ -449,6 +938,8 @@ public class World {
 		if (j == m_jointList) {
 			m_jointList = j.m_next;
 		}
+		m_joints.remove(j.m_handle);
+		j.m_handle = -1;
 
 		// Disconnect from island graph.
 		final Body body1 = j.m_body1;
@@ -646,6 +1137,47 @@ public class World {
 		return ret;
 	}
 
+	/**
+	 * Query the world for all shapes that potentially overlap the provided AABB,
+	 * passing each one to the callback. Nothing is allocated once the query
+	 * buffer exists.
+	 * @param aabb the query box.
+	 * @param callback called for each shape found. Return false to stop the query.
+	 */
+	public void query(final AABB aabb, final QueryCallback callback) {
+		final Object[] buffer = takeQueryBuffer();
+		final int count = m_broadPhase.query(aabb, buffer, buffer.length);
+		for (int i = 0; i < count; ++i) {
+			if (!callback.reportShape((Shape) buffer[i])) {
+				break;
+			}
+		}
+		releaseQueryBuffer(buffer, count);
+	}
+
+	/**
+	 * Shape buffer for broadphase queries, kept between queries. Null while a
+	 * query is using it, so a callback which queries again gets its own.
+	 */
+	private Object[] m_queryBuffer = new Object[Settings.maxProxies];
+
+	private Object[] takeQueryBuffer() {
+		final Object[] buffer = m_queryBuffer;
+		if (buffer == null) {
+			return new Object[Settings.maxProxies];
+		}
+		m_queryBuffer = null;
+		return buffer;
+	}
+
+	private void releaseQueryBuffer(final Object[] buffer, final int count) {
+		// Drop references so the buffer doesn't keep destroyed shapes alive.
+		for (int i = 0; i < count; ++i) {
+			buffer[i] = null;
+		}
+		m_queryBuffer = buffer;
+	}
+
 
 	//--------------- Internals Below -------------------
 	// Internal yet public to make life easier.
@@ -670,20 +1202,22 @@ public class World {
 		island.init(m_bodyCount, m_contactCount, m_jointCount, m_contactListener);
 
 		// Clear all the island flags.
-		for (Body b = m_bodyList; b != null; b = b.m_next) {
-			b.m_flags &= ~Body.e_islandFlag;
+		for (int i = 0; i < m_bodies.size(); ++i) {
+			m_bodies.get(i).m_flags &= ~Body.e_islandFlag;
 		}
-		for (Contact c = m_contactList; c != null; c = c.m_next) {
-			c.m_flags &= ~Contact.e_islandFlag;
+		for (int i = 0; i < m_contacts.size(); ++i) {
+			m_contacts.get(i).m_flags &= ~Contact.e_islandFlag;
 		}
-		for (Joint j = m_jointList; j != null; j = j.m_next) {
-			j.m_islandFlag = false;
+		for (int i = 0; i < m_joints.size(); ++i) {
+			m_joints.get(i).m_islandFlag = false;
 		}
 
-		// Build and simulate all awake islands.
+		// Build all awake islands, then simulate them.
+		int islandCount = 0;
 		final int stackSize = m_bodyCount;
-		final Body[] stack = new Body[stackSize];
-		for (Body seed = m_bodyList; seed != null; seed = seed.m_next) {
+		final Body[] stack = getBodyStack(stackSize);
+		for (int seedIndex = m_bodies.size() - 1; seedIndex >= 0; --seedIndex) {
+			final Body seed = m_bodies.get(seedIndex);
 			if ( (seed.m_flags & (Body.e_islandFlag | Body.e_sleepFlag | Body.e_frozenFlag)) > 0){
 				continue;
 			}
@@ -759,9 +1293,10 @@ public class World {
 				}
 			}
 
-			island.solve(step, m_gravity, m_positionCorrection, m_allowSleep);
-
-			m_positionIterationCount = MathUtils.max(m_positionIterationCount, Island.m_positionIterationCount);
+			// Solved once all the islands are found, reported afterwards.
+			final Island found = getSolveIsland(islandCount++);
+			found.copyFrom(island, m_contactListener);
+			found.m_deferReports = true;
 
 			// Post solve cleanup.
 			for (int i = 0; i < island.m_bodyCount; ++i) {
@@ -773,10 +1308,15 @@ public class World {
 			}
 		}
 
+		if (islandCount > 0) {
+			solveIslands(step, islandCount);
+		}
+
 		//m_broadPhase.commit();
 
 		// Synchronize shapes, check for out of range bodies.
-		for (Body b = m_bodyList; b != null; b = b.getNext()) {
+		for (int i = m_bodies.size() - 1; i >= 0; --i) {
+			final Body b = m_bodies.get(i);
 			if ( (b.m_flags & (Body.e_sleepFlag | Body.e_frozenFlag)) != 0) {
 				continue;
 			}
@@ -803,6 +1343,46 @@ public class World {
 		islands.recycle(island);
 	}
 
+	/**
+	 * Islands found by {@link #solve(TimeStep)}, reused between steps. Each
+	 * keeps arrays sized for the largest island it has held.
+	 */
+	private final ArrayList<Island> m_solveIslands = new ArrayList<Island>();
+
+	/** Step being solved by {@link #m_islandJob}. */
+	private TimeStep m_islandStep;
+
+	/** Solves one of {@link #m_solveIslands}. Kept so that steps don't allocate. */
+	private final IslandExecutor.Job m_islandJob = new IslandExecutor.Job() {
+		public void run(final int index) {
+			m_solveIslands.get(index).solve(m_islandStep, m_gravity, m_positionCorrection, m_allowSleep);
+		}
+	};
+
+	private Island getSolveIsland(final int index) {
+		while (m_solveIslands.size() <= index) {
+			m_solveIslands.add(new Island());
+		}
+		return m_solveIslands.get(index);
+	}
+
+	/**
+	 * Solve the islands found by {@link #solve(TimeStep)} with the island
+	 * executor, then report their contact results one island after another in
+	 * the order the islands were found.
+	 */
+	private void solveIslands(final TimeStep step, final int islandCount) {
+		m_islandStep = step;
+		m_islandExecutor.invokeAll(islandCount, m_islandJob);
+		m_islandStep = null;
+
+		for (int i = 0; i < islandCount; ++i) {
+			final Island island = m_solveIslands.get(i);
+			m_positionIterationCount = MathUtils.max(m_positionIterationCount, island.m_positionIterationCount);
+			island.flushReports();
+		}
+	}
+
 	
 	// djm pooling
 	private static final TimeStepStack steps = new TimeStepStack();
@@ -826,20 +1406,21 @@ public class World {
 		//	poppedElement = queue[queueStart++];
 		//  --queueSize;
 		final int queueCapacity = m_bodyCount;
-		final Body[] queue = new Body[queueCapacity];
+		final Body[] queue = getBodyStack(queueCapacity);
 
-		for (Body b = m_bodyList; b != null; b = b.m_next) {
+		for (int i = 0; i < m_bodies.size(); ++i) {
+			final Body b = m_bodies.get(i);
 			b.m_flags &= ~Body.e_islandFlag;
 			b.m_sweep.t0 = 0.0f;
 		}
 
-		for (Contact c = m_contactList; c != null; c = c.m_next) {
+		for (int i = 0; i < m_contacts.size(); ++i) {
 			// Invalidate TOI
-			c.m_flags &= ~(Contact.e_toiFlag | Contact.e_islandFlag);
+			m_contacts.get(i).m_flags &= ~(Contact.e_toiFlag | Contact.e_islandFlag);
 		}
 
-		for (Joint j = m_jointList; j != null; j = j.m_next) {
-			j.m_islandFlag = false;
+		for (int i = 0; i < m_joints.size(); ++i) {
+			m_joints.get(i).m_islandFlag = false;
 		}
 
 		// Find TOI events and solve them.
@@ -848,7 +1429,8 @@ public class World {
 			Contact minContact = null;
 			float minTOI = 1.0f;
 
-			for (Contact c = m_contactList; c != null; c = c.m_next) {
+			for (int i = m_contacts.size() - 1; i >= 0; --i) {
+				final Contact c = m_contacts.get(i);
 				if ((c.m_flags & (Contact.e_slowFlag | Contact.e_nonSolidFlag)) != 0) {
 					continue;
 				}
@@ -882,7 +1464,7 @@ public class World {
 					assert(t0 < 1.0f);
 
 					// Compute the time of impact.
-					toi = TOI.timeOfImpact(c.m_shape1, b1.m_sweep, c.m_shape2, b2.m_sweep);
+					toi = TOI.timeOfImpact(c.m_shape1, b1.m_sweep, c.m_shape2, b2.m_sweep, m_warmStartDistance ? c.m_simplexCache : null, m_distanceStats, m_trigMode);
 					//System.out.println(toi);
 					assert(0.0f <= toi && toi <= 1.0f);
 
@@ -1104,6 +1686,12 @@ public class World {
 	private final Color3f liquidColor = new Color3f(80.0f,80.0f,255f);
 	private final Vec2 segLeft = new Vec2();
 	private final Vec2 segRight = new Vec2();
+	private final Vec2[] drawVertices = new Vec2[Settings.maxPolygonVertices];
+	{
+		for (int i = 0; i < drawVertices.length; ++i) {
+			drawVertices[i] = new Vec2();
+		}
+	}
 	/** For internal use */
 	public void drawShape(final Shape shape, final XForm xf, final Color3f color, final boolean core) {
 
@@ -1149,14 +1737,11 @@ public class World {
 			final Vec2[] localVertices = poly.getVertices();
 
 			assert(vertexCount <= Settings.maxPolygonVertices);
-			final Vec2[] vertices = new Vec2[vertexCount];
+			// Pooled; DebugDraw implementations must copy vertices they keep.
+			final Vec2[] vertices = drawVertices;
 
 			for (int i = 0; i < vertexCount; ++i) {
-				// djm these aren't instantiated so we need to be creating
-				// these.  To get rid of these instantiations, we would need
-				// to change the DebugDraw so you give it local vertices and the
-				// XForm to transform them with
-				vertices[i] = XForm.mul(xf, localVertices[i]);
+				XForm.mulToOut(xf, localVertices[i], vertices[i]);
 			}
 
 			m_debugDraw.drawSolidPolygon(vertices, vertexCount, color);
@@ -1164,8 +1749,7 @@ public class World {
 			if (core) {
 				final Vec2[] localCoreVertices = poly.getCoreVertices();
 				for (int i = 0; i < vertexCount; ++i) {
-					// djm same as above
-					vertices[i] = XForm.mul(xf, localCoreVertices[i]);
+					XForm.mulToOut(xf, localCoreVertices[i], vertices[i]);
 				}
 				m_debugDraw.drawPolygon(vertices, vertexCount, coreColor);
 			}
@@ -1248,12 +1832,33 @@ public class World {
 			new Vec2(),
 			new Vec2()
 	};
+	private final Vec2 invQ = new Vec2();
+	private final XForm centerXForm = new XForm();
 	/** For internal use */
 	public void drawDebugData() {
 		if (m_debugDraw == null || m_drawDebugData == false) {
 			return;
 		}
 
+		drawDebugDataInternal();
+	}
+
+	/**
+	 * Draw the world once with the given debug draw, whether or not debug drawing
+	 * is on for steps, e.g. to record a frame into a {@link BufferedDebugDraw}.
+	 * Uses the draw's flags. Must not be called while the world is stepping.
+	 */
+	public void drawDebugData(final DebugDraw debugDraw) {
+		final DebugDraw previous = m_debugDraw;
+		m_debugDraw = debugDraw;
+		try {
+			drawDebugDataInternal();
+		} finally {
+			m_debugDraw = previous;
+		}
+	}
+
+	private void drawDebugDataInternal() {
 		final int flags = m_debugDraw.getFlags();
 
 		if ( (flags & DebugDraw.e_shapeBit) != 0) {
@@ -1288,8 +1893,6 @@ public class World {
 
 		if ( (flags & DebugDraw.e_pairBit) != 0) {
 			final BroadPhase bp = m_broadPhase;
-			// djm eh just keep this
-			final Vec2 invQ = new Vec2(0.0f, 0.0f);
 			invQ.set(1.0f / bp.m_quantizationFactor.x, 1.0f / bp.m_quantizationFactor.y);
 
 			for (int i = 0; i < PairManager.TABLE_CAPACITY; ++i) {
@@ -1335,7 +1938,6 @@ public class World {
 
 		if ( (flags & DebugDraw.e_aabbBit) != 0) {
 
-			final Vec2 invQ = new Vec2();
 			invQ.set(1.0f / bp.m_quantizationFactor.x, 1.0f / bp.m_quantizationFactor.y);
 
 			for (int i = 0; i < Settings.maxProxies; ++i) {
@@ -1399,10 +2001,10 @@ public class World {
 
 		if ( (flags & DebugDraw.e_centerOfMassBit) != 0) {
 			for (Body b = m_bodyList; b != null; b = b.getNext()) {
-				// TODO handle this differently
-				final XForm xf = b.getMemberXForm();
-				xf.position = b.getMemberWorldCenter();
-				m_debugDraw.drawXForm(xf);
+				// Draw a copy, since the body's own transform must stay at its origin.
+				centerXForm.set(b.getMemberXForm());
+				centerXForm.position.set(b.getMemberWorldCenter());
+				m_debugDraw.drawXForm(centerXForm);
 			}
 		}
 	}
@@ -1445,6 +2047,17 @@ public class World {
 	Vec2 m_raycastNormal;
 	Object m_raycastUserData;
 	boolean m_raycastSolidShape;
+
+	// Scratch for the ray casts below. Not shared with callbacks beyond the call.
+	private final RaycastResult m_raycastResult = new RaycastResult();
+	private final Vec2 m_raycastPoint = new Vec2();
+	private final AABB m_raycastAABB = new AABB();
+	private final AABB m_raycastShapeAABB = new AABB();
+
+	// Closest hit seen by the sort key, so raycastOne needn't test it again.
+	private final RaycastResult m_raycastClosest = new RaycastResult();
+	private Shape m_raycastClosestShape;
+	private float m_raycastClosestLambda;
 	
 	/** 
 	 * Query the world for all fixtures that intersect a given segment. You provide a shape
@@ -1463,18 +2076,162 @@ public class World {
 		m_raycastUserData = userData;
 		m_raycastSolidShape = solidShapes;
 
-		Object[] results = new Object[maxCount];
+		final Object[] results = takeQueryBuffer();
 
-		int count = m_broadPhase.querySegment(segment,results,maxCount, raycastSortKey);
+		int count = m_broadPhase.querySegment(segment,results,Math.min(maxCount, results.length), raycastSortKey);
 
 		for (int i = 0; i < count; ++i)
 		{
 			shapes[i] = (Shape)results[i];
 		}
 
+		releaseQueryBuffer(results, count);
 		return count;
 	}
 
+	/**
+	 * Query the world for all shapes that intersect a given segment, passing each
+	 * hit to the callback. Hits are not reported in order; the callback's return
+	 * value can clip the segment to the hit, so that only closer shapes are reported
+	 * afterwards, or stop the ray cast. Nothing is allocated once the query buffer
+	 * exists.
+	 * @param segment defines the begin and end point of the ray cast, from p1 to p2.
+	 * @param callback called for each hit. See {@link RaycastCallback}.
+	 * @param solidShapes determines if shapes that the ray starts in are counted as hits.
+	 * @param userData passed through the worlds contact filter, with method RayCollide.
+	 */
+	public void raycast(Segment segment, RaycastCallback callback, boolean solidShapes, Object userData)
+	{
+		final Object[] candidates = takeQueryBuffer();
+		final int count = m_broadPhase.querySegment(segment, candidates, candidates.length, null);
+
+		final RaycastResult result = m_raycastResult;
+		final Vec2 point = m_raycastPoint;
+		float maxLambda = 1.0f;
+		for (int i = 0; i < count; ++i)
+		{
+			final Shape shape = (Shape)candidates[i];
+			if (m_contactFilter != null && !m_contactFilter.rayCollide(userData, shape))
+			{
+				continue;
+			}
+			if (!testRay(shape, segment, maxLambda, result, solidShapes))
+			{
+				continue;
+			}
+			point.x = segment.p1.x + result.lambda * (segment.p2.x - segment.p1.x);
+			point.y = segment.p1.y + result.lambda * (segment.p2.y - segment.p1.y);
+			final float clip = callback.reportShape(shape, point, result.normal, result.lambda);
+			if (clip == 0.0f)
+			{
+				break;
+			}
+			if (clip > 0.0f && clip < maxLambda)
+			{
+				maxLambda = clip;
+			}
+		}
+		releaseQueryBuffer(candidates, count);
+	}
+
+	/**
+	 * Cast several segments at once, finding the closest hit of each. The
+	 * broadphase is queried once with the box around all the segments, and each
+	 * candidate shape is then tested against every segment whose box it overlaps,
+	 * which is cheaper than one ray cast per segment when the segments are close
+	 * together (e.g. a fan of rays from the runner's feet). Nothing is allocated
+	 * once the query buffer exists.
+	 * @param segments the segments to cast.
+	 * @param count number of segments to cast, from the start of segments.
+	 * @param results returns the hit fraction and normal of each segment which hit.
+	 * Left as they were for segments which missed.
+	 * @param shapes returns the closest shape hit by each segment, or null.
+	 * @param solidShapes determines if shapes that the rays start in are counted as hits.
+	 * @param userData passed through the worlds contact filter, with method RayCollide.
+	 * @return the number of segments which hit a shape.
+	 */
+	public int raycast(Segment[] segments, int count, RaycastResult[] results, Shape[] shapes,
+	                   boolean solidShapes, Object userData)
+	{
+		if (count == 0)
+		{
+			return 0;
+		}
+		final AABB box = m_raycastAABB;
+		box.lowerBound.set(Float.MAX_VALUE, Float.MAX_VALUE);
+		box.upperBound.set(-Float.MAX_VALUE, -Float.MAX_VALUE);
+		for (int i = 0; i < count; ++i)
+		{
+			final Segment s = segments[i];
+			box.lowerBound.x = MathUtils.min(box.lowerBound.x, MathUtils.min(s.p1.x, s.p2.x));
+			box.lowerBound.y = MathUtils.min(box.lowerBound.y, MathUtils.min(s.p1.y, s.p2.y));
+			box.upperBound.x = MathUtils.max(box.upperBound.x, MathUtils.max(s.p1.x, s.p2.x));
+			box.upperBound.y = MathUtils.max(box.upperBound.y, MathUtils.max(s.p1.y, s.p2.y));
+			shapes[i] = null;
+		}
+
+		final Object[] candidates = takeQueryBuffer();
+		final int candidateCount = m_broadPhase.query(box, candidates, candidates.length);
+
+		final RaycastResult result = m_raycastResult;
+		final AABB shapeBox = m_raycastShapeAABB;
+		for (int j = 0; j < candidateCount; ++j)
+		{
+			final Shape shape = (Shape)candidates[j];
+			if (m_contactFilter != null && !m_contactFilter.rayCollide(userData, shape))
+			{
+				continue;
+			}
+			shape.computeAABB(shapeBox, shape.getBody().getMemberXForm());
+			for (int i = 0; i < count; ++i)
+			{
+				final Segment s = segments[i];
+				if (MathUtils.max(s.p1.x, s.p2.x) < shapeBox.lowerBound.x
+						|| MathUtils.min(s.p1.x, s.p2.x) > shapeBox.upperBound.x
+						|| MathUtils.max(s.p1.y, s.p2.y) < shapeBox.lowerBound.y
+						|| MathUtils.min(s.p1.y, s.p2.y) > shapeBox.upperBound.y)
+				{
+					continue;
+				}
+				final float maxLambda = shapes[i] == null ? 1.0f : results[i].lambda;
+				if (testRay(shape, s, maxLambda, result, solidShapes))
+				{
+					results[i].set(result);
+					shapes[i] = shape;
+				}
+			}
+		}
+		releaseQueryBuffer(candidates, candidateCount);
+
+		int hits = 0;
+		for (int i = 0; i < count; ++i)
+		{
+			if (shapes[i] != null)
+			{
+				++hits;
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * Test one shape against a segment, closer than maxLambda.
+	 * @return true if the shape counts as hit, with the hit in result. A segment
+	 * starting inside a solid shape hits at lambda 0 with a zero normal.
+	 */
+	private boolean testRay(Shape shape, Segment segment, float maxLambda, RaycastResult result,
+	                        boolean solidShapes)
+	{
+		final SegmentCollide collide = shape.testSegment(shape.getBody().getMemberXForm(), result, segment, maxLambda);
+		if (collide == SegmentCollide.STARTS_INSIDE_COLLIDE && solidShapes)
+		{
+			result.lambda = 0.0f;
+			result.normal.setZero();
+			return true;
+		}
+		return collide == SegmentCollide.HIT_COLLIDE;
+	}
+
 	/** 
 	 * Performs a ray-cast as with {@link #raycast(Segment, Shape[], int, boolean, Object)}, finding the first intersecting shape
 	 * @param segment defines the begin and end point of the ray cast, from p1 to p2
@@ -1488,23 +2245,32 @@ public class World {
 	 */
 	public Shape raycastOne(Segment segment, RaycastResult result, boolean solidShapes, Object userData)
 	{
-		int maxCount = 1;
-		Shape[] shapes = new Shape[maxCount];
+		m_raycastSegment = segment;
+		m_raycastUserData = userData;
+		m_raycastSolidShape = solidShapes;
+		m_raycastClosestShape = null;
+		m_raycastClosestLambda = Float.MAX_VALUE;
 
-		int count = raycast(segment, shapes, maxCount, solidShapes, userData);
+		final Object[] shapes = takeQueryBuffer();
+		final int count = m_broadPhase.querySegment(segment, shapes, 1, raycastSortKey);
+		final Shape shape = count == 0 ? null : (Shape)shapes[0];
+		releaseQueryBuffer(shapes, count);
 
-		if(count==0)
+		if (shape == null)
+		{
 			return null;
-
-		assert(count==1);
-
-		//Redundantly do TestSegment a second time, as the previous one's results are inaccessible
-//		System.out.println("Before final test, testing shape  " + shapes[0].getType());
-//		System.out.println(Arrays.toString(shapes));
-		shapes[0].testSegment(shapes[0].getBody().getMemberXForm(),result,segment,1.0f);
-//		System.out.println("Got here, lambda = " + result.lambda);
-		//We already know it returns true
-		return shapes[0];
+		}
+		if (shape == m_raycastClosestShape)
+		{
+			// The sort key kept the closest hit, so there is no need to test it again.
+			result.set(m_raycastClosest);
+		}
+		else
+		{
+			shape.testSegment(shape.getBody().getMemberXForm(), result, segment, 1.0f);
+		}
+		m_raycastClosestShape = null;
+		return shape;
 	}
 	
 	private SortKeyFunc raycastSortKey = new SortKeyFunc() {
@@ -1524,7 +2290,8 @@ public class World {
 			return -1;
 		}
 
-		RaycastResult result = new RaycastResult();
+		RaycastResult result = world.m_raycastResult;
+		result.lambda = 0.0f;
 		SegmentCollide collide = shape.testSegment(body.getMemberXForm(),result, world.m_raycastSegment, 1.0f);
 				//&lambda, &world->m_raycastNormal, *world->m_raycastSegment, 1);
 		float lambda = result.lambda;
@@ -1539,6 +2306,12 @@ public class World {
 			return -1;
 		}
 
+		if (lambda <= world.m_raycastClosestLambda)
+		{
+			world.m_raycastClosestLambda = lambda;
+			world.m_raycastClosest.set(result);
+			world.m_raycastClosestShape = shape;
+		}
 		return lambda;
 	}
 }
@@ -0,0 +1,77 @@
+package org.jbox2d.dynamics;
+
+import org.jbox2d.dynamics.contacts.Contact;
+
+/**
+ * Everything in a World which changes as it steps, saved by
+ * {@link World#saveState()}: body transforms, sweeps, velocities and
+ * sleep state, fat AABBs, joint impulses and motor settings, contacts with
+ * their manifolds and caches, and the broadphase's sorted bounds and pairs.
+ * <p>
+ * Restoring with {@link World#restoreState(WorldState)} puts every one of
+ * these back, in the same order, so stepping on from a restored world gives
+ * exactly the results of stepping on from the world as it was saved. A
+ * state may also be restored into another world built the same way, with
+ * the same bodies, shapes and joints created in the same order. Things set
+ * from outside the step, such as masses, filters, gravity, listeners and
+ * controllers, are not saved.
+ * <p>
+ * A state holds no references into the world it came from, and is never
+ * changed once saved, so one state may be restored many times, into any
+ * number of worlds.
+ */
+public class WorldState {
+	/** Floats and ints saved per body. */
+	static final int BODY_FLOATS = 22, BODY_INTS = 1;
+
+	/** Floats and ints saved per shape. */
+	static final int SHAPE_FLOATS = 5, SHAPE_INTS = 1;
+
+	final int m_bodyCount;
+	final int m_shapeCount;
+	final int m_jointCount;
+
+	final float[] m_bodyFloats;
+	final int[] m_bodyInts;
+	final float[] m_shapeFloats;
+	final int[] m_shapeInts;
+	final float[] m_jointFloats;
+
+	/**
+	 * Unattached copies of the contacts, in world list order, holding their
+	 * state but no shapes.
+	 */
+	final Contact[] m_contacts;
+
+	/** Shape handles of each contact: shape1, shape2. */
+	final int[] m_contactShapes;
+
+	final int[] m_broadPhase;
+
+	final float m_inv_dt0;
+	final float m_originOffsetX, m_originOffsetY;
+
+	WorldState(final int bodyCount, final int shapeCount, final int jointCount, final int jointFloats,
+			final int contactCount, final int broadPhaseInts, final float inv_dt0, final float originOffsetX,
+			final float originOffsetY) {
+		m_bodyCount = bodyCount;
+		m_shapeCount = shapeCount;
+		m_jointCount = jointCount;
+		m_bodyFloats = new float[BODY_FLOATS * bodyCount];
+		m_bodyInts = new int[BODY_INTS * bodyCount];
+		m_shapeFloats = new float[SHAPE_FLOATS * shapeCount];
+		m_shapeInts = new int[SHAPE_INTS * shapeCount];
+		m_jointFloats = new float[jointFloats];
+		m_contacts = new Contact[contactCount];
+		m_contactShapes = new int[2 * contactCount];
+		m_broadPhase = new int[broadPhaseInts];
+		m_inv_dt0 = inv_dt0;
+		m_originOffsetX = originOffsetX;
+		m_originOffsetY = originOffsetY;
+	}
+
+	/** Number of contacts saved. */
+	public int getContactCount() {
+		return m_contacts.length;
+	}
+}
@@ -27,6 +27,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.jbox2d.collision.Manifold;
+import org.jbox2d.collision.SimplexCache;
 import org.jbox2d.collision.shapes.Shape;
 import org.jbox2d.collision.shapes.ShapeType;
 import org.jbox2d.common.MathUtils;
@@ -52,12 +53,17 @@ public abstract class Contact {
 
 	static boolean s_initialized;
 
+	/** Number of distinct contact types registered, used to key the contact pools. */
+	static int s_poolTypeCount;
+
 	/** The parent world. */
 	public World m_world;
 
 	/* World pool and list pointers. */
 	public Contact m_prev;
 	public Contact m_next;
+	/** Handle in the world's dense contact array, or -1 if not in a world. */
+	public int m_handle = -1;
 
 	/** Node for connecting bodies. */
 	public final ContactEdge m_node1;
@@ -78,6 +84,15 @@ public abstract class Contact {
 
 	public float m_toi;
 
+	/** Separating axis from the last TOI query, used to warm start GJK. */
+	public final SimplexCache m_simplexCache = new SimplexCache();
+
+	/** Whether the last evaluate() reused the cached manifold instead of colliding the shapes. */
+	public boolean m_manifoldReused;
+
+	/** Which {@link ContactPool} free list this contact goes back to, or -1 if it is never pooled. */
+	int m_poolType = -1;
+
 	public abstract void evaluate(ContactListener listener);
 
 	/** Get the manifold array. */
@@ -109,7 +124,10 @@ public abstract class Contact {
 
 	public Contact(final Shape s1, final Shape s2) {
 		this();
+		init(s1, s2);
+	}
 
+	private final void init(final Shape s1, final Shape s2) {
 		m_flags = 0;
 
 		if (s1.isSensor() || s2.isSensor()) {
@@ -138,6 +156,54 @@ public abstract class Contact {
 		m_node2.other = null;
 	}
 
+	/**
+	 * Make a pooled contact look freshly constructed for a new pair of shapes.
+	 */
+	final void reinit(final Shape s1, final Shape s2) {
+		init(s1, s2);
+		m_toi = 0.0f;
+		m_simplexCache.reset();
+		m_manifoldReused = false;
+		resetManifolds();
+	}
+
+	/**
+	 * Empty the manifolds of a pooled contact. Override to clear any other
+	 * per-pair state a subclass caches.
+	 */
+	protected void resetManifolds() {
+		final List<Manifold> manifolds = getManifolds();
+		for (int i = 0; i < manifolds.size(); ++i) {
+			final Manifold m = manifolds.get(i);
+			for (int j = 0; j < m.points.length; ++j) {
+				m.points[j].normalImpulse = 0.0f;
+				m.points[j].tangentImpulse = 0.0f;
+			}
+			m.normal.setZero();
+			m.pointCount = 0;
+		}
+	}
+
+	/**
+	 * Copy the per-pair state of another contact of the same type: flags,
+	 * TOI, simplex cache and manifolds, with their warm starting impulses.
+	 * Shapes and list links are left alone. Override to copy any other
+	 * per-pair state a subclass caches. Used to save and restore worlds.
+	 */
+	public void setState(final Contact other) {
+		assert(m_poolType == other.m_poolType);
+		m_flags = other.m_flags;
+		m_toi = other.m_toi;
+		m_manifoldCount = other.m_manifoldCount;
+		m_simplexCache.set(other.m_simplexCache);
+		m_manifoldReused = other.m_manifoldReused;
+		final List<Manifold> manifolds = getManifolds();
+		final List<Manifold> otherManifolds = other.getManifolds();
+		for (int i = 0; i < manifolds.size(); ++i) {
+			manifolds.get(i).set(otherManifolds.get(i));
+		}
+	}
+
 	public Contact getNext() {
 		return m_next;
 	}
@@ -203,6 +269,7 @@ public abstract class Contact {
 		cr.s2 = type2;
 		cr.createFcn = createFcn;
 		cr.primary = true;
+		cr.poolType = s_poolTypeCount++;
 		s_registers.add(cr);
 
 		if (type1 != type2) {
@@ -211,6 +278,7 @@ public abstract class Contact {
 			cr2.s1 = type2;
 			cr2.createFcn = createFcn;
 			cr2.primary = false;
+			cr2.poolType = cr.poolType;
 			s_registers.add(cr2);
 		}
 	}
@@ -220,6 +288,15 @@ public abstract class Contact {
 	 * Doing this in Java causes problems, so leave it as is.
 	 */
 	public static final Contact createContact(final Shape shape1, final Shape shape2) {
+		return createContact(shape1, shape2, null);
+	}
+
+	/**
+	 * Create a contact, reusing a destroyed one of the same type from the pool
+	 * when there is one.
+	 * @param pool free lists to take from, or null to always allocate.
+	 */
+	public static final Contact createContact(final Shape shape1, final Shape shape2, final ContactPool pool) {
 		if (s_initialized == false) {
 			Contact.initializeRegisters();
 			s_initialized = true;
@@ -235,9 +312,9 @@ public abstract class Contact {
 		final ContactRegister register = Contact.getContactRegister(type1, type2);
 		if (register != null) {
 			if (register.primary) {
-				return register.createFcn.create(shape1, shape2);
+				return create(register, shape1, shape2, pool);
 			} else {
-				final Contact c = register.createFcn.create(shape2, shape1);
+				final Contact c = create(register, shape2, shape1, pool);
 				for (int i = 0; i < c.getManifoldCount(); ++i) {
 					final Manifold m = c.getManifolds().get(i);
 					m.normal.negateLocal();
@@ -249,6 +326,19 @@ public abstract class Contact {
 		}
 	}
 
+	private static final Contact create(final ContactRegister register, final Shape s1, final Shape s2,
+	                                    final ContactPool pool) {
+		if (pool != null) {
+			final Contact c = pool.take(register.poolType, s1, s2);
+			if (c != null) {
+				return c;
+			}
+		}
+		final Contact c = register.createFcn.create(s1, s2);
+		c.m_poolType = register.poolType;
+		return c;
+	}
+
 	private static final ContactRegister getContactRegister(final ShapeType type1,
 	                                                        final ShapeType type2) {
 		for (int i=0; i<s_registers.size(); ++i) {//ContactRegister cr : s_registers) {
@@ -262,11 +352,23 @@ public abstract class Contact {
 	}
 
 	public static final void destroy(final Contact contact) {
+		destroy(contact, null);
+	}
+
+	/**
+	 * Destroy a contact which has already been removed from the world.
+	 * @param pool free lists to return the contact to, or null to drop it.
+	 */
+	public static final void destroy(final Contact contact, final ContactPool pool) {
 		assert (s_initialized == true);
 
 		if (contact.getManifoldCount() > 0) {
 			contact.getShape1().getBody().wakeUp();
 			contact.getShape2().getBody().wakeUp();
 		}
+
+		if (pool != null) {
+			pool.put(contact);
+		}
 	}
 }
@@ -0,0 +1,115 @@
+package org.jbox2d.dynamics.contacts;
+
+import org.jbox2d.collision.shapes.Shape;
+
+/**
+ * Free lists of destroyed contacts, one per contact type. Each World owns one
+ * (see World.getContactPool()), so contacts never move between worlds and no
+ * locking is needed. Pooled contacts are chained through {@link Contact#m_next},
+ * which is free once a contact has been removed from the world.
+ */
+public class ContactPool {
+	private Contact[] m_free = new Contact[8];
+	private int[] m_freeCount = new int[8];
+
+	private long m_hits;
+	private long m_misses;
+	private long m_returns;
+
+	/**
+	 * Take a contact of the given type from the pool and initialize it for the
+	 * two shapes.
+	 * @return the contact, or null if none of this type are pooled.
+	 */
+	Contact take(final int poolType, final Shape s1, final Shape s2) {
+		if (poolType >= m_free.length || m_free[poolType] == null) {
+			++m_misses;
+			return null;
+		}
+		final Contact c = m_free[poolType];
+		m_free[poolType] = c.m_next;
+		--m_freeCount[poolType];
+		++m_hits;
+		c.reinit(s1, s2);
+		return c;
+	}
+
+	/** Put a destroyed contact back in the pool. */
+	void put(final Contact c) {
+		final int poolType = c.m_poolType;
+		if (poolType < 0) {
+			return;
+		}
+		if (poolType >= m_free.length) {
+			int size = m_free.length;
+			while (size <= poolType) {
+				size *= 2;
+			}
+			final Contact[] free = new Contact[size];
+			System.arraycopy(m_free, 0, free, 0, m_free.length);
+			m_free = free;
+			final int[] freeCount = new int[size];
+			System.arraycopy(m_freeCount, 0, freeCount, 0, m_freeCount.length);
+			m_freeCount = freeCount;
+		}
+		// Drop references so pooled contacts don't keep destroyed shapes alive.
+		c.m_world = null;
+		c.m_shape1 = null;
+		c.m_shape2 = null;
+		c.m_prev = null;
+		c.m_next = m_free[poolType];
+		m_free[poolType] = c;
+		++m_freeCount[poolType];
+		++m_returns;
+	}
+
+	/** Number of contacts created from the pool. */
+	public long getHits() {
+		return m_hits;
+	}
+
+	/** Number of contacts which had to be allocated because the pool was empty. */
+	public long getMisses() {
+		return m_misses;
+	}
+
+	/** Number of destroyed contacts returned to the pool. */
+	public long getReturns() {
+		return m_returns;
+	}
+
+	/** Fraction of contact creations served from the pool, or 0 if none were made. */
+	public float getHitRate() {
+		final long total = m_hits + m_misses;
+		return total == 0 ? 0.0f : (float) m_hits / total;
+	}
+
+	/** Number of contacts currently waiting in the pool. */
+	public int getPooledCount() {
+		int count = 0;
+		for (int i = 0; i < m_freeCount.length; ++i) {
+			count += m_freeCount[i];
+		}
+		return count;
+	}
+
+	public void resetCounters() {
+		m_hits = 0;
+		m_misses = 0;
+		m_returns = 0;
+	}
+
+	/** Drop every pooled contact. The counters are kept. */
+	public void clear() {
+		for (int i = 0; i < m_free.length; ++i) {
+			m_free[i] = null;
+			m_freeCount[i] = 0;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Contact pool hits: " + m_hits + ", misses: " + m_misses + " (hit rate " + getHitRate()
+				+ "), pooled: " + getPooledCount();
+	}
+}
@@ -31,4 +31,7 @@ public class ContactRegister {
     public ContactCreateFcn createFcn;
 
     public boolean primary;
+
+    /** Pool free list shared by both shape orders of this contact type. */
+    public int poolType;
 }
@@ -28,4 +28,19 @@ public class ContactResult {
 		normal = new Vec2();
 		id = new ContactID();
 	}
+
+	/**
+	 * Sets this result from the given one
+	 * @param cr the result to copy from
+	 */
+	public ContactResult set(final ContactResult cr) {
+		shape1 = cr.shape1;
+		shape2 = cr.shape2;
+		position.set(cr.position);
+		normal.set(cr.normal);
+		normalImpulse = cr.normalImpulse;
+		tangentImpulse = cr.tangentImpulse;
+		id.set(cr.id);
+		return this;
+	}
 }
@@ -64,9 +64,20 @@ public class ContactSolver {
 			m_constraintCount += contacts[i].getManifoldCount();
 		}
 
-		m_constraints = new ContactConstraint[m_constraintCount];
-		for (int i = 0; i < m_constraintCount; i++) {
-			m_constraints[i] = new ContactConstraint();
+		// djm pooled: constraints are fully rewritten below, so keep them
+		// between steps and only grow the array.
+		if (m_constraints == null || m_constraints.length < m_constraintCount) {
+			final ContactConstraint[] old = m_constraints;
+			m_constraints = new ContactConstraint[m_constraintCount];
+			int i = 0;
+			if (old != null) {
+				for (; i < old.length; i++) {
+					m_constraints[i] = old[i];
+				}
+			}
+			for (; i < m_constraintCount; i++) {
+				m_constraints[i] = new ContactConstraint();
+			}
 		}
 
 		int count = 0;
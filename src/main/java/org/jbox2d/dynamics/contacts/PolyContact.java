@@ -32,13 +32,18 @@ import org.jbox2d.collision.ManifoldPoint;
 import org.jbox2d.collision.shapes.PolygonShape;
 import org.jbox2d.collision.shapes.Shape;
 import org.jbox2d.collision.shapes.ShapeType;
+import org.jbox2d.common.Mat22;
+import org.jbox2d.common.MathUtils;
+import org.jbox2d.common.Settings;
 import org.jbox2d.common.Vec2;
+import org.jbox2d.common.XForm;
 import org.jbox2d.dynamics.Body;
 import org.jbox2d.dynamics.ContactListener;
 import org.jbox2d.pooling.SingletonPool;
 import org.jbox2d.pooling.TLContactPoint;
 import org.jbox2d.pooling.TLManifold;
 import org.jbox2d.pooling.TLVec2;
+import org.jbox2d.pooling.arrays.BooleanArray;
 
 //Updated to rev 142 of b2PolyContact.h/cpp
 public class PolyContact extends Contact implements ContactCreateFcn {
@@ -110,10 +115,100 @@ public class PolyContact extends Contact implements ContactCreateFcn {
 		}
 	}
 
+	// Contact coherence: the relative pose of the bodies at the last full
+	// collision, with the manifold normal and separations at that pose.
+	private boolean m_cacheValid = false;
+	private final Vec2 m_cachedRelPosition = new Vec2();
+	private float m_cachedRelAngle;
+	private final Vec2 m_cachedLocalNormal = new Vec2();
+	private final float[] m_cachedSeparations = new float[Settings.maxManifoldPoints];
+
+	// djm pooling
+	private static final TLVec2 tlRel = new TLVec2();
+	private static final TLVec2 tlP1 = new TLVec2();
+	private static final TLVec2 tlP2 = new TLVec2();
+
+	@Override
+	protected void resetManifolds() {
+		super.resetManifolds();
+		m_cacheValid = false;
+	}
+
+	@Override
+	public void setState(final Contact other) {
+		super.setState(other);
+		final PolyContact poly = (PolyContact) other;
+		m_cacheValid = poly.m_cacheValid;
+		m_cachedRelPosition.set(poly.m_cachedRelPosition);
+		m_cachedRelAngle = poly.m_cachedRelAngle;
+		m_cachedLocalNormal.set(poly.m_cachedLocalNormal);
+		for (int i = 0; i < m_cachedSeparations.length; ++i) {
+			m_cachedSeparations[i] = poly.m_cachedSeparations[i];
+		}
+	}
+
+	/** Remember the pose of body2 relative to body1 alongside the manifold just computed. */
+	private final void cacheRelativeXForm(final Body b1, final Body b2) {
+		if (m_manifold.pointCount == 0) {
+			// Nothing worth reusing, and new points must be found as soon as they appear.
+			m_cacheValid = false;
+			return;
+		}
+		final XForm xf1 = b1.getMemberXForm();
+		final Vec2 rel = tlRel.get();
+		rel.set(b2.getMemberXForm().position).subLocal(xf1.position);
+		Mat22.mulTransToOut(xf1.R, rel, m_cachedRelPosition);
+		m_cachedRelAngle = b2.getAngle() - b1.getAngle();
+		Mat22.mulTransToOut(xf1.R, m_manifold.normal, m_cachedLocalNormal);
+		for (int i = 0; i < m_manifold.pointCount; ++i) {
+			m_cachedSeparations[i] = m_manifold.points[i].separation;
+		}
+		m_cacheValid = true;
+	}
+
+	/**
+	 * If the bodies have barely moved relative to each other since the manifold
+	 * was computed, bring it up to date without colliding the polygons again.
+	 * @return false if the manifold must be recomputed.
+	 */
+	private final boolean refineCachedManifold(final Body b1, final Body b2) {
+		if (!m_cacheValid || m_manifold.pointCount == 0) {
+			return false;
+		}
+		final XForm xf1 = b1.getMemberXForm();
+		final XForm xf2 = b2.getMemberXForm();
+		if (MathUtils.abs(b2.getAngle() - b1.getAngle() - m_cachedRelAngle) > m_world.getCoherenceAngularSlop()) {
+			return false;
+		}
+		final Vec2 rel = tlRel.get();
+		rel.set(xf2.position).subLocal(xf1.position);
+		Mat22.mulTransToOut(xf1.R, rel, rel);
+		rel.subLocal(m_cachedRelPosition);
+		final float linearSlop = m_world.getCoherenceLinearSlop();
+		if (rel.lengthSquared() > linearSlop * linearSlop) {
+			return false;
+		}
+
+		// The local points coincided when cached, so their drift along the
+		// normal is the change in separation.
+		Mat22.mulToOut(xf1.R, m_cachedLocalNormal, m_manifold.normal);
+		final Vec2 p1 = tlP1.get();
+		final Vec2 p2 = tlP2.get();
+		for (int i = 0; i < m_manifold.pointCount; ++i) {
+			final ManifoldPoint mp = m_manifold.points[i];
+			XForm.mulToOut(xf1, mp.localPoint1, p1);
+			XForm.mulToOut(xf2, mp.localPoint2, p2);
+			p2.subLocal(p1);
+			mp.separation = m_cachedSeparations[i] + Vec2.dot(p2, m_manifold.normal);
+		}
+		return true;
+	}
+
 	// djm pooling
 	private static final TLManifold tlm0 = new TLManifold();
 	private static final TLVec2 tlV1 = new TLVec2();
 	private static final TLContactPoint tlCp = new TLContactPoint();
+	private static final BooleanArray tlPersisted = new BooleanArray();
 	@Override
 	public void evaluate(final ContactListener listener) {
 		final Body b1 = m_shape1.getBody();
@@ -138,9 +233,15 @@ public class PolyContact extends Contact implements ContactCreateFcn {
         }
         m0.pointCount = m_manifold.pointCount;*/
 
-		SingletonPool.getCollidePoly().collidePolygons(m_manifold, (PolygonShape) m_shape1,b1.getMemberXForm(),(PolygonShape) m_shape2, b2.getMemberXForm());
+		m_manifoldReused = m_world != null && m_world.isContactCoherence() && refineCachedManifold(b1, b2);
+		if (!m_manifoldReused) {
+			SingletonPool.getCollidePoly().collidePolygons(m_manifold, (PolygonShape) m_shape1,b1.getMemberXForm(),(PolygonShape) m_shape2, b2.getMemberXForm());
+			cacheRelativeXForm(b1, b2);
+		}
 
-		final boolean[] persisted = {false, false};
+		final Boolean[] persisted = tlPersisted.get(2);
+		persisted[0] = false;
+		persisted[1] = false;
 
 		cp.shape1 = m_shape1;
 		cp.shape2 = m_shape2;
@@ -50,6 +50,9 @@ public class BuoyancyController extends Controller {
 	public boolean useWorldGravity;
 	/** Gravity vector, if the world's gravity is not used */
 	public Vec2 gravity = new Vec2();
+
+	// djm pooled
+	private final Vec2 dragForce = new Vec2();
 	
 	@Override
 	public void step(final TimeStep step) {
@@ -97,8 +100,8 @@ public class BuoyancyController extends Controller {
 			Vec2 buoyancyForce = gravity.mul(-density*area);
 			body.applyForce(buoyancyForce,massc);
 			//Linear drag
-			Vec2 dragForce = body.getLinearVelocityFromWorldPoint(areac).sub(velocity);
-			dragForce.mulLocal(-linearDrag*area);
+			body.getLinearVelocityFromWorldPointToOut(areac, dragForce);
+			dragForce.subLocal(velocity).mulLocal(-linearDrag*area);
 			body.applyForce(dragForce,areac);
 			//Angular drag
 			//TODO: Something that makes more physical sense?
@@ -41,6 +41,9 @@ public abstract class Joint {
 
 	public Joint m_next;
 
+	/** Handle in the world's dense joint array, or -1 if not in a world. */
+	public int m_handle = -1;
+
 	public JointEdge m_node1;
 
 	public JointEdge m_node2;
@@ -137,6 +140,22 @@ public abstract class Joint {
 	/** Get the anchor point on body2 in world coordinates. */
 	public abstract Vec2 getAnchor2();
 
+	/**
+	 * Get the anchor point on body1 in world coordinates.
+	 * @param out where to put the anchor point
+	 */
+	public void getAnchor1ToOut(final Vec2 out) {
+		out.set(getAnchor1());
+	}
+
+	/**
+	 * Get the anchor point on body2 in world coordinates.
+	 * @param out where to put the anchor point
+	 */
+	public void getAnchor2ToOut(final Vec2 out) {
+		out.set(getAnchor2());
+	}
+
 	/** Get the reaction force on body2 at the joint anchor. */
 	public abstract Vec2 getReactionForce();
 
@@ -148,6 +167,14 @@ public abstract class Joint {
 		return m_next;
 	}
 
+	/**
+	 * Get this joint's handle, which stays valid until the joint is destroyed.
+	 * @see org.jbox2d.dynamics.World#getJointByHandle(int)
+	 */
+	public int getHandle() {
+		return m_handle;
+	}
+
 	/** Get the user data pointer. */
 	public Object getUserData() {
 		return m_userData;
@@ -162,6 +189,39 @@ public abstract class Joint {
 
 	public abstract void solveVelocityConstraints(TimeStep step);
 
+	/**
+	 * Called by World.shiftOrigin. Joints which hold world coordinates
+	 * subtract the shift from them; anchors local to bodies need nothing.
+	 */
+	public void shiftOrigin(final Vec2 newOrigin) {
+	}
+
+	/**
+	 * Number of floats {@link #saveState(float[], int)} writes. Joint types
+	 * which can't be saved throw UnsupportedOperationException.
+	 */
+	public int getStateSize() {
+		throw new UnsupportedOperationException("Saving the state of " + m_type + " joints isn't supported.");
+	}
+
+	/**
+	 * Called by World.saveState. Write everything this joint carries from one
+	 * step to the next, i.e. its warm starting impulses and any settings the
+	 * user may change between steps, into state from offset.
+	 * @return the offset after the last float written.
+	 */
+	public int saveState(final float[] state, final int offset) {
+		throw new UnsupportedOperationException("Saving the state of " + m_type + " joints isn't supported.");
+	}
+
+	/**
+	 * Called by World.restoreState. Read back what saveState wrote.
+	 * @return the offset after the last float read.
+	 */
+	public int restoreState(final float[] state, final int offset) {
+		throw new UnsupportedOperationException("Saving the state of " + m_type + " joints isn't supported.");
+	}
+
 	public void initPositionConstraints() {
 		return;
 	}
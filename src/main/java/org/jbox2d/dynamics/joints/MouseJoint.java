@@ -102,6 +102,11 @@ public class MouseJoint extends Joint {
 		return m_target;
 	}
 
+	@Override
+	public void shiftOrigin(final Vec2 newOrigin) {
+		m_target.subLocal(newOrigin);
+	}
+
 	// djm pooled
 	private static final TLVec2 tlanchor2 = new TLVec2();
 
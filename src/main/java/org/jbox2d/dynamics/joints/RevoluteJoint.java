@@ -89,6 +89,46 @@ public class RevoluteJoint extends Joint {
 		m_enableMotor = def.enableMotor;
 	}
 
+	@Override
+	public int getStateSize() {
+		return 12;
+	}
+
+	@Override
+	public int saveState(final float[] state, int offset) {
+		state[offset++] = m_pivotForce.x;
+		state[offset++] = m_pivotForce.y;
+		state[offset++] = m_motorForce;
+		state[offset++] = m_limitForce;
+		state[offset++] = m_limitPositionImpulse;
+		state[offset++] = m_limitState == null ? -1 : m_limitState.ordinal();
+		state[offset++] = m_enableMotor ? 1 : 0;
+		state[offset++] = m_maxMotorTorque;
+		state[offset++] = m_motorSpeed;
+		state[offset++] = m_enableLimit ? 1 : 0;
+		state[offset++] = m_lowerAngle;
+		state[offset++] = m_upperAngle;
+		return offset;
+	}
+
+	@Override
+	public int restoreState(final float[] state, int offset) {
+		m_pivotForce.x = state[offset++];
+		m_pivotForce.y = state[offset++];
+		m_motorForce = state[offset++];
+		m_limitForce = state[offset++];
+		m_limitPositionImpulse = state[offset++];
+		final int limitState = (int) state[offset++];
+		m_limitState = limitState < 0 ? null : LimitState.values()[limitState];
+		m_enableMotor = state[offset++] != 0;
+		m_maxMotorTorque = state[offset++];
+		m_motorSpeed = state[offset++];
+		m_enableLimit = state[offset++] != 0;
+		m_lowerAngle = state[offset++];
+		m_upperAngle = state[offset++];
+		return offset;
+	}
+
 	// djm pooled
 	private static final TLVec2 tlr1 = new TLVec2();
 	private static final TLVec2 tlr2 = new TLVec2();
@@ -407,6 +447,16 @@ public class RevoluteJoint extends Joint {
 		return m_body2.getWorldLocation(m_localAnchor2);
 	}
 
+	@Override
+	public void getAnchor1ToOut(final Vec2 out) {
+		m_body1.getWorldLocationToOut(m_localAnchor1, out);
+	}
+
+	@Override
+	public void getAnchor2ToOut(final Vec2 out) {
+		m_body2.getWorldLocationToOut(m_localAnchor2, out);
+	}
+
 	@Override
 	public Vec2 getReactionForce() {
 		return m_pivotForce;